@@ -0,0 +1,48 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * The clusters an instance, or a table of an instance, is served from.
+ */
+public class ClusterRouteConfiguration {
+  /** URI of the cluster requests are served from. */
+  @NotEmpty
+  @JsonProperty("primary")
+  private String mPrimary;
+
+  /** URI of a replica cluster reads may be served from, if any. */
+  @JsonProperty("secondary")
+  private String mSecondary = null;
+
+  /** @return the URI of the primary cluster. */
+  public final String getPrimary() {
+    return mPrimary;
+  }
+
+  /** @return the URI of the secondary cluster, or null if there is none. */
+  public final String getSecondary() {
+    return mSecondary;
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.kiji.schema.KijiURI;
+
+/**
+ * Resolves the clusters an instance or table is served from.
+ */
+public final class ClusterRouter {
+  /** Separates the instance from the table in the key of a table route. */
+  private static final String TABLE_SEPARATOR = "/";
+
+  private final KijiURI mDefaultCluster;
+  /** Primary cluster of each route, keyed by instance or instance/table. */
+  private final Map<String, KijiURI> mPrimaryClusters = Maps.newHashMap();
+  /** Secondary cluster of each route that has one. */
+  private final Map<String, KijiURI> mSecondaryClusters = Maps.newHashMap();
+
+  /**
+   * Constructs a router.
+   *
+   * @param defaultCluster serving the instances and tables without a route.
+   * @param routing configures the routes.
+   */
+  public ClusterRouter(KijiURI defaultCluster, RoutingConfiguration routing) {
+    mDefaultCluster = defaultCluster;
+    for (Map.Entry<String, ClusterRouteConfiguration> route : routing.getRoutes().entrySet()) {
+      mPrimaryClusters.put(route.getKey(),
+          KijiURI.newBuilder(route.getValue().getPrimary()).build());
+      if (null != route.getValue().getSecondary()) {
+        mSecondaryClusters.put(route.getKey(),
+            KijiURI.newBuilder(route.getValue().getSecondary()).build());
+      }
+    }
+  }
+
+  /**
+   * Gets the URI of the primary instance serving a table.
+   *
+   * @param instance name.
+   * @param table name, or null for the instance as a whole.
+   * @return the instance URI on the primary cluster.
+   */
+  public KijiURI getPrimary(String instance, String table) {
+    final String route = getRoute(instance, table);
+    if (null == route) {
+      return withInstance(mDefaultCluster, instance);
+    }
+    return withInstance(mPrimaryClusters.get(route), instance);
+  }
+
+  /**
+   * Gets the URI of the secondary instance serving a table.
+   *
+   * @param instance name.
+   * @param table name, or null for the instance as a whole.
+   * @return the instance URI on the secondary cluster, or null if there is none.
+   */
+  public KijiURI getSecondary(String instance, String table) {
+    final String route = getRoute(instance, table);
+    if (null == route || !mSecondaryClusters.containsKey(route)) {
+      return null;
+    }
+    return withInstance(mSecondaryClusters.get(route), instance);
+  }
+
+  /**
+   * Gets the URIs of every cluster an instance or any of its tables is served from.
+   *
+   * @param instance name.
+   * @return the instance URIs on every cluster serving it.
+   */
+  public Set<KijiURI> getURIs(String instance) {
+    final Set<KijiURI> uris = Sets.newLinkedHashSet();
+    uris.add(getPrimary(instance, null));
+    addIfPresent(uris, getSecondary(instance, null));
+    final String tablePrefix = instance + TABLE_SEPARATOR;
+    for (String key : mPrimaryClusters.keySet()) {
+      if (key.startsWith(tablePrefix)) {
+        final String table = key.substring(tablePrefix.length());
+        uris.add(getPrimary(instance, table));
+        addIfPresent(uris, getSecondary(instance, table));
+      }
+    }
+    return uris;
+  }
+
+  /**
+   * @param instance name.
+   * @param table name, or null.
+   * @return the key of the route of the table if it has one, else that of the instance, or null.
+   */
+  private String getRoute(String instance, String table) {
+    if (null != table) {
+      final String tableRoute = instance + TABLE_SEPARATOR + table;
+      if (mPrimaryClusters.containsKey(tableRoute)) {
+        return tableRoute;
+      }
+    }
+    if (mPrimaryClusters.containsKey(instance)) {
+      return instance;
+    }
+    return null;
+  }
+
+  /**
+   * @param uris to add to.
+   * @param uri to add, or null.
+   */
+  private static void addIfPresent(Set<KijiURI> uris, KijiURI uri) {
+    if (null != uri) {
+      uris.add(uri);
+    }
+  }
+
+  /**
+   * @param cluster URI.
+   * @param instance name.
+   * @return the URI of the instance on the cluster.
+   */
+  private static KijiURI withInstance(KijiURI cluster, String instance) {
+    return KijiURI.newBuilder(cluster).withInstanceName(instance).build();
+  }
+}
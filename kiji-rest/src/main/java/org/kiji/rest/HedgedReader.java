@@ -0,0 +1,353 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.rest.admission.RequestContext;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Serves reads from the primary cluster of a table, falling back to its secondary cluster when
+ * the primary fails and hedging to it when the primary is slow.
+ *
+ * <p>A read of a table with a secondary cluster starts on the primary cluster. If it has not
+ * completed after the configured percentile of recent primary read latencies, the same read is
+ * started on the secondary cluster and whichever completes first is returned. A read failing
+ * on the primary cluster is retried on the secondary cluster straight away. Reads of tables
+ * without a secondary cluster run on the calling thread.</p>
+ *
+ * <p>Primary reads lease their table through the client requests are admitted by, so that they
+ * go through bulkheads, limiters, lanes and circuit breakers like any other read. Secondary reads
+ * lease their table through a client admitting them alike, with bulkheads and breakers of the
+ * secondary clusters. Reads run on the hedging threads carry the class, deadline, quota and
+ * bulkhead of their request.</p>
+ */
+public final class HedgedReader implements Managed {
+  private static final Logger LOG = LoggerFactory.getLogger(HedgedReader.class);
+
+  private static final Meter HEDGED_READS =
+      Metrics.newMeter(HedgedReader.class, "hedged-reads", "reads", TimeUnit.SECONDS);
+  private static final Meter SECONDARY_WINS =
+      Metrics.newMeter(HedgedReader.class, "secondary-wins", "reads", TimeUnit.SECONDS);
+  private static final Meter FALLBACKS =
+      Metrics.newMeter(HedgedReader.class, "secondary-fallbacks", "reads", TimeUnit.SECONDS);
+
+  /**
+   * A read of a table, which may run against either cluster serving the table.
+   *
+   * @param <T> is the type of the result of the read.
+   */
+  public interface TableRead<T> {
+    /**
+     * Reads from a table. The table is released by the caller.
+     *
+     * @param table to read from.
+     * @return the result of the read.
+     * @throws IOException if the read fails.
+     */
+    T read(KijiTable table) throws IOException;
+  }
+
+  private final KijiClient mReadClient;
+  private final KijiClient mSecondaryReadClient;
+  private final ManagedKijiClient mKijiClient;
+  private final double mHedgeQuantile;
+  private final long mMinHedgeDelayMillis;
+  private final ThreadPoolExecutor mExecutor;
+
+  /** Recent latencies of primary reads, by instance. */
+  private final ConcurrentMap<String, Histogram> mPrimaryLatencies = Maps.newConcurrentMap();
+
+  /**
+   * Constructs a hedged reader.
+   *
+   * @param readClient admitting the reads of the primary clusters.
+   * @param secondaryReadClient admitting the reads of the secondary clusters.
+   * @param kijiClient routing the tables to their clusters.
+   * @param routing configures the hedging of reads.
+   */
+  public HedgedReader(KijiClient readClient, KijiClient secondaryReadClient,
+      ManagedKijiClient kijiClient, RoutingConfiguration routing) {
+    mReadClient = readClient;
+    mSecondaryReadClient = secondaryReadClient;
+    mKijiClient = kijiClient;
+    mHedgeQuantile = routing.getHedgePercentile() / 100.0;
+    mMinHedgeDelayMillis = routing.getMinHedgeDelayMillis();
+    mExecutor = new ThreadPoolExecutor(0, routing.getHedgeThreads(), 60, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hedged-read-%d").build());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void stop() {
+    mExecutor.shutdownNow();
+  }
+
+  /**
+   * @param instance in which the table resides.
+   * @param table name.
+   * @return whether reads of the table may be hedged to a secondary cluster.
+   */
+  public boolean hasSecondary(String instance, String table) {
+    return mKijiClient.hasSecondary(instance, table);
+  }
+
+  /**
+   * Reads from a table.
+   *
+   * @param instance in which the table resides.
+   * @param table name.
+   * @param read to run.
+   * @param <T> is the type of the result of the read.
+   * @return the result of the first read to complete.
+   * @throws IOException if the read fails on every cluster.
+   */
+  public <T> T read(final String instance, final String table, final TableRead<T> read)
+      throws IOException {
+    if (!mKijiClient.hasSecondary(instance, table)) {
+      return runOnPrimary(instance, table, read);
+    }
+
+    final CompletionService<T> reads = new ExecutorCompletionService<T>(mExecutor);
+    final RequestContext context = RequestContext.capture();
+    final Future<T> primary;
+    try {
+      primary = reads.submit(context.wrap(new Callable<T>() {
+        @Override
+        public T call() throws IOException {
+          return runOnPrimary(instance, table, read);
+        }
+      }));
+    } catch (RejectedExecutionException ree) {
+      // Every hedging thread is busy; read without hedging.
+      return runOnPrimary(instance, table, read);
+    }
+
+    Throwable primaryError = null;
+    try {
+      final Future<T> first = reads.poll(getHedgeDelayMillis(instance), TimeUnit.MILLISECONDS);
+      if (null != first) {
+        return first.get();
+      }
+      HEDGED_READS.mark();
+    } catch (ExecutionException ee) {
+      primaryError = ee.getCause();
+      if (isClientError(primaryError)) {
+        // The secondary cluster would reject the request all the same.
+        return HedgedReader.<T>rethrow(primaryError);
+      }
+      FALLBACKS.mark();
+      LOG.warn("Primary read of table {} of instance {} failed, reading from secondary: {}",
+          table, instance, String.valueOf(primaryError));
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ie);
+    }
+
+    final Future<T> secondary;
+    try {
+      secondary = reads.submit(context.wrap(new Callable<T>() {
+        @Override
+        public T call() throws IOException {
+          return runOnSecondary(instance, table, read);
+        }
+      }));
+    } catch (RejectedExecutionException ree) {
+      return awaitPrimary(primary, primaryError);
+    }
+
+    // Return the first read to succeed; the other one finishes and releases its table alone.
+    int pending = 2;
+    if (null != primaryError) {
+      pending = 1;
+    }
+    Throwable error = primaryError;
+    try {
+      while (pending > 0) {
+        final Future<T> done = reads.take();
+        pending--;
+        try {
+          final T result = done.get();
+          if (done == secondary) {
+            SECONDARY_WINS.mark();
+          }
+          return result;
+        } catch (ExecutionException ee) {
+          // Report the failure of the primary read rather than that of the secondary.
+          if (done == primary || null == error) {
+            error = ee.getCause();
+          }
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ie);
+    }
+    return HedgedReader.<T>rethrow(error);
+  }
+
+  /**
+   * @param instance whose primary reads to time.
+   * @return the delay after which a read of the instance is hedged, in milliseconds.
+   */
+  private long getHedgeDelayMillis(String instance) {
+    final double quantile = getPrimaryLatencies(instance).getSnapshot().getValue(mHedgeQuantile);
+    return Math.max(mMinHedgeDelayMillis, (long) quantile);
+  }
+
+  /**
+   * @param instance whose primary reads are timed.
+   * @return the histogram of primary read latencies of the instance.
+   */
+  private Histogram getPrimaryLatencies(String instance) {
+    Histogram histogram = mPrimaryLatencies.get(instance);
+    if (null == histogram) {
+      // Biased towards recent reads, so that the hedge delay follows the latency of the cluster.
+      histogram = Metrics.newHistogram(HedgedReader.class, "primary-read-millis", instance, true);
+      mPrimaryLatencies.putIfAbsent(instance, histogram);
+    }
+    return histogram;
+  }
+
+  /**
+   * Runs a read on the primary cluster of a table, timing it.
+   *
+   * @param instance in which the table resides.
+   * @param table name.
+   * @param read to run.
+   * @param <T> is the type of the result of the read.
+   * @return the result of the read.
+   * @throws IOException if the read fails.
+   */
+  private <T> T runOnPrimary(String instance, String table, TableRead<T> read)
+      throws IOException {
+    final long startTime = System.currentTimeMillis();
+    final KijiTable kijiTable = mReadClient.getKijiTable(instance, table);
+    try {
+      return read.read(kijiTable);
+    } finally {
+      ResourceUtils.releaseOrLog(kijiTable);
+      getPrimaryLatencies(instance).update(System.currentTimeMillis() - startTime);
+    }
+  }
+
+  /**
+   * Runs a read on the secondary cluster of a table.
+   *
+   * @param instance in which the table resides.
+   * @param table name.
+   * @param read to run.
+   * @param <T> is the type of the result of the read.
+   * @return the result of the read.
+   * @throws IOException if the read fails.
+   */
+  private <T> T runOnSecondary(String instance, String table, TableRead<T> read)
+      throws IOException {
+    final KijiTable kijiTable = mSecondaryReadClient.getKijiTable(instance, table);
+    try {
+      return read.read(kijiTable);
+    } finally {
+      ResourceUtils.releaseOrLog(kijiTable);
+    }
+  }
+
+  /**
+   * Waits for the primary read when the secondary read can not be started.
+   *
+   * @param primary read.
+   * @param primaryError that the primary read failed with, or null if it is still running.
+   * @param <T> is the type of the result of the read.
+   * @return the result of the primary read.
+   * @throws IOException if the primary read failed.
+   */
+  private static <T> T awaitPrimary(Future<T> primary, Throwable primaryError)
+      throws IOException {
+    if (null != primaryError) {
+      return HedgedReader.<T>rethrow(primaryError);
+    }
+    try {
+      return primary.get();
+    } catch (ExecutionException ee) {
+      return HedgedReader.<T>rethrow(ee.getCause());
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ie);
+    }
+  }
+
+  /**
+   * @param error a read failed with.
+   * @return whether the read failed because of the request rather than the cluster.
+   */
+  private static boolean isClientError(Throwable error) {
+    return (error instanceof WebApplicationException)
+        && ((WebApplicationException) error).getResponse().getStatus() < 500;
+  }
+
+  /**
+   * Rethrows the failure of a read.
+   *
+   * @param error the read failed with.
+   * @param <T> is the type the caller expected.
+   * @return never.
+   * @throws IOException if the read failed with one.
+   */
+  private static <T> T rethrow(Throwable error) throws IOException {
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+    if (error instanceof Error) {
+      throw (Error) error;
+    }
+    throw new IOException(error);
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Opens Kiji instances in parallel, once each, within a bounded time.
+ *
+ * <p>Either every instance is opened, or none is: when an instance fails to open or the
+ * timeout expires, the instances already opened are released, as are those whose opening
+ * completes afterwards. The time taken to open each instance is logged and exported as the
+ * instance-open-millis gauge, scoped by the first ZooKeeper host and the instance name.</p>
+ */
+final class InstanceOpener {
+  private static final Logger LOG = LoggerFactory.getLogger(InstanceOpener.class);
+
+  /** Utility class cannot be instantiated. */
+  private InstanceOpener() {
+  }
+
+  /**
+   * Opens instances.
+   *
+   * @param instances to open. Duplicates are opened once.
+   * @param parallelism is the maximum number of instances opened concurrently.
+   * @param timeoutMillis is the time allowed to open all of the instances.
+   * @return the opened instances, by URI. The caller owns these handles.
+   * @throws IOException if any instance can not be opened in time.
+   */
+  static Map<KijiURI, Kiji> open(Collection<KijiURI> instances, int parallelism,
+      long timeoutMillis) throws IOException {
+    final Set<KijiURI> uniqueInstances = Sets.newLinkedHashSet(instances);
+    if (uniqueInstances.isEmpty()) {
+      return ImmutableMap.of();
+    }
+
+    final ConcurrentMap<KijiURI, Kiji> opened = Maps.newConcurrentMap();
+    final AtomicBoolean abandoned = new AtomicBoolean(false);
+    final ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, uniqueInstances.size())),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("instance-open-%d").build());
+    final Map<KijiURI, Future<Long>> futures = Maps.newLinkedHashMap();
+    for (final KijiURI instance : uniqueInstances) {
+      futures.put(instance, executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() throws IOException {
+          final long startTime = System.currentTimeMillis();
+          final Kiji kiji = Kiji.Factory.open(instance);
+          opened.put(instance, kiji);
+          if (abandoned.get()) {
+            // Opening was given up on while this instance was being opened.
+            releaseOpened(opened, instance);
+          }
+          return System.currentTimeMillis() - startTime;
+        }
+      }));
+    }
+    executor.shutdown();
+
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    final List<String> failures = Lists.newArrayList();
+    for (Map.Entry<KijiURI, Future<Long>> future : futures.entrySet()) {
+      final KijiURI instance = future.getKey();
+      try {
+        final long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        final long openMillis = future.getValue().get(remaining, TimeUnit.MILLISECONDS);
+        LOG.info("Opened instance {} in {} ms.", instance, openMillis);
+        exportOpenTime(instance, openMillis);
+      } catch (ExecutionException ee) {
+        LOG.error("Could not open instance {}: {}", instance, ee.getCause().toString());
+        failures.add(instance.toString());
+      } catch (TimeoutException te) {
+        LOG.error("Timed out after {} ms opening instance {}.", timeoutMillis, instance);
+        failures.add(instance.toString());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        failures.add(instance.toString());
+        break;
+      }
+    }
+
+    if (!failures.isEmpty()) {
+      abandoned.set(true);
+      executor.shutdownNow();
+      for (KijiURI instance : uniqueInstances) {
+        releaseOpened(opened, instance);
+      }
+      throw new IOException("Could not open instances: " + Joiner.on(", ").join(failures));
+    }
+    return ImmutableMap.copyOf(opened);
+  }
+
+  /**
+   * Releases an opened instance, once.
+   *
+   * @param opened instances, by URI.
+   * @param instance to release.
+   */
+  private static void releaseOpened(ConcurrentMap<KijiURI, Kiji> opened, KijiURI instance) {
+    final Kiji kiji = opened.remove(instance);
+    if (null != kiji) {
+      ResourceUtils.releaseOrLog(kiji);
+    }
+  }
+
+  /**
+   * Exports the time taken to open an instance.
+   *
+   * @param instance URI.
+   * @param openMillis is the time taken to open the instance, in milliseconds.
+   */
+  private static void exportOpenTime(KijiURI instance, final long openMillis) {
+    Metrics.newGauge(InstanceOpener.class, "instance-open-millis",
+        instance.getZookeeperQuorum().get(0) + "." + instance.getInstance(), new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return openMillis;
+      }
+    });
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Table pool settings of an instance: the sizing of its shared pool, the tables pooled
+ * separately with their own sizing, and the hot tables opened at startup.
+ */
+public class InstancePoolConfiguration extends TablePoolConfiguration {
+  /** Tables given a pool of their own, by name. Unset settings are inherited. */
+  @Valid
+  @NotNull
+  @JsonProperty("tables")
+  private Map<String, TablePoolConfiguration> mTables = Maps.newHashMap();
+
+  /** Tables opened, along with their layouts and schemas, before requests are served. */
+  @NotNull
+  @JsonProperty("hotTables")
+  private List<String> mHotTables = Lists.newArrayList();
+
+  /** @return the tables pooled separately, by name. */
+  public final Map<String, TablePoolConfiguration> getTables() {
+    return mTables;
+  }
+
+  /** @return the tables to open at startup. */
+  public final List<String> getHotTables() {
+    return mHotTables;
+  }
+}
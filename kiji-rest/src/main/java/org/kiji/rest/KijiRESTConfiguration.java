@@ -20,12 +20,29 @@
 package org.kiji.rest;
 
 import java.util.List;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.yammer.dropwizard.config.Configuration;
 
 import org.hibernate.validator.constraints.NotEmpty;
 
+import org.kiji.rest.admission.AdaptiveLimiterConfiguration;
+import org.kiji.rest.admission.BulkheadsConfiguration;
+import org.kiji.rest.admission.CircuitBreakersConfiguration;
+import org.kiji.rest.admission.DeadlinesConfiguration;
+import org.kiji.rest.admission.LanesConfiguration;
+import org.kiji.rest.admission.QuotasConfiguration;
+import org.kiji.rest.cache.LayoutCacheConfiguration;
+import org.kiji.rest.cache.MetadataCacheConfiguration;
+import org.kiji.rest.cache.NegativeCacheConfiguration;
+import org.kiji.rest.cache.RowCacheConfiguration;
+import org.kiji.rest.health.HealthCheckConfiguration;
+import org.kiji.rest.writes.CounterBufferConfiguration;
+import org.kiji.rest.writes.SpoolConfiguration;
+
 /**
  * The Java object which is deserialized from the YAML configuration file.
  * This parametrizes the KijiRESTService.
@@ -41,6 +58,125 @@ public class KijiRESTConfiguration extends Configuration {
   @JsonProperty("instances")
   private List<String> mInstances;
 
+  /** Maximum number of instances opened concurrently at startup. */
+  @Min(1)
+  @JsonProperty("instanceOpenParallelism")
+  private int mInstanceOpenParallelism = 8;
+
+  /** Time allowed to open all of the instances at startup, in milliseconds. */
+  @Min(1)
+  @JsonProperty("instanceOpenTimeoutMillis")
+  private long mInstanceOpenTimeoutMillis = 60000;
+
+  /** Time after which an instance removed at runtime is torn down, in milliseconds. */
+  @Min(0)
+  @JsonProperty("instanceDrainTimeoutMillis")
+  private long mInstanceDrainTimeoutMillis = 30000;
+
+  /** Time allowed for in-flight requests and streams to finish on shutdown, in milliseconds. */
+  @Min(0)
+  @JsonProperty("shutdownTimeoutMillis")
+  private long mShutdownTimeoutMillis = 30000;
+
+  /** Write-behind buffering of counter increments. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("counterBuffer")
+  private CounterBufferConfiguration mCounterBuffer = new CounterBufferConfiguration();
+
+  /** Local spool backing asynchronous writes. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("spool")
+  private SpoolConfiguration mSpool = new SpoolConfiguration();
+
+  /** Sizing and pre-warming of the table pools of each instance. */
+  @Valid
+  @NotNull
+  @JsonProperty("tablePools")
+  private TablePoolsConfiguration mTablePools = new TablePoolsConfiguration();
+
+  /** Routing of instances and tables to other clusters than the default one. */
+  @Valid
+  @NotNull
+  @JsonProperty("routing")
+  private RoutingConfiguration mRouting = new RoutingConfiguration();
+
+  /** Caching of table layouts and table lists. */
+  @Valid
+  @NotNull
+  @JsonProperty("layoutCache")
+  private LayoutCacheConfiguration mLayoutCache = new LayoutCacheConfiguration();
+
+  /** Caching of instance metadata backups. */
+  @Valid
+  @NotNull
+  @JsonProperty("metadataCache")
+  private MetadataCacheConfiguration mMetadataCache = new MetadataCacheConfiguration();
+
+  /** Probes run by the health checks of the instances. */
+  @Valid
+  @NotNull
+  @JsonProperty("healthChecks")
+  private HealthCheckConfiguration mHealthChecks = new HealthCheckConfiguration();
+
+  /** Bulkheads isolating instances and tables from each other. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("bulkheads")
+  private BulkheadsConfiguration mBulkheads = new BulkheadsConfiguration();
+
+  /** Adaptive limit on the requests in flight to HBase. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("adaptiveLimiter")
+  private AdaptiveLimiterConfiguration mAdaptiveLimiter = new AdaptiveLimiterConfiguration();
+
+  /** Lanes serving interactive, bulk and admin requests apart. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("lanes")
+  private LanesConfiguration mLanes = new LanesConfiguration();
+
+  /** Deadlines of requests, from a header or per endpoint. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("deadlines")
+  private DeadlinesConfiguration mDeadlines = new DeadlinesConfiguration();
+
+  /** Circuit breakers of tables. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("circuitBreakers")
+  private CircuitBreakersConfiguration mCircuitBreakers = new CircuitBreakersConfiguration();
+
+  /** Quotas of clients on reads, scans and writes. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("quotas")
+  private QuotasConfiguration mQuotas = new QuotasConfiguration();
+
+  /** Maximum number of batches deleted concurrently by all the bulk deletes together. */
+  @Min(1)
+  @JsonProperty("bulkDeleteThreads")
+  private int mBulkDeleteThreads = 16;
+
+  /** Whether identical concurrent row reads share one fetch. Disabled by default. */
+  @JsonProperty("coalesceRowReads")
+  private boolean mCoalesceRowReads = false;
+
+  /** Off-heap cache of serialized row responses. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("rowCache")
+  private RowCacheConfiguration mRowCache = new RowCacheConfiguration();
+
+  /** Negative cache of reads which found no cell. Disabled by default. */
+  @Valid
+  @NotNull
+  @JsonProperty("negativeCache")
+  private NegativeCacheConfiguration mNegativeCache = new NegativeCacheConfiguration();
+
   /** @return The cluster address. */
   public final String getClusterURI() {
     return mCluster;
@@ -50,4 +186,109 @@ public class KijiRESTConfiguration extends Configuration {
   public final List<String> getInstances() {
     return mInstances;
   }
+
+  /** @return The maximum number of instances opened concurrently at startup. */
+  public final int getInstanceOpenParallelism() {
+    return mInstanceOpenParallelism;
+  }
+
+  /** @return The time allowed to open all of the instances at startup, in milliseconds. */
+  public final long getInstanceOpenTimeoutMillis() {
+    return mInstanceOpenTimeoutMillis;
+  }
+
+  /** @return The time after which a removed instance is torn down, in milliseconds. */
+  public final long getInstanceDrainTimeoutMillis() {
+    return mInstanceDrainTimeoutMillis;
+  }
+
+  /** @return The time allowed for in-flight work to finish on shutdown, in milliseconds. */
+  public final long getShutdownTimeoutMillis() {
+    return mShutdownTimeoutMillis;
+  }
+
+  /** @return The configuration of the counter increment buffer. */
+  public final CounterBufferConfiguration getCounterBufferConfiguration() {
+    return mCounterBuffer;
+  }
+
+  /** @return The configuration of the write spool. */
+  public final SpoolConfiguration getSpoolConfiguration() {
+    return mSpool;
+  }
+
+  /** @return The configuration of the table pools. */
+  public final TablePoolsConfiguration getTablePoolsConfiguration() {
+    return mTablePools;
+  }
+
+  /** @return The configuration of the routing of instances and tables to clusters. */
+  public final RoutingConfiguration getRoutingConfiguration() {
+    return mRouting;
+  }
+
+  /** @return The configuration of the cache of table layouts and table lists. */
+  public final LayoutCacheConfiguration getLayoutCacheConfiguration() {
+    return mLayoutCache;
+  }
+
+  /** @return The configuration of the cache of instance metadata backups. */
+  public final MetadataCacheConfiguration getMetadataCacheConfiguration() {
+    return mMetadataCache;
+  }
+
+  /** @return The configuration of the health checks of the instances. */
+  public final HealthCheckConfiguration getHealthCheckConfiguration() {
+    return mHealthChecks;
+  }
+
+  /** @return The configuration of the bulkheads of instances and tables. */
+  public final BulkheadsConfiguration getBulkheadsConfiguration() {
+    return mBulkheads;
+  }
+
+  /** @return The configuration of the adaptive limit on the requests in flight. */
+  public final AdaptiveLimiterConfiguration getAdaptiveLimiterConfiguration() {
+    return mAdaptiveLimiter;
+  }
+
+  /** @return The configuration of the lanes of the request classes. */
+  public final LanesConfiguration getLanesConfiguration() {
+    return mLanes;
+  }
+
+  /** @return The configuration of request deadlines. */
+  public final DeadlinesConfiguration getDeadlinesConfiguration() {
+    return mDeadlines;
+  }
+
+  /** @return The configuration of the circuit breakers of tables. */
+  public final CircuitBreakersConfiguration getCircuitBreakersConfiguration() {
+    return mCircuitBreakers;
+  }
+
+  /** @return The configuration of the quotas of clients. */
+  public final QuotasConfiguration getQuotasConfiguration() {
+    return mQuotas;
+  }
+
+  /** @return Whether identical concurrent row reads share one fetch. */
+  public final boolean isCoalesceRowReads() {
+    return mCoalesceRowReads;
+  }
+
+  /** @return The configuration of the off-heap cache of serialized row responses. */
+  public final RowCacheConfiguration getRowCacheConfiguration() {
+    return mRowCache;
+  }
+
+  /** @return The configuration of the negative cache of reads which found no cell. */
+  public final NegativeCacheConfiguration getNegativeCacheConfiguration() {
+    return mNegativeCache;
+  }
+
+  /** @return The maximum number of batches deleted concurrently by all the bulk deletes. */
+  public final int getBulkDeleteThreads() {
+    return mBulkDeleteThreads;
+  }
 }
@@ -25,25 +25,54 @@ import java.util.Set;
 
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.yammer.dropwizard.Service;
 import com.yammer.dropwizard.config.Bootstrap;
 import com.yammer.dropwizard.config.Environment;
 import com.yammer.dropwizard.json.ObjectMapperFactory;
 
+import org.kiji.rest.admission.AdaptiveLimiter;
+import org.kiji.rest.admission.BulkheadKijiClient;
+import org.kiji.rest.admission.Bulkheads;
+import org.kiji.rest.admission.CircuitBreakerKijiClient;
+import org.kiji.rest.admission.CircuitBreakers;
+import org.kiji.rest.admission.Deadlines;
+import org.kiji.rest.admission.LanedKijiClient;
+import org.kiji.rest.admission.Lanes;
+import org.kiji.rest.admission.LimitedKijiClient;
+import org.kiji.rest.admission.QuotaFilter;
+import org.kiji.rest.admission.Quotas;
+import org.kiji.rest.admission.RequestClassifier;
+import org.kiji.rest.cache.InvalidatingKijiClient;
+import org.kiji.rest.cache.LayoutCache;
+import org.kiji.rest.cache.LayoutVersions;
+import org.kiji.rest.cache.MetadataCache;
+import org.kiji.rest.cache.NegativeRowCache;
+import org.kiji.rest.cache.OffHeapRowCache;
+import org.kiji.rest.cache.PersistentRowStore;
+import org.kiji.rest.cache.RowCacheConfiguration;
+import org.kiji.rest.cache.RowInvalidator;
+import org.kiji.rest.cache.RowReadCoalescer;
 import org.kiji.rest.health.InstanceHealthCheck;
+import org.kiji.rest.resources.DeleteExecutor;
 import org.kiji.rest.resources.EntityIdResource;
 import org.kiji.rest.resources.InstanceResource;
 import org.kiji.rest.resources.InstancesResource;
 import org.kiji.rest.resources.KijiRESTResource;
 import org.kiji.rest.resources.RowResource;
+import org.kiji.rest.resources.RowResourceOptions;
 import org.kiji.rest.resources.RowsResource;
 import org.kiji.rest.resources.TableResource;
 import org.kiji.rest.resources.TablesResource;
 import org.kiji.rest.serializers.AvroToJsonStringSerializer;
+import org.kiji.rest.serializers.MetadataToJsonSerializer;
 import org.kiji.rest.serializers.TableLayoutToJsonSerializer;
 import org.kiji.rest.serializers.Utf8ToJsonSerializer;
-import org.kiji.schema.Kiji;
+import org.kiji.rest.tasks.CachesTask;
+import org.kiji.rest.tasks.CircuitBreakersTask;
+import org.kiji.rest.tasks.InstancesTask;
+import org.kiji.rest.writes.WriteSpool;
 import org.kiji.schema.KijiURI;
 
 /**
@@ -52,6 +81,9 @@ import org.kiji.schema.KijiURI;
  * address and the list of instances.
  */
 public class KijiRESTService extends Service<KijiRESTConfiguration> {
+  /** Prefix of the names of the bulkheads and breakers of secondary clusters. */
+  private static final String SECONDARY_PREFIX = "secondary.";
+
   /**
    * Main method entry point into the KijiREST service.
    *
@@ -84,6 +116,7 @@ public class KijiRESTService extends Service<KijiRESTConfiguration> {
     module.addSerializer(new AvroToJsonStringSerializer());
     module.addSerializer(new Utf8ToJsonSerializer());
     module.addSerializer(new TableLayoutToJsonSerializer());
+    module.addSerializer(new MetadataToJsonSerializer());
     mapperFactory.registerModule(module);
   }
 
@@ -97,34 +130,183 @@ public class KijiRESTService extends Service<KijiRESTConfiguration> {
 
     final Set<KijiURI> instances = Sets.newHashSet();
 
-    // Load health checks for the visible instances.
     final KijiURI clusterURI = KijiURI.newBuilder(configuration.getClusterURI()).build();
+    final ClusterRouter router =
+        new ClusterRouter(clusterURI, configuration.getRoutingConfiguration());
     for (String instance : instanceStrings) {
-      final KijiURI instanceURI = KijiURI.newBuilder(clusterURI).withInstanceName(instance).build();
-      // Check existence of instance by opening and closing.
-      final Kiji kiji = Kiji.Factory.open(instanceURI);
-      kiji.release();
-      instances.add(instanceURI);
-      environment.addHealthCheck(new InstanceHealthCheck(instanceURI));
+      instances.add(router.getPrimary(instance, null));
+    }
+
+    ManagedKijiClient kijiClient = new ManagedKijiClient(clusterURI, instances,
+        configuration.getCounterBufferConfiguration(),
+        configuration.getTablePoolsConfiguration(),
+        configuration.getRoutingConfiguration(),
+        configuration.getShutdownTimeoutMillis());
+    // Check existence of the instances by opening each of them once, in parallel. The client
+    // and the health checks share these handles.
+    kijiClient.openInstances(configuration.getInstanceOpenParallelism(),
+        configuration.getInstanceOpenTimeoutMillis());
+    for (KijiURI instanceURI : instances) {
+      environment.addHealthCheck(new InstanceHealthCheck(instanceURI, kijiClient,
+          configuration.getHealthCheckConfiguration()));
     }
 
-    ManagedKijiClient kijiClient = new ManagedKijiClient(clusterURI, instances);
+    LayoutCache layoutCache = null;
+    if (configuration.getLayoutCacheConfiguration().isEnabled()) {
+      layoutCache = new LayoutCache(kijiClient, configuration.getLayoutCacheConfiguration());
+      environment.manage(layoutCache);
+    }
+
+    // Rows written through the resources or the spool drop their cached responses.
+    final List<RowInvalidator> invalidators = Lists.newArrayList();
+    OffHeapRowCache rowCache = null;
+    if (configuration.getRowCacheConfiguration().isEnabled()) {
+      final RowCacheConfiguration rowCacheConfiguration =
+          configuration.getRowCacheConfiguration();
+      PersistentRowStore rowStore = null;
+      if (null != rowCacheConfiguration.getPersistentPath()) {
+        rowStore = new PersistentRowStore(rowCacheConfiguration,
+            new LayoutVersions(kijiClient, layoutCache));
+        environment.manage(rowStore);
+      }
+      rowCache = new OffHeapRowCache(rowCacheConfiguration, rowStore);
+      invalidators.add(rowCache);
+    }
+    NegativeRowCache negativeCache = null;
+    if (configuration.getNegativeCacheConfiguration().isEnabled()) {
+      negativeCache =
+          new NegativeRowCache(kijiClient, configuration.getNegativeCacheConfiguration());
+      environment.manage(negativeCache);
+      invalidators.add(negativeCache);
+    }
+    KijiClient writeClient = kijiClient;
+    if (!invalidators.isEmpty()) {
+      writeClient = new InvalidatingKijiClient(kijiClient, invalidators);
+      // Buffered increments are written through the client itself, so they invalidate apart.
+      if (null != kijiClient.getCounterBuffer()) {
+        kijiClient.getCounterBuffer().setInvalidators(invalidators);
+      }
+    }
+    // The bulkheads are managed before the client, so that their calls may finish while the
+    // client drains.
+    KijiClient resourceClient = writeClient;
+    Bulkheads bulkheads = null;
+    if (configuration.getBulkheadsConfiguration().isEnabled()) {
+      bulkheads = new Bulkheads(configuration.getBulkheadsConfiguration());
+      environment.manage(bulkheads);
+      resourceClient = new BulkheadKijiClient(writeClient, bulkheads);
+    }
+    AdaptiveLimiter limiter = null;
+    if (configuration.getAdaptiveLimiterConfiguration().isEnabled()) {
+      limiter = new AdaptiveLimiter(configuration.getAdaptiveLimiterConfiguration());
+      resourceClient = new LimitedKijiClient(resourceClient, limiter);
+    }
+    Lanes lanes = null;
+    if (configuration.getLanesConfiguration().isEnabled()) {
+      lanes = new Lanes(configuration.getLanesConfiguration());
+      environment.manage(lanes);
+      resourceClient = new LanedKijiClient(resourceClient, lanes);
+    }
+    // Leases check the breaker first, so that requests to a broken table fail fast.
+    if (configuration.getCircuitBreakersConfiguration().isEnabled()) {
+      final CircuitBreakers breakers =
+          new CircuitBreakers(configuration.getCircuitBreakersConfiguration());
+      environment.manage(breakers);
+      environment.addTask(new CircuitBreakersTask(breakers));
+      resourceClient = new CircuitBreakerKijiClient(resourceClient, breakers);
+    }
+    // Secondary reads have bulkheads and breakers of their own, so that a failing primary
+    // cluster neither saturates nor opens them, and share the lanes and the limiter bounding
+    // the work of this server.
+    KijiClient secondaryClient = kijiClient.getSecondaryClient();
+    if (configuration.getBulkheadsConfiguration().isEnabled()) {
+      final Bulkheads secondaryBulkheads =
+          new Bulkheads(configuration.getBulkheadsConfiguration(), SECONDARY_PREFIX);
+      environment.manage(secondaryBulkheads);
+      secondaryClient = new BulkheadKijiClient(secondaryClient, secondaryBulkheads);
+    }
+    if (null != limiter) {
+      secondaryClient = new LimitedKijiClient(secondaryClient, limiter);
+    }
+    if (null != lanes) {
+      secondaryClient = new LanedKijiClient(secondaryClient, lanes);
+    }
+    if (configuration.getCircuitBreakersConfiguration().isEnabled()) {
+      final CircuitBreakers secondaryBreakers = new CircuitBreakers(
+          configuration.getCircuitBreakersConfiguration(), SECONDARY_PREFIX);
+      environment.manage(secondaryBreakers);
+      secondaryClient = new CircuitBreakerKijiClient(secondaryClient, secondaryBreakers);
+    }
+    Deadlines deadlines = null;
+    if (configuration.getDeadlinesConfiguration().isEnabled()) {
+      deadlines = new Deadlines(configuration.getDeadlinesConfiguration());
+      environment.manage(deadlines);
+    }
     environment.manage(kijiClient);
+    environment.addTask(new InstancesTask(kijiClient,
+        configuration.getInstanceOpenTimeoutMillis(),
+        configuration.getInstanceDrainTimeoutMillis()));
+
+    HedgedReader hedgedReader = null;
+    if (!configuration.getRoutingConfiguration().getRoutes().isEmpty()) {
+      hedgedReader = new HedgedReader(resourceClient, secondaryClient, kijiClient,
+          configuration.getRoutingConfiguration());
+      environment.manage(hedgedReader);
+    }
+
+    MetadataCache metadataCache = MetadataCache.uncached(kijiClient);
+    if (configuration.getMetadataCacheConfiguration().isEnabled()) {
+      metadataCache =
+          new MetadataCache(kijiClient, configuration.getMetadataCacheConfiguration());
+    }
+
+    // The spool is managed after the client, so that it stops draining before the client stops.
+    WriteSpool writeSpool = null;
+    if (configuration.getSpoolConfiguration().isEnabled()) {
+      writeSpool = new WriteSpool(writeClient, configuration.getSpoolConfiguration());
+      environment.manage(writeSpool);
+    }
 
     //Add exception mappers to print better exception messages to the client than what
     //Dropwizard does by default.
     environment.addProvider(new WebAppExceptionMapper());
     environment.addProvider(new IOExceptionMapper());
+    // Requests over their quota are turned away before they wait in a lane.
+    if (configuration.getQuotasConfiguration().isEnabled()) {
+      environment.addFilter(
+          new QuotaFilter(new Quotas(configuration.getQuotasConfiguration())), "/*");
+    }
+    environment.addFilter(new RequestClassifier(lanes, deadlines), "/*");
+
+    // The row caches are filled by coalesced reads.
+    RowReadCoalescer coalescer = null;
+    if (configuration.isCoalesceRowReads() || null != rowCache || null != negativeCache) {
+      coalescer = new RowReadCoalescer(environment.getObjectMapperFactory().build(), rowCache,
+          negativeCache);
+    }
 
     // Load resources.
     environment.addResource(new KijiRESTResource());
     environment.addResource(new InstancesResource(kijiClient));
-    environment.addResource(new InstanceResource(kijiClient));
-    environment.addResource(new TableResource(kijiClient));
-    environment.addResource(new TablesResource(kijiClient));
-    environment.addResource(new RowsResource(kijiClient,
-        environment.getObjectMapperFactory().build()));
-    environment.addResource(new RowResource(kijiClient));
-    environment.addResource(new EntityIdResource(kijiClient));
+    environment.addResource(new InstanceResource(metadataCache));
+    environment.addResource(new TableResource(kijiClient, layoutCache));
+    environment.addResource(new TablesResource(kijiClient, layoutCache));
+    final DeleteExecutor deleteExecutor = new DeleteExecutor(configuration.getBulkDeleteThreads());
+    environment.manage(deleteExecutor);
+    final RowResourceOptions rowOptions = new RowResourceOptions()
+        .withCounterBuffer(kijiClient.getCounterBuffer())
+        .withWriteSpool(writeSpool)
+        .withHedgedReader(hedgedReader)
+        .withBulkheads(bulkheads)
+        .withDeadlines(deadlines)
+        .withCoalescer(coalescer)
+        .withDeleteExecutor(deleteExecutor);
+    environment.addResource(new RowsResource(resourceClient,
+        environment.getObjectMapperFactory().build(), rowOptions));
+    final RowResource rowResource = new RowResource(resourceClient, rowOptions);
+    environment.addResource(rowResource);
+    environment.addResource(new EntityIdResource(resourceClient));
+    environment.addTask(
+        new CachesTask(rowResource, rowCache, negativeCache, layoutCache, metadataCache));
   }
 }
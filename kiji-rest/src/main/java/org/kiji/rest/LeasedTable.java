@@ -0,0 +1,89 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kiji.schema.KijiTable;
+
+/**
+ * Forwards calls to a leased table, ending the lease when the table is released as many times
+ * as it was retained.
+ */
+public final class LeasedTable implements InvocationHandler {
+  private final KijiTable mTable;
+  private final Runnable mEndLease;
+  private final AtomicInteger mReferences = new AtomicInteger(1);
+
+  /**
+   * @param table leased.
+   * @param endLease runs once the table is released for good.
+   */
+  private LeasedTable(KijiTable table, Runnable endLease) {
+    mTable = table;
+    mEndLease = endLease;
+  }
+
+  /**
+   * Wraps a leased table.
+   *
+   * @param table leased, with a single reference held by the caller.
+   * @param endLease runs once the returned table is released as many times as it was retained.
+   * @return the table to hand out in place of the leased one.
+   */
+  public static KijiTable wrap(KijiTable table, Runnable endLease) {
+    return (KijiTable) Proxy.newProxyInstance(KijiTable.class.getClassLoader(),
+        new Class<?>[] {KijiTable.class}, new LeasedTable(table, endLease));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final String name = method.getName();
+    final boolean noArgs = (null == args || 0 == args.length);
+    if (noArgs && "retain".equals(name)) {
+      mTable.retain();
+      mReferences.incrementAndGet();
+      return proxy;
+    }
+    if (noArgs && "release".equals(name)) {
+      if (mReferences.get() <= 0) {
+        throw new IllegalStateException("Table " + mTable.getName() + " released too often.");
+      }
+      try {
+        mTable.release();
+      } finally {
+        if (0 == mReferences.decrementAndGet()) {
+          mEndLease.run();
+        }
+      }
+      return null;
+    }
+    try {
+      return method.invoke(mTable, args);
+    } catch (InvocationTargetException ite) {
+      throw ite.getCause();
+    }
+  }
+}
@@ -21,32 +21,109 @@ package org.kiji.rest;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.kiji.rest.writes.CounterBufferConfiguration;
+import org.kiji.rest.writes.CounterIncrementBuffer;
 import org.kiji.schema.Kiji;
 import org.kiji.schema.KijiTable;
-import org.kiji.schema.KijiTablePool;
 import org.kiji.schema.KijiURI;
-import org.kiji.schema.util.ResourceUtils;
 
 /**
  * Managed resource for tracking Kiji connections.
+ *
+ * <p>The instances served are kept in an immutable map which is replaced whenever an instance
+ * is added or removed, so that requests look instances up without locking. A removed instance
+ * stops accepting requests immediately and is torn down once the tables it leased out are
+ * released, or when its drain timeout expires.</p>
+ *
+ * <p>Stopping the client is graceful: new requests are refused with 503 Service Unavailable,
+ * the tables leased to in-flight requests and streams are waited for up to the shutdown
+ * timeout, buffered counter increments are flushed, and only then are the instances torn
+ * down.</p>
  */
 public class ManagedKijiClient implements KijiClient, Managed {
   private static final Logger LOG = LoggerFactory.getLogger(ManagedKijiClient.class);
 
+  /** Instances opened concurrently when they were not opened ahead of start. */
+  private static final int DEFAULT_OPEN_PARALLELISM = 8;
+
+  /** Time allowed to open the instances when they were not opened ahead of start. */
+  private static final long DEFAULT_OPEN_TIMEOUT_MILLIS = 60000;
+
+  /** Interval between two checks for in-flight work while shutting down, in milliseconds. */
+  private static final long SHUTDOWN_POLL_MILLIS = 50;
+
   private final KijiURI mCluster;
   private final Set<KijiURI> mInstances;
-  private Map<String, Kiji> mKijiMap;
-  private Map<String, KijiTablePool> mKijiTablePoolMap;
+
+  /**
+   * Instances currently served, by name, then by the URI of each cluster serving them.
+   * Replaced, never modified, under mRegistryLock.
+   */
+  private volatile ImmutableMap<String, ImmutableMap<KijiURI, ServedInstance>> mRegistry =
+      ImmutableMap.of();
+
+  /** Resolves the clusters serving each instance and table. */
+  private final ClusterRouter mRouter;
+
+  /** Serializes changes to the registry. Never taken on the request path. */
+  private final Object mRegistryLock = new Object();
+
+  /** Whether the configured instances were opened. */
+  private boolean mOpened = false;
+
+  /** Sizing and pre-warming of the table pools. */
+  private final TablePoolsConfiguration mTablePools;
+
+  /** Forces the teardown of removed instances whose leases outlive the drain timeout. */
+  private final ScheduledExecutorService mTeardownExecutor =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("instance-teardown-%d").build());
+
+  /** Removed instances not torn down yet, closed on stop if their teardown is still pending. */
+  private final Set<ServedInstance> mRemoved =
+      Collections.newSetFromMap(new ConcurrentHashMap<ServedInstance, Boolean>());
+
+  /** Write-behind buffer of counter increments, or null if increments are not buffered. */
+  private final CounterIncrementBuffer mCounterBuffer;
+
+  /** Leases tables from their secondary clusters. */
+  private final KijiClient mSecondaryClient = new SecondaryKijiClient();
+
+  /** Time allowed for in-flight work to finish when stopping, in milliseconds. */
+  private final long mShutdownTimeoutMillis;
+
+  /** Set once stopping, from when new requests are refused. */
+  private volatile boolean mStopping = false;
+
+  /** Leases which ended while shutting down. */
+  private final Counter mDrainedLeases =
+      Metrics.newCounter(ManagedKijiClient.class, "shutdown-drained-leases");
+
+  /** Leases still held when the shutdown timeout expired. */
+  private final Counter mAbortedLeases =
+      Metrics.newCounter(ManagedKijiClient.class, "shutdown-aborted-leases");
 
   /**
    * Constructs a ManagedKijiClient with the specified cluster and instances.
@@ -55,21 +132,77 @@ public class ManagedKijiClient implements KijiClient, Managed {
    * @param instances set of available instances available to this client.
    */
   public ManagedKijiClient(KijiURI clusterURI, Set<KijiURI> instances) {
+    this(clusterURI, instances, new CounterBufferConfiguration(), new TablePoolsConfiguration(),
+        new RoutingConfiguration(), 0);
+  }
+
+  /**
+   * Constructs a ManagedKijiClient with the specified cluster, instances, counter buffering,
+   * table pool sizing, routing of instances to other clusters and shutdown timeout.
+   *
+   * @param clusterURI Kiji cluster for this client to connect to.
+   * @param instances set of available instances available to this client.
+   * @param counterBufferConfiguration configures write-behind buffering of counter increments.
+   * @param tablePoolsConfiguration configures the sizing and pre-warming of table pools.
+   * @param routingConfiguration routes instances and tables to other clusters.
+   * @param shutdownTimeoutMillis is the time allowed for in-flight work to finish on stop.
+   */
+  public ManagedKijiClient(KijiURI clusterURI, Set<KijiURI> instances,
+      CounterBufferConfiguration counterBufferConfiguration,
+      TablePoolsConfiguration tablePoolsConfiguration,
+      RoutingConfiguration routingConfiguration,
+      long shutdownTimeoutMillis) {
     mCluster = clusterURI;
     mInstances = instances;
+    mTablePools = tablePoolsConfiguration;
+    mRouter = new ClusterRouter(clusterURI, routingConfiguration);
+    mShutdownTimeoutMillis = shutdownTimeoutMillis;
+    if (counterBufferConfiguration.isEnabled()) {
+      // The buffer keeps leasing tables while the client refuses requests, to flush on stop.
+      mCounterBuffer = new CounterIncrementBuffer(new FlushingKijiClient(),
+          counterBufferConfiguration);
+    } else {
+      mCounterBuffer = null;
+    }
+  }
+
+  /**
+   * Opens every instance served by this client, in parallel. This doubles as a check that all
+   * of the instances exist; the handles are then shared by the client and the health checks.
+   * Does nothing if the instances are already open.
+   *
+   * @param parallelism is the maximum number of instances opened concurrently.
+   * @param timeoutMillis is the time allowed to open all of the instances.
+   * @throws IOException if any instance can not be opened in time.
+   */
+  public void openInstances(int parallelism, long timeoutMillis) throws IOException {
+    synchronized (mRegistryLock) {
+      if (mOpened) {
+        return;
+      }
+      final Set<KijiURI> uris = Sets.newLinkedHashSet();
+      for (KijiURI instance : mInstances) {
+        uris.addAll(mRouter.getURIs(instance.getInstance()));
+      }
+      final Map<KijiURI, Kiji> kijis = InstanceOpener.open(uris, parallelism, timeoutMillis);
+      final Map<String, ImmutableMap<KijiURI, ServedInstance>> registry =
+          Maps.newHashMap(mRegistry);
+      for (KijiURI instance : mInstances) {
+        final String instanceName = instance.getInstance();
+        if (!registry.containsKey(instanceName)) {
+          registry.put(instanceName, serve(mRouter.getURIs(instanceName), kijis));
+        }
+      }
+      mRegistry = ImmutableMap.copyOf(registry);
+      mOpened = true;
+    }
   }
 
   @Override
   public void start() throws Exception {
-    mKijiMap = Maps.newHashMap();
-    mKijiTablePoolMap = Maps.newHashMap();
-    for (KijiURI instance : mInstances) {
-      final String instanceName = instance.getInstance();
-      final Kiji kiji = Kiji.Factory.open(instance);
-      mKijiMap.put(instanceName, kiji);
-
-      final KijiTablePool tablePool = KijiTablePool.newBuilder(kiji).build();
-      mKijiTablePoolMap.put(instanceName, tablePool);
+    openInstances(DEFAULT_OPEN_PARALLELISM, DEFAULT_OPEN_TIMEOUT_MILLIS);
+    if (null != mCounterBuffer) {
+      mCounterBuffer.start();
     }
     LOG.info("Successfully started ManagedKijiClient!");
   }
@@ -77,12 +210,137 @@ public class ManagedKijiClient implements KijiClient, Managed {
   @Override
   public void stop() throws Exception {
     LOG.info("Stopping ManagedKijiClient...");
-    for (KijiTablePool tablePool : mKijiTablePoolMap.values()) {
-      ResourceUtils.closeOrLog(tablePool);
+    mStopping = true;
+    final int inFlight = awaitLeases(mShutdownTimeoutMillis);
+
+    // Buffered increments must be written while the table pools are still open.
+    if (null != mCounterBuffer) {
+      mCounterBuffer.stop();
+    }
+    mTeardownExecutor.shutdownNow();
+    final Collection<ImmutableMap<KijiURI, ServedInstance>> instances;
+    synchronized (mRegistryLock) {
+      instances = mRegistry.values();
+      mRegistry = ImmutableMap.of();
+    }
+    int aborted = 0;
+    for (ImmutableMap<KijiURI, ServedInstance> clusters : instances) {
+      for (ServedInstance instance : clusters.values()) {
+        aborted += instance.getLeases();
+        instance.close();
+      }
     }
-    for (Kiji kiji : mKijiMap.values()) {
-      ResourceUtils.releaseOrLog(kiji);
+    // Removed instances whose teardown was pending are still leased: they go down now too.
+    for (ServedInstance instance : mRemoved) {
+      aborted += instance.getLeases();
+      instance.close();
     }
+    mRemoved.clear();
+    mAbortedLeases.inc(aborted);
+    mDrainedLeases.inc(Math.max(inFlight - aborted, 0));
+    if (aborted > 0) {
+      LOG.warn("Stopped with {} of {} in-flight tables still leased after {} ms.",
+          aborted, inFlight, mShutdownTimeoutMillis);
+    } else {
+      LOG.info("Stopped after draining {} in-flight tables.", inFlight);
+    }
+  }
+
+  /**
+   * Starts serving an instance of the cluster, if it is not served yet.
+   *
+   * @param instance name.
+   * @param timeoutMillis is the time allowed to open the instance.
+   * @return whether the instance was added.
+   * @throws IOException if the instance can not be opened.
+   * @throws WebApplicationException if the client is stopping.
+   */
+  public boolean addInstance(String instance, long timeoutMillis) throws IOException {
+    checkNotStopping();
+    if (mRegistry.containsKey(instance)) {
+      return false;
+    }
+    final Set<KijiURI> uris = mRouter.getURIs(instance);
+    // Open outside of the lock; opening may take a while.
+    final ImmutableMap<KijiURI, ServedInstance> servedInstances =
+        serve(uris, InstanceOpener.open(uris, uris.size(), timeoutMillis));
+    synchronized (mRegistryLock) {
+      if (mStopping) {
+        // Stop already took the registry: nothing would close the instance.
+        for (ServedInstance servedInstance : servedInstances.values()) {
+          servedInstance.close();
+        }
+        checkNotStopping();
+      }
+      if (!mRegistry.containsKey(instance)) {
+        final Map<String, ImmutableMap<KijiURI, ServedInstance>> registry =
+            Maps.newHashMap(mRegistry);
+        registry.put(instance, servedInstances);
+        mRegistry = ImmutableMap.copyOf(registry);
+        LOG.info("Added instance {}.", instance);
+        return true;
+      }
+    }
+    // Lost a race with a concurrent add.
+    for (ServedInstance servedInstance : servedInstances.values()) {
+      servedInstance.close();
+    }
+    return false;
+  }
+
+  /**
+   * Stops accepting requests for an instance, which remains listed until it is removed.
+   *
+   * @param instance name.
+   * @return whether the instance is served.
+   */
+  public boolean drainInstance(String instance) {
+    final ImmutableMap<KijiURI, ServedInstance> servedInstances = mRegistry.get(instance);
+    if (null == servedInstances) {
+      return false;
+    }
+    for (ServedInstance servedInstance : servedInstances.values()) {
+      servedInstance.drain();
+      LOG.info("Draining instance {}; {} tables leased.",
+          servedInstance.getURI(), servedInstance.getLeases());
+    }
+    return true;
+  }
+
+  /**
+   * Stops serving an instance. The instance is torn down once the tables leased out of it are
+   * released, or after the drain timeout.
+   *
+   * @param instance name.
+   * @param drainTimeoutMillis is the time after which the instance is torn down regardless.
+   * @return whether the instance was served.
+   */
+  public boolean removeInstance(String instance, long drainTimeoutMillis) {
+    final ImmutableMap<KijiURI, ServedInstance> servedInstances;
+    synchronized (mRegistryLock) {
+      servedInstances = mRegistry.get(instance);
+      if (null == servedInstances) {
+        return false;
+      }
+      final Map<String, ImmutableMap<KijiURI, ServedInstance>> registry =
+          Maps.newHashMap(mRegistry);
+      registry.remove(instance);
+      mRegistry = ImmutableMap.copyOf(registry);
+    }
+    for (final ServedInstance servedInstance : servedInstances.values()) {
+      mRemoved.add(servedInstance);
+      servedInstance.drain();
+      mTeardownExecutor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          servedInstance.close();
+          mRemoved.remove(servedInstance);
+        }
+      }, drainTimeoutMillis, TimeUnit.MILLISECONDS);
+      LOG.info("Removed instance {}; {} tables leased.",
+          servedInstance.getURI(), servedInstance.getLeases());
+    }
+    return true;
   }
 
   /**
@@ -98,21 +356,27 @@ public class ManagedKijiClient implements KijiClient, Managed {
    */
   @Override
   public Kiji getKiji(String instance)  {
-    if (!mKijiMap.containsKey(instance)) {
-      throw new WebApplicationException(new IOException("Instance " + instance + " unavailable!"),
-          Response.Status.FORBIDDEN);
-    }
+    checkNotStopping();
+    return getServedInstance(instance, mRouter.getPrimary(instance, null)).retainKiji();
+  }
 
-    // TODO: Wrap this kiji instance to make it strictly read only.
-    final Kiji kiji = mKijiMap.get(instance);
-    kiji.retain();
-    return kiji;
+  /**
+   * Gets the write-behind buffer of counter increments.
+   *
+   * @return the counter increment buffer, or null if counter increments are not buffered.
+   */
+  public CounterIncrementBuffer getCounterBuffer() {
+    return mCounterBuffer;
   }
 
   /** @return a collection of instances served by this client. */
   @Override
   public Collection<KijiURI> getInstances() {
-    return mInstances;
+    final List<KijiURI> instances = Lists.newArrayList();
+    for (String instance : mRegistry.keySet()) {
+      instances.add(mRouter.getPrimary(instance, null));
+    }
+    return instances;
   }
 
   /**
@@ -125,13 +389,206 @@ public class ManagedKijiClient implements KijiClient, Managed {
    */
   @Override
   public KijiTable getKijiTable(String instance, String table) {
-    final KijiTablePool tablePool = mKijiTablePoolMap.get(instance);
-    KijiTable kijiTable;
-    try {
-      kijiTable = tablePool.get(table);
-    } catch (IOException e) {
-      throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
-    }
-    return kijiTable;
+    checkNotStopping();
+    return getServedInstance(instance, mRouter.getPrimary(instance, table)).leaseTable(table);
+  }
+
+  /**
+   * Gets a client leasing tables from their secondary clusters. Its leases are not admitted by
+   * anything, so it should be wrapped in admission clients of its own.
+   *
+   * @return a client serving the tables with a secondary cluster from that cluster.
+   */
+  public KijiClient getSecondaryClient() {
+    return mSecondaryClient;
+  }
+
+  /**
+   * Checks whether a table is served by a secondary cluster too.
+   *
+   * @param instance in which this table resides
+   * @param table name of the table
+   * @return whether reads of the table may be served by a secondary cluster.
+   */
+  public boolean hasSecondary(String instance, String table) {
+    return null != mRouter.getSecondary(instance, table);
+  }
+
+  /**
+   * Gets the number of tables of an instance currently leased to requests.
+   *
+   * @param instance name.
+   * @return the number of tables leased from the primary cluster of the instance.
+   * @throws WebApplicationException if the instance is not served.
+   */
+  public int getLeasedTables(String instance) {
+    return getServedInstance(instance, mRouter.getPrimary(instance, null)).getLeases();
+  }
+
+  /**
+   * Gets the number of tables held for a table by the pool serving it.
+   *
+   * @param instance in which this table resides
+   * @param table name of the table
+   * @return the number of tables held, leased or idle.
+   * @throws WebApplicationException if the instance is not served.
+   */
+  public int getTablePoolSize(String instance, String table) {
+    return getServedInstance(instance, mRouter.getPrimary(instance, table)).getPoolSize(table);
+  }
+
+  /**
+   * Gets the maximum number of tables the pool serving a table may hold for it.
+   *
+   * @param instance in which this table resides
+   * @param table name of the table
+   * @return the maximum size, or null if the pool is unbounded.
+   * @throws WebApplicationException if the instance is not served.
+   */
+  public Integer getMaxTablePoolSize(String instance, String table) {
+    return getServedInstance(instance, mRouter.getPrimary(instance, table))
+        .getMaxPoolSize(table);
+  }
+
+  /**
+   * Waits for the tables leased by every served instance to be released.
+   *
+   * @param timeoutMillis is the maximum time to wait.
+   * @return the number of tables leased when the wait started.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  private int awaitLeases(long timeoutMillis) throws InterruptedException {
+    final int inFlight = countLeases();
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    if (inFlight > 0 && timeoutMillis > 0) {
+      LOG.info("Waiting up to {} ms for {} in-flight tables to be released.",
+          timeoutMillis, inFlight);
+    }
+    while (countLeases() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(SHUTDOWN_POLL_MILLIS);
+    }
+    return inFlight;
+  }
+
+  /** @return the number of tables currently leased across every served instance. */
+  private int countLeases() {
+    int leases = 0;
+    for (ImmutableMap<KijiURI, ServedInstance> clusters : mRegistry.values()) {
+      for (ServedInstance instance : clusters.values()) {
+        leases += instance.getLeases();
+      }
+    }
+    return leases;
+  }
+
+  /** @throws WebApplicationException if the client is stopping. */
+  private void checkNotStopping() {
+    if (mStopping) {
+      throw new WebApplicationException(new IOException("KijiREST is shutting down."),
+          Response.Status.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /**
+   * Wraps opened instances for serving.
+   *
+   * @param uris of the instance on each cluster serving it.
+   * @param kijis opened instances, by URI, owned from now on by the returned objects.
+   * @return the served instances, by URI.
+   */
+  private ImmutableMap<KijiURI, ServedInstance> serve(Set<KijiURI> uris, Map<KijiURI, Kiji> kijis) {
+    final ImmutableMap.Builder<KijiURI, ServedInstance> servedInstances = ImmutableMap.builder();
+    for (KijiURI uri : uris) {
+      servedInstances.put(uri, new ServedInstance(uri, kijis.get(uri), mTablePools));
+    }
+    return servedInstances.build();
+  }
+
+  /**
+   * Looks up a served instance, without locking.
+   *
+   * @param instance name.
+   * @param uri of the instance on the cluster serving the request.
+   * @return the served instance.
+   * @throws WebApplicationException if the instance is not served.
+   */
+  private ServedInstance getServedInstance(String instance, KijiURI uri) {
+    final ImmutableMap<KijiURI, ServedInstance> servedInstances = mRegistry.get(instance);
+    ServedInstance servedInstance = null;
+    if (null != servedInstances) {
+      servedInstance = servedInstances.get(uri);
+    }
+    if (null == servedInstance) {
+      throw new WebApplicationException(new IOException("Instance " + instance + " unavailable!"),
+          Response.Status.FORBIDDEN);
+    }
+    return servedInstance;
+  }
+
+  /**
+   * Looks up the served instance on the secondary cluster of a table.
+   *
+   * @param instance name.
+   * @param table name, or null for the instance itself.
+   * @return the served instance.
+   * @throws WebApplicationException with 404 if the table has no secondary cluster.
+   */
+  private ServedInstance getSecondaryInstance(String instance, String table) {
+    final KijiURI secondary = mRouter.getSecondary(instance, table);
+    if (null == secondary) {
+      throw new WebApplicationException(
+          new IOException("No secondary cluster serves " + instance + "/" + table),
+          Response.Status.NOT_FOUND);
+    }
+    return getServedInstance(instance, secondary);
+  }
+
+  /**
+   * Leases tables from their secondary clusters, for reads hedged or falling back to them.
+   */
+  private final class SecondaryKijiClient implements KijiClient {
+    /** {@inheritDoc} */
+    @Override
+    public Kiji getKiji(String instance) {
+      checkNotStopping();
+      return getSecondaryInstance(instance, null).retainKiji();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<KijiURI> getInstances() {
+      return ManagedKijiClient.this.getInstances();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KijiTable getKijiTable(String instance, String table) {
+      checkNotStopping();
+      return getSecondaryInstance(instance, table).leaseTable(table);
+    }
+  }
+
+  /**
+   * Leases tables to the counter increment buffer even while the client is stopping, so that
+   * the buffer can be flushed after the in-flight requests are drained.
+   */
+  private final class FlushingKijiClient implements KijiClient {
+    /** {@inheritDoc} */
+    @Override
+    public Kiji getKiji(String instance) {
+      return getServedInstance(instance, mRouter.getPrimary(instance, null)).retainKiji();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<KijiURI> getInstances() {
+      return ManagedKijiClient.this.getInstances();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KijiTable getKijiTable(String instance, String table) {
+      return getServedInstance(instance, mRouter.getPrimary(instance, table)).leaseTable(table);
+    }
   }
 }
@@ -0,0 +1,81 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.util.Map;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * Routing of instances and tables to clusters other than the default cluster, and hedging of
+ * reads to secondary clusters.
+ */
+public class RoutingConfiguration {
+  /** Routes keyed by "instance" or "instance/table". Table routes take precedence. */
+  @Valid
+  @NotNull
+  @JsonProperty("routes")
+  private Map<String, ClusterRouteConfiguration> mRoutes = Maps.newHashMap();
+
+  /**
+   * Percentile, in percent, of the primary read latency after which a single-row read is also
+   * sent to the secondary cluster.
+   */
+  @Min(1)
+  @Max(100)
+  @JsonProperty("hedgePercentile")
+  private int mHedgePercentile = 95;
+
+  /** Lower bound of the delay before hedging a read, in milliseconds. */
+  @Min(0)
+  @JsonProperty("minHedgeDelayMillis")
+  private long mMinHedgeDelayMillis = 10;
+
+  /** Maximum number of reads running on the hedging thread pool. */
+  @Min(1)
+  @JsonProperty("hedgeThreads")
+  private int mHedgeThreads = 32;
+
+  /** @return the routes, keyed by "instance" or "instance/table". */
+  public final Map<String, ClusterRouteConfiguration> getRoutes() {
+    return mRoutes;
+  }
+
+  /** @return the latency percentile, in percent, after which reads are hedged. */
+  public final int getHedgePercentile() {
+    return mHedgePercentile;
+  }
+
+  /** @return the lower bound of the delay before hedging a read, in milliseconds. */
+  public final long getMinHedgeDelayMillis() {
+    return mMinHedgeDelayMillis;
+  }
+
+  /** @return the maximum number of reads running on the hedging thread pool. */
+  public final int getHedgeThreads() {
+    return mHedgeThreads;
+  }
+}
@@ -0,0 +1,339 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTablePool;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.avro.SchemaType;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * An instance served by a ManagedKijiClient: its Kiji handle and table pools.
+ *
+ * <p>Tables are leased out of the pools and every lease is counted until the table is
+ * released. Once the instance is drained, new leases are refused with 503 and the pools and
+ * Kiji handle are torn down as soon as the last lease ends, or when {@link #close()} forces
+ * it.</p>
+ */
+final class ServedInstance {
+  private static final Logger LOG = LoggerFactory.getLogger(ServedInstance.class);
+
+  private final KijiURI mURI;
+  private final Kiji mKiji;
+  private final KijiTablePool mTablePool;
+
+  /** Pools of the tables pooled separately from the rest of the instance. */
+  private final Map<String, KijiTablePool> mDedicatedTablePools;
+
+  /** Maximum size of the instance's pool per table name, or null if unbounded. */
+  private final Integer mMaxPoolSize;
+
+  /** Maximum sizes of the dedicated pools which are bounded. */
+  private final Map<String, Integer> mDedicatedMaxPoolSizes;
+
+  /** Names of the pool occupancy gauges, removed on teardown. */
+  private final List<MetricName> mPoolGauges = Lists.newArrayList();
+
+  /** Number of tables leased and not yet released. */
+  private final AtomicInteger mLeases = new AtomicInteger(0);
+
+  private final AtomicBoolean mDraining = new AtomicBoolean(false);
+  private final AtomicBoolean mTornDown = new AtomicBoolean(false);
+
+  /**
+   * Builds the table pools of an opened instance and pre-opens its hot tables.
+   *
+   * @param uri of the instance.
+   * @param kiji handle on the instance, owned from now on by this object.
+   * @param tablePools configures the sizing and pre-warming of the table pools.
+   */
+  ServedInstance(KijiURI uri, Kiji kiji, TablePoolsConfiguration tablePools) {
+    mURI = uri;
+    mKiji = kiji;
+    final String instance = uri.getInstance();
+    final InstancePoolConfiguration poolConfiguration = tablePools.getInstance(instance);
+    mTablePool =
+        poolConfiguration.applyTo(tablePools.applyTo(KijiTablePool.newBuilder(kiji))).build();
+    mMaxPoolSize = getMaxSize(getMaxSize(null, tablePools), poolConfiguration);
+
+    final ImmutableMap.Builder<String, KijiTablePool> dedicatedPools = ImmutableMap.builder();
+    final ImmutableMap.Builder<String, Integer> dedicatedMaxSizes = ImmutableMap.builder();
+    for (Map.Entry<String, TablePoolConfiguration> table
+        : poolConfiguration.getTables().entrySet()) {
+      final KijiTablePool.Builder builder =
+          poolConfiguration.applyTo(tablePools.applyTo(KijiTablePool.newBuilder(kiji)));
+      dedicatedPools.put(table.getKey(), table.getValue().applyTo(builder).build());
+      final Integer maxSize = getMaxSize(mMaxPoolSize, table.getValue());
+      if (null != maxSize) {
+        dedicatedMaxSizes.put(table.getKey(), maxSize);
+      }
+      addPoolGauge(table.getKey());
+    }
+    mDedicatedTablePools = dedicatedPools.build();
+    mDedicatedMaxPoolSizes = dedicatedMaxSizes.build();
+
+    for (String table : poolConfiguration.getHotTables()) {
+      warmTable(table);
+      if (!mDedicatedTablePools.containsKey(table)) {
+        addPoolGauge(table);
+      }
+    }
+  }
+
+  /** @return the URI of the instance. */
+  KijiURI getURI() {
+    return mURI;
+  }
+
+  /** @return whether the instance refuses new requests. */
+  boolean isDraining() {
+    return mDraining.get();
+  }
+
+  /** @return the number of tables leased and not yet released. */
+  int getLeases() {
+    return mLeases.get();
+  }
+
+  /**
+   * Gets the number of tables held for a table name by the pool serving it.
+   *
+   * @param table name.
+   * @return the number of tables held, leased or idle.
+   */
+  int getPoolSize(String table) {
+    return getTablePool(table).getPoolSize(table);
+  }
+
+  /**
+   * Gets the maximum number of tables the pool serving a table name may hold for it.
+   *
+   * @param table name.
+   * @return the maximum size, or null if the pool is unbounded.
+   */
+  Integer getMaxPoolSize(String table) {
+    if (mDedicatedTablePools.containsKey(table)) {
+      return mDedicatedMaxPoolSizes.get(table);
+    }
+    return mMaxPoolSize;
+  }
+
+  /**
+   * Gets the Kiji handle of the instance. The caller must release it.
+   *
+   * @return the retained Kiji handle.
+   * @throws WebApplicationException if the instance is draining.
+   */
+  Kiji retainKiji() {
+    checkNotDraining();
+    // TODO: Wrap this kiji instance to make it strictly read only.
+    return mKiji.retain();
+  }
+
+  /**
+   * Leases a table from its pool. The caller must release it.
+   *
+   * @param table name.
+   * @return the leased table.
+   * @throws WebApplicationException if the instance is draining or the table can not be opened.
+   */
+  KijiTable leaseTable(String table) {
+    mLeases.incrementAndGet();
+    final KijiTable kijiTable;
+    try {
+      checkNotDraining();
+      kijiTable = getTablePool(table).get(table);
+    } catch (IOException ioe) {
+      endLease();
+      throw new WebApplicationException(ioe, Response.Status.INTERNAL_SERVER_ERROR);
+    } catch (RuntimeException re) {
+      endLease();
+      throw re;
+    }
+    return LeasedTable.wrap(kijiTable, new Runnable() {
+      @Override
+      public void run() {
+        endLease();
+      }
+    });
+  }
+
+  /**
+   * Refuses new requests, and tears the instance down once the current leases end.
+   */
+  void drain() {
+    mDraining.set(true);
+    if (0 == mLeases.get()) {
+      tearDown();
+    }
+  }
+
+  /**
+   * Tears the instance down now, whatever leases remain.
+   */
+  void close() {
+    mDraining.set(true);
+    tearDown();
+  }
+
+  /** @throws WebApplicationException if the instance is draining. */
+  private void checkNotDraining() {
+    if (mDraining.get()) {
+      throw new WebApplicationException(
+          new IOException("Instance " + mURI.getInstance() + " is draining."),
+          Response.Status.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /** Ends a lease, tearing the instance down if it was the last lease of a draining one. */
+  private void endLease() {
+    if (0 == mLeases.decrementAndGet() && mDraining.get()) {
+      tearDown();
+    }
+  }
+
+  /** Closes the pools and releases the Kiji handle, once. */
+  private void tearDown() {
+    if (!mTornDown.compareAndSet(false, true)) {
+      return;
+    }
+    if (mLeases.get() > 0) {
+      LOG.warn("Tearing down instance {} with {} tables still leased.",
+          mURI.getInstance(), mLeases.get());
+    }
+    for (MetricName gauge : mPoolGauges) {
+      Metrics.defaultRegistry().removeMetric(gauge);
+    }
+    for (KijiTablePool tablePool : mDedicatedTablePools.values()) {
+      ResourceUtils.closeOrLog(tablePool);
+    }
+    ResourceUtils.closeOrLog(mTablePool);
+    ResourceUtils.releaseOrLog(mKiji);
+    LOG.info("Tore down instance {}.", mURI.getInstance());
+  }
+
+  /**
+   * Gets the pool a table is served from.
+   *
+   * @param table name.
+   * @return the dedicated pool of the table if it has one, the pool of the instance otherwise.
+   */
+  private KijiTablePool getTablePool(String table) {
+    final KijiTablePool dedicatedPool = mDedicatedTablePools.get(table);
+    if (null != dedicatedPool) {
+      return dedicatedPool;
+    }
+    return mTablePool;
+  }
+
+  /**
+   * Resolves the maximum pool size set by a configuration over the inherited one.
+   *
+   * @param inherited maximum size, or null if unbounded.
+   * @param configuration which may override it.
+   * @return the maximum size, or null if unbounded.
+   */
+  private static Integer getMaxSize(Integer inherited, TablePoolConfiguration configuration) {
+    Integer maxSize = inherited;
+    if (null != configuration.getMaxSize()) {
+      maxSize = configuration.getMaxSize();
+    }
+    if (null != maxSize && 0 == maxSize) {
+      return null;
+    }
+    return maxSize;
+  }
+
+  /**
+   * Opens a table through its pool ahead of the first request, along with its layout, the
+   * schemas of its columns and a reader. The table stays open in the pool as long as the pool
+   * keeps idle tables. Failures are logged, not fatal.
+   *
+   * @param table name.
+   */
+  private void warmTable(String table) {
+    final long startTime = System.currentTimeMillis();
+    try {
+      final KijiTable kijiTable = getTablePool(table).get(table);
+      try {
+        mKiji.getMetaTable().getTableLayout(table);
+        final KijiTableLayout layout = kijiTable.getLayout();
+        for (KijiColumnName column : layout.getColumnNames()) {
+          if (SchemaType.COUNTER != layout.getCellSchema(column).getType()) {
+            layout.getSchema(column);
+          }
+        }
+        ResourceUtils.closeOrLog(kijiTable.openTableReader());
+      } finally {
+        ResourceUtils.releaseOrLog(kijiTable);
+      }
+      LOG.info("Pre-opened table {} of instance {} in {} ms.",
+          table, mURI.getInstance(), System.currentTimeMillis() - startTime);
+    } catch (Exception e) {
+      LOG.warn("Could not pre-open table {} of instance {}: {}",
+          table, mURI.getInstance(), e.toString());
+    }
+  }
+
+  /**
+   * Exports the number of tables held by a pool for a table name. The gauge is scoped by
+   * cluster too, as an instance may be served from both a primary and a secondary cluster.
+   *
+   * @param table name.
+   */
+  private void addPoolGauge(final String table) {
+    final MetricName name = new MetricName(ManagedKijiClient.class, "table-pool-size",
+        getClusterScope() + "." + mURI.getInstance() + "." + table);
+    Metrics.newGauge(name, new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getPoolSize(table);
+      }
+    });
+    mPoolGauges.add(name);
+  }
+
+  /** @return the cluster of the instance as a metric scope, such as "zk-a_zk-b_2181". */
+  private String getClusterScope() {
+    return Joiner.on('_').join(mURI.getZookeeperQuorum()) + "_" + mURI.getZookeeperClientPort();
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.kiji.schema.KijiTablePool;
+
+/**
+ * Sizing of a KijiTablePool. Settings left unset keep the value inherited from the enclosing
+ * configuration, or KijiSchema's default.
+ */
+public class TablePoolConfiguration {
+  /** Maximum number of tables held by the pool per table name; 0 means unbounded. */
+  @Min(0)
+  @JsonProperty("maxSize")
+  private Integer mMaxSize = null;
+
+  /** Number of idle tables per table name the pool keeps open. */
+  @Min(0)
+  @JsonProperty("minimumPoolSize")
+  private Integer mMinimumPoolSize = null;
+
+  /** Time after which idle tables are closed, in milliseconds; 0 means never. */
+  @Min(0)
+  @JsonProperty("idleTimeoutMillis")
+  private Integer mIdleTimeoutMillis = null;
+
+  /** Interval between checks for idle tables, in milliseconds. */
+  @Min(1)
+  @JsonProperty("idlePollPeriodMillis")
+  private Integer mIdlePollPeriodMillis = null;
+
+  /** @return the maximum number of tables per table name, or null if unset. */
+  public final Integer getMaxSize() {
+    return mMaxSize;
+  }
+
+  /** @return the number of idle tables per table name kept open, or null if unset. */
+  public final Integer getMinimumPoolSize() {
+    return mMinimumPoolSize;
+  }
+
+  /** @return the idle timeout in milliseconds, or null if unset. */
+  public final Integer getIdleTimeoutMillis() {
+    return mIdleTimeoutMillis;
+  }
+
+  /** @return the interval between idle checks in milliseconds, or null if unset. */
+  public final Integer getIdlePollPeriodMillis() {
+    return mIdlePollPeriodMillis;
+  }
+
+  /**
+   * Applies the settings which are set to a pool builder.
+   *
+   * @param builder of the pool to size.
+   * @return the builder.
+   */
+  public final KijiTablePool.Builder applyTo(KijiTablePool.Builder builder) {
+    if (null != mMaxSize) {
+      builder.withMaxSize(mMaxSize);
+    }
+    if (null != mMinimumPoolSize) {
+      builder.withMinimumPoolSize(mMinimumPoolSize);
+    }
+    if (null != mIdleTimeoutMillis) {
+      builder.withIdleTimeout(mIdleTimeoutMillis);
+    }
+    if (null != mIdlePollPeriodMillis) {
+      builder.withIdlePollPeriod(mIdlePollPeriodMillis);
+    }
+    return builder;
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.util.Map;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * Table pool settings of all instances. The settings at this level are the defaults of every
+ * instance, which may override them.
+ */
+public class TablePoolsConfiguration extends TablePoolConfiguration {
+  /** Settings of individual instances, by name. */
+  @Valid
+  @NotNull
+  @JsonProperty("instances")
+  private Map<String, InstancePoolConfiguration> mInstances = Maps.newHashMap();
+
+  /**
+   * Gets the table pool settings of an instance.
+   *
+   * @param instance name.
+   * @return the settings of the instance, or an empty configuration if it has none.
+   */
+  public final InstancePoolConfiguration getInstance(String instance) {
+    final InstancePoolConfiguration configuration = mInstances.get(instance);
+    if (null == configuration) {
+      return new InstancePoolConfiguration();
+    }
+    return configuration;
+  }
+}
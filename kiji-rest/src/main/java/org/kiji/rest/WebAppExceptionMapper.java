@@ -19,11 +19,12 @@
 
 package org.kiji.rest;
 
+import java.util.List;
+import java.util.Map;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
-import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
 
@@ -47,8 +48,16 @@ public class WebAppExceptionMapper implements ExceptionMapper<WebApplicationExce
   public Response toResponse(WebApplicationException thrownException) {
     ResponseBuilder builder = new ResponseBuilderImpl();
     builder.type(MediaType.APPLICATION_JSON);
-    Status status = Status.fromStatusCode(thrownException.getResponse().getStatus());
+    // Not every status has a constant in JAX-RS 1.1, such as 504 Gateway Timeout.
+    final int status = thrownException.getResponse().getStatus();
     builder.status(status);
+    // Keeps headers such as Retry-After set by whoever threw the exception.
+    for (Map.Entry<String, List<Object>> header
+        : thrownException.getResponse().getMetadata().entrySet()) {
+      for (Object value : header.getValue()) {
+        builder.header(header.getKey(), value);
+      }
+    }
     builder.entity(new ExceptionWrapper(status, thrownException));
     return builder.build();
   }
@@ -0,0 +1,241 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+
+/**
+ * Limits the number of requests in flight to HBase, tuning the limit from the observed
+ * latency of interactive requests, in the manner of a gradient limiter.
+ *
+ * <p>The limiter keeps a long-term average of latencies. While recent latencies stay within
+ * the tolerated ratio of it, the limit grows by about its square root per sample, as long as
+ * the limit is actually used. As latencies rise above it, typically because HBase is
+ * compacting or moving regions, the limit shrinks in proportion. Requests beyond the limit are
+ * shed with 503 Service Unavailable and a Retry-After header.</p>
+ *
+ * <p>Interactive and admin requests may use the whole limit, bulk requests only a share of it,
+ * so that single-row requests keep being served while scans are shed. Bulk requests are also
+ * shed while the old generation of the heap remains highly occupied after collection.</p>
+ */
+public final class AdaptiveLimiter {
+  /** Name fragments of the old generation memory pools of the usual collectors. */
+  private static final String[] OLD_GEN_POOLS = {"Old Gen", "Tenured Gen"};
+
+  /** Weight of each sample in the long-term average latency: about the last 600 samples. */
+  private static final double LONG_LATENCY_WEIGHT = 2.0 / 601;
+
+  private final int mMinLimit;
+  private final int mMaxLimit;
+  private final double mBulkShare;
+  private final double mLatencyTolerance;
+  private final double mSmoothing;
+  private final int mRetryAfterSeconds;
+  private final double mMaxOldGenOccupancy;
+
+  /** Old generation memory pool, or null if there is none known. */
+  private final MemoryPoolMXBean mOldGen;
+
+  private final AtomicInteger mInFlight = new AtomicInteger(0);
+
+  /** Current limit. Written under this object's lock. */
+  private volatile double mLimit;
+
+  /** Long-term average latency, in nanoseconds, or 0 before the first sample. Guarded by this. */
+  private double mLongLatencyNanos = 0;
+
+  private final Meter mShedInteractive;
+  private final Meter mShedBulk;
+  private final Meter mShedHeap;
+
+  /**
+   * Constructs an adaptive limiter.
+   *
+   * @param configuration of the limiter.
+   */
+  public AdaptiveLimiter(AdaptiveLimiterConfiguration configuration) {
+    mMinLimit = configuration.getMinLimit();
+    mMaxLimit = Math.max(configuration.getMaxLimit(), mMinLimit);
+    mBulkShare = configuration.getBulkShare();
+    mLatencyTolerance = configuration.getLatencyTolerance();
+    mSmoothing = configuration.getSmoothing();
+    mRetryAfterSeconds = configuration.getRetryAfterSeconds();
+    mMaxOldGenOccupancy = configuration.getMaxOldGenOccupancy();
+    mLimit = Math.min(Math.max(configuration.getInitialLimit(), mMinLimit), mMaxLimit);
+    mOldGen = findOldGen();
+
+    Metrics.newGauge(AdaptiveLimiter.class, "limit", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getLimit();
+      }
+    });
+    Metrics.newGauge(AdaptiveLimiter.class, "in-flight", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return mInFlight.get();
+      }
+    });
+    mShedInteractive = Metrics.newMeter(AdaptiveLimiter.class, "shed-interactive", "requests",
+        TimeUnit.SECONDS);
+    mShedBulk =
+        Metrics.newMeter(AdaptiveLimiter.class, "shed-bulk", "requests", TimeUnit.SECONDS);
+    mShedHeap =
+        Metrics.newMeter(AdaptiveLimiter.class, "shed-heap", "requests", TimeUnit.SECONDS);
+  }
+
+  /** @return the current limit on the requests in flight. */
+  public int getLimit() {
+    return (int) mLimit;
+  }
+
+  /** @return the number of requests in flight. */
+  public int getInFlight() {
+    return mInFlight.get();
+  }
+
+  /**
+   * Admits a request, to be followed by a call to {@link #release(RequestClass, long)}.
+   *
+   * @param requestClass of the request.
+   * @throws WebApplicationException with 503 and a Retry-After header if the request is shed.
+   */
+  public void acquire(RequestClass requestClass) {
+    int threshold = getLimit();
+    if (RequestClass.BULK == requestClass) {
+      if (isOldGenCrowded()) {
+        mShedHeap.mark();
+        throw shed("Heap occupancy too high for bulk requests.");
+      }
+      threshold = Math.max(1, (int) (threshold * mBulkShare));
+    }
+    while (true) {
+      final int inFlight = mInFlight.get();
+      if (inFlight >= threshold) {
+        if (RequestClass.BULK == requestClass) {
+          mShedBulk.mark();
+        } else {
+          mShedInteractive.mark();
+        }
+        throw shed("Too many requests in flight (" + inFlight + ").");
+      }
+      if (mInFlight.compareAndSet(inFlight, inFlight + 1)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Ends an admitted request. The latency of interactive requests tunes the limit; bulk
+   * requests hold tables for as long as their clients read, which says little about HBase.
+   *
+   * @param requestClass of the request.
+   * @param latencyNanos is the time the request was in flight, in nanoseconds.
+   */
+  public void release(RequestClass requestClass, long latencyNanos) {
+    final int inFlight = mInFlight.getAndDecrement();
+    if (RequestClass.INTERACTIVE == requestClass && latencyNanos > 0) {
+      update(latencyNanos, inFlight);
+    }
+  }
+
+  /**
+   * Updates the limit with a latency sample.
+   *
+   * @param latencyNanos observed.
+   * @param inFlight is the number of requests in flight when the sample ended.
+   */
+  private synchronized void update(long latencyNanos, int inFlight) {
+    if (0 == mLongLatencyNanos) {
+      mLongLatencyNanos = latencyNanos;
+    } else {
+      mLongLatencyNanos = mLongLatencyNanos * (1 - LONG_LATENCY_WEIGHT)
+          + latencyNanos * LONG_LATENCY_WEIGHT;
+    }
+    // Lets the long-term average recover quickly after an episode of high latencies.
+    if (mLongLatencyNanos > 2 * latencyNanos) {
+      mLongLatencyNanos *= 0.95;
+    }
+    // A limit not even half used says nothing about whether it could grow.
+    if (inFlight < mLimit / 2) {
+      return;
+    }
+    final double gradient =
+        Math.max(0.5, Math.min(1.0, mLatencyTolerance * mLongLatencyNanos / latencyNanos));
+    final double estimate = mLimit * gradient + Math.sqrt(mLimit);
+    final double limit = mLimit * (1 - mSmoothing) + estimate * mSmoothing;
+    mLimit = Math.min(Math.max(limit, mMinLimit), mMaxLimit);
+  }
+
+  /**
+   * Builds the exception shedding a request.
+   *
+   * @param message explaining why.
+   * @return the exception.
+   */
+  private WebApplicationException shed(String message) {
+    return new WebApplicationException(new IOException(message),
+        Response.status(Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", String.valueOf(mRetryAfterSeconds))
+            .build());
+  }
+
+  /** @return whether the old generation is occupied above the threshold after collection. */
+  private boolean isOldGenCrowded() {
+    if (null == mOldGen) {
+      return false;
+    }
+    MemoryUsage usage = mOldGen.getCollectionUsage();
+    if (null == usage) {
+      usage = mOldGen.getUsage();
+    }
+    if (usage.getMax() <= 0) {
+      return false;
+    }
+    return usage.getUsed() > mMaxOldGenOccupancy * usage.getMax();
+  }
+
+  /** @return the old generation memory pool, or null if there is none known. */
+  private static MemoryPoolMXBean findOldGen() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (MemoryType.HEAP == pool.getType()) {
+        for (String name : OLD_GEN_POOLS) {
+          if (pool.getName().contains(name)) {
+            return pool;
+          }
+        }
+      }
+    }
+    return null;
+  }
+}
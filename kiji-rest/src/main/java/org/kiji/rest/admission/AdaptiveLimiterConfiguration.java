@@ -0,0 +1,114 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the adaptive limit on the number of requests in flight to HBase.
+ */
+public class AdaptiveLimiterConfiguration {
+  /** Whether requests are admitted through the adaptive limiter. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Limit on the requests in flight until latencies have been observed. */
+  @Min(1)
+  @JsonProperty("initialLimit")
+  private int mInitialLimit = 32;
+
+  /** Lowest limit the limiter may settle on. */
+  @Min(1)
+  @JsonProperty("minLimit")
+  private int mMinLimit = 8;
+
+  /** Highest limit the limiter may settle on. */
+  @Min(1)
+  @JsonProperty("maxLimit")
+  private int mMaxLimit = 512;
+
+  /** Share of the limit bulk requests may take; interactive requests may take all of it. */
+  @JsonProperty("bulkShare")
+  private double mBulkShare = 0.5;
+
+  /** Ratio of the recent latency to the long-term latency tolerated before the limit shrinks. */
+  @JsonProperty("latencyTolerance")
+  private double mLatencyTolerance = 1.5;
+
+  /** Weight of each new limit estimate in the limit, between 0 and 1. */
+  @JsonProperty("smoothing")
+  private double mSmoothing = 0.2;
+
+  /** Value of the Retry-After header of shed requests, in seconds. */
+  @Min(0)
+  @JsonProperty("retryAfterSeconds")
+  private int mRetryAfterSeconds = 1;
+
+  /** Occupancy of the old generation after collection above which bulk requests are shed. */
+  @JsonProperty("maxOldGenOccupancy")
+  private double mMaxOldGenOccupancy = 0.85;
+
+  /** @return whether requests are admitted through the adaptive limiter. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the limit until latencies have been observed. */
+  public final int getInitialLimit() {
+    return mInitialLimit;
+  }
+
+  /** @return the lowest limit. */
+  public final int getMinLimit() {
+    return mMinLimit;
+  }
+
+  /** @return the highest limit. */
+  public final int getMaxLimit() {
+    return mMaxLimit;
+  }
+
+  /** @return the share of the limit bulk requests may take. */
+  public final double getBulkShare() {
+    return mBulkShare;
+  }
+
+  /** @return the ratio of recent to long-term latency tolerated. */
+  public final double getLatencyTolerance() {
+    return mLatencyTolerance;
+  }
+
+  /** @return the weight of each new limit estimate. */
+  public final double getSmoothing() {
+    return mSmoothing;
+  }
+
+  /** @return the value of the Retry-After header of shed requests, in seconds. */
+  public final int getRetryAfterSeconds() {
+    return mRetryAfterSeconds;
+  }
+
+  /** @return the old generation occupancy above which bulk requests are shed. */
+  public final double getMaxOldGenOccupancy() {
+    return mMaxOldGenOccupancy;
+  }
+}
@@ -0,0 +1,276 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+
+/**
+ * Bounds the number of requests served concurrently for an instance or a table, with permits
+ * and a thread pool of its own. A request finding no permit left fails fast with 503 Service
+ * Unavailable instead of queuing behind requests stuck on the same cluster.
+ *
+ * <p>Calls run in the bulkhead's threads, so that a caller gives up on a call exceeding the
+ * call timeout while the stuck call keeps holding its permit, not a request thread. Work which
+ * can not be handed off, such as streaming rows, holds a permit with {@link #acquire()} and
+ * {@link #release()} instead.</p>
+ */
+public final class Bulkhead {
+  /** Bulkhead whose thread is running the current call, if any. */
+  private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<Bulkhead>();
+
+  private final String mName;
+  private final int mPermits;
+  private final long mCallTimeoutMillis;
+  private final Semaphore mAvailable;
+  private final ExecutorService mExecutor;
+  private final Meter mRejected;
+  private final Meter mTimedOut;
+  private final List<MetricName> mMetrics;
+
+  /**
+   * Constructs a bulkhead.
+   *
+   * @param name of the bulkhead, scoping its metrics.
+   * @param permits is the number of requests served concurrently.
+   * @param callTimeoutMillis is the time a caller waits for a call run in the bulkhead.
+   */
+  public Bulkhead(String name, int permits, long callTimeoutMillis) {
+    this(name, permits, callTimeoutMillis, newExecutor(name, permits));
+  }
+
+  /**
+   * Constructs a bulkhead running its calls in the given threads.
+   *
+   * @param name of the bulkhead, scoping its metrics.
+   * @param permits is the number of requests served concurrently.
+   * @param callTimeoutMillis is the time a caller waits for a call run in the bulkhead.
+   * @param executor to run calls in, shut down when the bulkhead is closed.
+   */
+  Bulkhead(String name, int permits, long callTimeoutMillis, ExecutorService executor) {
+    mName = name;
+    mPermits = permits;
+    mCallTimeoutMillis = callTimeoutMillis;
+    mAvailable = new Semaphore(permits);
+    mExecutor = executor;
+
+    final MetricName active = new MetricName(Bulkhead.class, "active-permits", name);
+    Metrics.newGauge(active, new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getActive();
+      }
+    });
+    final MetricName rejected = new MetricName(Bulkhead.class, "rejected", name);
+    mRejected = Metrics.newMeter(rejected, "requests", TimeUnit.SECONDS);
+    final MetricName timedOut = new MetricName(Bulkhead.class, "timed-out", name);
+    mTimedOut = Metrics.newMeter(timedOut, "calls", TimeUnit.SECONDS);
+    mMetrics = ImmutableList.of(active, rejected, timedOut);
+  }
+
+  /**
+   * Creates the threads of a bulkhead. The permits are the only bound on calls: a call given
+   * the permit of a call whose thread is not yet back in the pool waits in the queue for it
+   * rather than being rejected.
+   *
+   * @param name of the bulkhead.
+   * @param permits is the number of requests served concurrently.
+   * @return the threads of the bulkhead.
+   */
+  private static ExecutorService newExecutor(String name, int permits) {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(permits, permits, 60,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bulkhead-" + name + "-%d")
+            .build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** @return the name of the bulkhead. */
+  public String getName() {
+    return mName;
+  }
+
+  /** @return the number of requests served concurrently at most. */
+  public int getPermits() {
+    return mPermits;
+  }
+
+  /** @return the number of permits currently held. */
+  public int getActive() {
+    return mPermits - mAvailable.availablePermits();
+  }
+
+  /** @return the bulkhead whose call the current thread is running, or null. */
+  static Bulkhead current() {
+    return CURRENT.get();
+  }
+
+  /** @param bulkhead whose call the current thread runs from now on, or null. */
+  static void setCurrent(Bulkhead bulkhead) {
+    CURRENT.set(bulkhead);
+  }
+
+  /** Forgets the bulkhead whose call the current thread was running. */
+  static void clearCurrent() {
+    CURRENT.remove();
+  }
+
+  /** @return whether the current thread is running a call of this bulkhead. */
+  public boolean isCurrent() {
+    return this == CURRENT.get();
+  }
+
+  /**
+   * Takes a permit, to be given back with {@link #release()}.
+   *
+   * @throws WebApplicationException with 503 if no permit is left.
+   */
+  public void acquire() {
+    if (!mAvailable.tryAcquire()) {
+      mRejected.mark();
+      throw new WebApplicationException(
+          new IOException("Too many concurrent requests to " + mName + "."),
+          Status.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /** Gives back a permit taken with {@link #acquire()}. */
+  public void release() {
+    mAvailable.release();
+  }
+
+  /**
+   * Runs a call in the bulkhead's threads, holding a permit until the call completes. The call
+   * runs as a request of the class, and with the deadline, of the caller's request, and the
+   * caller waits no longer than that deadline.
+   *
+   * @param callable to run.
+   * @param <T> is the type of the result.
+   * @return the result of the call.
+   * @throws IOException if the call throws one.
+   * @throws WebApplicationException with 503 if no permit is left or the call times out, 504
+   *     if the deadline of the request expires first, or as thrown by the call.
+   */
+  public <T> T call(final Callable<T> callable) throws IOException {
+    Deadline.checkCurrent();
+    acquire();
+    final RequestClass requestClass = RequestClass.current();
+    final Deadline deadline = Deadline.current();
+    // Claimed once, either by the call as it starts or by the caller abandoning it before it
+    // starts, so that whichever claims it gives the permit back, and only once.
+    final AtomicBoolean claimed = new AtomicBoolean();
+    final Future<T> future;
+    try {
+      future = mExecutor.submit(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          if (!claimed.compareAndSet(false, true)) {
+            return null;
+          }
+          CURRENT.set(Bulkhead.this);
+          RequestClass.setCurrent(requestClass);
+          Deadline.setCurrent(deadline);
+          try {
+            return callable.call();
+          } finally {
+            // Pooled threads must not carry the request over to their next call.
+            CURRENT.remove();
+            RequestClass.clearCurrent();
+            Deadline.clearCurrent();
+            release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException ree) {
+      release();
+      throw new WebApplicationException(ree, Status.SERVICE_UNAVAILABLE);
+    }
+
+    try {
+      return future.get(Deadline.boundMillis(mCallTimeoutMillis), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      abandon(future, claimed);
+      if (null != deadline && deadline.isExpired()) {
+        throw deadline.expired();
+      }
+      mTimedOut.mark();
+      throw new WebApplicationException(
+          new IOException("Call to " + mName + " timed out after " + mCallTimeoutMillis + " ms."),
+          Status.SERVICE_UNAVAILABLE);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      abandon(future, claimed);
+      throw new WebApplicationException(ie, Status.SERVICE_UNAVAILABLE);
+    } catch (ExecutionException ee) {
+      final Throwable cause = ee.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new WebApplicationException(cause, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Cancels a call the caller gave up on. A call which did not start yet never will, so its
+   * permit is given back here; a started call gives it back as it completes.
+   *
+   * @param future of the call.
+   * @param claimed is claimed by the call as it starts.
+   */
+  private void abandon(Future<?> future, AtomicBoolean claimed) {
+    future.cancel(true);
+    if (claimed.compareAndSet(false, true)) {
+      release();
+    }
+  }
+
+  /** Stops the bulkhead's threads and removes its metrics. */
+  public void close() {
+    mExecutor.shutdownNow();
+    for (MetricName metric : mMetrics) {
+      Metrics.defaultRegistry().removeMetric(metric);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Collection;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.LeasedTable;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+
+/**
+ * A KijiClient holding a permit of the bulkhead of a table for as long as the table is leased,
+ * so that requests which stream or write through a table count against its bulkhead. Tables
+ * leased by a call already running in the bulkhead do not take a second permit.
+ */
+public final class BulkheadKijiClient implements KijiClient {
+  private final KijiClient mKijiClient;
+  private final Bulkheads mBulkheads;
+
+  /**
+   * Constructs a client admitting leases through bulkheads.
+   *
+   * @param kijiClient to lease tables from.
+   * @param bulkheads to take permits from.
+   */
+  public BulkheadKijiClient(KijiClient kijiClient, Bulkheads bulkheads) {
+    mKijiClient = kijiClient;
+    mBulkheads = bulkheads;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Kiji getKiji(String instance) {
+    return mKijiClient.getKiji(instance);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<KijiURI> getInstances() {
+    return mKijiClient.getInstances();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws javax.ws.rs.WebApplicationException with 503 if the bulkhead of the table is
+   *     saturated.
+   */
+  @Override
+  public KijiTable getKijiTable(String instance, String table) {
+    final Bulkhead bulkhead = mBulkheads.get(instance, table);
+    if (bulkhead.isCurrent()) {
+      return mKijiClient.getKijiTable(instance, table);
+    }
+    bulkhead.acquire();
+    final KijiTable kijiTable;
+    try {
+      kijiTable = mKijiClient.getKijiTable(instance, table);
+    } catch (RuntimeException re) {
+      bulkhead.release();
+      throw re;
+    }
+    return LeasedTable.wrap(kijiTable, new Runnable() {
+      @Override
+      public void run() {
+        bulkhead.release();
+      }
+    });
+  }
+}
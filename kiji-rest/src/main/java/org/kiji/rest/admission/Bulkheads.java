@@ -0,0 +1,112 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.yammer.dropwizard.lifecycle.Managed;
+
+/**
+ * The bulkheads of the served instances, and of the tables configured to have their own,
+ * created on first use.
+ */
+public final class Bulkheads implements Managed {
+  private final BulkheadsConfiguration mConfiguration;
+
+  /** Prefix of the names of the bulkheads, scoping their metrics. */
+  private final String mPrefix;
+
+  /** Bulkheads by instance, or by "instance/table" for tables with their own. Guarded by this. */
+  private final Map<String, Bulkhead> mBulkheads = Maps.newHashMap();
+
+  /**
+   * Constructs the bulkheads.
+   *
+   * @param configuration of the bulkheads.
+   */
+  public Bulkheads(BulkheadsConfiguration configuration) {
+    this(configuration, "");
+  }
+
+  /**
+   * Constructs the bulkheads of another cluster, whose names are prefixed so that their metrics
+   * and threads are told apart from those of the primary clusters.
+   *
+   * @param configuration of the bulkheads.
+   * @param prefix of the names of the bulkheads, such as "secondary.".
+   */
+  public Bulkheads(BulkheadsConfiguration configuration, String prefix) {
+    mConfiguration = configuration;
+    mPrefix = prefix;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void stop() {
+    for (Bulkhead bulkhead : mBulkheads.values()) {
+      bulkhead.close();
+    }
+    mBulkheads.clear();
+  }
+
+  /**
+   * Gets the bulkhead serving a table.
+   *
+   * @param instance name.
+   * @param table name, or null for requests not bound to a table.
+   * @return the table's own bulkhead if it has one, its instance's bulkhead otherwise.
+   */
+  public synchronized Bulkhead get(String instance, String table) {
+    if (null != table) {
+      final Integer tablePermits = mConfiguration.getTablePermits(instance, table);
+      if (null != tablePermits) {
+        return getOrCreate(instance + "/" + table, tablePermits);
+      }
+    }
+    return getOrCreate(instance, mConfiguration.getPermits(instance));
+  }
+
+  /** @return the bulkheads created so far, by name. */
+  public synchronized Map<String, Bulkhead> getAll() {
+    return Maps.newTreeMap(mBulkheads);
+  }
+
+  /**
+   * Gets a bulkhead, creating it if needed.
+   *
+   * @param name of the bulkhead.
+   * @param permits of the bulkhead, if created.
+   * @return the bulkhead.
+   */
+  private Bulkhead getOrCreate(String name, int permits) {
+    Bulkhead bulkhead = mBulkheads.get(name);
+    if (null == bulkhead) {
+      bulkhead = new Bulkhead(mPrefix + name, permits, mConfiguration.getCallTimeoutMillis());
+      mBulkheads.put(name, bulkhead);
+    }
+    return bulkhead;
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Map;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * Configuration of the bulkheads isolating instances, and optionally tables, from each other.
+ */
+public class BulkheadsConfiguration {
+  /** Whether requests run in bulkheads. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Number of requests an instance serves concurrently. */
+  @Min(1)
+  @JsonProperty("permits")
+  private int mPermits = 64;
+
+  /** Time a request waits for a call run in a bulkhead, in milliseconds. */
+  @Min(1)
+  @JsonProperty("callTimeoutMillis")
+  private long mCallTimeoutMillis = 30000;
+
+  /** Number of requests served concurrently, by instance, overriding "permits". */
+  @JsonProperty("instances")
+  private Map<String, Integer> mInstances = Maps.newHashMap();
+
+  /** Tables with a bulkhead of their own, by "instance/table", with its number of permits. */
+  @JsonProperty("tables")
+  private Map<String, Integer> mTables = Maps.newHashMap();
+
+  /** @return whether requests run in bulkheads. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the time a request waits for a call run in a bulkhead, in milliseconds. */
+  public final long getCallTimeoutMillis() {
+    return mCallTimeoutMillis;
+  }
+
+  /**
+   * Gets the number of requests an instance serves concurrently.
+   *
+   * @param instance name.
+   * @return the number of permits of the instance's bulkhead.
+   */
+  public final int getPermits(String instance) {
+    final Integer permits = mInstances.get(instance);
+    if (null != permits) {
+      return permits;
+    }
+    return mPermits;
+  }
+
+  /**
+   * Gets the number of permits of a table's own bulkhead.
+   *
+   * @param instance name.
+   * @param table name.
+   * @return the number of permits, or null if the table shares its instance's bulkhead.
+   */
+  public final Integer getTablePermits(String instance, String table) {
+    return mTables.get(instance + "/" + table);
+  }
+}
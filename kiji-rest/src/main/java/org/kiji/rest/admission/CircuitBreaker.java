@@ -0,0 +1,276 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.collect.ImmutableList;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+
+/**
+ * Stops sending requests to a table while most calls to it fail or are slow, so that requests
+ * fail fast with 503 Service Unavailable instead of each waiting out the HBase retries.
+ *
+ * <p>A closed breaker counts the calls to its table and their failures over a sliding window.
+ * Once enough calls were made and too many of them failed, the breaker opens and rejects every
+ * request. After a while it turns half-open and lets a few requests through as probes: if their
+ * calls succeed the breaker closes, and if one fails the breaker opens again. Only the calls of
+ * probes decide whether a half-open breaker closes; calls of requests admitted before the breaker
+ * opened are not counted once it has.</p>
+ *
+ * <p>Times are measured with {@link System#nanoTime()}, so that changes to the wall clock neither
+ * stretch the window nor keep the breaker open.</p>
+ */
+public final class CircuitBreaker {
+  /** State of a breaker. */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  /** Number of buckets the window is divided in. */
+  private static final int BUCKETS = 10;
+
+  private final String mName;
+  private final double mFailureRateThreshold;
+  private final int mMinimumCalls;
+  private final long mBucketMillis;
+  private final long mOpenMillis;
+  private final int mHalfOpenProbes;
+
+  /** Origin of the times of the breaker, in nanoseconds. */
+  private final long mStartNanos = System.nanoTime();
+
+  /** Calls and failures of the window, by bucket, with the epoch each bucket counts. */
+  private final long[] mEpochs = new long[BUCKETS];
+  private final int[] mCalls = new int[BUCKETS];
+  private final int[] mFailures = new int[BUCKETS];
+
+  /** State of the breaker. Guarded by this. */
+  private State mState = State.CLOSED;
+
+  /** Time the breaker last opened, in milliseconds since its origin. Guarded by this. */
+  private long mOpenedMillis = 0;
+
+  /** Number of probes admitted and not yet ended. Guarded by this. */
+  private int mProbes = 0;
+
+  /** Number of successful probe calls since the breaker turned half-open. Guarded by this. */
+  private int mProbeSuccesses = 0;
+
+  private final Meter mRejected;
+  private final Meter mOpened;
+  private final List<MetricName> mMetrics;
+
+  /**
+   * Constructs a closed breaker.
+   *
+   * @param name of the breaker, scoping its metrics.
+   * @param configuration of the breaker.
+   */
+  public CircuitBreaker(String name, CircuitBreakersConfiguration configuration) {
+    mName = name;
+    mFailureRateThreshold = configuration.getFailureRateThreshold();
+    mMinimumCalls = configuration.getMinimumCalls();
+    mBucketMillis = Math.max(1, configuration.getWindowMillis() / BUCKETS);
+    mOpenMillis = configuration.getOpenMillis();
+    mHalfOpenProbes = configuration.getHalfOpenProbes();
+
+    final MetricName state = new MetricName(CircuitBreaker.class, "state", name);
+    Metrics.newGauge(state, new Gauge<String>() {
+      @Override
+      public String value() {
+        return getState().name();
+      }
+    });
+    final MetricName rejected = new MetricName(CircuitBreaker.class, "rejected", name);
+    mRejected = Metrics.newMeter(rejected, "requests", TimeUnit.SECONDS);
+    final MetricName opened = new MetricName(CircuitBreaker.class, "opened", name);
+    mOpened = Metrics.newMeter(opened, "times", TimeUnit.SECONDS);
+    mMetrics = ImmutableList.of(state, rejected, opened);
+  }
+
+  /** @return the name of the breaker. */
+  public String getName() {
+    return mName;
+  }
+
+  /** @return the state of the breaker. */
+  public synchronized State getState() {
+    if (State.OPEN == mState && now() - mOpenedMillis >= mOpenMillis) {
+      return State.HALF_OPEN;
+    }
+    return mState;
+  }
+
+  /** @return the number of calls counted over the window. */
+  public synchronized int getCalls() {
+    return sum(mCalls);
+  }
+
+  /** @return the number of failed calls counted over the window. */
+  public synchronized int getFailures() {
+    return sum(mFailures);
+  }
+
+  /**
+   * Admits a request. A request admitted while the breaker is half-open is a probe, and must
+   * be ended with {@link #endProbe()}.
+   *
+   * @return whether the request is a probe.
+   * @throws WebApplicationException with 503 and a Retry-After header if the breaker is open,
+   *     or half-open with all its probes in flight.
+   */
+  public synchronized boolean acquire() {
+    if (State.OPEN == mState && now() - mOpenedMillis >= mOpenMillis) {
+      mState = State.HALF_OPEN;
+      mProbeSuccesses = 0;
+    }
+    switch (mState) {
+      case CLOSED:
+        return false;
+      case HALF_OPEN:
+        if (mProbes < mHalfOpenProbes) {
+          mProbes++;
+          return true;
+        }
+        break;
+      default:
+        break;
+    }
+    mRejected.mark();
+    final long retryAfterSeconds =
+        Math.max(1, TimeUnit.MILLISECONDS.toSeconds(mOpenMillis - (now() - mOpenedMillis)));
+    throw new WebApplicationException(
+        new IOException("Circuit breaker of " + mName + " is open."),
+        Response.status(Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", String.valueOf(retryAfterSeconds))
+            .build());
+  }
+
+  /** Ends a probe admitted by {@link #acquire()}. */
+  public synchronized void endProbe() {
+    mProbes--;
+  }
+
+  /**
+   * Records the outcome of a call to the table.
+   *
+   * @param failed is whether the call failed or was too slow.
+   * @param probe is whether the call was made by a probe admitted while the breaker was half-open.
+   */
+  public synchronized void record(boolean failed, boolean probe) {
+    if (State.HALF_OPEN == mState) {
+      if (!probe) {
+        // Admitted before the breaker opened: says nothing about whether the table recovered.
+        return;
+      }
+      if (failed) {
+        open();
+      } else {
+        mProbeSuccesses++;
+        if (mProbeSuccesses >= mHalfOpenProbes) {
+          close();
+        }
+      }
+    } else if (State.CLOSED == mState) {
+      count(failed);
+      final int calls = sum(mCalls);
+      if (failed && calls >= mMinimumCalls && sum(mFailures) >= mFailureRateThreshold * calls) {
+        open();
+      }
+    }
+    // Calls ending after the breaker opened say nothing new.
+  }
+
+  /** Opens the breaker, from any state. */
+  public synchronized void open() {
+    mState = State.OPEN;
+    mOpenedMillis = now();
+    mOpened.mark();
+  }
+
+  /** Closes the breaker, from any state, forgetting the calls counted so far. */
+  public synchronized void close() {
+    mState = State.CLOSED;
+    for (int i = 0; i < BUCKETS; i++) {
+      mEpochs[i] = 0;
+      mCalls[i] = 0;
+      mFailures[i] = 0;
+    }
+  }
+
+  /** Removes the metrics of the breaker. */
+  public void remove() {
+    for (MetricName metric : mMetrics) {
+      Metrics.defaultRegistry().removeMetric(metric);
+    }
+  }
+
+  /**
+   * Counts a call in the bucket of the current time. Guarded by this.
+   *
+   * @param failed is whether the call failed.
+   */
+  private void count(boolean failed) {
+    final long epoch = now() / mBucketMillis;
+    final int bucket = (int) (epoch % BUCKETS);
+    if (mEpochs[bucket] != epoch) {
+      mEpochs[bucket] = epoch;
+      mCalls[bucket] = 0;
+      mFailures[bucket] = 0;
+    }
+    mCalls[bucket]++;
+    if (failed) {
+      mFailures[bucket]++;
+    }
+  }
+
+  /**
+   * Sums the counts of the buckets of the current window. Guarded by this.
+   *
+   * @param counts by bucket.
+   * @return the sum of the counts of the buckets within the window.
+   */
+  private int sum(int[] counts) {
+    final long epoch = now() / mBucketMillis;
+    int sum = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      if (epoch - mEpochs[i] < BUCKETS) {
+        sum += counts[i];
+      }
+    }
+    return sum;
+  }
+
+  /** @return the time elapsed since the origin of the breaker, in milliseconds. */
+  private long now() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mStartNanos);
+  }
+}
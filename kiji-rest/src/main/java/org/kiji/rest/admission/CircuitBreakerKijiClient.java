@@ -0,0 +1,91 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Collection;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.LeasedTable;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+
+/**
+ * A KijiClient leasing tables through their circuit breakers. A table whose breaker is open is
+ * not leased at all, and the calls made through a leased table, its readers, writers and
+ * scanners are recorded with its breaker.
+ */
+public final class CircuitBreakerKijiClient implements KijiClient {
+  private final KijiClient mKijiClient;
+  private final CircuitBreakers mBreakers;
+
+  /**
+   * Constructs a client leasing tables through circuit breakers.
+   *
+   * @param kijiClient to lease tables from.
+   * @param breakers of the tables.
+   */
+  public CircuitBreakerKijiClient(KijiClient kijiClient, CircuitBreakers breakers) {
+    mKijiClient = kijiClient;
+    mBreakers = breakers;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Kiji getKiji(String instance) {
+    return mKijiClient.getKiji(instance);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<KijiURI> getInstances() {
+    return mKijiClient.getInstances();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws javax.ws.rs.WebApplicationException with 503 if the breaker of the table is open.
+   */
+  @Override
+  public KijiTable getKijiTable(String instance, String table) {
+    final CircuitBreaker breaker = mBreakers.get(instance, table);
+    final boolean probe = breaker.acquire();
+    KijiTable kijiTable;
+    try {
+      kijiTable = mKijiClient.getKijiTable(instance, table);
+    } catch (RuntimeException re) {
+      if (probe) {
+        breaker.endProbe();
+      }
+      throw re;
+    }
+    if (probe) {
+      kijiTable = LeasedTable.wrap(kijiTable, new Runnable() {
+        @Override
+        public void run() {
+          breaker.endProbe();
+        }
+      });
+    }
+    return RecordedTable.wrap(kijiTable, breaker,
+        mBreakers.getConfiguration().getSlowCallMillis(), probe);
+  }
+}
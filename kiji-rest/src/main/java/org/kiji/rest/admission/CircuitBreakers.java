@@ -0,0 +1,110 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.yammer.dropwizard.lifecycle.Managed;
+
+/**
+ * The circuit breakers of tables, created on first use.
+ */
+public final class CircuitBreakers implements Managed {
+  private final CircuitBreakersConfiguration mConfiguration;
+
+  /** Prefix of the names of the breakers, scoping their metrics. */
+  private final String mPrefix;
+
+  /** Breakers by "instance/table". Guarded by this. */
+  private final Map<String, CircuitBreaker> mBreakers = Maps.newHashMap();
+
+  /**
+   * Constructs the circuit breakers.
+   *
+   * @param configuration of the breakers.
+   */
+  public CircuitBreakers(CircuitBreakersConfiguration configuration) {
+    this(configuration, "");
+  }
+
+  /**
+   * Constructs the breakers of another cluster, whose names are prefixed so that their metrics
+   * are told apart from those of the primary clusters.
+   *
+   * @param configuration of the breakers.
+   * @param prefix of the names of the breakers, such as "secondary.".
+   */
+  public CircuitBreakers(CircuitBreakersConfiguration configuration, String prefix) {
+    mConfiguration = configuration;
+    mPrefix = prefix;
+  }
+
+  /** @return the configuration of the breakers. */
+  public CircuitBreakersConfiguration getConfiguration() {
+    return mConfiguration;
+  }
+
+  /**
+   * Gets the breaker of a table, creating it if needed.
+   *
+   * @param instance name.
+   * @param table name.
+   * @return the breaker of the table.
+   */
+  public synchronized CircuitBreaker get(String instance, String table) {
+    final String name = instance + "/" + table;
+    CircuitBreaker breaker = mBreakers.get(name);
+    if (null == breaker) {
+      breaker = new CircuitBreaker(mPrefix + name, mConfiguration);
+      mBreakers.put(name, breaker);
+    }
+    return breaker;
+  }
+
+  /**
+   * Gets the breaker of a table if it exists.
+   *
+   * @param name of the table, as "instance/table".
+   * @return the breaker of the table, or null if no request went to the table yet.
+   */
+  public synchronized CircuitBreaker find(String name) {
+    return mBreakers.get(name);
+  }
+
+  /** @return the breakers created so far, by "instance/table". */
+  public synchronized Map<String, CircuitBreaker> getAll() {
+    return Maps.newTreeMap(mBreakers);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void stop() {
+    for (CircuitBreaker breaker : mBreakers.values()) {
+      breaker.remove();
+    }
+    mBreakers.clear();
+  }
+}
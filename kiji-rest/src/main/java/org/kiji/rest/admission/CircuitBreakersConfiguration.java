@@ -0,0 +1,100 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the circuit breakers of tables.
+ */
+public class CircuitBreakersConfiguration {
+  /** Whether tables have circuit breakers. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Share of failed or slow calls to a table over the window that opens its breaker. */
+  @Min(0)
+  @Max(1)
+  @JsonProperty("failureRateThreshold")
+  private double mFailureRateThreshold = 0.5;
+
+  /** Number of calls to a table over the window below which its breaker stays closed. */
+  @Min(1)
+  @JsonProperty("minimumCalls")
+  private int mMinimumCalls = 20;
+
+  /** Window over which calls are counted, in milliseconds. */
+  @Min(10)
+  @JsonProperty("windowMillis")
+  private long mWindowMillis = 10000;
+
+  /** Time an open breaker fails requests before letting probes through, in milliseconds. */
+  @Min(1)
+  @JsonProperty("openMillis")
+  private long mOpenMillis = 5000;
+
+  /** Number of probes that must succeed for a half-open breaker to close. */
+  @Min(1)
+  @JsonProperty("halfOpenProbes")
+  private int mHalfOpenProbes = 3;
+
+  /** Latency beyond which a call counts as failed, in milliseconds. */
+  @Min(1)
+  @JsonProperty("slowCallMillis")
+  private long mSlowCallMillis = 5000;
+
+  /** @return whether tables have circuit breakers. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the share of failed or slow calls over the window that opens a breaker. */
+  public final double getFailureRateThreshold() {
+    return mFailureRateThreshold;
+  }
+
+  /** @return the number of calls over the window below which a breaker stays closed. */
+  public final int getMinimumCalls() {
+    return mMinimumCalls;
+  }
+
+  /** @return the window over which calls are counted, in milliseconds. */
+  public final long getWindowMillis() {
+    return mWindowMillis;
+  }
+
+  /** @return the time an open breaker fails requests before letting probes through. */
+  public final long getOpenMillis() {
+    return mOpenMillis;
+  }
+
+  /** @return the number of probes that must succeed for a half-open breaker to close. */
+  public final int getHalfOpenProbes() {
+    return mHalfOpenProbes;
+  }
+
+  /** @return the latency beyond which a call counts as failed, in milliseconds. */
+  public final long getSlowCallMillis() {
+    return mSlowCallMillis;
+  }
+}
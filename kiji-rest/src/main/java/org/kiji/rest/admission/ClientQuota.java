@@ -0,0 +1,109 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The quotas of the client of a request on the table it targets, by operation. Resources charge
+ * the operations of the request being served by the current thread as they carry them out.
+ */
+public final class ClientQuota {
+  /** Quota of the request served by the current thread. */
+  private static final ThreadLocal<ClientQuota> CURRENT = new ThreadLocal<ClientQuota>();
+
+  private final String mClient;
+  private final Map<QuotaOperation, StripedTokenBucket> mBuckets;
+
+  /**
+   * Constructs the quotas of a client.
+   *
+   * @param client identity.
+   * @param buckets of the bounded operations.
+   */
+  ClientQuota(String client, EnumMap<QuotaOperation, StripedTokenBucket> buckets) {
+    mClient = client;
+    mBuckets = buckets;
+  }
+
+  /** @return the quota of the request served by the current thread, or null if none. */
+  public static ClientQuota current() {
+    return CURRENT.get();
+  }
+
+  /** @param quota of the request served by the current thread from now on, or null. */
+  public static void setCurrent(ClientQuota quota) {
+    CURRENT.set(quota);
+  }
+
+  /** Forgets the quota of the request served by the current thread. */
+  public static void clearCurrent() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Charges an operation to the quota of the request served by the current thread, if any.
+   *
+   * @param operation carried out.
+   * @param units used.
+   */
+  public static void chargeCurrent(QuotaOperation operation, long units) {
+    final ClientQuota quota = current();
+    if (null != quota) {
+      quota.charge(operation, units);
+    }
+  }
+
+  /** @return the identity of the client. */
+  public String getClient() {
+    return mClient;
+  }
+
+  /** @return the buckets of the bounded operations. */
+  public Map<QuotaOperation, StripedTokenBucket> getBuckets() {
+    return mBuckets;
+  }
+
+  /**
+   * Charges an operation, running into debt if the client used up its quota.
+   *
+   * @param operation carried out.
+   * @param units used.
+   */
+  public void charge(QuotaOperation operation, long units) {
+    final StripedTokenBucket bucket = mBuckets.get(operation);
+    if (null != bucket) {
+      bucket.charge(units);
+    }
+  }
+
+  /**
+   * Checks whether the client ran more than a whole burst into debt on an operation, which
+   * stops a long scan or batch from using more than its share.
+   *
+   * @param operation to check.
+   * @return whether the client is overdrawn.
+   */
+  public boolean isOverdrawn(QuotaOperation operation) {
+    final StripedTokenBucket bucket = mBuckets.get(operation);
+    return null != bucket && bucket.getAvailable() < -bucket.getBurst();
+  }
+}
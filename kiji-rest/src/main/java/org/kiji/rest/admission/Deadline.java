@@ -0,0 +1,136 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.WebApplicationException;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Meter;
+
+/**
+ * The time by which a request must be served. Past its deadline, the client has given up on a
+ * request, so KijiREST stops waiting on HBase for it and answers 504 Gateway Timeout.
+ *
+ * <p>The deadline of the request being served by the current thread is set by the
+ * {@link RequestClassifier} from the {@value #TIMEOUT_HEADER} header, or from the default of
+ * the endpoint.</p>
+ */
+public final class Deadline {
+  /** Header setting the timeout of a request, in milliseconds. */
+  public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+  /** Status of a request whose deadline expired. */
+  public static final int GATEWAY_TIMEOUT = 504;
+
+  /** Deadline of the request served by the current thread. */
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+  private static final Meter EXPIRED =
+      Metrics.newMeter(Deadline.class, "expired", "requests", TimeUnit.SECONDS);
+
+  private final long mTimeoutMillis;
+  private final long mDeadlineNanos;
+
+  /**
+   * Constructs a deadline from now.
+   *
+   * @param timeoutMillis is the time from now to the deadline, in milliseconds.
+   */
+  public Deadline(long timeoutMillis) {
+    mTimeoutMillis = timeoutMillis;
+    mDeadlineNanos = System.nanoTime() + timeoutMillis * 1000000;
+  }
+
+  /** @return the deadline of the request served by the current thread, or null if none. */
+  public static Deadline current() {
+    return CURRENT.get();
+  }
+
+  /** @param deadline of the request served by the current thread from now on, or null. */
+  public static void setCurrent(Deadline deadline) {
+    CURRENT.set(deadline);
+  }
+
+  /** Forgets the deadline of the request served by the current thread. */
+  public static void clearCurrent() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Bounds a wait by the deadline of the request served by the current thread, if any.
+   *
+   * @param millis to wait at most.
+   * @return the smaller of millis and the time left before the deadline, in milliseconds.
+   */
+  public static long boundMillis(long millis) {
+    final Deadline deadline = current();
+    if (null == deadline) {
+      return millis;
+    }
+    return Math.min(millis, deadline.getRemainingMillis());
+  }
+
+  /**
+   * Checks the deadline of the request served by the current thread, if any.
+   *
+   * @throws WebApplicationException with 504 if the deadline expired.
+   */
+  public static void checkCurrent() {
+    final Deadline deadline = current();
+    if (null != deadline) {
+      deadline.check();
+    }
+  }
+
+  /**
+   * Gets the time left before the deadline, rounded up so that a wait bounded by it does not
+   * end just short of the deadline.
+   *
+   * @return the time left before the deadline, in milliseconds, or 0 if it expired.
+   */
+  public long getRemainingMillis() {
+    return Math.max(0, (mDeadlineNanos - System.nanoTime() + 999999) / 1000000);
+  }
+
+  /** @return whether the deadline expired. */
+  public boolean isExpired() {
+    return System.nanoTime() - mDeadlineNanos >= 0;
+  }
+
+  /**
+   * Checks the deadline.
+   *
+   * @throws WebApplicationException with 504 if the deadline expired.
+   */
+  public void check() {
+    if (isExpired()) {
+      throw expired();
+    }
+  }
+
+  /** @return the exception failing a request whose deadline expired. */
+  public WebApplicationException expired() {
+    EXPIRED.mark();
+    return new WebApplicationException(new IOException("Request timed out after "
+        + mTimeoutMillis + " ms."), GATEWAY_TIMEOUT);
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.dropwizard.lifecycle.Managed;
+
+/**
+ * Sets the deadlines of requests, and runs calls against them. A call runs in a thread of its
+ * own while the request thread waits until the deadline at most, so that a request whose
+ * client gave up does not keep waiting on HBase for the full RPC timeout.
+ */
+public final class Deadlines implements Managed {
+  private final DeadlinesConfiguration mConfiguration;
+  private final ThreadPoolExecutor mExecutor;
+
+  /**
+   * Constructs the deadlines.
+   *
+   * @param configuration of the deadlines.
+   */
+  public Deadlines(DeadlinesConfiguration configuration) {
+    mConfiguration = configuration;
+    mExecutor = new ThreadPoolExecutor(0, configuration.getThreads(), 60, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("deadline-%d").build());
+  }
+
+  /**
+   * Builds the deadline of a request.
+   *
+   * @param endpoint requested.
+   * @param timeoutHeader is the value of the timeout header of the request, or null if none.
+   * @return the deadline of the request, or null if it has none.
+   * @throws IllegalArgumentException if the timeout header is not a positive number.
+   */
+  public Deadline newDeadline(Endpoint endpoint, String timeoutHeader) {
+    Long timeoutMillis = mConfiguration.getDefaultMillis(endpoint);
+    if (null != timeoutHeader) {
+      try {
+        timeoutMillis = Long.parseLong(timeoutHeader.trim());
+      } catch (NumberFormatException nfe) {
+        throw new IllegalArgumentException("Invalid " + Deadline.TIMEOUT_HEADER + " header: "
+            + timeoutHeader, nfe);
+      }
+      if (timeoutMillis <= 0) {
+        throw new IllegalArgumentException("Invalid " + Deadline.TIMEOUT_HEADER + " header: "
+            + timeoutHeader);
+      }
+    }
+    if (null == timeoutMillis) {
+      return null;
+    }
+    return new Deadline(Math.min(timeoutMillis, mConfiguration.getMaxMillis()));
+  }
+
+  /**
+   * Runs a call against the deadline of the request served by the current thread. The call
+   * runs in the current thread if the request has no deadline or every thread is busy.
+   *
+   * @param callable to run.
+   * @param <T> is the type of the result.
+   * @return the result of the call.
+   * @throws IOException if the call throws one.
+   * @throws WebApplicationException with 504 if the deadline expires first, or as thrown by
+   *     the call.
+   */
+  public <T> T call(final Callable<T> callable) throws IOException {
+    final Deadline deadline = Deadline.current();
+    if (null == deadline) {
+      return callInline(callable);
+    }
+    deadline.check();
+    final RequestClass requestClass = RequestClass.current();
+    final Future<T> future;
+    try {
+      future = mExecutor.submit(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          RequestClass.setCurrent(requestClass);
+          Deadline.setCurrent(deadline);
+          try {
+            return callable.call();
+          } finally {
+            Deadline.clearCurrent();
+            RequestClass.clearCurrent();
+          }
+        }
+      });
+    } catch (RejectedExecutionException ree) {
+      return callInline(callable);
+    }
+
+    try {
+      return future.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException te) {
+      // Interrupts the HBase call, so that it gives its table back as soon as it can.
+      future.cancel(true);
+      throw deadline.expired();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      throw new WebApplicationException(ie, Status.SERVICE_UNAVAILABLE);
+    } catch (ExecutionException ee) {
+      final Throwable cause = ee.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new WebApplicationException(cause, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Runs a call in the current thread.
+   *
+   * @param callable to run.
+   * @param <T> is the type of the result.
+   * @return the result of the call.
+   * @throws IOException if the call throws one.
+   */
+  private static <T> T callInline(Callable<T> callable) throws IOException {
+    try {
+      return callable.call();
+    } catch (IOException ioe) {
+      throw ioe;
+    } catch (RuntimeException re) {
+      throw re;
+    } catch (Exception e) {
+      throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void stop() {
+    mExecutor.shutdownNow();
+  }
+}
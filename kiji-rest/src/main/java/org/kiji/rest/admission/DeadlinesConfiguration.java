@@ -0,0 +1,74 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Map;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * Configuration of request deadlines.
+ */
+public class DeadlinesConfiguration {
+  /** Whether requests have deadlines. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Largest timeout a client may ask for, in milliseconds. */
+  @Min(1)
+  @JsonProperty("maxMillis")
+  private long mMaxMillis = 600000;
+
+  /** Number of threads running single-row reads against their deadline. */
+  @Min(1)
+  @JsonProperty("threads")
+  private int mThreads = 64;
+
+  /** Timeout of the requests to each endpoint without a timeout header, in milliseconds. */
+  @JsonProperty("endpoints")
+  private Map<String, Long> mEndpoints = Maps.newHashMap();
+
+  /** @return whether requests have deadlines. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the largest timeout a client may ask for, in milliseconds. */
+  public final long getMaxMillis() {
+    return mMaxMillis;
+  }
+
+  /** @return the number of threads running single-row reads against their deadline. */
+  public final int getThreads() {
+    return mThreads;
+  }
+
+  /**
+   * Gets the default timeout of the requests to an endpoint.
+   *
+   * @param endpoint requested.
+   * @return the timeout in milliseconds, or null if the requests have no deadline by default.
+   */
+  public final Long getDefaultMillis(Endpoint endpoint) {
+    return mEndpoints.get(endpoint.getName());
+  }
+}
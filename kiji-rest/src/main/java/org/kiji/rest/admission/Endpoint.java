@@ -0,0 +1,101 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.List;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The endpoints of KijiREST, as named in the configuration of per-endpoint settings.
+ */
+public enum Endpoint {
+  ROOT("root", RequestClass.ADMIN),
+  INSTANCES("instances", RequestClass.ADMIN),
+  INSTANCE("instance", RequestClass.ADMIN),
+  TABLES("tables", RequestClass.ADMIN),
+  TABLE("table", RequestClass.ADMIN),
+  ENTITY_ID("entityId", RequestClass.INTERACTIVE),
+  ROWS("rows", RequestClass.BULK),
+  ROW("row", RequestClass.INTERACTIVE);
+
+  private final String mName;
+  private final RequestClass mRequestClass;
+
+  /**
+   * Constructs an endpoint.
+   *
+   * @param name of the endpoint in the configuration.
+   * @param requestClass of the requests to the endpoint, by default.
+   */
+  private Endpoint(String name, RequestClass requestClass) {
+    mName = name;
+    mRequestClass = requestClass;
+  }
+
+  /** @return the name of the endpoint in the configuration. */
+  public String getName() {
+    return mName;
+  }
+
+  /** @return the class of the requests to the endpoint, by default. */
+  public RequestClass getRequestClass() {
+    return mRequestClass;
+  }
+
+  /**
+   * Finds the endpoint of a request path.
+   *
+   * @param path of the request, such as "/v1/instances/foo/tables/bar/rows".
+   * @return the endpoint serving the path.
+   */
+  public static Endpoint of(String path) {
+    final List<String> segments =
+        ImmutableList.copyOf(Splitter.on('/').omitEmptyStrings().split(path));
+    // Paths under /v1/instances/{instance}/tables/{table}/.
+    final int instances = segments.indexOf("instances");
+    if (instances < 0) {
+      return ROOT;
+    }
+    switch (segments.size() - instances) {
+      case 1:
+        return INSTANCES;
+      case 2:
+        return INSTANCE;
+      case 3:
+        return TABLES;
+      case 4:
+        return TABLE;
+      default:
+        break;
+    }
+    final String resource = segments.get(instances + 4);
+    if ("entityId".equals(resource)) {
+      return ENTITY_ID;
+    } else if ("rows".equals(resource)) {
+      if (segments.size() > instances + 5) {
+        return ROW;
+      }
+      return ROWS;
+    }
+    return TABLE;
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.collect.ImmutableList;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+
+/**
+ * The lane serving the requests of a class: a bound on the requests of the class served at
+ * once, and a share of the tables leased from HBase at once. Requests of one class thus never
+ * wait behind those of another.
+ *
+ * <p>A request finding its lane full is shed at once rather than queued: waiting would hold a
+ * thread of the container's shared pool, and a burst of bulk requests waiting for their lane
+ * would leave no thread to accept interactive requests with. A lane thus holds at most its
+ * number of threads of the container's pool.</p>
+ */
+public final class Lane {
+  private final RequestClass mRequestClass;
+  private final int mThreads;
+  private final long mQueueTimeoutMillis;
+  private final int mHBasePermits;
+  private final Semaphore mAvailable;
+  private final Semaphore mHBaseAvailable;
+  private final Meter mRejected;
+  private final List<MetricName> mMetrics;
+
+  /**
+   * Constructs a lane.
+   *
+   * @param requestClass served by the lane.
+   * @param configuration of the lane.
+   * @param hbasePermits is the number of tables leased from HBase at once by all classes.
+   */
+  public Lane(RequestClass requestClass, LaneConfiguration configuration, int hbasePermits) {
+    mRequestClass = requestClass;
+    mThreads = configuration.getThreads();
+    mQueueTimeoutMillis = configuration.getQueueTimeoutMillis();
+    mHBasePermits =
+        Math.max(1, (int) Math.ceil(hbasePermits * configuration.getHBaseShare()));
+    mAvailable = new Semaphore(mThreads);
+    mHBaseAvailable = new Semaphore(mHBasePermits);
+
+    final String scope = requestClass.name().toLowerCase();
+    final MetricName active = new MetricName(Lane.class, "active", scope);
+    Metrics.newGauge(active, new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getActive();
+      }
+    });
+    final MetricName hbaseActive = new MetricName(Lane.class, "hbase-active", scope);
+    Metrics.newGauge(hbaseActive, new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return mHBasePermits - mHBaseAvailable.availablePermits();
+      }
+    });
+    final MetricName rejected = new MetricName(Lane.class, "rejected", scope);
+    mRejected = Metrics.newMeter(rejected, "requests", TimeUnit.SECONDS);
+    mMetrics = ImmutableList.of(active, hbaseActive, rejected);
+  }
+
+  /** @return the class of the requests served by the lane. */
+  public RequestClass getRequestClass() {
+    return mRequestClass;
+  }
+
+  /**
+   * Starts serving a request if the lane has room for it, to be followed by a call to
+   * {@link #exit()} if granted. Never waits.
+   *
+   * @return whether the request may be served.
+   */
+  public boolean tryEnter() {
+    if (mAvailable.tryAcquire()) {
+      return true;
+    }
+    mRejected.mark();
+    return false;
+  }
+
+  /** @return the number of requests being served in the lane. */
+  public int getActive() {
+    return mThreads - mAvailable.availablePermits();
+  }
+
+  /** Ends a request granted by {@link #tryEnter()}. */
+  public void exit() {
+    mAvailable.release();
+  }
+
+  /**
+   * Takes one of the lane's share of HBase permits, to be given back with
+   * {@link #releaseHBase()}, waiting for one up to the queue timeout or the deadline of the
+   * request. Only requests already served in the lane wait, so the lane's share of the
+   * container's threads bounds the waiting threads too.
+   *
+   * @throws WebApplicationException with 503 if no permit becomes available in time, or 504 if
+   *     the deadline of the request expired.
+   */
+  public void acquireHBase() {
+    boolean acquired;
+    try {
+      acquired = mHBaseAvailable.tryAcquire(
+          Deadline.boundMillis(mQueueTimeoutMillis), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      acquired = false;
+    }
+    if (!acquired) {
+      Deadline.checkCurrent();
+      mRejected.mark();
+      throw new WebApplicationException(new IOException("Too many "
+          + mRequestClass.name().toLowerCase() + " requests to HBase."),
+          Status.SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /** Gives back a permit taken with {@link #acquireHBase()}. */
+  public void releaseHBase() {
+    mHBaseAvailable.release();
+  }
+
+  /** Removes the metrics of the lane. */
+  public void close() {
+    for (MetricName metric : mMetrics) {
+      Metrics.defaultRegistry().removeMetric(metric);
+    }
+  }
+}
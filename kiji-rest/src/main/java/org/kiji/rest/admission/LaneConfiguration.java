@@ -0,0 +1,76 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the lane of a request class.
+ */
+public class LaneConfiguration {
+  /** Number of requests of the class served concurrently. */
+  @Min(1)
+  @JsonProperty("threads")
+  private int mThreads = 16;
+
+  /** Time a request waits for an HBase permit of the class before it is shed, in milliseconds. */
+  @Min(0)
+  @JsonProperty("queueTimeoutMillis")
+  private long mQueueTimeoutMillis = 1000;
+
+  /** Share of the HBase permits the class may use at once. */
+  @Min(0)
+  @Max(1)
+  @JsonProperty("hbaseShare")
+  private double mHBaseShare = 0.5;
+
+  /** Constructs the default configuration of a lane. */
+  public LaneConfiguration() {
+  }
+
+  /**
+   * Constructs the configuration of a lane.
+   *
+   * @param threads is the number of requests served concurrently.
+   * @param hbaseShare is the share of the HBase permits the class may use at once.
+   */
+  public LaneConfiguration(int threads, double hbaseShare) {
+    mThreads = threads;
+    mHBaseShare = hbaseShare;
+  }
+
+  /** @return the number of requests of the class served concurrently. */
+  public final int getThreads() {
+    return mThreads;
+  }
+
+  /** @return the time a request waits for an HBase permit before it is shed, in milliseconds. */
+  public final long getQueueTimeoutMillis() {
+    return mQueueTimeoutMillis;
+  }
+
+  /** @return the share of the HBase permits the class may use at once. */
+  public final double getHBaseShare() {
+    return mHBaseShare;
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Collection;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.LeasedTable;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+
+/**
+ * A KijiClient taking a permit from the HBase share of the lane of the current request's class
+ * for every table lease, until the table is released.
+ */
+public final class LanedKijiClient implements KijiClient {
+  private final KijiClient mKijiClient;
+  private final Lanes mLanes;
+
+  /**
+   * Constructs a client leasing tables within the HBase shares of the lanes.
+   *
+   * @param kijiClient to lease tables from.
+   * @param lanes whose HBase shares bound the leases.
+   */
+  public LanedKijiClient(KijiClient kijiClient, Lanes lanes) {
+    mKijiClient = kijiClient;
+    mLanes = lanes;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Kiji getKiji(String instance) {
+    return mKijiClient.getKiji(instance);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<KijiURI> getInstances() {
+    return mKijiClient.getInstances();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws javax.ws.rs.WebApplicationException with 503 if the lane's HBase share is used up.
+   */
+  @Override
+  public KijiTable getKijiTable(String instance, String table) {
+    final Lane lane = mLanes.get(RequestClass.current());
+    lane.acquireHBase();
+    final KijiTable kijiTable;
+    try {
+      kijiTable = mKijiClient.getKijiTable(instance, table);
+    } catch (RuntimeException re) {
+      lane.releaseHBase();
+      throw re;
+    }
+    return LeasedTable.wrap(kijiTable, new Runnable() {
+      @Override
+      public void run() {
+        lane.releaseHBase();
+      }
+    });
+  }
+}
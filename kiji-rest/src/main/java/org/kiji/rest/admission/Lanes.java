@@ -0,0 +1,68 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.yammer.dropwizard.lifecycle.Managed;
+
+/**
+ * The lanes serving each request class.
+ */
+public final class Lanes implements Managed {
+  private final Map<RequestClass, Lane> mLanes =
+      new EnumMap<RequestClass, Lane>(RequestClass.class);
+
+  /**
+   * Constructs the lanes.
+   *
+   * @param configuration of the lanes.
+   */
+  public Lanes(LanesConfiguration configuration) {
+    for (RequestClass requestClass : RequestClass.values()) {
+      mLanes.put(requestClass, new Lane(requestClass, configuration.getLane(requestClass),
+          configuration.getHBasePermits()));
+    }
+  }
+
+  /**
+   * Gets the lane of a request class.
+   *
+   * @param requestClass served by the lane.
+   * @return the lane.
+   */
+  public Lane get(RequestClass requestClass) {
+    return mLanes.get(requestClass);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void stop() {
+    for (Lane lane : mLanes.values()) {
+      lane.close();
+    }
+  }
+}
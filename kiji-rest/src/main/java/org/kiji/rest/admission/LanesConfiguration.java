@@ -0,0 +1,85 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the lanes serving each request class.
+ */
+public class LanesConfiguration {
+  /** Whether requests are served in the lanes of their class. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Number of tables leased from HBase at once, shared between the request classes. */
+  @Min(1)
+  @JsonProperty("hbasePermits")
+  private int mHBasePermits = 64;
+
+  /** Lane of the interactive requests. */
+  @Valid
+  @NotNull
+  @JsonProperty("interactive")
+  private LaneConfiguration mInteractive = new LaneConfiguration(128, 1.0);
+
+  /** Lane of the bulk requests. */
+  @Valid
+  @NotNull
+  @JsonProperty("bulk")
+  private LaneConfiguration mBulk = new LaneConfiguration(8, 0.25);
+
+  /** Lane of the admin requests. */
+  @Valid
+  @NotNull
+  @JsonProperty("admin")
+  private LaneConfiguration mAdmin = new LaneConfiguration(4, 0.1);
+
+  /** @return whether requests are served in the lanes of their class. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the number of tables leased from HBase at once. */
+  public final int getHBasePermits() {
+    return mHBasePermits;
+  }
+
+  /**
+   * Gets the configuration of the lane of a request class.
+   *
+   * @param requestClass served by the lane.
+   * @return the configuration of the lane.
+   */
+  public final LaneConfiguration getLane(RequestClass requestClass) {
+    switch (requestClass) {
+      case BULK:
+        return mBulk;
+      case ADMIN:
+        return mAdmin;
+      default:
+        return mInteractive;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Collection;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.LeasedTable;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+
+/**
+ * A KijiClient admitting every table lease through an adaptive limiter, as a request of the
+ * class of the request served by the current thread. The lease counts as in flight until the
+ * table is released.
+ */
+public final class LimitedKijiClient implements KijiClient {
+  private final KijiClient mKijiClient;
+  private final AdaptiveLimiter mLimiter;
+
+  /**
+   * Constructs a client admitting leases through a limiter.
+   *
+   * @param kijiClient to lease tables from.
+   * @param limiter to admit leases through.
+   */
+  public LimitedKijiClient(KijiClient kijiClient, AdaptiveLimiter limiter) {
+    mKijiClient = kijiClient;
+    mLimiter = limiter;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Kiji getKiji(String instance) {
+    return mKijiClient.getKiji(instance);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<KijiURI> getInstances() {
+    return mKijiClient.getInstances();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws javax.ws.rs.WebApplicationException with 503 if the request is shed.
+   */
+  @Override
+  public KijiTable getKijiTable(String instance, String table) {
+    final RequestClass requestClass = RequestClass.current();
+    mLimiter.acquire(requestClass);
+    final long startNanos = System.nanoTime();
+    final KijiTable kijiTable;
+    try {
+      kijiTable = mKijiClient.getKijiTable(instance, table);
+    } catch (RuntimeException re) {
+      mLimiter.release(requestClass, 0);
+      throw re;
+    }
+    return LeasedTable.wrap(kijiTable, new Runnable() {
+      @Override
+      public void run() {
+        mLimiter.release(requestClass, System.nanoTime() - startNanos);
+      }
+    });
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of a quota: a token bucket refilled at a steady rate up to a burst.
+ */
+public class QuotaConfiguration {
+  /** Number of units a client may use per second, on average. */
+  @Min(0)
+  @JsonProperty("rate")
+  private double mRate = 1000;
+
+  /** Number of units a client may use at once after staying idle. */
+  @Min(1)
+  @JsonProperty("burst")
+  private long mBurst = 10000;
+
+  /** @return the number of units a client may use per second, on average. */
+  public final double getRate() {
+    return mRate;
+  }
+
+  /** @return the number of units a client may use at once after staying idle. */
+  public final long getBurst() {
+    return mBurst;
+  }
+}
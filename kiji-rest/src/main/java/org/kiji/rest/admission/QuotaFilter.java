@@ -0,0 +1,170 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Admits the requests on rows against the quotas of their client, identified by the client
+ * header or else by the API key header. Reads are bounded in rows read and bytes streamed,
+ * writes in cells written. A client that used up its quota on any of them gets 429 Too Many
+ * Requests, with a Retry-After header and the quota in the {@value #LIMIT_HEADER} and
+ * {@value #REMAINING_HEADER} headers, which admitted requests also get.
+ */
+public final class QuotaFilter implements Filter {
+  /** Header carrying the rate of the quota, per second. */
+  public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+
+  /** Header carrying the units left in the quota. */
+  public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+  /** Status of a request over its quota. */
+  public static final int TOO_MANY_REQUESTS = 429;
+
+  /** Identity of the clients sending neither header. */
+  private static final String ANONYMOUS = "anonymous";
+
+  private static final QuotaOperation[] READS =
+      {QuotaOperation.ROWS_READ, QuotaOperation.BYTES_STREAMED};
+  private static final QuotaOperation[] WRITES = {QuotaOperation.CELLS_WRITTEN};
+
+  private final Quotas mQuotas;
+
+  /**
+   * Constructs a filter admitting requests against quotas.
+   *
+   * @param quotas of the clients.
+   */
+  public QuotaFilter(Quotas quotas) {
+    mQuotas = quotas;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void init(FilterConfig filterConfig) {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    final HttpServletRequest httpRequest = (HttpServletRequest) request;
+    final HttpServletResponse httpResponse = (HttpServletResponse) response;
+    final QuotaOperation[] operations = getOperations(httpRequest);
+    if (null == operations) {
+      chain.doFilter(request, response);
+      return;
+    }
+    // Paths under /v1/instances/{instance}/tables/{table}/rows.
+    final List<String> segments = ImmutableList.copyOf(
+        Splitter.on('/').omitEmptyStrings().split(httpRequest.getRequestURI()));
+    final int instances = segments.indexOf("instances");
+    final ClientQuota quota = mQuotas.get(getClient(httpRequest),
+        segments.get(instances + 1), segments.get(instances + 3), operations);
+
+    // The headers describe the quota closest to being used up.
+    QuotaOperation tightest = null;
+    double tightestShare = Double.MAX_VALUE;
+    for (Map.Entry<QuotaOperation, StripedTokenBucket> entry : quota.getBuckets().entrySet()) {
+      final StripedTokenBucket bucket = entry.getValue();
+      final double share = (double) bucket.getAvailable() / bucket.getBurst();
+      if (share < tightestShare) {
+        tightest = entry.getKey();
+        tightestShare = share;
+      }
+    }
+    if (null != tightest) {
+      final StripedTokenBucket bucket = quota.getBuckets().get(tightest);
+      final long available = bucket.getAvailable();
+      httpResponse.setHeader(LIMIT_HEADER, String.valueOf((long) bucket.getRate()));
+      httpResponse.setHeader(REMAINING_HEADER, String.valueOf(Math.max(0, available)));
+      if (available < 1) {
+        mQuotas.markRejected();
+        httpResponse.setHeader("Retry-After",
+            String.valueOf(Math.max(1, (bucket.getRetryAfterMillis() + 999) / 1000)));
+        httpResponse.sendError(TOO_MANY_REQUESTS,
+            "Quota of " + tightest.getName() + " exceeded for " + quota.getClient() + ".");
+        return;
+      }
+    }
+
+    ClientQuota.setCurrent(quota);
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      ClientQuota.clearCurrent();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void destroy() {
+  }
+
+  /**
+   * Gets the operations a request may carry out.
+   *
+   * @param request to admit.
+   * @return the operations of the request, or null if it is not bounded by quotas.
+   */
+  private static QuotaOperation[] getOperations(HttpServletRequest request) {
+    final Endpoint endpoint = Endpoint.of(request.getRequestURI());
+    final String method = request.getMethod();
+    if (Endpoint.ROW == endpoint || Endpoint.ROWS == endpoint) {
+      if ("GET".equals(method)) {
+        return READS;
+      } else if ("PUT".equals(method) || "POST".equals(method)) {
+        return WRITES;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Identifies the client of a request.
+   *
+   * @param request to admit.
+   * @return the identity of the client.
+   */
+  private String getClient(HttpServletRequest request) {
+    final String client = request.getHeader(mQuotas.getConfiguration().getClientHeader());
+    if (null != client) {
+      return client;
+    }
+    final String apiKey = request.getHeader(mQuotas.getConfiguration().getApiKeyHeader());
+    if (null != apiKey) {
+      return apiKey;
+    }
+    return ANONYMOUS;
+  }
+}
@@ -0,0 +1,44 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+/**
+ * The operations whose use quotas bound, as named in the configuration of quotas.
+ */
+public enum QuotaOperation {
+  /** Rows read, by single-row reads and scans. */
+  ROWS_READ("rowsRead"),
+  /** Bytes of rows streamed to the client by scans. */
+  BYTES_STREAMED("bytesStreamed"),
+  /** Cells written, by single-row and batch writes. */
+  CELLS_WRITTEN("cellsWritten");
+
+  private final String mName;
+
+  /** @param name of the operation in the configuration. */
+  private QuotaOperation(String name) {
+    mName = name;
+  }
+
+  /** @return the name of the operation in the configuration. */
+  public String getName() {
+    return mName;
+  }
+}
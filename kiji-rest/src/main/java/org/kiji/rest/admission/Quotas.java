@@ -0,0 +1,111 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.EnumMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Meter;
+
+/**
+ * The token buckets of the quotas of clients, by client, table and operation. The buckets of a
+ * client idle for long enough are forgotten, and are full again when it comes back.
+ */
+public final class Quotas {
+  private static final Meter REJECTED =
+      Metrics.newMeter(Quotas.class, "rejected", "requests", TimeUnit.SECONDS);
+
+  private final QuotasConfiguration mConfiguration;
+  private final Cache<String, StripedTokenBucket> mBuckets;
+
+  /**
+   * Constructs the quotas.
+   *
+   * @param configuration of the quotas.
+   */
+  public Quotas(QuotasConfiguration configuration) {
+    mConfiguration = configuration;
+    mBuckets = CacheBuilder.newBuilder()
+        .expireAfterAccess(configuration.getIdleMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /** @return the configuration of the quotas. */
+  public QuotasConfiguration getConfiguration() {
+    return mConfiguration;
+  }
+
+  /**
+   * Gets the quotas of a client on some operations of a table.
+   *
+   * @param client identity.
+   * @param instance name.
+   * @param table name.
+   * @param operations the request may carry out.
+   * @return the quotas of the client on the bounded operations among those.
+   */
+  public ClientQuota get(String client, String instance, String table,
+      QuotaOperation... operations) {
+    final EnumMap<QuotaOperation, StripedTokenBucket> buckets =
+        new EnumMap<QuotaOperation, StripedTokenBucket>(QuotaOperation.class);
+    for (QuotaOperation operation : operations) {
+      final QuotaConfiguration quota = mConfiguration.getQuota(instance, table, operation);
+      if (null != quota) {
+        buckets.put(operation, getBucket(
+            client + "|" + instance + "/" + table + "|" + operation.getName(), quota));
+      }
+    }
+    return new ClientQuota(client, buckets);
+  }
+
+  /** Counts a request rejected for going over its quota. */
+  void markRejected() {
+    REJECTED.mark();
+  }
+
+  /**
+   * Gets a bucket, creating it full if needed.
+   *
+   * @param key of the bucket.
+   * @param quota of the bucket, if created.
+   * @return the bucket.
+   */
+  private StripedTokenBucket getBucket(String key, final QuotaConfiguration quota) {
+    try {
+      return mBuckets.get(key, new Callable<StripedTokenBucket>() {
+        @Override
+        public StripedTokenBucket call() {
+          return new StripedTokenBucket(quota.getRate(), quota.getBurst(),
+              mConfiguration.getStripes());
+        }
+      });
+    } catch (ExecutionException ee) {
+      throw new IllegalStateException(ee.getCause());
+    } catch (UncheckedExecutionException uee) {
+      throw new IllegalStateException(uee.getCause());
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Map;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * Configuration of the quotas of clients.
+ */
+public class QuotasConfiguration {
+  /** Whether clients have quotas. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Header identifying the client of a request. */
+  @JsonProperty("clientHeader")
+  private String mClientHeader = "X-Client-Id";
+
+  /** Header carrying the API key of a client, identifying it when it sends no client id. */
+  @JsonProperty("apiKeyHeader")
+  private String mApiKeyHeader = "X-Api-Key";
+
+  /** Number of stripes of a token bucket, or 0 for the number of processors. */
+  @Min(0)
+  @JsonProperty("stripes")
+  private int mStripes = 0;
+
+  /** Time after which the buckets of an idle client are forgotten, in milliseconds. */
+  @Min(1)
+  @JsonProperty("idleMillis")
+  private long mIdleMillis = 600000;
+
+  /** Quotas of every table, by operation. */
+  @JsonProperty("defaults")
+  private Map<String, QuotaConfiguration> mDefaults = Maps.newHashMap();
+
+  /** Quotas by "instance" or "instance/table", then by operation, overriding the defaults. */
+  @JsonProperty("tables")
+  private Map<String, Map<String, QuotaConfiguration>> mTables = Maps.newHashMap();
+
+  /** @return whether clients have quotas. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the header identifying the client of a request. */
+  public final String getClientHeader() {
+    return mClientHeader;
+  }
+
+  /** @return the header carrying the API key of a client. */
+  public final String getApiKeyHeader() {
+    return mApiKeyHeader;
+  }
+
+  /** @return the number of stripes of a token bucket. */
+  public final int getStripes() {
+    if (0 == mStripes) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return mStripes;
+  }
+
+  /** @return the time after which the buckets of an idle client are forgotten. */
+  public final long getIdleMillis() {
+    return mIdleMillis;
+  }
+
+  /**
+   * Gets the quota of an operation on a table, from the most specific configuration.
+   *
+   * @param instance name.
+   * @param table name.
+   * @param operation bounded.
+   * @return the quota, or null if the operation is unbounded on the table.
+   */
+  public final QuotaConfiguration getQuota(String instance, String table,
+      QuotaOperation operation) {
+    for (String key : new String[] {instance + "/" + table, instance}) {
+      final Map<String, QuotaConfiguration> quotas = mTables.get(key);
+      if (null != quotas && quotas.containsKey(operation.getName())) {
+        return quotas.get(operation.getName());
+      }
+    }
+    return mDefaults.get(operation.getName());
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.Set;
+import javax.ws.rs.WebApplicationException;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.KijiTableWriter;
+import org.kiji.schema.NoSuchColumnException;
+
+/**
+ * Forwards calls to a table and to the readers, writers and scanners it opens, recording the
+ * outcome of every call reaching HBase with the circuit breaker of the table, along with whether
+ * the table was leased by a probe of the breaker.
+ */
+final class RecordedTable implements InvocationHandler {
+  /** Types of the objects opened from a table whose calls are recorded. */
+  private static final Set<Class<?>> RECORDED_TYPES = ImmutableSet.<Class<?>>of(
+      KijiTableReader.class, KijiTableWriter.class, KijiRowScanner.class, Iterator.class);
+
+  /** Methods which do not reach HBase. */
+  private static final Set<String> LOCAL_METHODS =
+      ImmutableSet.of("close", "iterator", "remove", "toString", "hashCode", "equals");
+
+  private final Object mTarget;
+  private final CircuitBreaker mBreaker;
+  private final long mSlowCallNanos;
+
+  /** Whether the table was leased by a probe of the breaker. */
+  private final boolean mProbe;
+
+  /** Whether the calls to the target are recorded: false for the table itself. */
+  private final boolean mRecorded;
+
+  /**
+   * @param target of the calls.
+   * @param breaker recording the calls.
+   * @param slowCallNanos is the latency beyond which a call counts as failed.
+   * @param probe is whether the table was leased by a probe of the breaker.
+   * @param recorded is whether the calls to the target are recorded.
+   */
+  private RecordedTable(Object target, CircuitBreaker breaker, long slowCallNanos,
+      boolean probe, boolean recorded) {
+    mTarget = target;
+    mBreaker = breaker;
+    mSlowCallNanos = slowCallNanos;
+    mProbe = probe;
+    mRecorded = recorded;
+  }
+
+  /**
+   * Wraps a table.
+   *
+   * @param table to wrap.
+   * @param breaker of the table.
+   * @param slowCallMillis is the latency beyond which a call counts as failed.
+   * @param probe is whether the table was leased by a probe of the breaker.
+   * @return the table to hand out in place of the given one.
+   */
+  static KijiTable wrap(KijiTable table, CircuitBreaker breaker, long slowCallMillis,
+      boolean probe) {
+    return (KijiTable) Proxy.newProxyInstance(KijiTable.class.getClassLoader(),
+        new Class<?>[] {KijiTable.class},
+        new RecordedTable(table, breaker, slowCallMillis * 1000000, probe, false));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final boolean recorded = mRecorded && !LOCAL_METHODS.contains(method.getName());
+    final long startNanos = System.nanoTime();
+    final Object result;
+    try {
+      result = method.invoke(mTarget, args);
+    } catch (InvocationTargetException ite) {
+      final Throwable cause = ite.getCause();
+      if (recorded) {
+        mBreaker.record(!isClientError(cause), mProbe);
+      }
+      throw cause;
+    }
+    if (recorded) {
+      mBreaker.record(System.nanoTime() - startNanos > mSlowCallNanos, mProbe);
+    }
+
+    if (result == mTarget) {
+      // Such as retain(), returning the table itself.
+      return proxy;
+    }
+    final Class<?> type = method.getReturnType();
+    if (null != result && RECORDED_TYPES.contains(type)) {
+      return Proxy.newProxyInstance(RecordedTable.class.getClassLoader(), new Class<?>[] {type},
+          new RecordedTable(result, mBreaker, mSlowCallNanos, mProbe, true));
+    }
+    return result;
+  }
+
+  /**
+   * @param error thrown by a call.
+   * @return whether the error is the fault of the request rather than of the table.
+   */
+  private static boolean isClientError(Throwable error) {
+    if (error instanceof WebApplicationException) {
+      return ((WebApplicationException) error).getResponse().getStatus() < 500;
+    }
+    return error instanceof IllegalArgumentException || error instanceof NoSuchColumnException;
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.Locale;
+
+/**
+ * The class of a request, which decides how it is admitted when KijiREST is under load.
+ * Interactive requests, such as single-row reads and writes, are cheap and latency-sensitive;
+ * bulk requests, such as scans and batch writes or deletes, may hold a table for a long time;
+ * admin requests, such as listing instances and tables or reading layouts and metadata, are
+ * rare but should not queue behind either.
+ *
+ * <p>The class of the request being served by the current thread is set by the
+ * {@link RequestClassifier} as the request comes in.</p>
+ */
+public enum RequestClass {
+  INTERACTIVE,
+  BULK,
+  ADMIN;
+
+  /** Class of the request served by the current thread. */
+  private static final ThreadLocal<RequestClass> CURRENT = new ThreadLocal<RequestClass>();
+
+  /** @return the class of the request served by the current thread, interactive by default. */
+  public static RequestClass current() {
+    final RequestClass requestClass = CURRENT.get();
+    if (null == requestClass) {
+      return INTERACTIVE;
+    }
+    return requestClass;
+  }
+
+  /** @param requestClass of the request served by the current thread from now on. */
+  public static void setCurrent(RequestClass requestClass) {
+    CURRENT.set(requestClass);
+  }
+
+  /** Forgets the class of the request served by the current thread. */
+  public static void clearCurrent() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Parses the name of a request class, regardless of case.
+   *
+   * @param name of the request class.
+   * @return the request class, or null if the name is null or not that of a request class.
+   */
+  public static RequestClass parse(String name) {
+    if (null == name) {
+      return null;
+    }
+    try {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException iae) {
+      return null;
+    }
+  }
+}
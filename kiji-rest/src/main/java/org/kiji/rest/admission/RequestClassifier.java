@@ -0,0 +1,160 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricName;
+
+/**
+ * Classifies incoming requests by endpoint, sets their deadline when deadlines are enabled,
+ * and serves each in the lane of its class when lanes are enabled.
+ *
+ * <ul>
+ *   <li>Reads, writes and deletes of a single row, including a GET on the collection of rows
+ *       with an entity id, and entity id lookups are interactive.</li>
+ *   <li>Other requests on the collection of rows (scans, batch writes and batch deletes) are
+ *       bulk.</li>
+ *   <li>Every other request, on instances, tables, layouts and metadata, is admin.</li>
+ * </ul>
+ *
+ * <p>A client may override the class of its request with the {@value #REQUEST_CLASS_HEADER}
+ * header, for instance to mark a batch of single-row reads as bulk. The latency of the
+ * requests of each class, up to the end of the response, goes to a histogram of its own.</p>
+ */
+public final class RequestClassifier implements Filter {
+  /** Header overriding the class of a request: "interactive", "bulk" or "admin". */
+  public static final String REQUEST_CLASS_HEADER = "X-Request-Class";
+
+  /** Lanes serving the requests, or null if disabled. */
+  private final Lanes mLanes;
+
+  /** Deadlines of the requests, or null if disabled. */
+  private final Deadlines mDeadlines;
+
+  /** Latency of the requests, in milliseconds, by class. */
+  private final Map<RequestClass, Histogram> mLatencies =
+      new EnumMap<RequestClass, Histogram>(RequestClass.class);
+
+  /**
+   * Constructs a classifier serving requests in lanes, against deadlines.
+   *
+   * @param lanes serving the requests, or null to only classify them.
+   * @param deadlines of the requests, or null if requests have no deadlines.
+   */
+  public RequestClassifier(Lanes lanes, Deadlines deadlines) {
+    mLanes = lanes;
+    mDeadlines = deadlines;
+    for (RequestClass requestClass : RequestClass.values()) {
+      mLatencies.put(requestClass, Metrics.newHistogram(new MetricName(RequestClassifier.class,
+          "latency-millis", requestClass.name().toLowerCase()), true));
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void init(FilterConfig filterConfig) {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    final HttpServletRequest httpRequest = (HttpServletRequest) request;
+    final HttpServletResponse httpResponse = (HttpServletResponse) response;
+    final Endpoint endpoint = Endpoint.of(httpRequest.getRequestURI());
+    final RequestClass requestClass = classify(httpRequest, endpoint);
+    final long startNanos = System.nanoTime();
+    Deadline deadline = null;
+    if (null != mDeadlines) {
+      try {
+        deadline = mDeadlines.newDeadline(endpoint,
+            httpRequest.getHeader(Deadline.TIMEOUT_HEADER));
+      } catch (IllegalArgumentException iae) {
+        httpResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, iae.getMessage());
+        return;
+      }
+    }
+    RequestClass.setCurrent(requestClass);
+    Deadline.setCurrent(deadline);
+    try {
+      Lane lane = null;
+      if (null != mLanes) {
+        lane = mLanes.get(requestClass);
+        // Sheds the request rather than holding a container thread while the lane is full.
+        if (!lane.tryEnter()) {
+          httpResponse.setHeader("Retry-After", "1");
+          httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+              "Too many " + requestClass.name().toLowerCase() + " requests.");
+          return;
+        }
+      }
+      try {
+        chain.doFilter(request, response);
+      } finally {
+        if (null != lane) {
+          lane.exit();
+        }
+        mLatencies.get(requestClass).update(
+            (System.nanoTime() - startNanos) / 1000000);
+      }
+    } finally {
+      Deadline.clearCurrent();
+      RequestClass.clearCurrent();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void destroy() {
+  }
+
+  /**
+   * Classifies a request.
+   *
+   * @param request to classify.
+   * @param endpoint requested.
+   * @return the class of the request.
+   */
+  static RequestClass classify(HttpServletRequest request, Endpoint endpoint) {
+    final RequestClass override = RequestClass.parse(request.getHeader(REQUEST_CLASS_HEADER));
+    if (null != override) {
+      return override;
+    }
+    // Only a GET has no form body that looking up the parameter could consume.
+    if (Endpoint.ROWS == endpoint && "GET".equals(request.getMethod())
+        && null != request.getParameter("eid")) {
+      return RequestClass.INTERACTIVE;
+    }
+    return endpoint.getRequestClass();
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The admission state of the request served by a thread: its class, deadline, quota and the
+ * bulkhead it runs in. Work a request hands to other threads carries the state along, so that it
+ * is admitted, bounded and charged as part of the request.
+ */
+public final class RequestContext {
+  private final RequestClass mRequestClass;
+  private final Deadline mDeadline;
+  private final ClientQuota mQuota;
+  private final Bulkhead mBulkhead;
+
+  /**
+   * @param requestClass of the request.
+   * @param deadline of the request, or null.
+   * @param quota of the client of the request, or null.
+   * @param bulkhead the request runs in, or null.
+   */
+  private RequestContext(RequestClass requestClass, Deadline deadline, ClientQuota quota,
+      Bulkhead bulkhead) {
+    mRequestClass = requestClass;
+    mDeadline = deadline;
+    mQuota = quota;
+    mBulkhead = bulkhead;
+  }
+
+  /** @return the admission state of the request served by the current thread. */
+  public static RequestContext capture() {
+    return new RequestContext(RequestClass.current(), Deadline.current(), ClientQuota.current(),
+        Bulkhead.current());
+  }
+
+  /**
+   * Wraps a call to run in another thread as part of the request.
+   *
+   * @param callable to run.
+   * @param <T> is the type of the result.
+   * @return the call, running with the state of the request and forgetting it afterwards.
+   */
+  public <T> Callable<T> wrap(final Callable<T> callable) {
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        RequestClass.setCurrent(mRequestClass);
+        Deadline.setCurrent(mDeadline);
+        ClientQuota.setCurrent(mQuota);
+        Bulkhead.setCurrent(mBulkhead);
+        try {
+          return callable.call();
+        } finally {
+          RequestClass.clearCurrent();
+          Deadline.clearCurrent();
+          ClientQuota.clearCurrent();
+          Bulkhead.clearCurrent();
+        }
+      }
+    };
+  }
+}
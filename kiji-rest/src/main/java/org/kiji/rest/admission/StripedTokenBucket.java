@@ -0,0 +1,147 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A token bucket split in stripes updated without locks, so that concurrent requests of a
+ * client charge it without contending on a single counter.
+ *
+ * <p>Each stripe is refilled at its share of the rate, up to its share of the burst, and keeps
+ * the time at which it would be full again, as in the generic cell rate algorithm. A request
+ * charges the stripe of its thread first, then takes what it still needs from the other stripes,
+ * and runs the stripe of its thread into debt only once every stripe is empty. The tokens of
+ * every stripe can thus be spent by any thread, so the tokens available are the sum of those of
+ * every stripe, even when a client's requests are all served by the same thread.</p>
+ */
+public final class StripedTokenBucket {
+  /** Slots per stripe, so that stripes sit on distinct cache lines. */
+  private static final int PADDING = 8;
+
+  private final double mRate;
+  private final long mBurst;
+  private final int mStripes;
+
+  /** Time a stripe takes to earn a token, in nanoseconds. */
+  private final double mIntervalNanos;
+
+  /** Time a stripe takes to fill up, in nanoseconds. */
+  private final long mToleranceNanos;
+
+  /** Time at which each stripe is full, in nanoseconds: in the past if it is full already. */
+  private final AtomicLongArray mFullNanos;
+
+  /**
+   * Constructs a full bucket.
+   *
+   * @param rate is the number of tokens earned per second.
+   * @param burst is the number of tokens the bucket holds at most.
+   * @param stripes is the number of stripes the bucket is split in.
+   */
+  public StripedTokenBucket(double rate, long burst, int stripes) {
+    mRate = Math.max(rate, Double.MIN_VALUE);
+    mBurst = burst;
+    // Every stripe holds one token at least.
+    mStripes = (int) Math.max(1, Math.min(stripes, burst));
+    mIntervalNanos = mStripes * 1e9 / mRate;
+    mToleranceNanos = (long) Math.min(Long.MAX_VALUE / 4, burst * 1e9 / mRate);
+    mFullNanos = new AtomicLongArray(mStripes * PADDING);
+    final long now = System.nanoTime();
+    for (int stripe = 0; stripe < mStripes; stripe++) {
+      mFullNanos.set(stripe * PADDING, now);
+    }
+  }
+
+  /** @return the number of tokens earned per second. */
+  public double getRate() {
+    return mRate;
+  }
+
+  /** @return the number of tokens the bucket holds at most. */
+  public long getBurst() {
+    return mBurst;
+  }
+
+  /**
+   * Takes tokens from the bucket, running into debt if there are not enough.
+   *
+   * @param tokens to take.
+   */
+  public void charge(long tokens) {
+    if (tokens <= 0) {
+      return;
+    }
+    final int home = (int) (Thread.currentThread().getId() % mStripes);
+    long cost = (long) Math.min(Long.MAX_VALUE / 4, tokens * mIntervalNanos);
+    for (int i = 0; i < mStripes && cost > 0; i++) {
+      cost -= take(((home + i) % mStripes) * PADDING, cost, false);
+    }
+    if (cost > 0) {
+      take(home * PADDING, cost, true);
+    }
+  }
+
+  /**
+   * Takes tokens from a stripe.
+   *
+   * @param slot of the stripe.
+   * @param cost of the tokens to take, in nanoseconds of refill.
+   * @param intoDebt is whether to take all of the tokens, even if the stripe runs into debt.
+   * @return the cost of the tokens taken, in nanoseconds of refill.
+   */
+  private long take(int slot, long cost, boolean intoDebt) {
+    while (true) {
+      final long full = mFullNanos.get(slot);
+      final long now = System.nanoTime();
+      final long start = Math.max(full, now);
+      long taken = cost;
+      if (!intoDebt) {
+        taken = Math.min(cost, now + mToleranceNanos - start);
+        if (taken <= 0) {
+          return 0;
+        }
+      }
+      if (mFullNanos.compareAndSet(slot, full, start + taken)) {
+        return taken;
+      }
+    }
+  }
+
+  /** @return the number of tokens in the bucket, negative if it is in debt. */
+  public long getAvailable() {
+    final long now = System.nanoTime();
+    double available = 0;
+    for (int stripe = 0; stripe < mStripes; stripe++) {
+      final long pending = Math.max(0, mFullNanos.get(stripe * PADDING) - now);
+      available += (mToleranceNanos - pending) / mIntervalNanos;
+    }
+    return (long) Math.floor(available);
+  }
+
+  /** @return the time until the bucket holds a token, in milliseconds, or 0 if it does. */
+  public long getRetryAfterMillis() {
+    final long available = getAvailable();
+    if (available >= 1) {
+      return 0;
+    }
+    return (long) Math.ceil((1 - available) * 1000 / mRate);
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Off-heap memory split into blocks of a fixed size. The memory is allocated in direct slabs as
+ * blocks are first needed, up to the capacity of the arena, and is never given back to the JVM:
+ * freed blocks are reused instead.
+ *
+ * <p>Blocks are allocated and freed under the lock of the owner of the arena. Their contents are
+ * read and written without it, by the thread owning the blocks at the time.</p>
+ */
+final class BlockArena {
+  /** Size of the slabs of direct memory blocks are carved from, in bytes. */
+  private static final int SLAB_BYTES = 1 << 26;
+
+  private final int mBlockBytes;
+  private final int mBlocksPerSlab;
+  private final int mBlocks;
+  private final ByteBuffer[] mSlabs;
+
+  /** Blocks freed and not reused yet. */
+  private final int[] mFree;
+  private int mFreeCount = 0;
+
+  /** Blocks never handed out yet, from this one up. */
+  private int mNextBlock = 0;
+
+  /** Views of the slabs of each thread, so that threads do not share positions and limits. */
+  private final ThreadLocal<ByteBuffer[]> mViews = new ThreadLocal<ByteBuffer[]>() {
+    @Override
+    protected ByteBuffer[] initialValue() {
+      return new ByteBuffer[mSlabs.length];
+    }
+  };
+
+  /**
+   * Constructs an arena. No memory is allocated until blocks are.
+   *
+   * @param capacityBytes is the memory of the arena, in bytes.
+   * @param blockBytes is the size of the blocks, in bytes.
+   */
+  BlockArena(long capacityBytes, int blockBytes) {
+    Preconditions.checkArgument(capacityBytes / blockBytes <= Integer.MAX_VALUE,
+        "Too many blocks of %s bytes in %s bytes.", blockBytes, capacityBytes);
+    mBlockBytes = blockBytes;
+    mBlocksPerSlab = Math.max(1, SLAB_BYTES / blockBytes);
+    mBlocks = (int) (capacityBytes / blockBytes);
+    mSlabs = new ByteBuffer[(mBlocks + mBlocksPerSlab - 1) / mBlocksPerSlab];
+    mFree = new int[mBlocks];
+  }
+
+  /** @return the size of the blocks, in bytes. */
+  int getBlockBytes() {
+    return mBlockBytes;
+  }
+
+  /** @return the number of blocks of the arena. */
+  int getBlocks() {
+    return mBlocks;
+  }
+
+  /** @return the number of blocks which can be allocated. */
+  int getFreeBlocks() {
+    return mFreeCount + mBlocks - mNextBlock;
+  }
+
+  /**
+   * @param length of some bytes.
+   * @return the number of blocks holding them.
+   */
+  int blocksFor(int length) {
+    return (length + mBlockBytes - 1) / mBlockBytes;
+  }
+
+  /**
+   * Allocates blocks. There must be enough free blocks.
+   *
+   * @param count of blocks to allocate.
+   * @return the blocks allocated.
+   */
+  int[] allocate(int count) {
+    Preconditions.checkState(count <= getFreeBlocks(), "Only %s free blocks.", getFreeBlocks());
+    final int[] blocks = new int[count];
+    for (int i = 0; i < count; i++) {
+      if (mFreeCount > 0) {
+        blocks[i] = mFree[--mFreeCount];
+      } else {
+        final int block = mNextBlock++;
+        final int slab = block / mBlocksPerSlab;
+        if (null == mSlabs[slab]) {
+          final int slabBlocks = Math.min(mBlocksPerSlab, mBlocks - slab * mBlocksPerSlab);
+          mSlabs[slab] = ByteBuffer.allocateDirect(slabBlocks * mBlockBytes);
+        }
+        blocks[i] = block;
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Frees blocks.
+   *
+   * @param blocks to free.
+   */
+  void free(int[] blocks) {
+    for (int block : blocks) {
+      mFree[mFreeCount++] = block;
+    }
+  }
+
+  /**
+   * Copies bytes into blocks.
+   *
+   * @param blocks to copy the bytes into, large enough to hold them.
+   * @param bytes to copy.
+   */
+  void write(int[] blocks, byte[] bytes) {
+    int offset = 0;
+    for (int block : blocks) {
+      final int length = Math.min(mBlockBytes, bytes.length - offset);
+      view(block).put(bytes, offset, length);
+      offset += length;
+    }
+  }
+
+  /**
+   * Copies the contents of blocks to the heap.
+   *
+   * @param blocks to copy.
+   * @param length of their contents, in bytes.
+   * @return the contents of the blocks.
+   */
+  byte[] read(int[] blocks, int length) {
+    final byte[] bytes = new byte[length];
+    int offset = 0;
+    for (int block : blocks) {
+      final int blockLength = Math.min(mBlockBytes, length - offset);
+      view(block).get(bytes, offset, blockLength);
+      offset += blockLength;
+    }
+    return bytes;
+  }
+
+  /**
+   * @param block to view.
+   * @return the view of the slab of the block of this thread, positioned at the block.
+   */
+  private ByteBuffer view(int block) {
+    final int slab = block / mBlocksPerSlab;
+    final ByteBuffer[] views = mViews.get();
+    if (null == views[slab]) {
+      // The slab of a block handed out to this thread was allocated before.
+      views[slab] = mSlabs[slab].duplicate();
+    }
+    final ByteBuffer view = views[slab];
+    view.clear();
+    view.position((block % mBlocksPerSlab) * mBlockBytes);
+    return view;
+  }
+}
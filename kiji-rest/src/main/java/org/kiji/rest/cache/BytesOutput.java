@@ -0,0 +1,42 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes a response held on the heap.
+ */
+final class BytesOutput implements StreamingOutput {
+  private final byte[] mBytes;
+
+  /** @param bytes of the response. */
+  BytesOutput(byte[] bytes) {
+    mBytes = bytes;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(OutputStream out) throws IOException {
+    out.write(mBytes);
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.util.Map;
+
+/**
+ * What a cache holds for a table: its number of entries and their size.
+ */
+public final class CacheUsage {
+  private long mEntries = 0;
+  private long mBytes = 0;
+
+  /**
+   * Counts one more entry.
+   *
+   * @param bytes of the entry.
+   */
+  void add(long bytes) {
+    mEntries++;
+    mBytes += bytes;
+  }
+
+  /** @return the number of entries. */
+  public long getEntries() {
+    return mEntries;
+  }
+
+  /** @return the size of the entries, in bytes. */
+  public long getBytes() {
+    return mBytes;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return "entries=" + mEntries + " bytes=" + mBytes;
+  }
+
+  /**
+   * Counts an entry of a table in a map of usages.
+   *
+   * @param usages by instance/table.
+   * @param key of the entry.
+   * @param bytes of the entry.
+   */
+  static void add(Map<String, CacheUsage> usages, RowReadKey key, long bytes) {
+    final String table = key.getInstance() + "/" + key.getTable();
+    CacheUsage usage = usages.get(table);
+    if (null == usage) {
+      usage = new CacheUsage();
+      usages.put(table, usage);
+    }
+    usage.add(bytes);
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.util.Date;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * A cached value along with the validators clients revalidate it with.
+ *
+ * @param <T> is the type of the cached value.
+ */
+public final class CachedValue<T> {
+  private final T mValue;
+  private final String mETag;
+  private final long mLastModified;
+
+  /**
+   * Constructs a cached value.
+   *
+   * @param value cached.
+   * @param eTag is the entity tag of the value.
+   * @param lastModified is the time the value was first seen, in milliseconds since the epoch.
+   */
+  public CachedValue(T value, String eTag, long lastModified) {
+    mValue = value;
+    mETag = eTag;
+    mLastModified = lastModified;
+  }
+
+  /**
+   * Caches a value, tagged by a hash of its string form. The value keeps the last-modified time
+   * of the previously cached value if the two have the same tag.
+   *
+   * @param value to cache.
+   * @param previous value cached under the same key, or null.
+   * @param <T> is the type of the cached value.
+   * @return the cached value.
+   */
+  public static <T> CachedValue<T> of(T value, CachedValue<T> previous) {
+    final String eTag = Hashing.md5().hashString(String.valueOf(value), Charsets.UTF_8).toString();
+    if (null != previous && eTag.equals(previous.getETag())) {
+      return new CachedValue<T>(value, eTag, previous.getLastModified());
+    }
+    return new CachedValue<T>(value, eTag, System.currentTimeMillis());
+  }
+
+  /** @return the cached value. */
+  public T getValue() {
+    return mValue;
+  }
+
+  /** @return the entity tag of the value. */
+  public String getETag() {
+    return mETag;
+  }
+
+  /** @return the time the value was first seen, in milliseconds since the epoch. */
+  public long getLastModified() {
+    return mLastModified;
+  }
+
+  /**
+   * Builds the response serving the value: 304 Not Modified if the request's preconditions
+   * show the client already has it, the value with its validators otherwise.
+   *
+   * @param request whose preconditions to evaluate, or null.
+   * @return the response.
+   */
+  public Response toResponse(Request request) {
+    final EntityTag eTag = new EntityTag(mETag);
+    final Date lastModified = new Date(mLastModified);
+    if (null != request) {
+      final ResponseBuilder notModified = request.evaluatePreconditions(lastModified, eTag);
+      if (null != notModified) {
+        return notModified.tag(eTag).lastModified(lastModified).build();
+      }
+    }
+    return Response.ok(mValue).tag(eTag).lastModified(lastModified).build();
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+/**
+ * Estimates how often keys were seen recently, as a count-min sketch of 4-bit counters. The
+ * counters are halved every time as many keys as ten times the width of the sketch were seen,
+ * so that the estimates follow the recent popularity of keys.
+ *
+ * <p>Not thread-safe: callers synchronize.</p>
+ */
+final class FrequencySketch {
+  /** Seeds of the hash functions of the four rows of the sketch. */
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L,
+  };
+
+  /** Keeps the low three bits of each counter once shifted right by one. */
+  private static final long HALVE_MASK = 0x7777777777777777L;
+
+  /** Sixteen counters per long: four in each row of the sketch. */
+  private final long[] mTable;
+  private final int mMask;
+  private final int mSampleSize;
+  private int mSize = 0;
+
+  /**
+   * Constructs a sketch.
+   *
+   * @param maxEntries is the number of keys the sketch is sized for.
+   */
+  FrequencySketch(int maxEntries) {
+    int width = 16;
+    while (width < maxEntries && width < (1 << 30)) {
+      width <<= 1;
+    }
+    mTable = new long[width];
+    mMask = width - 1;
+    mSampleSize = 10 * width;
+  }
+
+  /**
+   * @param hash of a key.
+   * @return the estimated number of times the key was seen recently, up to 15.
+   */
+  int frequency(int hash) {
+    int frequency = Integer.MAX_VALUE;
+    for (int row = 0; row < SEEDS.length; row++) {
+      final int counter = (int) ((mTable[indexOf(hash, row)] >>> shiftOf(hash, row)) & 0xf);
+      frequency = Math.min(frequency, counter);
+    }
+    return frequency;
+  }
+
+  /**
+   * Counts one more sighting of a key.
+   *
+   * @param hash of the key.
+   */
+  void increment(int hash) {
+    boolean added = false;
+    for (int row = 0; row < SEEDS.length; row++) {
+      final int index = indexOf(hash, row);
+      final int shift = shiftOf(hash, row);
+      if (((mTable[index] >>> shift) & 0xf) < 0xf) {
+        mTable[index] += 1L << shift;
+        added = true;
+      }
+    }
+    if (added && ++mSize == mSampleSize) {
+      for (int i = 0; i < mTable.length; i++) {
+        mTable[i] = (mTable[i] >>> 1) & HALVE_MASK;
+      }
+      mSize /= 2;
+    }
+  }
+
+  /**
+   * @param hash of a key.
+   * @param row of the sketch.
+   * @return the index of the long holding the counter of the key in the row.
+   */
+  private int indexOf(int hash, int row) {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    h += h >>> 32;
+    return (int) h & mMask;
+  }
+
+  /**
+   * @param hash of a key.
+   * @param row of the sketch.
+   * @return the shift of the counter of the key in the row within its long.
+   */
+  private static int shiftOf(int hash, int row) {
+    return (((hash >>> (row << 3)) & 3) + (row << 2)) << 2;
+  }
+}
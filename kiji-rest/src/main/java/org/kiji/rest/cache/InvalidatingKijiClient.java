@@ -0,0 +1,69 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+
+/**
+ * A KijiClient leasing tables whose writers invalidate what is cached about the rows they
+ * write to.
+ */
+public final class InvalidatingKijiClient implements KijiClient {
+  private final KijiClient mKijiClient;
+  private final List<RowInvalidator> mInvalidators;
+
+  /**
+   * Constructs a client invalidating the rows written through it.
+   *
+   * @param kijiClient to lease tables from.
+   * @param invalidators to invalidate rows with.
+   */
+  public InvalidatingKijiClient(KijiClient kijiClient, List<RowInvalidator> invalidators) {
+    mKijiClient = kijiClient;
+    mInvalidators = ImmutableList.copyOf(invalidators);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Kiji getKiji(String instance) {
+    return mKijiClient.getKiji(instance);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<KijiURI> getInstances() {
+    return mKijiClient.getInstances();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public KijiTable getKijiTable(String instance, String table) {
+    return InvalidatingTable.wrap(mKijiClient.getKijiTable(instance, table), mInvalidators,
+        instance, table);
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableWriter;
+
+/**
+ * Forwards calls to a table and to the writers it opens, invalidating what is cached about
+ * every row a writer puts, increments or deletes cells of.
+ */
+final class InvalidatingTable implements InvocationHandler {
+  private final Object mTarget;
+  private final List<RowInvalidator> mInvalidators;
+  private final String mInstance;
+  private final String mTable;
+
+  /**
+   * @param target of the calls.
+   * @param invalidators to invalidate rows with.
+   * @param instance in which the table resides.
+   * @param table name.
+   */
+  private InvalidatingTable(Object target, List<RowInvalidator> invalidators, String instance,
+      String table) {
+    mTarget = target;
+    mInvalidators = invalidators;
+    mInstance = instance;
+    mTable = table;
+  }
+
+  /**
+   * Wraps a table.
+   *
+   * @param kijiTable to wrap.
+   * @param invalidators to invalidate rows with.
+   * @param instance in which the table resides.
+   * @param table name.
+   * @return the table to hand out in place of the given one.
+   */
+  static KijiTable wrap(KijiTable kijiTable, List<RowInvalidator> invalidators, String instance,
+      String table) {
+    return (KijiTable) Proxy.newProxyInstance(KijiTable.class.getClassLoader(),
+        new Class<?>[] {KijiTable.class},
+        new InvalidatingTable(kijiTable, invalidators, instance, table));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final Object result;
+    try {
+      result = method.invoke(mTarget, args);
+    } catch (InvocationTargetException ite) {
+      throw ite.getCause();
+    } finally {
+      // Writes which failed may have been applied all the same.
+      if (mTarget instanceof KijiTableWriter
+          && null != args && args.length > 0 && args[0] instanceof EntityId) {
+        final byte[] rowKey = ((EntityId) args[0]).getHBaseRowKey();
+        for (RowInvalidator invalidator : mInvalidators) {
+          invalidator.invalidateRow(mInstance, mTable, rowKey);
+        }
+      }
+    }
+
+    if (result == mTarget) {
+      // Such as retain(), returning the table itself.
+      return proxy;
+    }
+    if (result instanceof KijiTableWriter) {
+      return Proxy.newProxyInstance(InvalidatingTable.class.getClassLoader(),
+          new Class<?>[] {KijiTableWriter.class},
+          new InvalidatingTable(result, mInvalidators, mInstance, mTable));
+    }
+    return result;
+  }
+}
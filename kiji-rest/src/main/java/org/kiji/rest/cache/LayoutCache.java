@@ -0,0 +1,374 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.yammer.dropwizard.lifecycle.Managed;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.avro.TableLayoutDesc;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Caches table layouts and the table lists of instances.
+ *
+ * <p>Entries expire after a TTL. Cached layouts are also invalidated as soon as the layout node
+ * KijiSchema maintains in ZooKeeper for their table changes, is created or is deleted; such an
+ * event invalidates the table list of the instance too. Each cached value carries an entity tag
+ * and a last-modified time, so that clients can revalidate their copies cheaply.</p>
+ */
+public final class LayoutCache implements Managed {
+  private static final Logger LOG = LoggerFactory.getLogger(LayoutCache.class);
+
+  /** Root of the ZooKeeper nodes maintained by KijiSchema. */
+  private static final String ZOOKEEPER_ROOT = "/kiji-schema";
+
+  /** Separates the instance from the table in cache keys. */
+  private static final String TABLE_SEPARATOR = "/";
+
+  private final KijiClient mKijiClient;
+  private final boolean mWatchLayouts;
+  private final int mSessionTimeoutMillis;
+
+  /** Layouts, keyed by instance/table. */
+  private final LoadingCache<String, CachedValue<TableLayoutDesc>> mLayouts;
+
+  /** Table names, keyed by instance. */
+  private final LoadingCache<String, CachedValue<List<String>>> mTableNames;
+
+  /** Last layouts loaded, keeping their last-modified time across reloads. */
+  private final ConcurrentMap<String, CachedValue<TableLayoutDesc>> mLastLayouts =
+      Maps.newConcurrentMap();
+
+  /** Last table lists loaded, keeping their last-modified time across reloads. */
+  private final ConcurrentMap<String, CachedValue<List<String>>> mLastTableNames =
+      Maps.newConcurrentMap();
+
+  /** Cache keys of the armed layout watches, by ZooKeeper ensemble and node path. */
+  private final ConcurrentMap<String, String> mWatches = Maps.newConcurrentMap();
+
+  /** ZooKeeper sessions of the layout watches, by ensemble. Guarded by this. */
+  private final Map<String, ZooKeeper> mZooKeepers = Maps.newHashMap();
+
+  /**
+   * Constructs a layout cache.
+   *
+   * @param kijiClient to read layouts and table lists through.
+   * @param configuration of the cache.
+   */
+  public LayoutCache(KijiClient kijiClient, LayoutCacheConfiguration configuration) {
+    mKijiClient = kijiClient;
+    mWatchLayouts = configuration.isWatchLayouts();
+    mSessionTimeoutMillis = configuration.getZooKeeperSessionTimeoutMillis();
+    mLayouts = CacheBuilder.newBuilder()
+        .expireAfterWrite(configuration.getTtlMillis(), TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build(new CacheLoader<String, CachedValue<TableLayoutDesc>>() {
+          @Override
+          public CachedValue<TableLayoutDesc> load(String key) throws IOException {
+            return loadLayout(key);
+          }
+        });
+    mTableNames = CacheBuilder.newBuilder()
+        .expireAfterWrite(configuration.getTtlMillis(), TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build(new CacheLoader<String, CachedValue<List<String>>>() {
+          @Override
+          public CachedValue<List<String>> load(String instance) throws IOException {
+            return loadTableNames(instance);
+          }
+        });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void stop() {
+    for (ZooKeeper zooKeeper : mZooKeepers.values()) {
+      closeQuietly(zooKeeper);
+    }
+    mZooKeepers.clear();
+    mWatches.clear();
+  }
+
+  /**
+   * Gets the layout of a table.
+   *
+   * @param instance in which the table resides.
+   * @param table name.
+   * @return the cached layout of the table.
+   * @throws IOException if the layout can not be read.
+   */
+  public CachedValue<TableLayoutDesc> getLayout(String instance, String table)
+      throws IOException {
+    return get(mLayouts, instance + TABLE_SEPARATOR + table);
+  }
+
+  /**
+   * Gets the names of the tables of an instance.
+   *
+   * @param instance name.
+   * @return the cached table names.
+   * @throws IOException if the table names can not be read.
+   */
+  public CachedValue<List<String>> getTableNames(String instance) throws IOException {
+    return get(mTableNames, instance);
+  }
+
+  /**
+   * Invalidates the cached layout of a table and the table list of its instance.
+   *
+   * @param instance in which the table resides.
+   * @param table name.
+   */
+  public void invalidate(String instance, String table) {
+    mLayouts.invalidate(instance + TABLE_SEPARATOR + table);
+    mTableNames.invalidate(instance);
+  }
+
+  /**
+   * Invalidates everything cached about an instance.
+   *
+   * @param instance name.
+   */
+  public void invalidateInstance(String instance) {
+    final String prefix = instance + TABLE_SEPARATOR;
+    for (String key : mLayouts.asMap().keySet()) {
+      if (key.startsWith(prefix)) {
+        mLayouts.invalidate(key);
+      }
+    }
+    mTableNames.invalidate(instance);
+  }
+
+  /** @return the statistics of the layout cache. */
+  public CacheStats getLayoutStats() {
+    return mLayouts.stats();
+  }
+
+  /** @return the statistics of the table list cache. */
+  public CacheStats getTableNamesStats() {
+    return mTableNames.stats();
+  }
+
+  /**
+   * Gets a cached value, loading it if needed.
+   *
+   * @param cache to read from.
+   * @param key of the value.
+   * @param <T> is the type of the cached value.
+   * @return the cached value.
+   * @throws IOException if the value can not be loaded.
+   */
+  private static <T> CachedValue<T> get(LoadingCache<String, CachedValue<T>> cache, String key)
+      throws IOException {
+    try {
+      return cache.get(key);
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof IOException) {
+        throw (IOException) ee.getCause();
+      }
+      throw new IOException(ee.getCause());
+    } catch (UncheckedExecutionException uee) {
+      // Such as the WebApplicationException of an instance that is not served.
+      throw (RuntimeException) uee.getCause();
+    }
+  }
+
+  /**
+   * Loads the layout of a table, arming a watch on its layout node beforehand so that no
+   * update goes unnoticed.
+   *
+   * @param key instance/table of the table.
+   * @return the layout of the table.
+   * @throws IOException if the layout can not be read.
+   */
+  private CachedValue<TableLayoutDesc> loadLayout(String key) throws IOException {
+    final int separator = key.indexOf(TABLE_SEPARATOR);
+    final String instance = key.substring(0, separator);
+    final String table = key.substring(separator + 1);
+    final Kiji kiji = mKijiClient.getKiji(instance);
+    try {
+      watchLayout(kiji.getURI(), instance, table, key);
+      final TableLayoutDesc layout = kiji.getMetaTable().getTableLayout(table).getDesc();
+      final CachedValue<TableLayoutDesc> value = CachedValue.of(layout, mLastLayouts.get(key));
+      mLastLayouts.put(key, value);
+      return value;
+    } finally {
+      ResourceUtils.releaseOrLog(kiji);
+    }
+  }
+
+  /**
+   * Loads the table names of an instance.
+   *
+   * @param instance name.
+   * @return the table names.
+   * @throws IOException if the table names can not be read.
+   */
+  private CachedValue<List<String>> loadTableNames(String instance) throws IOException {
+    final Kiji kiji = mKijiClient.getKiji(instance);
+    try {
+      final List<String> tableNames = ImmutableList.copyOf(kiji.getTableNames());
+      final CachedValue<List<String>> value =
+          CachedValue.of(tableNames, mLastTableNames.get(instance));
+      mLastTableNames.put(instance, value);
+      return value;
+    } finally {
+      ResourceUtils.releaseOrLog(kiji);
+    }
+  }
+
+  /**
+   * Arms a one-shot watch on the layout node of a table, unless one is armed already. Failing
+   * to reach ZooKeeper only leaves the entry to expire with its TTL.
+   *
+   * @param uri of the instance.
+   * @param instance name.
+   * @param table name.
+   * @param key of the layout in the cache.
+   */
+  private void watchLayout(KijiURI uri, String instance, String table, String key) {
+    if (!mWatchLayouts) {
+      return;
+    }
+    final String ensemble = getEnsemble(uri);
+    final String path = Joiner.on("/").join(
+        ZOOKEEPER_ROOT, "instances", instance, "tables", table, "layout");
+    final String watchKey = ensemble + path;
+    if (null != mWatches.putIfAbsent(watchKey, key)) {
+      return;
+    }
+    try {
+      // Fires when the node is created, updated or deleted.
+      getZooKeeper(ensemble).exists(path, new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+          if (EventType.None != event.getType()) {
+            mWatches.remove(watchKey);
+            LOG.debug("Layout of table {} of instance {} changed.", table, instance);
+            invalidate(instance, table);
+          }
+        }
+      });
+    } catch (Exception e) {
+      mWatches.remove(watchKey);
+      LOG.debug("Could not watch the layout of table {} of instance {}: {}",
+          table, instance, e.toString());
+    }
+  }
+
+  /**
+   * Gets the ZooKeeper session of an ensemble, connecting if needed.
+   *
+   * @param ensemble to connect to.
+   * @return the ZooKeeper session.
+   * @throws IOException if the session can not be created.
+   */
+  private synchronized ZooKeeper getZooKeeper(final String ensemble) throws IOException {
+    ZooKeeper zooKeeper = mZooKeepers.get(ensemble);
+    if (null == zooKeeper) {
+      zooKeeper = new ZooKeeper(ensemble, mSessionTimeoutMillis, new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+          if (KeeperState.Expired == event.getState()) {
+            onSessionExpired(ensemble);
+          }
+        }
+      });
+      mZooKeepers.put(ensemble, zooKeeper);
+    }
+    return zooKeeper;
+  }
+
+  /**
+   * Drops an expired session along with its watches, invalidating the layouts they covered.
+   *
+   * @param ensemble whose session expired.
+   */
+  private void onSessionExpired(String ensemble) {
+    LOG.warn("ZooKeeper session to {} expired; invalidating watched layouts.", ensemble);
+    synchronized (this) {
+      final ZooKeeper zooKeeper = mZooKeepers.remove(ensemble);
+      if (null != zooKeeper) {
+        closeQuietly(zooKeeper);
+      }
+    }
+    final List<String> expiredWatches = Lists.newArrayList();
+    for (Map.Entry<String, String> watch : mWatches.entrySet()) {
+      if (watch.getKey().startsWith(ensemble + ZOOKEEPER_ROOT)) {
+        expiredWatches.add(watch.getKey());
+        mLayouts.invalidate(watch.getValue());
+      }
+    }
+    for (String watchKey : expiredWatches) {
+      mWatches.remove(watchKey);
+    }
+  }
+
+  /**
+   * @param uri of an instance.
+   * @return the ZooKeeper ensemble of the cluster of the instance.
+   */
+  private static String getEnsemble(KijiURI uri) {
+    final List<String> hosts = Lists.newArrayList();
+    for (String host : uri.getZookeeperQuorum()) {
+      hosts.add(host + ":" + uri.getZookeeperClientPort());
+    }
+    return Joiner.on(",").join(hosts);
+  }
+
+  /** @param zooKeeper session to close. */
+  private static void closeQuietly(ZooKeeper zooKeeper) {
+    try {
+      zooKeeper.close();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
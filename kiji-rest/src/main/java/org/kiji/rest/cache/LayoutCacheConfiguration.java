@@ -0,0 +1,67 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the cache of table layouts and table lists.
+ */
+public class LayoutCacheConfiguration {
+  /** Whether table layouts and table lists are cached. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = true;
+
+  /** Time after which a cached entry is reloaded even if no change was seen, in milliseconds. */
+  @Min(1)
+  @JsonProperty("ttlMillis")
+  private long mTtlMillis = 60000;
+
+  /** Whether layout updates are watched in ZooKeeper to invalidate cached layouts early. */
+  @JsonProperty("watchLayouts")
+  private boolean mWatchLayouts = true;
+
+  /** ZooKeeper session timeout of the layout watches, in milliseconds. */
+  @Min(1)
+  @JsonProperty("zooKeeperSessionTimeoutMillis")
+  private int mZooKeeperSessionTimeoutMillis = 60000;
+
+  /** @return whether table layouts and table lists are cached. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the time after which a cached entry is reloaded, in milliseconds. */
+  public final long getTtlMillis() {
+    return mTtlMillis;
+  }
+
+  /** @return whether layout updates are watched in ZooKeeper. */
+  public final boolean isWatchLayouts() {
+    return mWatchLayouts;
+  }
+
+  /** @return the ZooKeeper session timeout of the layout watches, in milliseconds. */
+  public final int getZooKeeperSessionTimeoutMillis() {
+    return mZooKeeperSessionTimeoutMillis;
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.IOException;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Tells the layout versions of tables, for cached data to be dropped once the layout it was
+ * read with is replaced.
+ */
+public final class LayoutVersions {
+  private final KijiClient mKijiClient;
+  private final LayoutCache mLayoutCache;
+
+  /**
+   * Constructs the layout versions of the tables of a client.
+   *
+   * @param kijiClient to read layouts through.
+   * @param layoutCache to read layouts from, or null to read them from the tables.
+   */
+  public LayoutVersions(KijiClient kijiClient, LayoutCache layoutCache) {
+    mKijiClient = kijiClient;
+    mLayoutCache = layoutCache;
+  }
+
+  /**
+   * Gets the layout version of a table.
+   *
+   * @param instance in which the table resides.
+   * @param table name.
+   * @return the layout ID of the current layout of the table.
+   * @throws IOException if the layout can not be read.
+   */
+  public String getLayoutId(String instance, String table) throws IOException {
+    if (null != mLayoutCache) {
+      return String.valueOf(mLayoutCache.getLayout(instance, table).getValue().getLayoutId());
+    }
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      return String.valueOf(kijiTable.getLayout().getDesc().getLayoutId());
+    } finally {
+      ResourceUtils.releaseOrLog(kijiTable);
+    }
+  }
+}
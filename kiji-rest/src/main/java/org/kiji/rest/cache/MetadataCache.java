@@ -0,0 +1,359 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.avro.Schema;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.representations.MetadataChanges;
+import org.kiji.rest.representations.MetadataChanges.LayoutEntry;
+import org.kiji.rest.representations.MetadataChanges.SchemaEntry;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiMetaTable;
+import org.kiji.schema.KijiSchemaTable;
+import org.kiji.schema.avro.MetaTableBackup;
+import org.kiji.schema.avro.MetadataBackup;
+import org.kiji.schema.avro.SchemaTableBackup;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Caches the metadata backups of instances.
+ *
+ * <p>Rebuilding a backup reads the whole schema and meta tables, so a cached backup is only
+ * checked for changes, at most once per check interval. A check reads the data version of the
+ * instance, the highest schema id, the timestamp of the latest layout of every table, and the
+ * key-value pairs the meta table keeps for each table, which it hashes. The schema table is
+ * append-only and the schema ids are dense, so the highest id is found with a logarithmic number
+ * of lookups. Only the parts of the backup that changed are rebuilt.</p>
+ */
+public final class MetadataCache {
+  /** Check interval and TTL making every request a check, and every check a rebuild. */
+  private static final long UNCACHED_MILLIS = 0;
+
+  private final KijiClient mKijiClient;
+  private final long mCheckIntervalMillis;
+  private final long mTtlMillis;
+
+  /** Cached metadata, by instance. */
+  private final ConcurrentMap<String, InstanceMetadata> mInstances = Maps.newConcurrentMap();
+
+  /**
+   * Constructs a metadata cache.
+   *
+   * @param kijiClient to read metadata through.
+   * @param configuration of the cache.
+   */
+  public MetadataCache(KijiClient kijiClient, MetadataCacheConfiguration configuration) {
+    this(kijiClient, configuration.getCheckIntervalMillis(), configuration.getTtlMillis());
+  }
+
+  /**
+   * Constructs a metadata cache that caches nothing: every request checks the instance and
+   * rebuilds its backup, which is still tagged so that conditional requests save the transfer.
+   *
+   * @param kijiClient to read metadata through.
+   * @return an uncached metadata cache.
+   */
+  public static MetadataCache uncached(KijiClient kijiClient) {
+    return new MetadataCache(kijiClient, UNCACHED_MILLIS, UNCACHED_MILLIS);
+  }
+
+  /**
+   * Constructs a metadata cache.
+   *
+   * @param kijiClient to read metadata through.
+   * @param checkIntervalMillis is the minimum time between two checks for changes.
+   * @param ttlMillis is the time after which a backup is rebuilt even if no change was seen.
+   */
+  private MetadataCache(KijiClient kijiClient, long checkIntervalMillis, long ttlMillis) {
+    mKijiClient = kijiClient;
+    mCheckIntervalMillis = checkIntervalMillis;
+    mTtlMillis = ttlMillis;
+  }
+
+  /**
+   * Gets the metadata backup of an instance.
+   *
+   * @param instance name.
+   * @return the cached backup.
+   * @throws IOException if the metadata can not be read.
+   */
+  public CachedValue<MetadataBackup> getBackup(String instance) throws IOException {
+    final Kiji kiji = mKijiClient.getKiji(instance);
+    try {
+      final InstanceMetadata metadata = getInstanceMetadata(instance);
+      synchronized (metadata) {
+        refresh(kiji, metadata);
+        return metadata.mBackup;
+      }
+    } finally {
+      ResourceUtils.releaseOrLog(kiji);
+    }
+  }
+
+  /**
+   * Gets the schemas and layouts added to the metadata of an instance after a schema id and
+   * a layout timestamp.
+   *
+   * @param instance name.
+   * @param sinceSchemaId is the schema id after which to return schemas, or -1 for all.
+   * @param sinceLayoutTimestamp is the timestamp after which to return layouts, or -1 for all.
+   * @return the changes, tagged after the backup they were taken from and the given bounds.
+   * @throws IOException if the metadata can not be read.
+   */
+  public CachedValue<MetadataChanges> getChanges(String instance, long sinceSchemaId,
+      long sinceLayoutTimestamp) throws IOException {
+    final Kiji kiji = mKijiClient.getKiji(instance);
+    try {
+      final InstanceMetadata metadata = getInstanceMetadata(instance);
+      final long latestSchemaId;
+      final String layoutVersion;
+      final SortedMap<String, Long> layoutTimestamps;
+      final CachedValue<MetadataBackup> backup;
+      synchronized (metadata) {
+        refresh(kiji, metadata);
+        latestSchemaId = metadata.mLatestSchemaId;
+        layoutVersion = metadata.mLayoutVersion;
+        layoutTimestamps = metadata.mLayoutTimestamps;
+        backup = metadata.mBackup;
+      }
+
+      final KijiSchemaTable schemaTable = kiji.getSchemaTable();
+      final List<SchemaEntry> schemas = Lists.newArrayList();
+      for (long id = Math.max(sinceSchemaId + 1, 0); id <= latestSchemaId; id++) {
+        final Schema schema = schemaTable.getSchema(id);
+        if (null != schema) {
+          schemas.add(new SchemaEntry(id, schema.toString()));
+        }
+      }
+
+      final KijiMetaTable metaTable = kiji.getMetaTable();
+      final Map<String, List<LayoutEntry>> layouts = Maps.newTreeMap();
+      for (Map.Entry<String, Long> table : layoutTimestamps.entrySet()) {
+        if (table.getValue() > sinceLayoutTimestamp) {
+          final List<LayoutEntry> entries = Lists.newArrayList();
+          for (Map.Entry<Long, KijiTableLayout> layout : metaTable
+              .getTimedTableLayoutVersions(table.getKey(), Integer.MAX_VALUE)
+              .tailMap(sinceLayoutTimestamp, false).entrySet()) {
+            entries.add(new LayoutEntry(layout.getKey(), layout.getValue().getDesc()));
+          }
+          layouts.put(table.getKey(), entries);
+        }
+      }
+
+      final String eTag = Hashing.md5().hashString(
+          backup.getETag() + "/" + sinceSchemaId + "/" + sinceLayoutTimestamp, Charsets.UTF_8)
+          .toString();
+      return new CachedValue<MetadataChanges>(
+          new MetadataChanges(layoutVersion, latestSchemaId, schemas, layouts),
+          eTag,
+          backup.getLastModified());
+    } finally {
+      ResourceUtils.releaseOrLog(kiji);
+    }
+  }
+
+  /**
+   * Drops the cached metadata of an instance.
+   *
+   * @param instance name.
+   */
+  public void invalidate(String instance) {
+    mInstances.remove(instance);
+  }
+
+  /**
+   * Gets the cached metadata of an instance, creating an empty entry if needed.
+   *
+   * @param instance name.
+   * @return the cached metadata of the instance.
+   */
+  private InstanceMetadata getInstanceMetadata(String instance) {
+    final InstanceMetadata metadata = new InstanceMetadata();
+    final InstanceMetadata existing = mInstances.putIfAbsent(instance, metadata);
+    if (null != existing) {
+      return existing;
+    }
+    return metadata;
+  }
+
+  /**
+   * Brings the cached metadata of an instance up to date, rebuilding the parts of its backup
+   * that changed. Must be called while holding the lock of the metadata.
+   *
+   * @param kiji instance.
+   * @param metadata cached for the instance.
+   * @throws IOException if the metadata can not be read.
+   */
+  private void refresh(Kiji kiji, InstanceMetadata metadata) throws IOException {
+    final long now = System.currentTimeMillis();
+    if (null != metadata.mBackup && now - metadata.mCheckedAt < mCheckIntervalMillis) {
+      return;
+    }
+    final boolean expired = null == metadata.mBackup || now - metadata.mBuiltAt >= mTtlMillis;
+
+    final String layoutVersion = kiji.getSystemTable().getDataVersion().toString();
+    final long latestSchemaId =
+        findLatestSchemaId(kiji.getSchemaTable(), metadata.mLatestSchemaId);
+    final SortedMap<String, Long> layoutTimestamps = getLayoutTimestamps(kiji);
+    final String keyValuesHash = hashKeyValues(kiji.getMetaTable());
+
+    SchemaTableBackup schemaTable = metadata.mSchemaTable;
+    if (expired || latestSchemaId != metadata.mLatestSchemaId) {
+      schemaTable = kiji.getSchemaTable().toBackup();
+    }
+    MetaTableBackup metaTable = metadata.mMetaTable;
+    String metaTableHash = metadata.mMetaTableHash;
+    if (expired || !layoutTimestamps.equals(metadata.mLayoutTimestamps)
+        || !keyValuesHash.equals(metadata.mKeyValuesHash)) {
+      metaTable = kiji.getMetaTable().toBackup();
+      metaTableHash =
+          Hashing.md5().hashString(metaTable.toString(), Charsets.UTF_8).toString();
+    }
+
+    // The schema table is append-only, so its highest id identifies its content.
+    final String eTag = Hashing.md5().hashString(
+        layoutVersion + "/" + latestSchemaId + "/" + metaTableHash, Charsets.UTF_8).toString();
+    if (null == metadata.mBackup || !eTag.equals(metadata.mBackup.getETag())) {
+      final MetadataBackup backup = MetadataBackup.newBuilder()
+          .setLayoutVersion(layoutVersion)
+          .setSchemaTable(schemaTable)
+          .setMetaTable(metaTable)
+          .build();
+      metadata.mBackup = new CachedValue<MetadataBackup>(backup, eTag, now);
+    }
+    metadata.mLayoutVersion = layoutVersion;
+    metadata.mLatestSchemaId = latestSchemaId;
+    metadata.mLayoutTimestamps = layoutTimestamps;
+    metadata.mKeyValuesHash = keyValuesHash;
+    metadata.mSchemaTable = schemaTable;
+    metadata.mMetaTable = metaTable;
+    metadata.mMetaTableHash = metaTableHash;
+    metadata.mCheckedAt = now;
+    if (expired) {
+      metadata.mBuiltAt = now;
+    }
+  }
+
+  /**
+   * Finds the highest schema id of a schema table, whose ids are dense and start at 0, by
+   * probing ids exponentially past the last known highest id and then bisecting.
+   *
+   * @param schemaTable to search.
+   * @param knownId is the last known highest id, or -1 if unknown.
+   * @return the highest schema id, or -1 if the schema table is empty.
+   * @throws IOException if the schema table can not be read.
+   */
+  private static long findLatestSchemaId(KijiSchemaTable schemaTable, long knownId)
+      throws IOException {
+    long low = -1;
+    if (knownId >= 0 && null != schemaTable.getSchema(knownId)) {
+      low = knownId;
+    }
+    long step = 1;
+    long high = low + step;
+    while (null != schemaTable.getSchema(high)) {
+      low = high;
+      step *= 2;
+      high = low + step;
+    }
+    // Id low exists, or is -1, and id high does not.
+    while (high - low > 1) {
+      final long middle = low + (high - low) / 2;
+      if (null != schemaTable.getSchema(middle)) {
+        low = middle;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Gets the timestamp of the latest layout of every table of an instance.
+   *
+   * @param kiji instance.
+   * @return the timestamp of the latest layout, by table name.
+   * @throws IOException if the meta table can not be read.
+   */
+  private static SortedMap<String, Long> getLayoutTimestamps(Kiji kiji) throws IOException {
+    final ImmutableSortedMap.Builder<String, Long> timestamps = ImmutableSortedMap.naturalOrder();
+    for (String table : kiji.getTableNames()) {
+      final NavigableMap<Long, KijiTableLayout> latest =
+          kiji.getMetaTable().getTimedTableLayoutVersions(table, 1);
+      if (!latest.isEmpty()) {
+        timestamps.put(table, latest.lastKey());
+      }
+    }
+    return timestamps.build();
+  }
+
+  /**
+   * Hashes the key-value pairs the meta table keeps for each table, which are far cheaper to
+   * read than the layouts a backup of the meta table holds.
+   *
+   * @param metaTable to hash the key-value pairs of.
+   * @return the hash of every key-value pair of every table.
+   * @throws IOException if the meta table can not be read.
+   */
+  private static String hashKeyValues(KijiMetaTable metaTable) throws IOException {
+    final Hasher hasher = Hashing.md5().newHasher();
+    for (String table : Sets.newTreeSet(metaTable.tableSet())) {
+      for (String key : Sets.newTreeSet(metaTable.keySet(table))) {
+        final byte[] value = metaTable.getValue(table, key);
+        hasher.putString(table, Charsets.UTF_8).putInt(-1)
+            .putString(key, Charsets.UTF_8).putInt(value.length).putBytes(value);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Metadata of an instance, along with what is needed to detect changes to it. Guarded by its
+   * own lock.
+   */
+  private static final class InstanceMetadata {
+    private long mCheckedAt;
+    private long mBuiltAt;
+    private String mLayoutVersion;
+    private long mLatestSchemaId = -1;
+    private SortedMap<String, Long> mLayoutTimestamps;
+    private String mKeyValuesHash;
+    private SchemaTableBackup mSchemaTable;
+    private MetaTableBackup mMetaTable;
+    private String mMetaTableHash;
+    private CachedValue<MetadataBackup> mBackup;
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the cache of instance metadata backups.
+ */
+public class MetadataCacheConfiguration {
+  /** Whether instance metadata backups are cached. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = true;
+
+  /** Minimum time between two checks of an instance's metadata for changes, in milliseconds. */
+  @Min(0)
+  @JsonProperty("checkIntervalMillis")
+  private long mCheckIntervalMillis = 1000;
+
+  /** Time after which a cached backup is rebuilt even if no change was seen, in milliseconds. */
+  @Min(0)
+  @JsonProperty("ttlMillis")
+  private long mTtlMillis = 300000;
+
+  /** @return whether instance metadata backups are cached. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the minimum time between two checks for changes, in milliseconds. */
+  public final long getCheckIntervalMillis() {
+    return mCheckIntervalMillis;
+  }
+
+  /** @return the time after which a cached backup is rebuilt, in milliseconds. */
+  public final long getTtlMillis() {
+    return mTtlMillis;
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.util.List;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Lists;
+
+/**
+ * Configuration of the negative cache of reads which found no cell.
+ */
+public class NegativeCacheConfiguration {
+  /** Whether reads which found no cell are cached. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Time after which a read which found no cell is made again, in milliseconds. */
+  @Min(1)
+  @JsonProperty("ttlMillis")
+  private long mTtlMillis = 2000;
+
+  /** Largest number of rows cached. */
+  @Min(1)
+  @JsonProperty("maxRows")
+  private long mMaxRows = 100000;
+
+  /** Tables, as instance/table, whose row keys are kept in Bloom filters. */
+  @NotNull
+  @JsonProperty("bloomFilterTables")
+  private List<String> mBloomFilterTables = Lists.newArrayList();
+
+  /** Number of row keys each Bloom filter is sized for. */
+  @Min(1)
+  @JsonProperty("bloomFilterExpectedKeys")
+  private int mBloomFilterExpectedKeys = 10000000;
+
+  /** Share of the missing row keys a Bloom filter may take for present ones. */
+  @Min(0)
+  @Max(1)
+  @JsonProperty("bloomFilterFalsePositiveRate")
+  private double mBloomFilterFalsePositiveRate = 0.01;
+
+  /** Time between two scans rebuilding the Bloom filters, in milliseconds. */
+  @Min(1)
+  @JsonProperty("bloomFilterRebuildMillis")
+  private long mBloomFilterRebuildMillis = 3600000;
+
+  /** @return whether reads which found no cell are cached. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the time after which a read which found no cell is made again, in milliseconds. */
+  public final long getTtlMillis() {
+    return mTtlMillis;
+  }
+
+  /** @return the largest number of rows cached. */
+  public final long getMaxRows() {
+    return mMaxRows;
+  }
+
+  /** @return the tables, as instance/table, whose row keys are kept in Bloom filters. */
+  public final List<String> getBloomFilterTables() {
+    return mBloomFilterTables;
+  }
+
+  /** @return the number of row keys each Bloom filter is sized for. */
+  public final int getBloomFilterExpectedKeys() {
+    return mBloomFilterExpectedKeys;
+  }
+
+  /** @return the share of the missing row keys a Bloom filter may take for present ones. */
+  public final double getBloomFilterFalsePositiveRate() {
+    return mBloomFilterFalsePositiveRate;
+  }
+
+  /** @return the time between two scans rebuilding the Bloom filters, in milliseconds. */
+  public final long getBloomFilterRebuildMillis() {
+    return mBloomFilterRebuildMillis;
+  }
+}
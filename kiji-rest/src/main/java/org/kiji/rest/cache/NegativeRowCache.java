@@ -0,0 +1,430 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiDataRequestBuilder;
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions;
+import org.kiji.schema.filter.StripValueRowFilter;
+import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Caches the responses of reads which found no cell, such as reads of rows which do not exist
+ * yet, for a short TTL. The responses of a row are dropped as soon as the row is written
+ * through this service.
+ *
+ * <p>The row keys of some tables may also be kept in Bloom filters, rebuilt from keys-only scans
+ * of the tables. A row key missing from the filter of its table is known not to exist, and can
+ * be answered without reading HBase. Rows written through this service are added to the filters
+ * as they are written; rows written by other clients are only known to exist once the filter of
+ * their table is next rebuilt.</p>
+ */
+public final class NegativeRowCache implements RowInvalidator, Managed {
+  private static final Logger LOG = LoggerFactory.getLogger(NegativeRowCache.class);
+
+  /** Separates the instance from the table in the names of tables. */
+  private static final String TABLE_SEPARATOR = "/";
+
+  private final KijiClient mKijiClient;
+  private final NegativeCacheConfiguration mConfiguration;
+
+  /** Responses of reads which found no cell, by row, then by read. */
+  private final Cache<RowReadKey, ConcurrentMap<RowReadKey, byte[]>> mResponses;
+
+  /** Write stamps of the rows. */
+  private final RowStamps mStamps = new RowStamps();
+
+  /** Row keys of the tables with a Bloom filter, by instance/table. */
+  private final Map<String, TableKeys> mTableKeys = Maps.newHashMap();
+
+  private final Meter mHits;
+  private final Meter mKnownAbsent;
+
+  /** Rebuilds the Bloom filters. */
+  private ScheduledExecutorService mRebuildExecutor;
+
+  /**
+   * Constructs a negative cache.
+   *
+   * @param kijiClient to scan the row keys of tables through.
+   * @param configuration of the cache.
+   */
+  public NegativeRowCache(KijiClient kijiClient, NegativeCacheConfiguration configuration) {
+    mKijiClient = kijiClient;
+    mConfiguration = configuration;
+    mResponses = CacheBuilder.newBuilder()
+        .expireAfterWrite(configuration.getTtlMillis(), TimeUnit.MILLISECONDS)
+        .maximumSize(configuration.getMaxRows())
+        .build();
+    for (String table : configuration.getBloomFilterTables()) {
+      mTableKeys.put(table, new TableKeys());
+    }
+    mHits = Metrics.newMeter(new MetricName(NegativeRowCache.class, "hits"), "hits",
+        TimeUnit.SECONDS);
+    mKnownAbsent = Metrics.newMeter(new MetricName(NegativeRowCache.class, "known-absent"),
+        "reads", TimeUnit.SECONDS);
+    Metrics.newGauge(new MetricName(NegativeRowCache.class, "rows"), new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return getRows();
+      }
+    });
+  }
+
+  /** Starts rebuilding the Bloom filters, the first time at once. */
+  @Override
+  public void start() {
+    if (mTableKeys.isEmpty()) {
+      return;
+    }
+    mRebuildExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("bloom-filter-rebuild-%d")
+        .setDaemon(true)
+        .build());
+    mRebuildExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        for (Map.Entry<String, TableKeys> table : mTableKeys.entrySet()) {
+          rebuildOrLog(table.getKey(), table.getValue());
+        }
+      }
+    }, 0, mConfiguration.getBloomFilterRebuildMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops rebuilding the Bloom filters. */
+  @Override
+  public void stop() {
+    if (null != mRebuildExecutor) {
+      mRebuildExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Gets the cached response of a read which found no cell.
+   *
+   * @param key of the read.
+   * @return the response, or null if none is cached.
+   */
+  public byte[] get(RowReadKey key) {
+    final Map<RowReadKey, byte[]> responses = mResponses.getIfPresent(key.getRow());
+    if (null == responses) {
+      return null;
+    }
+    final byte[] bytes = responses.get(key);
+    if (null != bytes) {
+      mHits.mark();
+    }
+    return bytes;
+  }
+
+  /**
+   * Gets the write stamp of the row of a read, to be taken before the row is read.
+   *
+   * @param key of the read.
+   * @return the write stamp of the row.
+   */
+  public long getStamp(RowReadKey key) {
+    return mStamps.get(key.getRow());
+  }
+
+  /**
+   * Caches the response of a read which found no cell, unless its row was invalidated since it
+   * was read.
+   *
+   * @param key of the read.
+   * @param bytes of the response.
+   * @param stamp of the row, taken before it was read.
+   */
+  public void put(RowReadKey key, byte[] bytes, long stamp) {
+    final RowReadKey row = key.getRow();
+    final ConcurrentMap<RowReadKey, byte[]> responses;
+    try {
+      responses = mResponses.get(row, new Callable<ConcurrentMap<RowReadKey, byte[]>>() {
+        @Override
+        public ConcurrentMap<RowReadKey, byte[]> call() {
+          return Maps.newConcurrentMap();
+        }
+      });
+    } catch (ExecutionException ee) {
+      throw new IllegalStateException(ee.getCause());
+    }
+    responses.put(key, bytes);
+    // Dropped again if the row was written meanwhile, as the invalidation may have come first.
+    if (!mStamps.isCurrent(row, stamp)) {
+      responses.remove(key);
+    }
+  }
+
+  /**
+   * Tells whether a row is known not to exist, from the Bloom filter of its table.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param rowKey is the HBase row key of the row.
+   * @return whether the row does not exist; false if it may exist.
+   */
+  public boolean isAbsent(String instance, String table, byte[] rowKey) {
+    final TableKeys keys = mTableKeys.get(instance + TABLE_SEPARATOR + table);
+    if (null == keys || !keys.isAbsent(rowKey)) {
+      return false;
+    }
+    mKnownAbsent.mark();
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void invalidateRow(String instance, String table, byte[] rowKey) {
+    final RowReadKey row = RowReadKey.forRow(instance, table, rowKey);
+    mStamps.advance(row);
+    mResponses.invalidate(row);
+    final TableKeys keys = mTableKeys.get(instance + TABLE_SEPARATOR + table);
+    if (null != keys) {
+      keys.add(rowKey);
+    }
+  }
+
+  /**
+   * Drops the cached responses of the rows selected, and keeps responses read before now from
+   * being cached. The Bloom filters of the tables selected whole are rebuilt at once, as their
+   * rows may have been written by other clients.
+   *
+   * @param selector of the rows.
+   * @return the number of rows whose responses were dropped.
+   */
+  public int purge(RowSelector selector) {
+    mStamps.advanceAll();
+    int purged = 0;
+    for (RowReadKey row : mResponses.asMap().keySet()) {
+      if (selector.matches(row)) {
+        mResponses.invalidate(row);
+        purged++;
+      }
+    }
+    if (selector.isWholeTables() && null != mRebuildExecutor) {
+      for (final Map.Entry<String, TableKeys> table : mTableKeys.entrySet()) {
+        final String name = table.getKey();
+        final int separator = name.indexOf(TABLE_SEPARATOR);
+        if (separator >= 0 && selector.matchesTable(name.substring(0, separator),
+            name.substring(separator + 1))) {
+          mRebuildExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+              rebuildOrLog(name, table.getValue());
+            }
+          });
+        }
+      }
+    }
+    return purged;
+  }
+
+  /** @return the number and size of the cached responses, by instance/table. */
+  public Map<String, CacheUsage> getUsageByTable() {
+    final Map<String, CacheUsage> usages = new TreeMap<String, CacheUsage>();
+    for (Map<RowReadKey, byte[]> responses : mResponses.asMap().values()) {
+      for (Map.Entry<RowReadKey, byte[]> response : responses.entrySet()) {
+        CacheUsage.add(usages, response.getKey(), response.getValue().length);
+      }
+    }
+    return usages;
+  }
+
+  /** @return the number of rows with cached responses. */
+  public long getRows() {
+    return mResponses.size();
+  }
+
+  /** @return whether the Bloom filter of each table with one was built, by instance/table. */
+  public Map<String, Boolean> getBloomFilters() {
+    final Map<String, Boolean> filters = new TreeMap<String, Boolean>();
+    for (Map.Entry<String, TableKeys> table : mTableKeys.entrySet()) {
+      filters.put(table.getKey(), table.getValue().isBuilt());
+    }
+    return filters;
+  }
+
+  /** @return the meters of the cache, by name. */
+  public Map<String, Meter> getMeters() {
+    final Map<String, Meter> meters = new LinkedHashMap<String, Meter>();
+    meters.put("hits", mHits);
+    meters.put("known-absent", mKnownAbsent);
+    return Collections.unmodifiableMap(meters);
+  }
+
+  /**
+   * Rebuilds the Bloom filter of a table, logging failures.
+   *
+   * @param name of the table, as instance/table.
+   * @param keys of the table.
+   */
+  private void rebuildOrLog(String name, TableKeys keys) {
+    final int separator = name.indexOf(TABLE_SEPARATOR);
+    if (separator < 0) {
+      LOG.warn("Bloom filter table {} is not named instance/table.", name);
+      return;
+    }
+    final long startMillis = System.currentTimeMillis();
+    final BloomFilter<byte[]> filter = keys.startBuilding();
+    KijiTable kijiTable = null;
+    try {
+      kijiTable = mKijiClient.getKijiTable(name.substring(0, separator),
+          name.substring(separator + 1));
+      final long count = scanKeys(kijiTable, filter);
+      keys.finishBuilding(filter);
+      LOG.info("Rebuilt the Bloom filter of table {} from {} row keys in {} ms.",
+          name, count, System.currentTimeMillis() - startMillis);
+    } catch (IOException ioe) {
+      keys.abortBuilding();
+      LOG.warn("Could not rebuild the Bloom filter of table {}: {}", name, ioe.getMessage());
+    } catch (RuntimeException re) {
+      keys.abortBuilding();
+      LOG.warn("Could not rebuild the Bloom filter of table {}: {}", name, re.getMessage());
+    } finally {
+      if (null != kijiTable) {
+        ResourceUtils.releaseOrLog(kijiTable);
+      }
+    }
+  }
+
+  /**
+   * Adds the row keys of a table to a Bloom filter, with a keys-only scan.
+   *
+   * @param kijiTable to scan.
+   * @param filter to add the row keys to.
+   * @return the number of row keys scanned.
+   * @throws IOException if the scan fails.
+   */
+  private static long scanKeys(KijiTable kijiTable, BloomFilter<byte[]> filter)
+      throws IOException {
+    final KijiScannerOptions scanOptions = new KijiScannerOptions();
+    scanOptions.setKijiRowFilter(new StripValueRowFilter());
+    // Every family is requested so that no row is skipped; values are stripped server-side.
+    final KijiDataRequestBuilder dataBuilder = KijiDataRequest.builder();
+    final ColumnsDef columnsDef = dataBuilder.newColumnsDef().withMaxVersions(1);
+    for (FamilyLayout family : kijiTable.getLayout().getFamilies()) {
+      columnsDef.addFamily(family.getName());
+    }
+    long count = 0;
+    final KijiTableReader reader = kijiTable.openTableReader();
+    try {
+      final KijiRowScanner scanner = reader.getScanner(dataBuilder.build(), scanOptions);
+      try {
+        for (KijiRowData row : scanner) {
+          synchronized (filter) {
+            filter.put(row.getEntityId().getHBaseRowKey());
+          }
+          count++;
+        }
+      } finally {
+        ResourceUtils.closeOrLog(scanner);
+      }
+    } finally {
+      ResourceUtils.closeOrLog(reader);
+    }
+    return count;
+  }
+
+  /** The row keys of a table, as a Bloom filter. */
+  private final class TableKeys {
+    /** Filter answering lookups, or null until the first scan completes. Guarded by this. */
+    private BloomFilter<byte[]> mFilter = null;
+
+    /** Filter being rebuilt, which rows written meanwhile are added to. Guarded by this. */
+    private BloomFilter<byte[]> mBuilding = null;
+
+    /**
+     * @param rowKey of a row.
+     * @return whether the row is known not to exist.
+     */
+    private synchronized boolean isAbsent(byte[] rowKey) {
+      return null != mFilter && !mFilter.mightContain(rowKey);
+    }
+
+    /** @return whether a filter answers lookups. */
+    private synchronized boolean isBuilt() {
+      return null != mFilter;
+    }
+
+    /** @param rowKey of a row written. */
+    private synchronized void add(byte[] rowKey) {
+      if (null != mFilter) {
+        mFilter.put(rowKey);
+      }
+      if (null != mBuilding) {
+        synchronized (mBuilding) {
+          mBuilding.put(rowKey);
+        }
+      }
+    }
+
+    /** @return a new filter, which rows written from now on are added to. */
+    private synchronized BloomFilter<byte[]> startBuilding() {
+      mBuilding = BloomFilter.create(Funnels.byteArrayFunnel(),
+          mConfiguration.getBloomFilterExpectedKeys(),
+          mConfiguration.getBloomFilterFalsePositiveRate());
+      return mBuilding;
+    }
+
+    /** @param filter built, which now answers lookups. */
+    private synchronized void finishBuilding(BloomFilter<byte[]> filter) {
+      mFilter = filter;
+      mBuilding = null;
+    }
+
+    /** Gives up on the filter being built, keeping the previous one. */
+    private synchronized void abortBuilding() {
+      mBuilding = null;
+    }
+  }
+}
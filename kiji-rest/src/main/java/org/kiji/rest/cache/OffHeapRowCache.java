@@ -0,0 +1,521 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+
+/**
+ * Caches serialized row responses in off-heap memory, so that a hit neither reads the row again
+ * nor serializes it again, and the cached responses take no room on the heap.
+ *
+ * <p>Responses are kept in the blocks of a {@link BlockArena} which never grows past the memory
+ * configured. Eviction is a segmented LRU: responses enter a probation segment, and move to a
+ * protected segment when hit again. When memory runs out, a response is only admitted if it was
+ * requested more often recently than the least recently used response it would evict, as
+ * estimated by a {@link FrequencySketch} (TinyLFU admission), so that one-off reads such as
+ * crawls do not flush the popular rows.</p>
+ *
+ * <p>Responses expire after a TTL, and are invalidated when their row is written through this
+ * service. A response read before a write of its row is not cached once the write invalidated
+ * the row. A {@link PersistentRowStore} may back the cache, keeping responses across
+ * restarts.</p>
+ *
+ * <p>A hit is copied to the heap before it is returned, so that its blocks are never held by a
+ * response which is not written, such as the response to a HEAD request.</p>
+ */
+public final class OffHeapRowCache implements RowInvalidator {
+  private final BlockArena mArena;
+  private final FrequencySketch mSketch;
+  private final int mMaxEntryBytes;
+  private final int mProtectedBlocks;
+  private final long mTtlMillis;
+
+  /** Store backing the cache on local disk, or null. */
+  private final PersistentRowStore mStore;
+
+  /** Responses hit once since they were cached, least recently used first. Guarded by this. */
+  private final LinkedHashMap<RowReadKey, Entry> mProbation =
+      new LinkedHashMap<RowReadKey, Entry>(16, 0.75f, true);
+
+  /** Responses hit more than once, least recently used first. Guarded by this. */
+  private final LinkedHashMap<RowReadKey, Entry> mProtected =
+      new LinkedHashMap<RowReadKey, Entry>(16, 0.75f, true);
+
+  /** Blocks of the responses of the protected segment. Guarded by this. */
+  private int mProtectedBlocksUsed = 0;
+
+  /** Keys of the cached responses, by row. Guarded by this. */
+  private final SetMultimap<RowReadKey, RowReadKey> mRows = HashMultimap.create();
+
+  /** Write stamps of the rows. */
+  private final RowStamps mStamps = new RowStamps();
+
+  private final Meter mHits;
+  private final Meter mMisses;
+  private final Meter mEvictions;
+  private final Meter mRejected;
+  private final Meter mInvalidations;
+  private final Meter mHitBytes;
+
+  /**
+   * Constructs a cache. Its memory is allocated as it fills.
+   *
+   * @param configuration of the cache.
+   */
+  public OffHeapRowCache(RowCacheConfiguration configuration) {
+    this(configuration, null);
+  }
+
+  /**
+   * Constructs a cache backed by a store on local disk, which serves the responses missing from
+   * memory and keeps them across restarts.
+   *
+   * @param configuration of the cache.
+   * @param store backing the cache, or null to keep responses in memory only.
+   */
+  public OffHeapRowCache(RowCacheConfiguration configuration, PersistentRowStore store) {
+    mStore = store;
+    mArena = new BlockArena(configuration.getMaxBytes(), configuration.getBlockBytes());
+    mSketch = new FrequencySketch(mArena.getBlocks());
+    mMaxEntryBytes = configuration.getMaxEntryBytes();
+    mProtectedBlocks = (int) (mArena.getBlocks() * configuration.getProtectedShare());
+    mTtlMillis = configuration.getTtlMillis();
+    mHits = newMeter("hits", "hits");
+    mMisses = newMeter("misses", "misses");
+    mEvictions = newMeter("evictions", "evictions");
+    mRejected = newMeter("rejected", "responses");
+    mInvalidations = newMeter("invalidations", "responses");
+    mHitBytes = newMeter("hit-bytes", "bytes");
+    Metrics.newGauge(new MetricName(OffHeapRowCache.class, "entries"), new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getEntries();
+      }
+    });
+    Metrics.newGauge(new MetricName(OffHeapRowCache.class, "used-bytes"), new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return getUsedBytes();
+      }
+    });
+    Metrics.newGauge(new MetricName(OffHeapRowCache.class, "capacity-bytes"), new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return getCapacityBytes();
+      }
+    });
+  }
+
+  /**
+   * Gets a cached response.
+   *
+   * @param key of the read.
+   * @return the cached response, or null if none is cached.
+   */
+  public StreamingOutput get(RowReadKey key) {
+    final Entry entry;
+    synchronized (this) {
+      mSketch.increment(spread(key.hashCode()));
+      entry = lookUp(key, System.currentTimeMillis());
+      if (null != entry) {
+        entry.mRefs++;
+      }
+    }
+    if (null == entry) {
+      mMisses.mark();
+      return getStored(key);
+    }
+    final byte[] bytes;
+    try {
+      // The blocks may be reused once released, so the copy is taken under the reference.
+      bytes = mArena.read(entry.mBlocks, entry.mLength);
+    } finally {
+      synchronized (this) {
+        release(entry);
+      }
+    }
+    mHits.mark();
+    mHitBytes.mark(entry.mLength);
+    return new BytesOutput(bytes);
+  }
+
+  /**
+   * Gets the write stamp of the row of a read, to be taken before the row is read.
+   *
+   * @param key of the read.
+   * @return the write stamp of the row.
+   */
+  public long getStamp(RowReadKey key) {
+    return mStamps.get(key.getRow());
+  }
+
+  /**
+   * Caches a response, unless its row was invalidated since it was read or it is not admitted.
+   *
+   * @param key of the read.
+   * @param bytes of the response.
+   * @param stamp of the row, taken before it was read.
+   */
+  public void put(RowReadKey key, byte[] bytes, long stamp) {
+    putInMemory(key, bytes, stamp);
+    if (null != mStore) {
+      // Invalidations reach the store under its lock once the stamp moved.
+      synchronized (mStore) {
+        if (mStamps.isCurrent(key.getRow(), stamp)) {
+          mStore.put(key, bytes);
+        }
+      }
+    }
+  }
+
+  /**
+   * Caches a response in memory, unless its row was invalidated since it was read or it is not
+   * admitted.
+   *
+   * @param key of the read.
+   * @param bytes of the response.
+   * @param stamp of the row, taken before it was read.
+   */
+  private void putInMemory(RowReadKey key, byte[] bytes, long stamp) {
+    final RowReadKey row = key.getRow();
+    if (bytes.length > mMaxEntryBytes) {
+      mRejected.mark();
+      return;
+    }
+    final int blocks = mArena.blocksFor(bytes.length);
+    final int[] allocated;
+    synchronized (this) {
+      if (!mStamps.isCurrent(row, stamp) || !makeRoom(key, blocks)) {
+        return;
+      }
+      allocated = mArena.allocate(blocks);
+    }
+    // The blocks belong to no one else until the entry is published.
+    mArena.write(allocated, bytes);
+    final Entry entry = new Entry(key, allocated, bytes.length);
+    synchronized (this) {
+      if (!mStamps.isCurrent(row, stamp)
+          || mProbation.containsKey(key) || mProtected.containsKey(key)) {
+        release(entry);
+        return;
+      }
+      mProbation.put(key, entry);
+      mRows.put(row, key);
+    }
+  }
+
+  /**
+   * Invalidates the cached responses of a row, and keeps responses read before now from being
+   * cached.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param rowKey is the HBase row key of the row.
+   */
+  @Override
+  public void invalidateRow(String instance, String table, byte[] rowKey) {
+    final RowReadKey row = RowReadKey.forRow(instance, table, rowKey);
+    mStamps.advance(row);
+    int invalidated = 0;
+    synchronized (this) {
+      for (RowReadKey key : mRows.removeAll(row)) {
+        Entry entry = mProbation.remove(key);
+        if (null == entry) {
+          entry = mProtected.remove(key);
+          mProtectedBlocksUsed -= entry.mBlocks.length;
+        }
+        release(entry);
+        invalidated++;
+      }
+    }
+    if (invalidated > 0) {
+      mInvalidations.mark(invalidated);
+    }
+    if (null != mStore) {
+      mStore.invalidateRow(row);
+    }
+  }
+
+  /**
+   * Drops the cached responses of the rows selected, from memory and from the store, and keeps
+   * responses read before now from being cached.
+   *
+   * @param selector of the rows.
+   * @return the number of responses dropped from memory.
+   */
+  public int purge(RowSelector selector) {
+    mStamps.advanceAll();
+    int purged = 0;
+    synchronized (this) {
+      purged += purge(mProbation, selector);
+      purged += purge(mProtected, selector);
+    }
+    if (purged > 0) {
+      mInvalidations.mark(purged);
+    }
+    if (null != mStore) {
+      mStore.purge(selector);
+    }
+    return purged;
+  }
+
+  /** @return the number of cached responses. */
+  public synchronized int getEntries() {
+    return mProbation.size() + mProtected.size();
+  }
+
+  /** @return the off-heap memory in use, in bytes, including evicted responses being copied. */
+  public synchronized long getUsedBytes() {
+    return (long) (mArena.getBlocks() - mArena.getFreeBlocks()) * mArena.getBlockBytes();
+  }
+
+  /** @return the off-heap memory the cache may use, in bytes. */
+  public long getCapacityBytes() {
+    return (long) mArena.getBlocks() * mArena.getBlockBytes();
+  }
+
+  /** @return the number and size of the cached responses, by instance/table. */
+  public synchronized Map<String, CacheUsage> getUsageByTable() {
+    final Map<String, CacheUsage> usages = new TreeMap<String, CacheUsage>();
+    for (Entry entry : mProbation.values()) {
+      CacheUsage.add(usages, entry.mKey, entry.mLength);
+    }
+    for (Entry entry : mProtected.values()) {
+      CacheUsage.add(usages, entry.mKey, entry.mLength);
+    }
+    return usages;
+  }
+
+  /** @return the meters of the cache, by name. */
+  public Map<String, Meter> getMeters() {
+    final Map<String, Meter> meters = new LinkedHashMap<String, Meter>();
+    meters.put("hits", mHits);
+    meters.put("misses", mMisses);
+    meters.put("evictions", mEvictions);
+    meters.put("rejected", mRejected);
+    meters.put("invalidations", mInvalidations);
+    meters.put("hit-bytes", mHitBytes);
+    return Collections.unmodifiableMap(meters);
+  }
+
+  /** @return the store backing the cache, or null. */
+  public PersistentRowStore getStore() {
+    return mStore;
+  }
+
+  /**
+   * Drops the responses of the rows selected from a segment. Called with the lock held.
+   *
+   * @param segment of the cache.
+   * @param selector of the rows.
+   * @return the number of responses dropped.
+   */
+  private int purge(LinkedHashMap<RowReadKey, Entry> segment, RowSelector selector) {
+    int purged = 0;
+    final Iterator<Entry> entries = segment.values().iterator();
+    while (entries.hasNext()) {
+      final Entry entry = entries.next();
+      if (selector.matches(entry.mKey)) {
+        entries.remove();
+        if (segment == mProtected) {
+          mProtectedBlocksUsed -= entry.mBlocks.length;
+        }
+        discard(entry);
+        purged++;
+      }
+    }
+    return purged;
+  }
+
+  /**
+   * Gets a response from the store, caching it in memory.
+   *
+   * @param key of the read.
+   * @return the response, or null if the store does not hold it either.
+   */
+  private StreamingOutput getStored(RowReadKey key) {
+    if (null == mStore) {
+      return null;
+    }
+    final long stamp = getStamp(key);
+    final byte[] bytes = mStore.get(key);
+    if (null == bytes) {
+      return null;
+    }
+    putInMemory(key, bytes, stamp);
+    return new BytesOutput(bytes);
+  }
+
+  /**
+   * Looks up a response, promoting it to the protected segment on its second hit and dropping
+   * it if it expired. Called with the lock held.
+   *
+   * @param key of the read.
+   * @param nowMillis is the current time.
+   * @return the response, or null if none is cached.
+   */
+  private Entry lookUp(RowReadKey key, long nowMillis) {
+    Entry entry = mProtected.get(key);
+    if (null != entry) {
+      if (entry.mExpiresAtMillis <= nowMillis) {
+        mProtected.remove(key);
+        mProtectedBlocksUsed -= entry.mBlocks.length;
+        discard(entry);
+        return null;
+      }
+      return entry;
+    }
+    entry = mProbation.remove(key);
+    if (null == entry) {
+      return null;
+    }
+    if (entry.mExpiresAtMillis <= nowMillis) {
+      discard(entry);
+      return null;
+    }
+    mProtected.put(key, entry);
+    mProtectedBlocksUsed += entry.mBlocks.length;
+    // The least recently used protected responses get one more chance in probation.
+    final Iterator<Map.Entry<RowReadKey, Entry>> eldest = mProtected.entrySet().iterator();
+    while (mProtectedBlocksUsed > mProtectedBlocks && mProtected.size() > 1) {
+      final Entry demoted = eldest.next().getValue();
+      eldest.remove();
+      mProtectedBlocksUsed -= demoted.mBlocks.length;
+      mProbation.put(demoted.mKey, demoted);
+    }
+    return entry;
+  }
+
+  /**
+   * Evicts responses until the blocks of a new one are free, as long as the new response was
+   * requested more often than each response evicted. Called with the lock held.
+   *
+   * @param key of the new response.
+   * @param blocks needed by the new response.
+   * @return whether the blocks are free.
+   */
+  private boolean makeRoom(RowReadKey key, int blocks) {
+    if (blocks > mArena.getBlocks()) {
+      mRejected.mark();
+      return false;
+    }
+    final int frequency = mSketch.frequency(spread(key.hashCode()));
+    while (mArena.getFreeBlocks() < blocks) {
+      LinkedHashMap<RowReadKey, Entry> segment = mProbation;
+      if (mProbation.isEmpty()) {
+        segment = mProtected;
+      }
+      if (segment.isEmpty()) {
+        // What is left is held by evicted responses still being copied.
+        mRejected.mark();
+        return false;
+      }
+      final Entry victim = segment.values().iterator().next();
+      if (frequency <= mSketch.frequency(spread(victim.mKey.hashCode()))) {
+        mRejected.mark();
+        return false;
+      }
+      segment.remove(victim.mKey);
+      if (segment == mProtected) {
+        mProtectedBlocksUsed -= victim.mBlocks.length;
+      }
+      discard(victim);
+      mEvictions.mark();
+    }
+    return true;
+  }
+
+  /**
+   * Drops a response removed from its segment. Called with the lock held.
+   *
+   * @param entry to drop.
+   */
+  private void discard(Entry entry) {
+    mRows.remove(entry.mKey.getRow(), entry.mKey);
+    release(entry);
+  }
+
+  /**
+   * Releases a reference to a response, freeing its blocks once nothing refers to it. Called
+   * with the lock held.
+   *
+   * @param entry to release.
+   */
+  private void release(Entry entry) {
+    if (--entry.mRefs == 0) {
+      mArena.free(entry.mBlocks);
+    }
+  }
+
+  /**
+   * @param hash of a key.
+   * @return the hash with its bits spread, as keys may differ in their high bits only.
+   */
+  private static int spread(int hash) {
+    final int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @param name of the meter.
+   * @param eventType counted by the meter.
+   * @return a new meter of the cache.
+   */
+  private static Meter newMeter(String name, String eventType) {
+    return Metrics.newMeter(new MetricName(OffHeapRowCache.class, name), eventType,
+        TimeUnit.SECONDS);
+  }
+
+  /** A cached response, held in its blocks. */
+  private final class Entry {
+    private final RowReadKey mKey;
+    private final int[] mBlocks;
+    private final int mLength;
+    private final long mExpiresAtMillis;
+
+    /** References to the entry: one from the cache while cached, one per hit being copied. */
+    private int mRefs = 1;
+
+    /**
+     * @param key of the response.
+     * @param blocks holding the response.
+     * @param length of the response, in bytes.
+     */
+    private Entry(RowReadKey key, int[] blocks, int length) {
+      mKey = key;
+      mBlocks = blocks;
+      mLength = length;
+      mExpiresAtMillis = System.currentTimeMillis() + mTtlMillis;
+    }
+  }
+}
@@ -0,0 +1,651 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps serialized row responses in a memory-mapped file on local disk, so that they survive
+ * restarts. It backs the {@link OffHeapRowCache}: on start, the file is mapped back in and its
+ * index rebuilt, and the cache serves hits from it while it warms up.
+ *
+ * <p>The file is a ring of records: a header, followed by responses and row tombstones appended
+ * one after the other, each checked by a CRC. Once the end of the file is reached, appends
+ * start over from its beginning, dropping the oldest records. The index of the responses, by
+ * read, is kept in memory.</p>
+ *
+ * <p>Every response is stamped with the layout ID of its table: a response read with another
+ * layout than the current one is dropped instead of served. Responses are also dropped after a
+ * TTL, and when their row is written through this service, which appends a tombstone so that
+ * they stay dropped after a restart.</p>
+ */
+public final class PersistentRowStore implements Managed {
+  private static final Logger LOG = LoggerFactory.getLogger(PersistentRowStore.class);
+
+  /** Identifies the files of the store. */
+  private static final long MAGIC = 0x4b696a6952455354L;
+
+  /** Version of the format of the files. Files of other versions are started over. */
+  private static final int FORMAT_VERSION = 1;
+
+  /** Offsets of the fields of the header. */
+  private static final int HEAD_OFFSET = 12;
+  private static final int TAIL_OFFSET = 16;
+  private static final int LAP_END_OFFSET = 20;
+
+  /** Size of the header, where records start. */
+  private static final int HEADER_BYTES = 24;
+
+  /** Size of the length and CRC preceding the body of each record. */
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  /** Types of the records. */
+  private static final byte RESPONSE = 1;
+  private static final byte TOMBSTONE = 2;
+
+  private final File mFile;
+  private final int mCapacity;
+  private final long mTtlMillis;
+  private final LayoutVersions mLayoutVersions;
+
+  /** The mapped file. Guarded by this. */
+  private MappedByteBuffer mBuffer;
+
+  /**
+   * Records live in [mTail, mLapEnd) then in [HEADER_BYTES, mHead), oldest first. The first
+   * range is empty until appends start over from the beginning of the file. Guarded by this.
+   */
+  private int mHead = HEADER_BYTES;
+  private int mTail = HEADER_BYTES;
+  private int mLapEnd = HEADER_BYTES;
+
+  /** Responses in the file, by read. Guarded by this. */
+  private final Map<RowReadKey, Slot> mIndex = Maps.newHashMap();
+
+  /** Keys of the responses in the file, by row. Guarded by this. */
+  private final SetMultimap<RowReadKey, RowReadKey> mRows = HashMultimap.create();
+
+  /** Shares the layout IDs of the responses. */
+  private final Interner<String> mLayoutIds = Interners.newStrongInterner();
+
+  private final Meter mHits;
+  private final Meter mMisses;
+  private final Meter mStale;
+
+  /**
+   * Constructs a store. The file is mapped when the store starts.
+   *
+   * @param configuration of the row cache.
+   * @param layoutVersions of the tables.
+   */
+  public PersistentRowStore(RowCacheConfiguration configuration, LayoutVersions layoutVersions) {
+    Preconditions.checkArgument(null != configuration.getPersistentPath(),
+        "The row cache has no persistent path.");
+    mFile = new File(configuration.getPersistentPath());
+    mCapacity = (int) configuration.getPersistentMaxBytes();
+    mTtlMillis = configuration.getPersistentTtlMillis();
+    mLayoutVersions = layoutVersions;
+    mHits = Metrics.newMeter(new MetricName(PersistentRowStore.class, "hits"), "hits",
+        TimeUnit.SECONDS);
+    mMisses = Metrics.newMeter(new MetricName(PersistentRowStore.class, "misses"), "misses",
+        TimeUnit.SECONDS);
+    mStale = Metrics.newMeter(new MetricName(PersistentRowStore.class, "stale"), "responses",
+        TimeUnit.SECONDS);
+    Metrics.newGauge(new MetricName(PersistentRowStore.class, "entries"), new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getEntries();
+      }
+    });
+    Metrics.newGauge(new MetricName(PersistentRowStore.class, "used-bytes"), new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return getUsedBytes();
+      }
+    });
+  }
+
+  /**
+   * Maps the file in and indexes the responses it holds, starting the file over if it is not
+   * one of the store.
+   *
+   * @throws IOException if the file can not be mapped.
+   */
+  @Override
+  public synchronized void start() throws IOException {
+    final File parent = mFile.getAbsoluteFile().getParentFile();
+    if (null != parent && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Could not create the directory of the row cache file " + mFile);
+    }
+    final RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+    try {
+      final boolean resized = file.length() != mCapacity;
+      if (resized) {
+        file.setLength(mCapacity);
+      }
+      // The mapping stays valid once the file is closed.
+      mBuffer = file.getChannel().map(MapMode.READ_WRITE, 0, mCapacity);
+      if (resized || MAGIC != mBuffer.getLong(0) || FORMAT_VERSION != mBuffer.getInt(8)) {
+        LOG.info("Starting the row cache file {} over.", mFile);
+        format();
+      } else {
+        load();
+      }
+    } finally {
+      file.close();
+    }
+  }
+
+  /** Flushes the mapped file to disk. */
+  @Override
+  public synchronized void stop() {
+    if (null != mBuffer) {
+      mBuffer.force();
+    }
+  }
+
+  /**
+   * Gets a stored response, unless its table has another layout since it was read.
+   *
+   * @param key of the read.
+   * @return the response, or null if none is stored.
+   */
+  public byte[] get(RowReadKey key) {
+    final Slot slot;
+    synchronized (this) {
+      slot = mIndex.get(key);
+      if (null != slot && slot.mWrittenMillis + mTtlMillis <= System.currentTimeMillis()) {
+        remove(key);
+        mMisses.mark();
+        return null;
+      }
+    }
+    if (null == slot) {
+      mMisses.mark();
+      return null;
+    }
+    // Outside the lock, as the layout may have to be read from HBase.
+    final String layoutId;
+    try {
+      layoutId = mLayoutVersions.getLayoutId(key.getInstance(), key.getTable());
+    } catch (IOException ioe) {
+      LOG.debug("Could not check the layout of a stored response of {}: {}", key, ioe.toString());
+      mMisses.mark();
+      return null;
+    }
+    synchronized (this) {
+      if (slot != mIndex.get(key)) {
+        // Dropped in the meantime.
+        mMisses.mark();
+        return null;
+      }
+      if (!slot.mLayoutId.equals(layoutId)) {
+        remove(key);
+        mStale.mark();
+        return null;
+      }
+      final byte[] bytes = new byte[slot.mLength];
+      mBuffer.position(slot.mOffset);
+      mBuffer.get(bytes);
+      mHits.mark();
+      return bytes;
+    }
+  }
+
+  /**
+   * Stores a response.
+   *
+   * @param key of the read.
+   * @param bytes of the response.
+   */
+  public void put(RowReadKey key, byte[] bytes) {
+    final String layoutId;
+    try {
+      layoutId = mLayoutVersions.getLayoutId(key.getInstance(), key.getTable());
+    } catch (IOException ioe) {
+      LOG.debug("Could not read the layout of {}: {}", key, ioe.toString());
+      return;
+    }
+    final long nowMillis = System.currentTimeMillis();
+    final byte[] record;
+    try {
+      final ByteArrayOutputStream body = new ByteArrayOutputStream(bytes.length + 256);
+      final DataOutputStream out = new DataOutputStream(body);
+      out.writeByte(RESPONSE);
+      out.writeLong(nowMillis);
+      writeRow(out, key);
+      out.writeUTF(key.getColumns());
+      out.writeInt(key.getMaxVersions());
+      final long[] timeRange = key.getTimeRange();
+      out.writeBoolean(null != timeRange);
+      if (null != timeRange) {
+        out.writeLong(timeRange[0]);
+        out.writeLong(timeRange[1]);
+      }
+      out.writeUTF(layoutId);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+      record = body.toByteArray();
+    } catch (IOException ioe) {
+      // Such as strings too long to be written as modified UTF-8.
+      LOG.debug("Could not store the response of {}: {}", key, ioe.toString());
+      return;
+    }
+    synchronized (this) {
+      final int offset = append(record);
+      if (offset < 0) {
+        return;
+      }
+      remove(key);
+      final int length = bytes.length;
+      mIndex.put(key, new Slot(offset, offset + RECORD_HEADER_BYTES + record.length - length,
+          length, nowMillis, mLayoutIds.intern(layoutId)));
+      mRows.put(key.getRow(), key);
+    }
+  }
+
+  /**
+   * Drops the stored responses of a row, for good.
+   *
+   * @param row whose responses to drop, as returned by {@link RowReadKey#forRow}.
+   */
+  public synchronized void invalidateRow(RowReadKey row) {
+    if (!mRows.containsKey(row)) {
+      return;
+    }
+    for (RowReadKey key : mRows.removeAll(row)) {
+      mIndex.remove(key);
+    }
+    try {
+      final ByteArrayOutputStream body = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream(body);
+      out.writeByte(TOMBSTONE);
+      out.writeLong(System.currentTimeMillis());
+      writeRow(out, row);
+      append(body.toByteArray());
+    } catch (IOException ioe) {
+      LOG.warn("Could not store the invalidation of {}: {}", row, ioe.toString());
+    }
+  }
+
+  /**
+   * Drops the stored responses of the rows selected, for good.
+   *
+   * @param selector of the rows.
+   * @return the number of responses dropped.
+   */
+  public synchronized int purge(RowSelector selector) {
+    final List<RowReadKey> rows = Lists.newArrayList();
+    for (RowReadKey row : mRows.keySet()) {
+      if (selector.matches(row)) {
+        rows.add(row);
+      }
+    }
+    final int entries = mIndex.size();
+    for (RowReadKey row : rows) {
+      invalidateRow(row);
+    }
+    return entries - mIndex.size();
+  }
+
+  /** @return the number of stored responses. */
+  public synchronized int getEntries() {
+    return mIndex.size();
+  }
+
+  /** @return the bytes of the file holding records. */
+  public synchronized long getUsedBytes() {
+    return (mLapEnd - mTail) + (mHead - HEADER_BYTES);
+  }
+
+  /** @return the size of the file, in bytes. */
+  public long getCapacityBytes() {
+    return mCapacity;
+  }
+
+  /** @return the number and size of the stored responses, by instance/table. */
+  public synchronized Map<String, CacheUsage> getUsageByTable() {
+    final Map<String, CacheUsage> usages = new TreeMap<String, CacheUsage>();
+    for (Map.Entry<RowReadKey, Slot> entry : mIndex.entrySet()) {
+      CacheUsage.add(usages, entry.getKey(), entry.getValue().mLength);
+    }
+    return usages;
+  }
+
+  /** @return the meters of the store, by name. */
+  public Map<String, Meter> getMeters() {
+    final Map<String, Meter> meters = new LinkedHashMap<String, Meter>();
+    meters.put("hits", mHits);
+    meters.put("misses", mMisses);
+    meters.put("stale", mStale);
+    return Collections.unmodifiableMap(meters);
+  }
+
+  /**
+   * Appends a record, dropping the oldest records to make room. Called with the lock held.
+   *
+   * @param body of the record.
+   * @return the offset of the record, or -1 if it does not fit in the file.
+   */
+  private int append(byte[] body) {
+    final int length = RECORD_HEADER_BYTES + body.length;
+    if (null == mBuffer || length > mCapacity - HEADER_BYTES) {
+      return -1;
+    }
+    if (mHead + length > mCapacity) {
+      // Start over from the beginning: the rest of the previous lap goes, and this lap becomes
+      // the oldest records.
+      while (mTail < mLapEnd) {
+        evictTail();
+      }
+      mTail = HEADER_BYTES;
+      mLapEnd = mHead;
+      mHead = HEADER_BYTES;
+    }
+    while (mTail < mLapEnd && mTail < mHead + length) {
+      evictTail();
+    }
+    // The header must not point at records about to be overwritten.
+    writeHeader();
+    final CRC32 crc = new CRC32();
+    crc.update(body);
+    final int offset = mHead;
+    mBuffer.putInt(offset, length);
+    mBuffer.putInt(offset + 4, (int) crc.getValue());
+    mBuffer.position(offset + RECORD_HEADER_BYTES);
+    mBuffer.put(body);
+    mHead += length;
+    writeHeader();
+    return offset;
+  }
+
+  /** Drops the oldest record of the file. Called with the lock held. */
+  private void evictTail() {
+    final int length = mBuffer.getInt(mTail);
+    final byte[] body = readBody(mTail, mLapEnd);
+    if (null == body) {
+      // The rest of the lap can not be read: it is dropped whole.
+      dropRange(mTail, mLapEnd);
+      mTail = mLapEnd;
+      return;
+    }
+    if (RESPONSE == body[0]) {
+      final RowReadKey key = readKey(body);
+      final Slot slot = mIndex.get(key);
+      if (null != slot && slot.mRecordOffset == mTail) {
+        remove(key);
+      }
+    }
+    mTail += length;
+  }
+
+  /**
+   * Drops the responses indexed within a range of the file. Called with the lock held.
+   *
+   * @param from is the start of the range.
+   * @param to is the end of the range.
+   */
+  private void dropRange(int from, int to) {
+    for (Map.Entry<RowReadKey, Slot> entry : Maps.newHashMap(mIndex).entrySet()) {
+      final int offset = entry.getValue().mRecordOffset;
+      if (offset >= from && offset < to) {
+        remove(entry.getKey());
+      }
+    }
+  }
+
+  /** Starts the file over, empty. Called with the lock held. */
+  private void format() {
+    mIndex.clear();
+    mRows.clear();
+    mHead = HEADER_BYTES;
+    mTail = HEADER_BYTES;
+    mLapEnd = HEADER_BYTES;
+    mBuffer.putLong(0, MAGIC);
+    mBuffer.putInt(8, FORMAT_VERSION);
+    writeHeader();
+  }
+
+  /** Indexes the records of the file, oldest first. Called with the lock held. */
+  private void load() {
+    mHead = mBuffer.getInt(HEAD_OFFSET);
+    mTail = mBuffer.getInt(TAIL_OFFSET);
+    mLapEnd = mBuffer.getInt(LAP_END_OFFSET);
+    if (mHead < HEADER_BYTES || mHead > mCapacity || mLapEnd > mCapacity || mTail > mLapEnd
+        || (mTail != mLapEnd && mTail < mHead)) {
+      LOG.warn("The header of the row cache file {} is corrupt.", mFile);
+      format();
+      return;
+    }
+    final long startMillis = System.currentTimeMillis();
+    // Records cut short by a crash end the range they are in.
+    mLapEnd = loadRange(mTail, mLapEnd);
+    mHead = loadRange(HEADER_BYTES, mHead);
+    writeHeader();
+    LOG.info("Loaded {} responses from the row cache file {} in {} ms.",
+        mIndex.size(), mFile, System.currentTimeMillis() - startMillis);
+  }
+
+  /**
+   * Indexes the records of a range of the file. Called with the lock held.
+   *
+   * @param from is the offset of the first record.
+   * @param to is the end of the range.
+   * @return the end of the last record read.
+   */
+  private int loadRange(int from, int to) {
+    final long nowMillis = System.currentTimeMillis();
+    int offset = from;
+    while (offset < to) {
+      final byte[] body = readBody(offset, to);
+      if (null == body) {
+        LOG.warn("Dropping the records of the row cache file {} from offset {} to {}.",
+            mFile, offset, to);
+        return offset;
+      }
+      final int length = RECORD_HEADER_BYTES + body.length;
+      final RowReadKey key = readKey(body);
+      if (RESPONSE == body[0]) {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        try {
+          in.skipBytes(1);
+          final long writtenMillis = in.readLong();
+          skipKey(in);
+          final String layoutId = mLayoutIds.intern(in.readUTF());
+          final int responseLength = in.readInt();
+          if (writtenMillis + mTtlMillis > nowMillis) {
+            remove(key);
+            mIndex.put(key, new Slot(offset, offset + length - responseLength, responseLength,
+                writtenMillis, layoutId));
+            mRows.put(key.getRow(), key);
+          }
+        } catch (IOException ioe) {
+          throw new IllegalStateException("Checked record can not be read.", ioe);
+        }
+      } else {
+        for (RowReadKey dropped : mRows.removeAll(key)) {
+          mIndex.remove(dropped);
+        }
+      }
+      offset += length;
+    }
+    return offset;
+  }
+
+  /**
+   * Reads the body of a record, checking its CRC. Called with the lock held.
+   *
+   * @param offset of the record.
+   * @param end of the range the record must lie in.
+   * @return the body of the record, or null if there is no valid record there.
+   */
+  private byte[] readBody(int offset, int end) {
+    if (offset + RECORD_HEADER_BYTES > end) {
+      return null;
+    }
+    final int length = mBuffer.getInt(offset);
+    if (length <= RECORD_HEADER_BYTES || length > end - offset) {
+      return null;
+    }
+    final byte[] body = new byte[length - RECORD_HEADER_BYTES];
+    mBuffer.position(offset + RECORD_HEADER_BYTES);
+    mBuffer.get(body);
+    final CRC32 crc = new CRC32();
+    crc.update(body);
+    if ((int) crc.getValue() != mBuffer.getInt(offset + 4)) {
+      return null;
+    }
+    return body;
+  }
+
+  /**
+   * Reads the key of a record: the read of a response, or the row of a tombstone.
+   *
+   * @param body of the record.
+   * @return the key of the record.
+   */
+  private static RowReadKey readKey(byte[] body) {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    try {
+      final byte type = in.readByte();
+      in.readLong();
+      final String instance = in.readUTF();
+      final String table = in.readUTF();
+      final byte[] rowKey = new byte[in.readInt()];
+      in.readFully(rowKey);
+      if (TOMBSTONE == type) {
+        return RowReadKey.forRow(instance, table, rowKey);
+      }
+      final String columns = in.readUTF();
+      final int maxVersions = in.readInt();
+      long[] timeRange = null;
+      if (in.readBoolean()) {
+        timeRange = new long[] {in.readLong(), in.readLong()};
+      }
+      return new RowReadKey(instance, table, rowKey, columns, maxVersions, timeRange);
+    } catch (IOException ioe) {
+      throw new IllegalStateException("Checked record can not be read.", ioe);
+    }
+  }
+
+  /**
+   * Skips the key of a response, as written by {@link #put}.
+   *
+   * @param in positioned at the key.
+   * @throws IOException if the key can not be read.
+   */
+  private static void skipKey(DataInputStream in) throws IOException {
+    in.readUTF();
+    in.readUTF();
+    in.skipBytes(in.readInt());
+    in.readUTF();
+    in.readInt();
+    if (in.readBoolean()) {
+      in.skipBytes(16);
+    }
+  }
+
+  /**
+   * Writes the row of a read.
+   *
+   * @param out to write to.
+   * @param key of the read.
+   * @throws IOException if the row can not be written.
+   */
+  private static void writeRow(DataOutputStream out, RowReadKey key) throws IOException {
+    out.writeUTF(key.getInstance());
+    out.writeUTF(key.getTable());
+    out.writeInt(key.getRowKey().length);
+    out.write(key.getRowKey());
+  }
+
+  /** Writes the offsets of the ring to the header. Called with the lock held. */
+  private void writeHeader() {
+    mBuffer.putInt(HEAD_OFFSET, mHead);
+    mBuffer.putInt(TAIL_OFFSET, mTail);
+    mBuffer.putInt(LAP_END_OFFSET, mLapEnd);
+  }
+
+  /**
+   * Drops a response from the index. Called with the lock held.
+   *
+   * @param key of the read.
+   */
+  private void remove(RowReadKey key) {
+    if (null != mIndex.remove(key)) {
+      mRows.remove(key.getRow(), key);
+    }
+  }
+
+  /** Where a response lies in the file. */
+  private static final class Slot {
+    private final int mRecordOffset;
+    private final int mOffset;
+    private final int mLength;
+    private final long mWrittenMillis;
+    private final String mLayoutId;
+
+    /**
+     * @param recordOffset is the offset of the record of the response.
+     * @param offset of the response.
+     * @param length of the response.
+     * @param writtenMillis is when the response was stored.
+     * @param layoutId of the table when the response was read.
+     */
+    private Slot(int recordOffset, int offset, int length, long writtenMillis,
+        String layoutId) {
+      mRecordOffset = recordOffset;
+      mOffset = offset;
+      mLength = length;
+      mWrittenMillis = writtenMillis;
+      mLayoutId = layoutId;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the off-heap cache of serialized row responses.
+ */
+public class RowCacheConfiguration {
+  /** Whether serialized row responses are cached. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Off-heap memory the cache may use, in bytes. */
+  @Min(1)
+  @JsonProperty("maxBytes")
+  private long mMaxBytes = 268435456;
+
+  /** Size of the blocks the memory of the cache is split into, in bytes. */
+  @Min(64)
+  @JsonProperty("blockBytes")
+  private int mBlockBytes = 4096;
+
+  /** Largest response cached, in bytes. */
+  @Min(1)
+  @JsonProperty("maxEntryBytes")
+  private int mMaxEntryBytes = 1048576;
+
+  /** Share of the memory held by the protected segment, for responses hit more than once. */
+  @Min(0)
+  @Max(1)
+  @JsonProperty("protectedShare")
+  private double mProtectedShare = 0.8;
+
+  /** Time after which a cached response is read again, in milliseconds. */
+  @Min(1)
+  @JsonProperty("ttlMillis")
+  private long mTtlMillis = 10000;
+
+  /** File on local disk keeping responses across restarts, or null to keep them in memory. */
+  @JsonProperty("persistentPath")
+  private String mPersistentPath = null;
+
+  /** Size of the file keeping responses across restarts, in bytes. */
+  @Min(4096)
+  @Max(Integer.MAX_VALUE)
+  @JsonProperty("persistentMaxBytes")
+  private long mPersistentMaxBytes = 1073741824;
+
+  /** Time after which a response kept on disk is read again, in milliseconds. */
+  @Min(1)
+  @JsonProperty("persistentTtlMillis")
+  private long mPersistentTtlMillis = 3600000;
+
+  /** @return whether serialized row responses are cached. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the off-heap memory the cache may use, in bytes. */
+  public final long getMaxBytes() {
+    return mMaxBytes;
+  }
+
+  /** @return the size of the blocks of the cache, in bytes. */
+  public final int getBlockBytes() {
+    return mBlockBytes;
+  }
+
+  /** @return the size of the largest response cached, in bytes. */
+  public final int getMaxEntryBytes() {
+    return mMaxEntryBytes;
+  }
+
+  /** @return the share of the memory held by the protected segment. */
+  public final double getProtectedShare() {
+    return mProtectedShare;
+  }
+
+  /** @return the time after which a cached response is read again, in milliseconds. */
+  public final long getTtlMillis() {
+    return mTtlMillis;
+  }
+
+  /** @return the file keeping responses across restarts, or null. */
+  public final String getPersistentPath() {
+    return mPersistentPath;
+  }
+
+  /** @return the size of the file keeping responses across restarts, in bytes. */
+  public final long getPersistentMaxBytes() {
+    return mPersistentMaxBytes;
+  }
+
+  /** @return the time after which a response kept on disk is read again, in milliseconds. */
+  public final long getPersistentTtlMillis() {
+    return mPersistentTtlMillis;
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.kiji.rest.representations.KijiRestRow;
+
+/**
+ * Coalesces identical concurrent reads of a row into one read from HBase, serialized to JSON
+ * once and shared by every request that joined it. Reads first look up the negative cache and
+ * the off-heap row cache if there are any, and the reads coalesced fill them: the negative cache
+ * with the reads which found no cell, the row cache with the others.
+ */
+public final class RowReadCoalescer {
+  private final ObjectMapper mMapper;
+  private final OffHeapRowCache mCache;
+  private final NegativeRowCache mNegativeCache;
+  private final SingleFlight<RowReadKey, byte[]> mReads =
+      new SingleFlight<RowReadKey, byte[]>("row-reads");
+
+  /**
+   * Constructs a coalescer.
+   *
+   * @param mapper serializing rows, as the JSON provider of the resources would.
+   */
+  public RowReadCoalescer(ObjectMapper mapper) {
+    this(mapper, null, null);
+  }
+
+  /**
+   * Constructs a coalescer reading through a row cache.
+   *
+   * @param mapper serializing rows, as the JSON provider of the resources would.
+   * @param cache of serialized rows, or null to read every row from HBase.
+   */
+  public RowReadCoalescer(ObjectMapper mapper, OffHeapRowCache cache) {
+    this(mapper, cache, null);
+  }
+
+  /**
+   * Constructs a coalescer reading through a row cache and a negative cache.
+   *
+   * @param mapper serializing rows, as the JSON provider of the resources would.
+   * @param cache of serialized rows, or null.
+   * @param negativeCache of the reads which found no cell, or null.
+   */
+  public RowReadCoalescer(ObjectMapper mapper, OffHeapRowCache cache,
+      NegativeRowCache negativeCache) {
+    mMapper = mapper;
+    mCache = cache;
+    mNegativeCache = negativeCache;
+  }
+
+  /**
+   * Reads a row, from the caches if they hold it, or else joining an identical read in flight
+   * if there is one.
+   *
+   * @param key of the read.
+   * @param read reading the row from HBase, if it is neither cached nor being read.
+   * @return the row serialized to JSON.
+   * @throws IOException if the read fails.
+   */
+  public StreamingOutput read(final RowReadKey key, final Callable<KijiRestRow> read)
+      throws IOException {
+    if (null != mNegativeCache) {
+      final byte[] missing = mNegativeCache.get(key);
+      if (null != missing) {
+        return new BytesOutput(missing);
+      }
+    }
+    if (null != mCache) {
+      final StreamingOutput cached = mCache.get(key);
+      if (null != cached) {
+        return cached;
+      }
+    }
+    final byte[] bytes = mReads.get(key, new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        // Stamps are taken before the read, so that writes made meanwhile are noticed.
+        long stamp = 0;
+        if (null != mCache) {
+          stamp = mCache.getStamp(key);
+        }
+        long negativeStamp = 0;
+        if (null != mNegativeCache) {
+          negativeStamp = mNegativeCache.getStamp(key);
+        }
+        final KijiRestRow row = read.call();
+        final byte[] serialized = mMapper.writeValueAsBytes(row);
+        if (null != mNegativeCache && row.getCells().isEmpty()) {
+          mNegativeCache.put(key, serialized, negativeStamp);
+        } else if (null != mCache) {
+          mCache.put(key, serialized, stamp);
+        }
+        return serialized;
+      }
+    });
+    return new BytesOutput(bytes);
+  }
+
+  /**
+   * Tells whether a row is known not to exist, without reading HBase.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param rowKey is the HBase row key of the row.
+   * @return whether the row does not exist; false if it may exist.
+   */
+  public boolean isAbsent(String instance, String table, byte[] rowKey) {
+    return null != mNegativeCache && mNegativeCache.isAbsent(instance, table, rowKey);
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Sets;
+
+/**
+ * Identifies the read of a row: its table, its row key and the data requested from it. Reads
+ * with equal keys return the same data.
+ */
+public final class RowReadKey {
+  private final String mInstance;
+  private final String mTable;
+  private final byte[] mRowKey;
+  private final String mColumns;
+  private final int mMaxVersions;
+  private final long[] mTimeRange;
+
+  /**
+   * Constructs the key of a row read.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param rowKey is the HBase row key of the row.
+   * @param columns is the comma separated list of columns requested.
+   * @param maxVersions is the number of versions requested per column.
+   * @param timeRange is the time range requested, or null for all times.
+   */
+  public RowReadKey(String instance, String table, byte[] rowKey, String columns,
+      int maxVersions, long[] timeRange) {
+    mInstance = instance;
+    mTable = table;
+    mRowKey = rowKey;
+    // The same columns listed in any order or repeated request the same data.
+    final SortedSet<String> sortedColumns = Sets.newTreeSet(
+        Splitter.on(',').trimResults().omitEmptyStrings().split(columns));
+    mColumns = Joiner.on(',').join(sortedColumns);
+    mMaxVersions = maxVersions;
+    mTimeRange = timeRange;
+  }
+
+  /**
+   * Gets the key identifying a row as a whole, whatever data is read from it.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param rowKey is the HBase row key of the row.
+   * @return the key of the row.
+   */
+  public static RowReadKey forRow(String instance, String table, byte[] rowKey) {
+    return new RowReadKey(instance, table, rowKey, "", 0, null);
+  }
+
+  /** @return the key identifying the row read as a whole. */
+  public RowReadKey getRow() {
+    return forRow(mInstance, mTable, mRowKey);
+  }
+
+  /** @return the instance in which the table resides. */
+  public String getInstance() {
+    return mInstance;
+  }
+
+  /** @return the table in which the row resides. */
+  public String getTable() {
+    return mTable;
+  }
+
+  /** @return the HBase row key of the row. */
+  public byte[] getRowKey() {
+    return mRowKey;
+  }
+
+  /** @return the columns requested, sorted and comma separated. */
+  public String getColumns() {
+    return mColumns;
+  }
+
+  /** @return the number of versions requested per column. */
+  public int getMaxVersions() {
+    return mMaxVersions;
+  }
+
+  /** @return the time range requested, or null for all times. */
+  public long[] getTimeRange() {
+    return mTimeRange;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(Object object) {
+    if (!(object instanceof RowReadKey)) {
+      return false;
+    }
+    final RowReadKey other = (RowReadKey) object;
+    return mInstance.equals(other.mInstance)
+        && mTable.equals(other.mTable)
+        && Arrays.equals(mRowKey, other.mRowKey)
+        && mColumns.equals(other.mColumns)
+        && mMaxVersions == other.mMaxVersions
+        && Arrays.equals(mTimeRange, other.mTimeRange);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(mInstance, mTable, Arrays.hashCode(mRowKey), mColumns, mMaxVersions,
+        Arrays.hashCode(mTimeRange));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(RowReadKey.class)
+        .add("instance", mInstance)
+        .add("table", mTable)
+        .add("rowKey", Arrays.toString(mRowKey))
+        .add("columns", mColumns)
+        .add("maxVersions", mMaxVersions)
+        .add("timeRange", Arrays.toString(mTimeRange))
+        .toString();
+  }
+}
@@ -0,0 +1,141 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Selects cached rows to purge: the rows of an instance, of a table, a row, or the rows of a
+ * table whose key starts with a prefix.
+ */
+public final class RowSelector {
+  /** Separates the instance, the table and the row key. */
+  private static final String SEPARATOR = "/";
+
+  private final String mInstance;
+  private final String mTable;
+  private final String mHexRowKey;
+  private final boolean mPrefix;
+
+  /**
+   * @param instance selected.
+   * @param table selected, or null for every table of the instance.
+   * @param hexRowKey is the row key selected, in lower case hex, or null for every row.
+   * @param prefix is whether the rows whose key starts with the row key are selected.
+   */
+  private RowSelector(String instance, String table, String hexRowKey, boolean prefix) {
+    mInstance = instance;
+    mTable = table;
+    mHexRowKey = hexRowKey;
+    mPrefix = prefix;
+  }
+
+  /**
+   * Parses a selector.
+   *
+   * @param spec is instance, instance/table or instance/table/hex-row-key.
+   * @param prefix is whether the hex row key is a prefix of the keys selected.
+   * @return the selector.
+   * @throws IllegalArgumentException if the selector is not valid.
+   */
+  public static RowSelector parse(String spec, boolean prefix) {
+    final String[] parts = spec.split(SEPARATOR, 3);
+    Preconditions.checkArgument(!parts[0].isEmpty(), "No instance in %s.", spec);
+    String table = null;
+    if (parts.length > 1) {
+      table = parts[1];
+    }
+    String hexRowKey = null;
+    if (parts.length > 2) {
+      hexRowKey = parts[2].toLowerCase();
+      Preconditions.checkArgument(hexRowKey.matches("[0-9a-f]*"),
+          "Row key %s is not hex.", parts[2]);
+    }
+    Preconditions.checkArgument(!prefix || null != hexRowKey,
+        "A row key prefix must follow instance/table in %s.", spec);
+    return new RowSelector(parts[0], table, hexRowKey, prefix);
+  }
+
+  /** @return the instance selected. */
+  public String getInstance() {
+    return mInstance;
+  }
+
+  /** @return the table selected, or null for every table of the instance. */
+  public String getTable() {
+    return mTable;
+  }
+
+  /** @return whether whole tables or instances are selected, rather than rows. */
+  public boolean isWholeTables() {
+    return null == mHexRowKey;
+  }
+
+  /**
+   * @param instance of a table.
+   * @param table name.
+   * @return whether the instance or the table is selected whole.
+   */
+  public boolean matchesTable(String instance, String table) {
+    return isWholeTables() && mInstance.equals(instance)
+        && (null == mTable || mTable.equals(table));
+  }
+
+  /**
+   * @param key of a read.
+   * @return whether the row of the read is selected.
+   */
+  public boolean matches(RowReadKey key) {
+    if (!mInstance.equals(key.getInstance())) {
+      return false;
+    }
+    if (null == mTable) {
+      return true;
+    }
+    if (!mTable.equals(key.getTable())) {
+      return false;
+    }
+    if (null == mHexRowKey) {
+      return true;
+    }
+    final String hexRowKey = Hex.encodeHexString(key.getRowKey());
+    if (mPrefix) {
+      return hexRowKey.startsWith(mHexRowKey);
+    }
+    return hexRowKey.equals(mHexRowKey);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder(mInstance);
+    if (null != mTable) {
+      builder.append(SEPARATOR).append(mTable);
+    }
+    if (null != mHexRowKey) {
+      builder.append(SEPARATOR).append(mHexRowKey);
+      if (mPrefix) {
+        builder.append('*');
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the invalidations of rows, in stripes, so that caches can tell whether a row was
+ * written while it was being read: a response is only cached if the stamp of its row taken
+ * before the read is still current.
+ */
+final class RowStamps {
+  /** Number of stripes of the stamps. */
+  private static final int STRIPES = 64;
+
+  private final AtomicLongArray mStamps = new AtomicLongArray(STRIPES);
+
+  /**
+   * @param row as returned by {@link RowReadKey#forRow}.
+   * @return the current stamp of the row.
+   */
+  long get(RowReadKey row) {
+    return mStamps.get(stripeOf(row));
+  }
+
+  /**
+   * Moves the stamp of a row on, before the responses cached for it are dropped.
+   *
+   * @param row as returned by {@link RowReadKey#forRow}.
+   */
+  void advance(RowReadKey row) {
+    mStamps.incrementAndGet(stripeOf(row));
+  }
+
+  /** Moves the stamps of all rows on, before responses selected otherwise than by row drop. */
+  void advanceAll() {
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      mStamps.incrementAndGet(stripe);
+    }
+  }
+
+  /**
+   * @param row as returned by {@link RowReadKey#forRow}.
+   * @param stamp of the row, taken before it was read.
+   * @return whether the row was not invalidated since the stamp was taken.
+   */
+  boolean isCurrent(RowReadKey row, long stamp) {
+    return get(row) == stamp;
+  }
+
+  /**
+   * @param row as returned by {@link RowReadKey#forRow}.
+   * @return the stripe of the stamp of the row.
+   */
+  private static int stripeOf(RowReadKey row) {
+    final int h = row.hashCode() * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & (STRIPES - 1);
+  }
+}
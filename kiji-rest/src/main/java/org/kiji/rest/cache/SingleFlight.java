@@ -0,0 +1,133 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.collect.Maps;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+
+import org.kiji.rest.admission.Deadline;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller loads the value in its own
+ * thread, and callers asking for the key while that load is in flight wait for its outcome
+ * instead of loading it again. Nothing is kept once the load completes.
+ *
+ * @param <K> is the type of the keys.
+ * @param <V> is the type of the values.
+ */
+public final class SingleFlight<K, V> {
+  /** Loads in flight, by key. */
+  private final ConcurrentMap<K, FutureTask<V>> mInFlight = Maps.newConcurrentMap();
+
+  private final Meter mLoads;
+  private final Meter mCoalesced;
+
+  /**
+   * Constructs a single-flight group.
+   *
+   * @param name of the group, scoping its metrics.
+   */
+  public SingleFlight(String name) {
+    mLoads = Metrics.newMeter(new MetricName(SingleFlight.class, "loads", name), "loads",
+        TimeUnit.SECONDS);
+    mCoalesced = Metrics.newMeter(new MetricName(SingleFlight.class, "coalesced", name),
+        "requests", TimeUnit.SECONDS);
+    Metrics.newGauge(new MetricName(SingleFlight.class, "in-flight", name), new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return mInFlight.size();
+      }
+    });
+  }
+
+  /**
+   * Gets the value of a key, joining the load of the key in flight if there is one.
+   *
+   * @param key to load.
+   * @param loader loading the value of the key, if no load is in flight.
+   * @return the value loaded.
+   * @throws IOException if the load throws one.
+   * @throws WebApplicationException with 504 if the deadline of the request expires while
+   *     waiting for the load of another request, or as thrown by the load.
+   */
+  public V get(K key, Callable<V> loader) throws IOException {
+    final FutureTask<V> load = new FutureTask<V>(loader);
+    final FutureTask<V> inFlight = mInFlight.putIfAbsent(key, load);
+    if (null != inFlight) {
+      mCoalesced.mark();
+      return await(inFlight);
+    }
+    mLoads.mark();
+    try {
+      load.run();
+    } finally {
+      mInFlight.remove(key, load);
+    }
+    return await(load);
+  }
+
+  /**
+   * Waits for the outcome of a load, until the deadline of the request at most.
+   *
+   * @param load to wait for.
+   * @param <V> is the type of the value.
+   * @return the value loaded.
+   * @throws IOException if the load threw one.
+   */
+  private static <V> V await(FutureTask<V> load) throws IOException {
+    try {
+      final Deadline deadline = Deadline.current();
+      if (null == deadline) {
+        return load.get();
+      }
+      try {
+        return load.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException te) {
+        throw deadline.expired();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new WebApplicationException(ie, Status.SERVICE_UNAVAILABLE);
+    } catch (ExecutionException ee) {
+      final Throwable cause = ee.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new WebApplicationException(cause, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+}
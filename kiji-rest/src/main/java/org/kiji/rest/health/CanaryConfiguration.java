@@ -0,0 +1,49 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.health;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * A row the health check of an instance reads to probe it.
+ */
+public class CanaryConfiguration {
+  /** Table of the canary row. */
+  @NotEmpty
+  @JsonProperty("table")
+  private String mTable;
+
+  /** Row key of the canary row, as a single entity id component. */
+  @NotEmpty
+  @JsonProperty("rowKey")
+  private String mRowKey;
+
+  /** @return the table of the canary row. */
+  public final String getTable() {
+    return mTable;
+  }
+
+  /** @return the row key of the canary row. */
+  public final String getRowKey() {
+    return mRowKey;
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.health;
+
+import java.util.Map;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Maps;
+
+/**
+ * Configuration of the health checks of the served instances.
+ */
+public class HealthCheckConfiguration {
+  /** Canary rows probed by the health checks, by instance. */
+  @Valid
+  @JsonProperty("canaries")
+  private Map<String, CanaryConfiguration> mCanaries = Maps.newHashMap();
+
+  /** Probe latency above which an instance is reported unhealthy, in milliseconds; 0 for none. */
+  @Min(0)
+  @JsonProperty("maxProbeMillis")
+  private long mMaxProbeMillis = 1000;
+
+  /**
+   * Gets the canary row of an instance.
+   *
+   * @param instance name.
+   * @return the canary row of the instance, or null if it has none.
+   */
+  public final CanaryConfiguration getCanary(String instance) {
+    return mCanaries.get(instance);
+  }
+
+  /** @return the probe latency above which an instance is unhealthy, or 0 for none. */
+  public final long getMaxProbeMillis() {
+    return mMaxProbeMillis;
+  }
+}
@@ -19,10 +19,20 @@
 
 package org.kiji.rest.health;
 
+import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.HealthCheck;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.stats.Snapshot;
 
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.ManagedKijiClient;
+import org.kiji.schema.EntityId;
 import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.KijiURI;
+import org.kiji.schema.util.ResourceUtils;
 
 /**
  * A health check of whether the parametrized instances can be accessed.
@@ -31,24 +41,109 @@ public class InstanceHealthCheck extends HealthCheck {
   /** The URI of the instance. */
   private final KijiURI mKijiURI;
 
+  /** Client whose handle on the instance is checked, or null to open the instance anew. */
+  private final KijiClient mKijiClient;
+
+  /** Client whose table pools are reported, or null if the client is not a managed one. */
+  private final ManagedKijiClient mManagedKijiClient;
+
+  /** Row read to probe the instance, or null to list its tables instead. */
+  private final CanaryConfiguration mCanary;
+
+  /** Probe latency above which the instance is unhealthy, in milliseconds; 0 for none. */
+  private final long mMaxProbeMillis;
+
+  /** Latencies of the recent probes, in milliseconds. */
+  private final Histogram mProbeMillis;
+
   /**
    * Constructor parametrized by the URI of the instance which is available to REST clients.
    *
    * @param kijiURI The URI of the instance to check.
    */
   public InstanceHealthCheck(final KijiURI kijiURI) {
+    this(kijiURI, null);
+  }
+
+  /**
+   * Constructs a health check of the handle a client holds on an instance. The check reads the
+   * table names of the instance through that handle instead of opening the instance again.
+   *
+   * @param kijiURI The URI of the instance to check.
+   * @param kijiClient The client serving the instance, or null to open the instance anew.
+   */
+  public InstanceHealthCheck(final KijiURI kijiURI, final KijiClient kijiClient) {
+    this(kijiURI, kijiClient, null, null, 0);
+  }
+
+  /**
+   * Constructs a health check probing an instance through the handles and table pools of a
+   * managed client. The check reads the configured canary row of the instance, if any, and
+   * reports the probe latency percentiles and the occupancy of the table pools.
+   *
+   * @param kijiURI The URI of the instance to check.
+   * @param kijiClient The client serving the instance.
+   * @param configuration of the health checks.
+   */
+  public InstanceHealthCheck(final KijiURI kijiURI, final ManagedKijiClient kijiClient,
+      final HealthCheckConfiguration configuration) {
+    this(kijiURI, kijiClient, kijiClient, configuration.getCanary(kijiURI.getInstance()),
+        configuration.getMaxProbeMillis());
+  }
+
+  /**
+   * Constructs a health check.
+   *
+   * @param kijiURI The URI of the instance to check.
+   * @param kijiClient The client serving the instance, or null to open the instance anew.
+   * @param managedKijiClient The client whose pools to report, or null.
+   * @param canary The row to probe, or null to list the tables of the instance.
+   * @param maxProbeMillis The probe latency above which the instance is unhealthy, or 0.
+   */
+  private InstanceHealthCheck(final KijiURI kijiURI, final KijiClient kijiClient,
+      final ManagedKijiClient managedKijiClient, final CanaryConfiguration canary,
+      final long maxProbeMillis) {
     super(kijiURI.toString());
     mKijiURI = kijiURI;
+    mKijiClient = kijiClient;
+    mManagedKijiClient = managedKijiClient;
+    mCanary = canary;
+    mMaxProbeMillis = maxProbeMillis;
+    mProbeMillis = Metrics.newHistogram(InstanceHealthCheck.class, "probe-millis",
+        kijiURI.getInstance(), true);
   }
 
   /**
-   * Opens and closes the instance hopefully without exceptions,
-   * otherwise an exception is trickled to the REST client.
+   * Probes the instance through the client's handles, or opens and closes it if there is no
+   * client, hopefully without exceptions, otherwise an exception is trickled to the REST client.
    *
-   * @return Healthy result upon successful open/release of instance.
+   * @return Healthy result upon a successful and timely probe, along with its latency and the
+   *     occupancy of the table pools.
    */
   @Override
   protected final Result check() {
+    if (null != mKijiClient) {
+      if (!mKijiClient.getInstances().contains(mKijiURI)) {
+        return Result.healthy("Instance is no longer served.");
+      }
+      final long startTime = System.currentTimeMillis();
+      try {
+        probe();
+      } catch (Exception exception) {
+        if (null != mCanary) {
+          return Result.unhealthy("Could not read the canary row of instance.");
+        }
+        return Result.unhealthy("Could not read the tables of instance.");
+      }
+      final long probeMillis = System.currentTimeMillis() - startTime;
+      mProbeMillis.update(probeMillis);
+      final String report = report(probeMillis);
+      if (mMaxProbeMillis > 0 && probeMillis > mMaxProbeMillis) {
+        return Result.unhealthy("Probe too slow: " + report);
+      }
+      return Result.healthy(report);
+    }
+
     try {
       Kiji kiji = Kiji.Factory.open(mKijiURI);
       kiji.release();
@@ -58,4 +153,65 @@ public class InstanceHealthCheck extends HealthCheck {
 
     return Result.healthy();
   }
+
+  /**
+   * Reads the canary row through the client's table pool, or lists the tables of the instance
+   * through the client's handle if there is no canary row.
+   *
+   * @throws Exception if the probe fails.
+   */
+  private void probe() throws Exception {
+    final String instance = mKijiURI.getInstance();
+    if (null == mCanary) {
+      final Kiji kiji = mKijiClient.getKiji(instance);
+      try {
+        kiji.getTableNames();
+      } finally {
+        kiji.release();
+      }
+      return;
+    }
+    final KijiTable table = mKijiClient.getKijiTable(instance, mCanary.getTable());
+    try {
+      final KijiTableReader reader = table.openTableReader();
+      try {
+        final EntityId entityId = table.getEntityId(mCanary.getRowKey());
+        final String family = table.getLayout().getFamilies().iterator().next().getName();
+        reader.get(entityId, KijiDataRequest.create(family));
+      } finally {
+        ResourceUtils.closeOrLog(reader);
+      }
+    } finally {
+      ResourceUtils.releaseOrLog(table);
+    }
+  }
+
+  /**
+   * Describes the latency of the probes and the occupancy of the table pools.
+   *
+   * @param probeMillis is the latency of the last probe, in milliseconds.
+   * @return the report.
+   */
+  private String report(long probeMillis) {
+    final Snapshot snapshot = mProbeMillis.getSnapshot();
+    final StringBuilder report = new StringBuilder(String.format(
+        "probe %d ms (p50 %.0f ms, p95 %.0f ms, p99 %.0f ms)", probeMillis,
+        snapshot.getMedian(), snapshot.get95thPercentile(), snapshot.get99thPercentile()));
+    if (null != mManagedKijiClient) {
+      final String instance = mKijiURI.getInstance();
+      report.append(String.format(", %d tables leased",
+          mManagedKijiClient.getLeasedTables(instance)));
+      if (null != mCanary) {
+        final String table = mCanary.getTable();
+        final Integer maxSize = mManagedKijiClient.getMaxTablePoolSize(instance, table);
+        String capacity = "unbounded";
+        if (null != maxSize) {
+          capacity = String.valueOf(maxSize);
+        }
+        report.append(String.format(", pool of %s holds %d of %s", table,
+            mManagedKijiClient.getTablePoolSize(instance, table), capacity));
+      }
+    }
+    return report.toString();
+  }
 }
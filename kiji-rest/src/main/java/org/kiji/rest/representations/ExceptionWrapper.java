@@ -31,7 +31,7 @@ import javax.ws.rs.core.Response.Status;
 public final class ExceptionWrapper {
 
   private Throwable mWrappedException;
-  private Status mStatus;
+  private int mStatusCode;
 
   /**
    * Default constructor.
@@ -40,8 +40,19 @@ public final class ExceptionWrapper {
    * @param exception is the exception that was thrown
    */
   public ExceptionWrapper(Status status, Throwable exception) {
+    this(status.getStatusCode(), exception);
+  }
+
+  /**
+   * Constructs a wrapper for a status code without a constant in {@link Status}, such as 429 or
+   * 504.
+   *
+   * @param statusCode is the status code to display
+   * @param exception is the exception that was thrown
+   */
+  public ExceptionWrapper(int statusCode, Throwable exception) {
     super();
-    this.mStatus = status;
+    this.mStatusCode = statusCode;
     if (exception.getCause() != null) {
       this.mWrappedException = exception.getCause();
     } else {
@@ -73,6 +84,6 @@ public final class ExceptionWrapper {
    * @return the status code
    */
   public int getStatus() {
-    return mStatus.getStatusCode();
+    return mStatusCode;
   }
 }
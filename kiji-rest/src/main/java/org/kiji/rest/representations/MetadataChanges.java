@@ -0,0 +1,164 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.representations;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.kiji.schema.avro.TableLayoutDesc;
+
+/**
+ * Class used to represent the schema and layout entries added to the metadata of an instance
+ * after a given schema id and layout timestamp.
+ */
+public class MetadataChanges {
+
+  @JsonProperty("layout_version")
+  private String mLayoutVersion;
+
+  @JsonProperty("latest_schema_id")
+  private long mLatestSchemaId;
+
+  @JsonProperty("schemas")
+  private List<SchemaEntry> mSchemas;
+
+  @JsonProperty("layouts")
+  private Map<String, List<LayoutEntry>> mLayouts;
+
+  /**
+   * Constructs a MetadataChanges.
+   *
+   * @param layoutVersion is the data version of the instance.
+   * @param latestSchemaId is the highest schema id of the instance, or -1 if there is none.
+   * @param schemas added after the given schema id, in increasing id order.
+   * @param layouts added after the given timestamp, by table, in increasing timestamp order.
+   */
+  public MetadataChanges(String layoutVersion, long latestSchemaId, List<SchemaEntry> schemas,
+      Map<String, List<LayoutEntry>> layouts) {
+    mLayoutVersion = layoutVersion;
+    mLatestSchemaId = latestSchemaId;
+    mSchemas = schemas;
+    mLayouts = layouts;
+  }
+
+  /**
+   * Default constructor to satisfy Jackson.
+   */
+  public MetadataChanges() {
+  }
+
+  /** @return the data version of the instance. */
+  public String getLayoutVersion() {
+    return mLayoutVersion;
+  }
+
+  /** @return the highest schema id of the instance, or -1 if there is none. */
+  public long getLatestSchemaId() {
+    return mLatestSchemaId;
+  }
+
+  /** @return the schemas added after the given schema id. */
+  public List<SchemaEntry> getSchemas() {
+    return mSchemas;
+  }
+
+  /** @return the layouts added after the given timestamp, by table. */
+  public Map<String, List<LayoutEntry>> getLayouts() {
+    return mLayouts;
+  }
+
+  /**
+   * A schema of the schema table along with its id.
+   */
+  public static class SchemaEntry {
+    @JsonProperty("id")
+    private long mId;
+
+    @JsonProperty("avro_schema")
+    private String mAvroSchema;
+
+    /**
+     * Constructs a SchemaEntry.
+     *
+     * @param id of the schema.
+     * @param avroSchema is the JSON form of the schema.
+     */
+    public SchemaEntry(long id, String avroSchema) {
+      mId = id;
+      mAvroSchema = avroSchema;
+    }
+
+    /**
+     * Default constructor to satisfy Jackson.
+     */
+    public SchemaEntry() {
+    }
+
+    /** @return the id of the schema. */
+    public long getId() {
+      return mId;
+    }
+
+    /** @return the JSON form of the schema. */
+    public String getAvroSchema() {
+      return mAvroSchema;
+    }
+  }
+
+  /**
+   * A layout of the meta table along with the time it was set.
+   */
+  public static class LayoutEntry {
+    @JsonProperty("timestamp")
+    private long mTimestamp;
+
+    @JsonProperty("layout")
+    private TableLayoutDesc mLayout;
+
+    /**
+     * Constructs a LayoutEntry.
+     *
+     * @param timestamp at which the layout was set, in milliseconds since the epoch.
+     * @param layout of the table.
+     */
+    public LayoutEntry(long timestamp, TableLayoutDesc layout) {
+      mTimestamp = timestamp;
+      mLayout = layout;
+    }
+
+    /**
+     * Default constructor to satisfy Jackson.
+     */
+    public LayoutEntry() {
+    }
+
+    /** @return the time at which the layout was set, in milliseconds since the epoch. */
+    public long getTimestamp() {
+      return mTimestamp;
+    }
+
+    /** @return the layout of the table. */
+    public TableLayoutDesc getLayout() {
+      return mLayout;
+    }
+  }
+}
@@ -32,9 +32,11 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.Schema.Type;
 import org.apache.avro.generic.GenericDatumReader;
@@ -43,6 +45,10 @@ import org.apache.avro.io.DecoderFactory;
 import org.kiji.annotations.ApiAudience;
 import org.kiji.rest.representations.KijiRestCell;
 import org.kiji.rest.representations.KijiRestRow;
+import org.kiji.rest.resources.WriteDescriptor.ColumnDescriptor;
+import org.kiji.rest.writes.SpooledRow;
+import org.kiji.rest.writes.SpooledRow.SpooledCell;
+import org.kiji.rest.writes.WriteSpool;
 import org.kiji.schema.EntityId;
 import org.kiji.schema.KijiCell;
 import org.kiji.schema.KijiColumnName;
@@ -64,6 +70,12 @@ import org.kiji.schema.layout.SchemaClassNotFoundException;
 @ApiAudience.Framework
 public class AbstractRowResource {
 
+  /** Header through which clients may ask for writes to be acknowledged asynchronously. */
+  protected static final String PREFER_HEADER = "Prefer";
+
+  /** Preference asking for a write to be acknowledged before it is applied. */
+  private static final String RESPOND_ASYNC = "respond-async";
+
   /**
    * Retrieves the Min..Max timestamp given the user specified time range. Min and Max represent
    * long-type time in milliseconds since the UNIX Epoch. e.g. '123..1234', '0..', or '..1234'.
@@ -257,6 +269,72 @@ public class AbstractRowResource {
     return returnRow;
   }
 
+  /**
+   * Checks whether the client asked for an asynchronous response.
+   *
+   * @param prefer is the Prefer header of the request, possibly null.
+   * @return whether the header contains the respond-async preference.
+   */
+  protected static boolean isAsyncPreferred(String prefer) {
+    if (null == prefer) {
+      return false;
+    }
+    for (String preference : prefer.split(",")) {
+      if (RESPOND_ASYNC.equalsIgnoreCase(preference.trim())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Validates a cell put and captures it for the write spool.
+   *
+   * @param descriptor of the column to put the cell to.
+   * @param column to put the cell to.
+   * @param timestamp to put the cell at.
+   * @param value to put; a long for counters, JSON otherwise.
+   * @param writerSchema is the JSON writer schema of the value, or null to use the layout's.
+   * @return the cell to spool.
+   * @throws WebApplicationException with status 400 if the value does not decode.
+   */
+  protected static SpooledCell toSpooledCell(ColumnDescriptor descriptor, KijiColumnName column,
+      long timestamp, String value, String writerSchema) {
+    final boolean isCounter = descriptor.isCounter();
+    // The value is decoded now, so that a value the spool would drop is refused up front.
+    try {
+      if (isCounter) {
+        Long.parseLong(value);
+      } else if (null != writerSchema) {
+        decodeJsonValue(value, new Schema.Parser().parse(writerSchema));
+      } else {
+        descriptor.decodeJsonValue(value);
+      }
+    } catch (NumberFormatException nfe) {
+      throw new WebApplicationException(nfe, Response.Status.BAD_REQUEST);
+    } catch (AvroRuntimeException are) {
+      throw new WebApplicationException(are, Response.Status.BAD_REQUEST);
+    } catch (IOException ioe) {
+      throw new WebApplicationException(ioe, Response.Status.BAD_REQUEST);
+    }
+    return new SpooledCell(column, timestamp, isCounter, value, writerSchema);
+  }
+
+  /**
+   * Appends a row write to the write spool.
+   *
+   * @param writeSpool to append to.
+   * @param row to write.
+   * @throws IOException if the row can not be serialized.
+   * @throws WebApplicationException if the spool is full.
+   */
+  protected static void spoolRow(WriteSpool writeSpool, SpooledRow row) throws IOException {
+    if (!writeSpool.append(row)) {
+      throw new WebApplicationException(new IOException("Write spool is full."),
+          Response.Status.SERVICE_UNAVAILABLE);
+    }
+  }
+
   /**
    * A helper method to perform counter puts.
    *
@@ -303,17 +381,98 @@ public class AbstractRowResource {
       final long timestamp,
       final Schema schema)
       throws IOException {
-    Preconditions.checkNotNull(schema);
     // Create the Avro record to write.
+    final Object datum = decodeJsonValue(jsonValue, schema);
+    // Write the put.
+    writer.put(entityId, column.getFamily(), column.getQualifier(), timestamp, datum);
+  }
+
+  /**
+   * Decodes a cell value received as JSON into the Avro datum to write.
+   *
+   * @param jsonValue The json value to decode.
+   * @param schema The schema of the cell.
+   * @return the decoded Avro datum.
+   * @throws IOException When the value is not valid JSON for the schema.
+   */
+  public static Object decodeJsonValue(final String jsonValue, final Schema schema)
+      throws IOException {
+    Preconditions.checkNotNull(schema);
     // String types are a bit annoying in that those need double escaping of the quotations
     // which are impractical for clients and don't match the semantics of what GET returns. This
     // is because the JSON decoder requires escaped strings to be properly parsed into JSON.
-    Object datum = jsonValue;
-    if (schema.getType() != Type.STRING) {
-      GenericDatumReader<Object> reader = new GenericDatumReader<Object>(schema);
-      datum = reader.read(null, new DecoderFactory().jsonDecoder(schema, jsonValue));
+    if (schema.getType() == Type.STRING) {
+      return jsonValue;
+    }
+    GenericDatumReader<Object> reader = new GenericDatumReader<Object>(schema);
+    return reader.read(null, new DecoderFactory().jsonDecoder(schema, jsonValue));
+  }
+
+  /**
+   * Parses the columns a delete is restricted to.
+   *
+   * @param layout of the table deleted from.
+   * @param columns is a comma separated list of families and family:qualifier columns, or null.
+   * @return the columns to delete, empty if the whole row is deleted.
+   */
+  protected static List<KijiColumnName> getDeletedColumns(KijiTableLayout layout,
+      String columns) {
+    final List<KijiColumnName> deletedColumns = Lists.newArrayList();
+    if (null == columns || columns.trim().isEmpty()) {
+      return deletedColumns;
+    }
+    final List<String> invalidColumns = Lists.newArrayList();
+    for (String columnName : columns.split(",")) {
+      final KijiColumnName column = new KijiColumnName(columnName.trim());
+      if (layout.exists(column)) {
+        deletedColumns.add(column);
+      } else {
+        invalidColumns.add(column.getName());
+      }
+    }
+    if (!invalidColumns.isEmpty()) {
+      throw new WebApplicationException(new IllegalArgumentException(
+          "Specified columns do not exist: " + Joiner.on(", ").join(invalidColumns)),
+          Status.BAD_REQUEST);
+    }
+    return deletedColumns;
+  }
+
+  /**
+   * A helper method to delete a row, or some of its columns.
+   *
+   * @param writer The table writer which will do the deleting.
+   * @param entityId The entityId of the row to delete from.
+   * @param columns The families and columns to delete, or an empty list for the whole row.
+   * @param upToTimestamp The timestamp up to which cells are deleted, or null for all cells.
+   * @throws IOException When the delete fails.
+   */
+  public static void deleteCells(
+      final KijiTableWriter writer,
+      final EntityId entityId,
+      final List<KijiColumnName> columns,
+      final Long upToTimestamp)
+      throws IOException {
+    if (columns.isEmpty()) {
+      if (null == upToTimestamp) {
+        writer.deleteRow(entityId);
+      } else {
+        writer.deleteRow(entityId, upToTimestamp);
+      }
+      return;
+    }
+    for (KijiColumnName column : columns) {
+      if (!column.isFullyQualified()) {
+        if (null == upToTimestamp) {
+          writer.deleteFamily(entityId, column.getFamily());
+        } else {
+          writer.deleteFamily(entityId, column.getFamily(), upToTimestamp);
+        }
+      } else if (null == upToTimestamp) {
+        writer.deleteColumn(entityId, column.getFamily(), column.getQualifier());
+      } else {
+        writer.deleteColumn(entityId, column.getFamily(), column.getQualifier(), upToTimestamp);
+      }
     }
-    // Write the put.
-    writer.put(entityId, column.getFamily(), column.getQualifier(), timestamp, datum);
   }
 }
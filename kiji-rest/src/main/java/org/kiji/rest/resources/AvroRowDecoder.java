@@ -0,0 +1,295 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.rest.resources.WriteDescriptor.ColumnDescriptor;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.EntityIdFactory;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableWriter;
+
+/**
+ * Decodes application/avro request bodies into the puts they describe.
+ *
+ * <p>A body is a sequence of binary encoded records of the {@link #ROW_WRITE_SCHEMA} schema,
+ * whose cell values are themselves binary encoded with the schema of their column or with a
+ * writer schema referenced by the cell. Values are decoded once, straight from their binary
+ * encoding. Every column is validated against the table layout before anything is written.</p>
+ */
+@ApiAudience.Private
+final class AvroRowDecoder {
+  /** Media type of binary Avro row writes. */
+  public static final String AVRO_MEDIA_TYPE = "application/avro";
+
+  /** Schema of the records in an application/avro request body. */
+  public static final Schema ROW_WRITE_SCHEMA = loadRowWriteSchema();
+
+  private static final Schema COUNTER_SCHEMA = Schema.create(Schema.Type.LONG);
+
+  private final KijiTable mTable;
+  private final WriteDescriptor mDescriptor;
+  private final EntityIdFactory mEntityIdFactory;
+  private final long mDefaultTimestamp;
+
+  /** Datum readers by (writer schema, reader schema), reused across the cells of a body. */
+  private final Map<List<Schema>, GenericDatumReader<Object>> mValueReaders = Maps.newHashMap();
+
+  /** Parsed inline writer schemas, reused across the cells of a body. */
+  private final Map<String, Schema> mInlineSchemas = Maps.newHashMap();
+
+  /**
+   * Constructs a decoder of the writes to a table.
+   *
+   * @param table the rows are written to.
+   * @param defaultTimestamp of cells which do not specify a timestamp.
+   */
+  AvroRowDecoder(KijiTable table, long defaultTimestamp) {
+    mTable = table;
+    mDescriptor = WriteDescriptor.of(table.getLayout());
+    mEntityIdFactory = EntityIdFactory.getFactory(table.getLayout());
+    mDefaultTimestamp = defaultTimestamp;
+  }
+
+  /**
+   * Decodes a request body.
+   *
+   * @param body of the request.
+   * @param rowKey of the row written to when given by the URL, or null.
+   * @return the puts described by the body.
+   * @throws IOException if a writer schema can not be looked up.
+   * @throws WebApplicationException if the body is malformed or writes to invalid columns.
+   */
+  List<AvroPut> decode(InputStream body, byte[] rowKey) throws IOException {
+    final List<AvroPut> puts = Lists.newArrayList();
+    final Set<String> invalidColumns = Sets.newLinkedHashSet();
+    final GenericDatumReader<GenericRecord> rowReader =
+        new GenericDatumReader<GenericRecord>(ROW_WRITE_SCHEMA);
+    final BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(body, null);
+    BinaryDecoder valueDecoder = null;
+    try {
+      GenericRecord row = null;
+      while (!decoder.isEnd()) {
+        row = rowReader.read(row, decoder);
+        final EntityId entityId = getEntityId(toBytes((ByteBuffer) row.get("row_key")), rowKey);
+        for (Object cellObject : (Collection<?>) row.get("cells")) {
+          final GenericRecord cell = (GenericRecord) cellObject;
+          final KijiColumnName column = new KijiColumnName(cell.get("family").toString(),
+              cell.get("qualifier").toString());
+          final ColumnDescriptor columnDescriptor = mDescriptor.getColumn(column);
+          if (null == columnDescriptor) {
+            invalidColumns.add(column.getName());
+            continue;
+          }
+          final Schema readerSchema = getReaderSchema(columnDescriptor);
+          final Schema writerSchema = getWriterSchema(cell, readerSchema);
+          final ByteBuffer value = (ByteBuffer) cell.get("value");
+          valueDecoder = DecoderFactory.get().binaryDecoder(value.array(),
+              value.arrayOffset() + value.position(), value.remaining(), valueDecoder);
+          final Object datum = getValueReader(writerSchema, readerSchema).read(null, valueDecoder);
+
+          long timestamp = mDefaultTimestamp;
+          if (null != cell.get("timestamp")) {
+            timestamp = (Long) cell.get("timestamp");
+          }
+          puts.add(new AvroPut(entityId, column, timestamp, datum));
+        }
+      }
+    } catch (AvroRuntimeException are) {
+      throw new WebApplicationException(are, Status.BAD_REQUEST);
+    } catch (IOException ioe) {
+      // Truncated or otherwise malformed body.
+      throw new WebApplicationException(ioe, Status.BAD_REQUEST);
+    }
+
+    if (!invalidColumns.isEmpty()) {
+      throw new WebApplicationException(new IllegalArgumentException(
+          "Specified columns do not exist: " + Joiner.on(", ").join(invalidColumns)),
+          Status.BAD_REQUEST);
+    }
+    return puts;
+  }
+
+  /**
+   * Writes decoded puts.
+   *
+   * @param writer to write with.
+   * @param puts to write.
+   * @throws IOException if a put fails.
+   */
+  static void write(KijiTableWriter writer, List<AvroPut> puts) throws IOException {
+    for (AvroPut put : puts) {
+      writer.put(put.mEntityId, put.mColumn.getFamily(), put.mColumn.getQualifier(),
+          put.mTimestamp, put.mDatum);
+    }
+  }
+
+  /**
+   * @param bodyRowKey is the row key carried by the body, possibly empty.
+   * @param urlRowKey is the row key given by the URL, or null.
+   * @return the entity ID of the row written to.
+   */
+  private EntityId getEntityId(byte[] bodyRowKey, byte[] urlRowKey) {
+    if (null == urlRowKey) {
+      if (bodyRowKey.length == 0) {
+        throw new WebApplicationException(
+            new IllegalArgumentException("Row key was not specified."), Status.BAD_REQUEST);
+      }
+      return mEntityIdFactory.getEntityIdFromHBaseRowKey(bodyRowKey);
+    }
+    if (bodyRowKey.length != 0 && !Arrays.equals(bodyRowKey, urlRowKey)) {
+      throw new WebApplicationException(
+          new IllegalArgumentException("Row key of the body does not match the URL."),
+          Status.BAD_REQUEST);
+    }
+    return mEntityIdFactory.getEntityIdFromHBaseRowKey(urlRowKey);
+  }
+
+  /**
+   * @param columnDescriptor of the column to read a value of.
+   * @return the schema values of the column are written with.
+   */
+  private static Schema getReaderSchema(ColumnDescriptor columnDescriptor) {
+    if (columnDescriptor.isCounter()) {
+      return COUNTER_SCHEMA;
+    }
+    return columnDescriptor.getSchema();
+  }
+
+  /**
+   * @param cell whose writer schema to get.
+   * @param readerSchema is the schema of the column of the cell.
+   * @return the schema the value of the cell was encoded with.
+   * @throws IOException if the schema table can not be read.
+   */
+  private Schema getWriterSchema(GenericRecord cell, Schema readerSchema) throws IOException {
+    final Object schemaId = cell.get("writer_schema_id");
+    if (null != schemaId) {
+      final Schema schema = mTable.getKiji().getSchemaTable().getSchema((Long) schemaId);
+      if (null == schema) {
+        throw new WebApplicationException(
+            new IllegalArgumentException("No schema with ID " + schemaId), Status.BAD_REQUEST);
+      }
+      return schema;
+    }
+    final Object inlineSchema = cell.get("writer_schema");
+    if (null != inlineSchema) {
+      final String json = inlineSchema.toString();
+      Schema schema = mInlineSchemas.get(json);
+      if (null == schema) {
+        schema = new Schema.Parser().parse(json);
+        mInlineSchemas.put(json, schema);
+      }
+      return schema;
+    }
+    return readerSchema;
+  }
+
+  /**
+   * @param writerSchema the value was encoded with.
+   * @param readerSchema the value is decoded to.
+   * @return a datum reader resolving the writer schema to the reader schema.
+   */
+  private GenericDatumReader<Object> getValueReader(Schema writerSchema, Schema readerSchema) {
+    final List<Schema> key = Arrays.asList(writerSchema, readerSchema);
+    GenericDatumReader<Object> reader = mValueReaders.get(key);
+    if (null == reader) {
+      reader = new GenericDatumReader<Object>(writerSchema, readerSchema);
+      mValueReaders.put(key, reader);
+    }
+    return reader;
+  }
+
+  /**
+   * @param buffer to copy.
+   * @return the remaining bytes of the buffer.
+   */
+  private static byte[] toBytes(ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** @return the schema of the records of an application/avro request body. */
+  private static Schema loadRowWriteSchema() {
+    final InputStream schemaStream =
+        AvroRowDecoder.class.getResourceAsStream("/org/kiji/rest/avro/row_write.avsc");
+    try {
+      try {
+        return new Schema.Parser().parse(schemaStream);
+      } finally {
+        schemaStream.close();
+      }
+    } catch (IOException ioe) {
+      throw new ExceptionInInitializerError(ioe);
+    }
+  }
+
+  /** A single put decoded from a request body. */
+  static final class AvroPut {
+    private final EntityId mEntityId;
+    private final KijiColumnName mColumn;
+    private final long mTimestamp;
+    private final Object mDatum;
+
+    /**
+     * @param entityId of the row to put to.
+     * @param column to put to.
+     * @param timestamp of the cell.
+     * @param datum to put.
+     */
+    AvroPut(EntityId entityId, KijiColumnName column, long timestamp, Object datum) {
+      mEntityId = entityId;
+      mColumn = column;
+      mTimestamp = timestamp;
+      mDatum = datum;
+    }
+
+    /** @return the entity ID of the row to put to. */
+    EntityId getEntityId() {
+      return mEntityId;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.resources;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableWriter;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Deletes rows in parallel batches while streaming progress to the client.
+ *
+ * <p>Entity IDs are read from a keys-only scan or a key list on the request thread and grouped
+ * into batches. Each batch is deleted by a KijiTableWriter of its own, flushed once the batch is
+ * written, on the threads of the {@link DeleteExecutor} shared by all deletes, with up to
+ * "parallelism" batches in flight. After every batch a "\r\n" delimited JSON line reports
+ * the number of rows deleted so far; the last line also reports whether the delete completed,
+ * or the error that stopped it.</p>
+ *
+ * <p>The deleter owns the table and the scanner it is given and releases them once the delete
+ * ends.</p>
+ */
+@ApiAudience.Private
+final class BatchDeleter implements StreamingOutput {
+  private static final Logger LOG = LoggerFactory.getLogger(BatchDeleter.class);
+
+  private static final Meter ROWS_DELETED =
+      Metrics.newMeter(BatchDeleter.class, "rows-deleted", "rows", TimeUnit.SECONDS);
+
+  private final KijiTable mTable;
+  private final Iterator<EntityId> mEntityIds;
+  private final Closeable mScanner;
+  private final List<KijiColumnName> mColumns;
+  private final Long mUpToTimestamp;
+  private final int mBatchSize;
+  private final int mParallelism;
+  private final DeleteExecutor mExecutor;
+  private final ObjectMapper mJsonObjectMapper;
+
+  /** Whether the delete stopped, so that batches not started yet are skipped. */
+  private volatile boolean mStopped = false;
+
+  /**
+   * Constructs a deleter of rows.
+   *
+   * @param table to delete from, released once the delete ends.
+   * @param entityIds of the rows to delete.
+   * @param scanner the entity IDs are read from, closed once the delete ends, or null.
+   * @param columns to delete from each row, or an empty list to delete whole rows.
+   * @param upToTimestamp up to which cells are deleted, or null to delete all cells.
+   * @param batchSize is the number of rows deleted by a writer before it is flushed.
+   * @param parallelism is the number of batches deleted concurrently.
+   * @param executor to delete the batches on.
+   * @param jsonObjectMapper to write progress with.
+   */
+  // CSOFF: ParameterNumberCheck - A bulk delete has many knobs.
+  BatchDeleter(KijiTable table, Iterator<EntityId> entityIds, Closeable scanner,
+      List<KijiColumnName> columns, Long upToTimestamp, int batchSize, int parallelism,
+      DeleteExecutor executor, ObjectMapper jsonObjectMapper) {
+    // CSON: ParameterNumberCheck
+    mTable = table;
+    mEntityIds = entityIds;
+    mScanner = scanner;
+    mColumns = columns;
+    mUpToTimestamp = upToTimestamp;
+    mBatchSize = batchSize;
+    mParallelism = parallelism;
+    mExecutor = executor;
+    mJsonObjectMapper = jsonObjectMapper;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(OutputStream os) throws IOException {
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName("UTF-8")));
+    final CompletionService<Integer> batches = new ExecutorCompletionService<Integer>(mExecutor);
+    long deleted = 0;
+    int inFlight = 0;
+    String error = null;
+    try {
+      try {
+        while (mEntityIds.hasNext()) {
+          final List<EntityId> batch = Lists.newArrayListWithCapacity(mBatchSize);
+          while (batch.size() < mBatchSize && mEntityIds.hasNext()) {
+            batch.add(mEntityIds.next());
+          }
+          batches.submit(new DeleteBatch(batch));
+          inFlight++;
+          // Bound the number of buffered batches instead of reading every key up front.
+          if (inFlight >= mParallelism) {
+            final Future<Integer> done = batches.take();
+            inFlight--;
+            deleted += done.get();
+            writeProgress(writer, deleted, null, null);
+          }
+        }
+        while (inFlight > 0) {
+          final Future<Integer> done = batches.take();
+          inFlight--;
+          deleted += done.get();
+          writeProgress(writer, deleted, null, null);
+        }
+      } catch (ExecutionException ee) {
+        error = String.valueOf(ee.getCause());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        error = "Interrupted.";
+      } catch (RuntimeException re) {
+        // Most likely a scan failure.
+        error = String.valueOf(re);
+      }
+      if (null != error) {
+        LOG.warn("Bulk delete from table {} stopped after {} rows: {}",
+            mTable.getName(), deleted, error);
+      }
+      writeProgress(writer, deleted, null == error, error);
+      writer.flush();
+    } catch (IOException ioe) {
+      // The client went away; stop deleting.
+      LOG.info("Client closed bulk delete from table {} after {} rows.", mTable.getName(), deleted);
+    } finally {
+      // Batches still in flight use the table: wait for them before releasing it.
+      mStopped = true;
+      awaitBatches(batches, inFlight);
+      if (null != mScanner) {
+        ResourceUtils.closeOrLog(mScanner);
+      }
+      ResourceUtils.releaseOrLog(mTable);
+    }
+  }
+
+  /**
+   * Waits for the batches in flight of a delete which stopped. Batches not started yet are
+   * skipped.
+   *
+   * @param batches of the delete.
+   * @param inFlight is the number of batches in flight.
+   */
+  private void awaitBatches(CompletionService<Integer> batches, int inFlight) {
+    boolean interrupted = false;
+    int remaining = inFlight;
+    while (remaining > 0) {
+      try {
+        batches.take();
+        remaining--;
+      } catch (InterruptedException ie) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes a line of progress.
+   *
+   * @param writer to write to.
+   * @param deleted is the number of rows deleted so far.
+   * @param complete is whether the delete is over, or null if it is not.
+   * @param error that stopped the delete, or null.
+   * @throws IOException if the client went away.
+   */
+  private void writeProgress(Writer writer, long deleted, Boolean complete, String error)
+      throws IOException {
+    final Map<String, Object> progress = Maps.newLinkedHashMap();
+    progress.put("deleted", deleted);
+    if (null != complete) {
+      progress.put("complete", complete);
+    }
+    if (null != error) {
+      progress.put("error", error);
+    }
+    writer.write(mJsonObjectMapper.writeValueAsString(progress) + "\r\n");
+    writer.flush();
+  }
+
+  /** Deletes a batch of rows with a writer of its own. */
+  private final class DeleteBatch implements Callable<Integer> {
+    private final List<EntityId> mBatch;
+
+    /** @param batch of rows to delete. */
+    private DeleteBatch(List<EntityId> batch) {
+      mBatch = batch;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer call() throws IOException {
+      if (mStopped) {
+        return 0;
+      }
+      final KijiTableWriter writer = mTable.openTableWriter();
+      try {
+        for (EntityId entityId : mBatch) {
+          AbstractRowResource.deleteCells(writer, entityId, mColumns, mUpToTimestamp);
+        }
+        writer.flush();
+      } finally {
+        ResourceUtils.closeOrLog(writer);
+      }
+      ROWS_DELETED.mark(mBatch.size());
+      return mBatch.size();
+    }
+  }
+}
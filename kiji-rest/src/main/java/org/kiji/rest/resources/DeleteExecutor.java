@@ -0,0 +1,79 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.resources;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.dropwizard.lifecycle.Managed;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * Threads the batches of every bulk delete run on. However many deletes run at once, no more
+ * batches are deleted concurrently than there are threads; batches beyond that queue up. Each
+ * delete still bounds its own batches in flight to its parallelism.
+ */
+@ApiAudience.Private
+public final class DeleteExecutor implements Executor, Managed {
+  /** How long stop() waits for the batches being deleted. */
+  private static final long STOP_TIMEOUT_SECONDS = 10;
+
+  private final ExecutorService mExecutor;
+
+  /**
+   * Constructs an executor of delete batches. Its threads start as batches come in.
+   *
+   * @param threads is the most batches deleted at once.
+   */
+  public DeleteExecutor(int threads) {
+    mExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("batch-delete-%d")
+        .build());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void execute(Runnable batch) {
+    mExecutor.execute(batch);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void start() {
+  }
+
+  /**
+   * Stops deleting, letting the batches being deleted finish for a while.
+   *
+   * @throws InterruptedException if interrupted while waiting for the batches.
+   */
+  @Override
+  public void stop() throws InterruptedException {
+    mExecutor.shutdown();
+    if (!mExecutor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      mExecutor.shutdownNow();
+    }
+  }
+}
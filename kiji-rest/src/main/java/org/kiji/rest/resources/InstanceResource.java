@@ -22,12 +22,17 @@ package org.kiji.rest.resources;
 import static org.kiji.rest.RoutesConstants.INSTANCE_PARAMETER;
 import static org.kiji.rest.RoutesConstants.INSTANCE_PATH;
 
+import java.io.IOException;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import com.yammer.metrics.annotation.Timed;
@@ -35,51 +40,76 @@ import com.yammer.metrics.annotation.Timed;
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.rest.KijiClient;
-import org.kiji.schema.Kiji;
-import org.kiji.schema.avro.MetadataBackup;
-import org.kiji.schema.util.ResourceUtils;
+import org.kiji.rest.cache.MetadataCache;
 
 /**
  * This REST resource interacts with Kiji instances.
  *
  * This resource is served for requests using the resource identifier:
  * <li>/v1/instances/&lt;instance&gt;
+ * <li>/v1/instances/&lt;instance&gt;?since_schema_id=&lt;id&gt;
+ * <li>/v1/instances/&lt;instance&gt;?since_layout_timestamp=&lt;timestamp&gt;
  */
 @Path(INSTANCE_PATH)
 @Produces(MediaType.APPLICATION_JSON)
 @ApiAudience.Public
 public class InstanceResource {
-  private final KijiClient mKijiClient;
+  private final MetadataCache mMetadataCache;
 
   /**
-   * Default constructor.
+   * Default constructor. The metadata of an instance is read anew on every request.
    *
    * @param kijiClient that this should use for connecting to Kiji.
    */
   public InstanceResource(KijiClient kijiClient) {
-    mKijiClient = kijiClient;
+    this(MetadataCache.uncached(kijiClient));
   }
 
   /**
-   * GETs a list of instances that are available.
+   * Constructs an instance resource serving metadata through a cache.
+   *
+   * @param metadataCache to serve the metadata of instances from.
+   */
+  public InstanceResource(MetadataCache metadataCache) {
+    mMetadataCache = metadataCache;
+  }
+
+  /**
+   * GETs the metadata of an instance. The response carries an entity tag and a last-modified
+   * time, and is 304 Not Modified when the request's preconditions match them.
+   *
+   * If either "since" parameter is given, only the schemas with a greater id and the layouts
+   * set after the given timestamp are returned, along with the highest schema id to pass in the
+   * next request.
+   *
    * @param instance is the instance whose metadata is being requested.
+   * @param sinceSchemaId is the schema id after which to return schemas.
+   * @param sinceLayoutTimestamp is the timestamp after which to return layouts.
+   * @param request whose preconditions to evaluate.
    * @return the metadata about the instance.
    */
   @GET
   @Timed
   @ApiStability.Experimental
-  public MetadataBackup getInstanceMetadata(@PathParam(INSTANCE_PARAMETER) String instance) {
-    Kiji kiji = mKijiClient.getKiji(instance);
+  public Response getInstanceMetadata(@PathParam(INSTANCE_PARAMETER) String instance,
+      @QueryParam("since_schema_id") Long sinceSchemaId,
+      @QueryParam("since_layout_timestamp") Long sinceLayoutTimestamp,
+      @Context Request request) {
     try {
-      MetadataBackup backup = MetadataBackup.newBuilder()
-          .setLayoutVersion(kiji.getSystemTable().getDataVersion().toString())
-          .setSchemaTable(kiji.getSchemaTable().toBackup())
-          .setMetaTable(kiji.getMetaTable().toBackup()).build();
-      return backup;
-    } catch (Exception e) {
+      if (null == sinceSchemaId && null == sinceLayoutTimestamp) {
+        return mMetadataCache.getBackup(instance).toResponse(request);
+      }
+      long schemaId = -1;
+      if (null != sinceSchemaId) {
+        schemaId = sinceSchemaId;
+      }
+      long layoutTimestamp = -1;
+      if (null != sinceLayoutTimestamp) {
+        layoutTimestamp = sinceLayoutTimestamp;
+      }
+      return mMetadataCache.getChanges(instance, schemaId, layoutTimestamp).toResponse(request);
+    } catch (IOException e) {
       throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
-    } finally {
-      ResourceUtils.releaseOrLog(kiji);
     }
   }
 }
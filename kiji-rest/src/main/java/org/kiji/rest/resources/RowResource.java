@@ -25,12 +25,16 @@ import static org.kiji.rest.RoutesConstants.ROW_PATH;
 import static org.kiji.rest.RoutesConstants.TABLE_PARAMETER;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -44,6 +48,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.yammer.metrics.annotation.Timed;
 
@@ -55,8 +60,23 @@ import org.apache.hadoop.hbase.HConstants;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
+import org.kiji.rest.HedgedReader;
+import org.kiji.rest.HedgedReader.TableRead;
 import org.kiji.rest.KijiClient;
+import org.kiji.rest.admission.Bulkheads;
+import org.kiji.rest.admission.ClientQuota;
+import org.kiji.rest.admission.Deadline;
+import org.kiji.rest.admission.Deadlines;
+import org.kiji.rest.admission.QuotaOperation;
+import org.kiji.rest.cache.RowReadCoalescer;
+import org.kiji.rest.cache.RowReadKey;
 import org.kiji.rest.representations.KijiRestRow;
+import org.kiji.rest.resources.AvroRowDecoder.AvroPut;
+import org.kiji.rest.resources.WriteDescriptor.ColumnDescriptor;
+import org.kiji.rest.writes.CounterIncrementBuffer;
+import org.kiji.rest.writes.SpooledRow;
+import org.kiji.rest.writes.SpooledRow.SpooledCell;
+import org.kiji.rest.writes.WriteSpool;
 import org.kiji.schema.EntityId;
 import org.kiji.schema.EntityIdFactory;
 import org.kiji.schema.KijiColumnName;
@@ -66,7 +86,6 @@ import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
 import org.kiji.schema.KijiRowData;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableWriter;
-import org.kiji.schema.avro.SchemaType;
 import org.kiji.schema.util.ByteArrayFormatter;
 import org.kiji.schema.util.ResourceUtils;
 
@@ -77,6 +96,7 @@ import org.kiji.schema.util.ResourceUtils;
  * <ul>
  * <li>GET /v1/instances/&lt;instance&gt;/tables/&lt;table&gt/rows/&lt;hex_row_key&gt;
  * <li>PUT /v1/instances/&lt;instance&gt;/tables/&lt;table&gt/rows/&lt;hex_row_key&gt;
+ * <li>DELETE /v1/instances/&lt;instance&gt;/tables/&lt;table&gt/rows/&lt;hex_row_key&gt;
  * </ul>
  */
 @Path(ROW_PATH)
@@ -86,6 +106,27 @@ import org.kiji.schema.util.ResourceUtils;
 public class RowResource extends AbstractRowResource {
   private final KijiClient mKijiClient;
 
+  /** Write-behind buffer of counter increments, or null to increment counters directly. */
+  private final CounterIncrementBuffer mCounterBuffer;
+
+  /** Reader hedging to secondary clusters, or null if reads are not hedged. */
+  private final HedgedReader mHedgedReader;
+
+  /** Spool of asynchronous writes, or null if writes are always synchronous. */
+  private final WriteSpool mWriteSpool;
+
+  /** Bulkheads single-row reads run in, or null to read in the request thread. */
+  private final Bulkheads mBulkheads;
+
+  /** Deadlines single-row reads run against, or null to read without deadlines. */
+  private final Deadlines mDeadlines;
+
+  /** Coalescer of identical concurrent row reads, or null to read every row on its own. */
+  private final RowReadCoalescer mCoalescer;
+
+  /** Prefix for counter increment parameter. */
+  private static final String INCREMENT_PREFIX = "increment.";
+
   /** Prefix for cell-specific schema parameter. */
   private static final String SCHEMA_PREFIX = "schema.";
 
@@ -101,7 +142,25 @@ public class RowResource extends AbstractRowResource {
    * @param kijiClient that this should use for connecting to Kiji.
    */
   public RowResource(KijiClient kijiClient) {
+    this(kijiClient, new RowResourceOptions());
+  }
+
+  /**
+   * Constructs a RowResource which may buffer counter increments, spool writes, hedge reads,
+   * run reads in bulkheads, give up on reads past the deadline of their request and coalesce
+   * identical concurrent reads, as set in its options.
+   *
+   * @param kijiClient that this should use for connecting to Kiji.
+   * @param options of the resource.
+   */
+  public RowResource(KijiClient kijiClient, RowResourceOptions options) {
     mKijiClient = kijiClient;
+    mCounterBuffer = options.getCounterBuffer();
+    mWriteSpool = options.getWriteSpool();
+    mHedgedReader = options.getHedgedReader();
+    mBulkheads = options.getBulkheads();
+    mDeadlines = options.getDeadlines();
+    mCoalescer = options.getCoalescer();
   }
 
   /**
@@ -116,10 +175,19 @@ public class RowResource extends AbstractRowResource {
    * family:column=value. Warning: this overrides to the above global timestamp.
    * <li>schema.family:column=schema - schema is the JSON containing the schema of cell.
    * Optional; defaults to what is specified in the table layout.
+   * <li>increment.family:column=amount - amount is the long to increment the counter
+   * family:column by. Increments may be coalesced with other increments of the same cell when
+   * write-behind counter buffering is enabled. The global timestamp may be omitted when the
+   * request only contains increments.
+   * <p>
+   * When the write spool is enabled, a client sending the "Prefer: respond-async" header gets
+   * a 202 response as soon as the put is recorded in the local spool; the put is written to
+   * the table shortly after. Increments can not be written asynchronously.
    *
    * @param instance in which the table resides
    * @param table in which the row resides
    * @param hexEntityId for the row of interest
+   * @param prefer is the Prefer header of the request, if any
    * @param uriInfo containing query parameters
    * @return a message containing the rowkey of interest
    * @throws IOException when row put fails
@@ -127,28 +195,52 @@ public class RowResource extends AbstractRowResource {
   @PUT
   @Timed
   @ApiStability.Experimental
-  public Map<String, String> putRow(@PathParam(INSTANCE_PARAMETER) String instance,
+  public Response putRow(@PathParam(INSTANCE_PARAMETER) String instance,
       @PathParam(TABLE_PARAMETER) String table,
       @PathParam(HEX_ENTITY_ID_PARAMETER) String hexEntityId,
+      @HeaderParam(PREFER_HEADER) String prefer,
       @Context UriInfo uriInfo)
       throws IOException {
     // Checks existence of mandatory global timestamp.
-    if (!uriInfo.getQueryParameters().containsKey(TIMESTAMP_KEY)) {
+    if (!uriInfo.getQueryParameters().containsKey(TIMESTAMP_KEY)
+        && !isIncrementOnly(uriInfo.getQueryParameters())) {
       throw new WebApplicationException(new IllegalArgumentException("Timestamp is unspecified."),
           Response.Status.BAD_REQUEST);
     }
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      return writeRow(kijiTable, instance, table, hexEntityId, prefer, uriInfo);
+    } finally {
+      ResourceUtils.releaseOrLog(kijiTable);
+    }
+  }
+
+  /**
+   * Writes the row of a PUT to a leased table, released by the caller.
+   *
+   * @param kijiTable to write to.
+   * @param instance in which the table resides
+   * @param table in which the row resides
+   * @param hexEntityId for the row of interest
+   * @param prefer is the Prefer header of the request, if any
+   * @param uriInfo containing query parameters
+   * @return a message containing the rowkey of interest
+   * @throws IOException when row put fails
+   */
+  private Response writeRow(KijiTable kijiTable, String instance, String table,
+      String hexEntityId, String prefer, UriInfo uriInfo) throws IOException {
     // Default global timestamp. Will be set by a query parameter.
     long globalTimestamp = 0;
 
-    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
-
     final EntityIdFactory factory = EntityIdFactory.getFactory(kijiTable.getLayout());
     final EntityId entityId = factory.getEntityIdFromHBaseRowKey(
         ByteArrayFormatter.parseHex(hexEntityId));
+    final WriteDescriptor descriptor = WriteDescriptor.of(kijiTable.getLayout());
 
     Map<KijiColumnName, String> schemasMap = Maps.newHashMap();
     Map<KijiColumnName, Long> timestampsMap = Maps.newHashMap();
     Map<KijiColumnName, String> valuesMap = Maps.newHashMap();
+    Map<KijiColumnName, Long> incrementsMap = Maps.newHashMap();
 
     // Parse the query map to extract schemas, timestamps, and values cell-wise.
     MultivaluedMap<String, String> queryMap = uriInfo.getQueryParameters();
@@ -163,20 +255,46 @@ public class RowResource extends AbstractRowResource {
         schemasMap.put(column, queryValue);
       } else if (queryKey.startsWith(TIMESTAMP_PREFIX)) {
         KijiColumnName column = new KijiColumnName(queryKey.substring(TIMESTAMP_PREFIX.length()));
-        timestampsMap.put(column, Long.parseLong(queryValue));
+        timestampsMap.put(column, parseTimestamp(queryValue));
+      } else if (queryKey.startsWith(INCREMENT_PREFIX)) {
+        KijiColumnName column = new KijiColumnName(queryKey.substring(INCREMENT_PREFIX.length()));
+        incrementsMap.put(column, parseIncrement(descriptor, column, queryValue));
       } else if (queryKey.equals(TIMESTAMP_KEY)) {
-        globalTimestamp = Long.parseLong(queryValue);
+        globalTimestamp = parseTimestamp(queryValue);
       } else { // The query entry is column->value pair.
-        KijiColumnName column = new KijiColumnName(queryKey);
-        if (kijiTable.getLayout().exists(column)) {
-          valuesMap.put(column, queryValue);
+        valuesMap.put(new KijiColumnName(queryKey), queryValue);
+      }
+    }
+    // Reports every column that can not be written to at once.
+    descriptor.validate(valuesMap.keySet());
+    ClientQuota.chargeCurrent(QuotaOperation.CELLS_WRITTEN,
+        valuesMap.size() + incrementsMap.size());
+
+    // Better output?
+    Map<String, String> returnedTarget = Maps.newHashMap();
+    returnedTarget.put("target", "/" + uriInfo.getPath());
+
+    // Spool the put instead, if the client prefers not to wait for it.
+    if (null != mWriteSpool && isAsyncPreferred(prefer)) {
+      if (!incrementsMap.isEmpty()) {
+        throw new WebApplicationException(new IllegalArgumentException(
+            "Counter increments can not be written asynchronously."),
+            Response.Status.BAD_REQUEST);
+      }
+      final List<SpooledCell> cells = Lists.newArrayList();
+      for (Map.Entry<KijiColumnName, String> entry : valuesMap.entrySet()) {
+        final KijiColumnName column = entry.getKey();
+        final long timestamp;
+        if (null != timestampsMap.get(column)) {
+          timestamp = timestampsMap.get(column);
         } else {
-          // TODO: Collect all of the columns that don't exist and throw one exception with them.
-          throw new WebApplicationException(
-              new IllegalArgumentException("Specified column does not exist: " + column),
-              Response.Status.BAD_REQUEST);
+          timestamp = globalTimestamp;
         }
+        cells.add(toSpooledCell(descriptor.getColumn(column), column, timestamp,
+            entry.getValue(), schemasMap.get(column)));
       }
+      spoolRow(mWriteSpool, new SpooledRow(instance, table, entityId.getHBaseRowKey(), cells));
+      return Response.status(Status.ACCEPTED).entity(returnedTarget).build();
     }
 
     // Open writer and write.
@@ -194,41 +312,188 @@ public class RowResource extends AbstractRowResource {
         }
 
         // Put to either a counter or a regular cell.
-        if (SchemaType.COUNTER == kijiTable.getLayout().getCellSchema(column).getType()) {
+        final ColumnDescriptor columnDescriptor = descriptor.getColumn(column);
+        if (columnDescriptor.isCounter()) {
           // Write the counter cell.
           putCounterCell(writer, entityId, jsonValue, column, timestamp);
-        } else {
-          // Get writer schema, otherwise, set schema in preparation to write an Avro record.
+        } else if (schemasMap.containsKey(column)) {
+          // Use the writer schema given by the client.
           final Schema schema;
-          if (schemasMap.containsKey(column)) {
-            try {
-              schema = new Schema.Parser().parse(schemasMap.get(column));
-            } catch (AvroRuntimeException are) {
-              // TODO Make this a more informative exception.
-              // Could not parse writer schema.
-              throw new WebApplicationException(are, Response.Status.BAD_REQUEST);
-            }
-          } else {
-            try {
-              schema = kijiTable.getLayout().getSchema(column);
-            } catch (Exception e) {
-              // TODO Make this a more informative exception.
-              throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
-            }
+          try {
+            schema = new Schema.Parser().parse(schemasMap.get(column));
+          } catch (AvroRuntimeException are) {
+            // TODO Make this a more informative exception.
+            // Could not parse writer schema.
+            throw new WebApplicationException(are, Response.Status.BAD_REQUEST);
           }
           // Write the cell.
           putCell(writer, entityId, jsonValue, column, timestamp, schema);
+        } else {
+          // Write the cell with the default writer schema of the column.
+          writer.put(entityId, column.getFamily(), column.getQualifier(), timestamp,
+              columnDescriptor.decodeJsonValue(jsonValue));
+        }
+      }
+      for (Map.Entry<KijiColumnName, Long> entry : incrementsMap.entrySet()) {
+        final KijiColumnName column = entry.getKey();
+        if (null != mCounterBuffer) {
+          mCounterBuffer.increment(instance, table, entityId, column, entry.getValue());
+        } else {
+          writer.increment(entityId, column.getFamily(), column.getQualifier(), entry.getValue());
         }
       }
     } finally {
       ResourceUtils.closeOrLog(writer);
+    }
+    return Response.ok(returnedTarget).build();
+  }
+
+  /**
+   * PUTs a binary Avro row: performs create and update.
+   *
+   * <p>The body is a single binary encoded record of the org.kiji.rest.avro.AvroRowWrite
+   * schema (see row_write.avsc) whose row key is either empty or the row key of the URL. Each
+   * cell carries its value binary encoded with the schema of its column, or with the writer
+   * schema it references by schema table ID or inline JSON. Cells without a timestamp are
+   * written at the time of the request.</p>
+   *
+   * @param instance in which the table resides
+   * @param table in which the row resides
+   * @param hexEntityId for the row of interest
+   * @param body holding the binary Avro row
+   * @param uriInfo of the request
+   * @return a message containing the rowkey of interest
+   * @throws IOException when row put fails
+   */
+  @PUT
+  @Consumes(AvroRowDecoder.AVRO_MEDIA_TYPE)
+  @Timed
+  @ApiStability.Experimental
+  public Response putAvroRow(@PathParam(INSTANCE_PARAMETER) String instance,
+      @PathParam(TABLE_PARAMETER) String table,
+      @PathParam(HEX_ENTITY_ID_PARAMETER) String hexEntityId,
+      InputStream body,
+      @Context UriInfo uriInfo)
+      throws IOException {
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      final List<AvroPut> puts = new AvroRowDecoder(kijiTable, System.currentTimeMillis())
+          .decode(body, ByteArrayFormatter.parseHex(hexEntityId));
+      ClientQuota.chargeCurrent(QuotaOperation.CELLS_WRITTEN, puts.size());
+      final KijiTableWriter writer = kijiTable.openTableWriter();
+      try {
+        AvroRowDecoder.write(writer, puts);
+      } finally {
+        ResourceUtils.closeOrLog(writer);
+      }
+    } finally {
       ResourceUtils.releaseOrLog(kijiTable);
     }
-    // Better output?
     Map<String, String> returnedTarget = Maps.newHashMap();
     returnedTarget.put("target", "/" + uriInfo.getPath());
-    return returnedTarget;
- }
+    return Response.ok(returnedTarget).build();
+  }
+
+  /**
+   * DELETEs a Kiji row, or some of its families or columns.
+   *
+   * @param instance in which the table resides
+   * @param table in which the row resides
+   * @param hexEntityId for the row of interest
+   * @param columns is a comma separated list of families and family:qualifier columns to
+   *        delete. The whole row is deleted when omitted.
+   * @param upToTimestamp is the timestamp up to which (inclusive) cells are deleted. All cells
+   *        are deleted when omitted.
+   * @param uriInfo of the request
+   * @return a message containing the rowkey of interest
+   * @throws IOException when the delete fails
+   */
+  @DELETE
+  @Timed
+  @ApiStability.Experimental
+  public Response deleteRow(@PathParam(INSTANCE_PARAMETER) String instance,
+      @PathParam(TABLE_PARAMETER) String table,
+      @PathParam(HEX_ENTITY_ID_PARAMETER) String hexEntityId,
+      @QueryParam("cols") String columns,
+      @QueryParam(TIMESTAMP_KEY) Long upToTimestamp,
+      @Context UriInfo uriInfo)
+      throws IOException {
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      final List<KijiColumnName> deletedColumns =
+          getDeletedColumns(kijiTable.getLayout(), columns);
+      final EntityId entityId = EntityIdFactory.getFactory(kijiTable.getLayout())
+          .getEntityIdFromHBaseRowKey(ByteArrayFormatter.parseHex(hexEntityId));
+      final KijiTableWriter writer = kijiTable.openTableWriter();
+      try {
+        deleteCells(writer, entityId, deletedColumns, upToTimestamp);
+      } finally {
+        ResourceUtils.closeOrLog(writer);
+      }
+    } finally {
+      ResourceUtils.releaseOrLog(kijiTable);
+    }
+    Map<String, String> returnedTarget = Maps.newHashMap();
+    returnedTarget.put("target", "/" + uriInfo.getPath());
+    return Response.ok(returnedTarget).build();
+  }
+
+  /**
+   * Checks whether a PUT only increments counters, in which case no timestamp is needed.
+   *
+   * @param queryMap of the PUT request.
+   * @return whether every query parameter is a counter increment.
+   */
+  private static boolean isIncrementOnly(MultivaluedMap<String, String> queryMap) {
+    if (queryMap.isEmpty()) {
+      return false;
+    }
+    for (String queryKey : queryMap.keySet()) {
+      if (!queryKey.startsWith(INCREMENT_PREFIX)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Validates a counter increment.
+   *
+   * @param descriptor of the table containing the counter.
+   * @param column of the counter.
+   * @param amountString is the amount to increment by; should be convertible to long.
+   * @return the amount to increment by.
+   * @throws WebApplicationException if the column is not a counter or the amount not a long.
+   */
+  private static long parseIncrement(WriteDescriptor descriptor, KijiColumnName column,
+      String amountString) {
+    final ColumnDescriptor columnDescriptor = descriptor.getColumn(column);
+    if (null == columnDescriptor || !columnDescriptor.isCounter()) {
+      throw new WebApplicationException(
+          new IllegalArgumentException("Specified column is not a counter: " + column),
+          Response.Status.BAD_REQUEST);
+    }
+    try {
+      return Long.parseLong(amountString);
+    } catch (NumberFormatException nfe) {
+      throw new WebApplicationException(nfe, Response.Status.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Parses the timestamp of a PUT.
+   *
+   * @param timestampString is the timestamp; should be convertible to long.
+   * @return the timestamp.
+   * @throws WebApplicationException if the timestamp is not a long.
+   */
+  private static long parseTimestamp(String timestampString) {
+    try {
+      return Long.parseLong(timestampString);
+    } catch (NumberFormatException nfe) {
+      throw new WebApplicationException(nfe, Response.Status.BAD_REQUEST);
+    }
+  }
 
   /**
    * GETs a KijiRow given the hex representation of the hbase rowkey.
@@ -243,15 +508,16 @@ public class RowResource extends AbstractRowResource {
    * @param timeRange is the time range of cells to return (specified by min..max where min/max is
    *        the ms since UNIX epoch. min and max are both optional; however, if something is
    *        specified, at least one of min/max must be present.)
-   * @return a single KijiRestRow
+   * @return a single KijiRestRow, serialized once for all the identical reads it was shared
+   *     with when reads are coalesced, or served from the row cache
    */
   @GET
   @Timed
   @ApiStability.Evolving
-  public KijiRestRow getRow(@PathParam(INSTANCE_PARAMETER) String instanceId,
-      @PathParam(TABLE_PARAMETER) String tableId,
+  public Response getRow(@PathParam(INSTANCE_PARAMETER) final String instanceId,
+      @PathParam(TABLE_PARAMETER) final String tableId,
       @PathParam(HEX_ENTITY_ID_PARAMETER) String hexEntityId,
-      @QueryParam("cols") @DefaultValue("*") String columns,
+      @QueryParam("cols") @DefaultValue("*") final String columns,
       @QueryParam("versions") @DefaultValue("1") String maxVersionsString,
       @QueryParam("timerange") String timeRange) {
 
@@ -278,30 +544,94 @@ public class RowResource extends AbstractRowResource {
       timeRanges = getTimestamps(timeRange);
     }
 
-    final KijiTable table = mKijiClient.getKijiTable(instanceId, tableId);
-    try {
-      EntityIdFactory eidFactory = EntityIdFactory.getFactory(table.getLayout());
-      EntityId entityId = eidFactory.getEntityIdFromHBaseRowKey(hbaseRowKey);
-
-      KijiRestRow returnRow = null;
+    final long[] requestedTimeRange = timeRanges;
+    final int requestedMaxVersions = maxVersions;
+    final byte[] rowKey = hbaseRowKey;
+    final TableRead<KijiRestRow> rowRead = new TableRead<KijiRestRow>() {
+      @Override
+      public KijiRestRow read(KijiTable table) throws IOException {
+        EntityIdFactory eidFactory = EntityIdFactory.getFactory(table.getLayout());
+        EntityId entityId = eidFactory.getEntityIdFromHBaseRowKey(rowKey);
 
-      KijiDataRequestBuilder dataBuilder = KijiDataRequest.builder();
-      if (timeRange != null) {
-        dataBuilder.withTimeRange(timeRanges[0], timeRanges[1]);
-      }
+        KijiDataRequestBuilder dataBuilder = KijiDataRequest.builder();
+        if (null != requestedTimeRange) {
+          dataBuilder.withTimeRange(requestedTimeRange[0], requestedTimeRange[1]);
+        }
 
-      ColumnsDef colsRequested = dataBuilder.newColumnsDef().withMaxVersions(maxVersions);
-      List<KijiColumnName> requestedColumns = addColumnDefs(table.getLayout(), colsRequested,
-          columns);
+        ColumnsDef colsRequested =
+            dataBuilder.newColumnsDef().withMaxVersions(requestedMaxVersions);
+        List<KijiColumnName> requestedColumns = addColumnDefs(table.getLayout(), colsRequested,
+            columns);
+        if (null != mCoalescer && mCoalescer.isAbsent(instanceId, tableId, rowKey)) {
+          // Known not to exist: there is no cell to read.
+          return new KijiRestRow(entityId);
+        }
 
-      KijiRowData row = getKijiRowData(table, entityId, dataBuilder.build());
-      returnRow = getKijiRestRow(row, table.getLayout(), requestedColumns);
+        KijiRowData row = getKijiRowData(table, entityId, dataBuilder.build());
+        return getKijiRestRow(row, table.getLayout(), requestedColumns);
+      }
+    };
 
-      return returnRow;
+    final Callable<KijiRestRow> call = new Callable<KijiRestRow>() {
+      @Override
+      public KijiRestRow call() throws IOException {
+        return readRow(instanceId, tableId, rowRead);
+      }
+    };
+    final Callable<KijiRestRow> fetch = new Callable<KijiRestRow>() {
+      @Override
+      public KijiRestRow call() throws IOException {
+        // Bulkheads give up on reads past their deadline on their own.
+        if (null != mBulkheads) {
+          return mBulkheads.get(instanceId, tableId).call(call);
+        } else if (null != mDeadlines) {
+          return mDeadlines.call(call);
+        }
+        return readRow(instanceId, tableId, rowRead);
+      }
+    };
+    final Response response;
+    try {
+      if (null != mCoalescer) {
+        final RowReadKey key = new RowReadKey(instanceId, tableId, rowKey, columns,
+            requestedMaxVersions, requestedTimeRange);
+        response = Response.ok(mCoalescer.read(key, fetch), MediaType.APPLICATION_JSON).build();
+      } else {
+        response = Response.ok(fetch.call()).build();
+      }
     } catch (IOException e) {
       throw new WebApplicationException(e);
+    } catch (RuntimeException re) {
+      throw re;
+    } catch (Exception e) {
+      throw new WebApplicationException(e);
+    }
+    ClientQuota.chargeCurrent(QuotaOperation.ROWS_READ, 1);
+    return response;
+  }
+
+  /**
+   * Reads a row from the primary cluster of its table, hedging the read to a secondary
+   * cluster if the table has one.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param rowRead reading the row.
+   * @return the row.
+   * @throws IOException if the row can not be read.
+   */
+  private KijiRestRow readRow(String instance, String table, TableRead<KijiRestRow> rowRead)
+      throws IOException {
+    Deadline.checkCurrent();
+    // Reads of tables replicated to a secondary cluster may be hedged to it.
+    if (null != mHedgedReader && mHedgedReader.hasSecondary(instance, table)) {
+      return mHedgedReader.read(instance, table, rowRead);
+    }
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      return rowRead.read(kijiTable);
     } finally {
-      ResourceUtils.releaseOrLog(table);
+      ResourceUtils.releaseOrLog(kijiTable);
     }
   }
 }
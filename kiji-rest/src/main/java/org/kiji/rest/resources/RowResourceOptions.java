@@ -0,0 +1,142 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.resources;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.rest.HedgedReader;
+import org.kiji.rest.admission.Bulkheads;
+import org.kiji.rest.admission.Deadlines;
+import org.kiji.rest.cache.RowReadCoalescer;
+import org.kiji.rest.writes.CounterIncrementBuffer;
+import org.kiji.rest.writes.WriteSpool;
+
+/**
+ * The optional parts of the row resources, each of which is absent unless set. A resource built
+ * with no options reads and writes rows directly through its client, in the request thread.
+ */
+@ApiAudience.Private
+public final class RowResourceOptions {
+  private CounterIncrementBuffer mCounterBuffer = null;
+  private WriteSpool mWriteSpool = null;
+  private HedgedReader mHedgedReader = null;
+  private Bulkheads mBulkheads = null;
+  private Deadlines mDeadlines = null;
+  private RowReadCoalescer mCoalescer = null;
+  private DeleteExecutor mDeleteExecutor = null;
+
+  /**
+   * @param counterBuffer buffering counter increments, or null to increment counters directly.
+   * @return these options.
+   */
+  public RowResourceOptions withCounterBuffer(CounterIncrementBuffer counterBuffer) {
+    mCounterBuffer = counterBuffer;
+    return this;
+  }
+
+  /**
+   * @param writeSpool for asynchronous writes, or null to always write synchronously.
+   * @return these options.
+   */
+  public RowResourceOptions withWriteSpool(WriteSpool writeSpool) {
+    mWriteSpool = writeSpool;
+    return this;
+  }
+
+  /**
+   * @param hedgedReader reading from secondary clusters, or null to read from the client only.
+   * @return these options.
+   */
+  public RowResourceOptions withHedgedReader(HedgedReader hedgedReader) {
+    mHedgedReader = hedgedReader;
+    return this;
+  }
+
+  /**
+   * @param bulkheads to run single-row reads in, or null to read in the request thread.
+   * @return these options.
+   */
+  public RowResourceOptions withBulkheads(Bulkheads bulkheads) {
+    mBulkheads = bulkheads;
+    return this;
+  }
+
+  /**
+   * @param deadlines to run single-row reads against, or null to read without deadlines.
+   * @return these options.
+   */
+  public RowResourceOptions withDeadlines(Deadlines deadlines) {
+    mDeadlines = deadlines;
+    return this;
+  }
+
+  /**
+   * @param coalescer of identical concurrent reads, or null to read every row on its own.
+   * @return these options.
+   */
+  public RowResourceOptions withCoalescer(RowReadCoalescer coalescer) {
+    mCoalescer = coalescer;
+    return this;
+  }
+
+  /**
+   * @param deleteExecutor running the batches of bulk deletes, or null for threads of the
+   *     resource's own.
+   * @return these options.
+   */
+  public RowResourceOptions withDeleteExecutor(DeleteExecutor deleteExecutor) {
+    mDeleteExecutor = deleteExecutor;
+    return this;
+  }
+
+  /** @return the buffer of counter increments, or null. */
+  CounterIncrementBuffer getCounterBuffer() {
+    return mCounterBuffer;
+  }
+
+  /** @return the spool of asynchronous writes, or null. */
+  WriteSpool getWriteSpool() {
+    return mWriteSpool;
+  }
+
+  /** @return the reader hedging to secondary clusters, or null. */
+  HedgedReader getHedgedReader() {
+    return mHedgedReader;
+  }
+
+  /** @return the bulkheads of single-row reads, or null. */
+  Bulkheads getBulkheads() {
+    return mBulkheads;
+  }
+
+  /** @return the deadlines of single-row reads, or null. */
+  Deadlines getDeadlines() {
+    return mDeadlines;
+  }
+
+  /** @return the coalescer of identical concurrent reads, or null. */
+  RowReadCoalescer getCoalescer() {
+    return mCoalescer;
+  }
+
+  /** @return the executor of the batches of bulk deletes, or null. */
+  DeleteExecutor getDeleteExecutor() {
+    return mDeleteExecutor;
+  }
+}
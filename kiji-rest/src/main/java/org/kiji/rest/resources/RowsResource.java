@@ -25,6 +25,7 @@ import static org.kiji.rest.RoutesConstants.TABLE_PARAMETER;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -33,10 +34,13 @@ import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -49,20 +53,34 @@ import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.CountingOutputStream;
 import com.yammer.metrics.annotation.Timed;
 
-import org.apache.avro.Schema;
+import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.hadoop.hbase.HConstants;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.rest.KijiClient;
+import org.kiji.rest.admission.ClientQuota;
+import org.kiji.rest.admission.Deadline;
+import org.kiji.rest.admission.QuotaFilter;
+import org.kiji.rest.admission.QuotaOperation;
 import org.kiji.rest.representations.KijiRestCell;
 import org.kiji.rest.representations.KijiRestRow;
+import org.kiji.rest.resources.AvroRowDecoder.AvroPut;
+import org.kiji.rest.resources.WriteDescriptor.ColumnDescriptor;
+import org.kiji.rest.writes.SpooledRow;
+import org.kiji.rest.writes.SpooledRow.SpooledCell;
+import org.kiji.rest.writes.WriteSpool;
 import org.kiji.schema.EntityId;
 import org.kiji.schema.EntityIdFactory;
 import org.kiji.schema.KijiColumnName;
@@ -75,7 +93,11 @@ import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.KijiTableReader.KijiScannerOptions;
 import org.kiji.schema.KijiTableWriter;
-import org.kiji.schema.avro.SchemaType;
+import org.kiji.schema.filter.AndRowFilter;
+import org.kiji.schema.filter.HasColumnDataRowFilter;
+import org.kiji.schema.filter.KijiRowFilter;
+import org.kiji.schema.filter.StripValueRowFilter;
+import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout;
 import org.kiji.schema.tools.ToolUtils;
 import org.kiji.schema.util.ResourceUtils;
 
@@ -99,12 +121,21 @@ public class RowsResource extends AbstractRowResource {
    */
   private static final int UNLIMITED_ROWS = -1;
 
+  /** Maximum number of batches a bulk delete may write concurrently. */
+  private static final int MAX_DELETE_PARALLELISM = 16;
+
   /**
    * Since we are streaming the rows to the user, we need access to the object mapper
    * used by DropWizard to convert objects to JSON.
    */
   private final ObjectMapper mJsonObjectMapper;
 
+  /** Spool of asynchronous writes, or null if writes are always synchronous. */
+  private final WriteSpool mWriteSpool;
+
+  /** Threads shared by the bulk deletes. */
+  private final DeleteExecutor mDeleteExecutor;
+
   /**
    * Default constructor.
    *
@@ -113,18 +144,44 @@ public class RowsResource extends AbstractRowResource {
    *        objects to JSON.
    */
   public RowsResource(KijiClient kijiClient, ObjectMapper jsonObjectMapper) {
+    this(kijiClient, jsonObjectMapper, new RowResourceOptions());
+  }
+
+  /**
+   * Constructs a RowsResource which may spool writes and share the threads of its bulk deletes
+   * with the rest of the service, as set in its options.
+   *
+   * @param kijiClient that this should use for connecting to Kiji.
+   * @param jsonObjectMapper is the ObjectMapper used by DropWizard to convert from Java
+   *        objects to JSON.
+   * @param options of the resource.
+   */
+  public RowsResource(KijiClient kijiClient, ObjectMapper jsonObjectMapper,
+      RowResourceOptions options) {
     mKijiClient = kijiClient;
     mJsonObjectMapper = jsonObjectMapper;
+    mWriteSpool = options.getWriteSpool();
+    if (null != options.getDeleteExecutor()) {
+      mDeleteExecutor = options.getDeleteExecutor();
+    } else {
+      mDeleteExecutor = new DeleteExecutor(MAX_DELETE_PARALLELISM);
+    }
   }
 
   /**
-   * Class to support streaming KijiRows to the client.
+   * Class to support streaming KijiRows to the client. The streamer holds a reference on the
+   * table until the rows are written, so that the table counts as in use during shutdown.
+   * A scan outliving the deadline of its request is cancelled: with 504 if no row was written
+   * yet, or by cutting the stream short otherwise. Rows and bytes streamed are charged to the
+   * quota of the client, and a scan running a whole burst over it is cut short too.
    *
    */
   private class RowStreamer implements StreamingOutput {
 
     private Iterable<KijiRowData> mScanner = null;
     private final KijiTable mTable;
+    private final Deadline mDeadline;
+    private final ClientQuota mQuota;
     private int mNumRows = 0;
     private final List<KijiColumnName> mColsRequested;
 
@@ -132,7 +189,7 @@ public class RowsResource extends AbstractRowResource {
      * Construct a new RowStreamer.
      *
      * @param scanner is the iterator over KijiRowData.
-     * @param table the table from which the rows originate.
+     * @param table the table from which the rows originate, released once streamed.
      * @param numRows is the maximum number of rows to stream.
      * @param columns are the columns requested by the client.
      */
@@ -140,6 +197,8 @@ public class RowsResource extends AbstractRowResource {
         List<KijiColumnName> columns) {
       mScanner = scanner;
       mTable = table;
+      mDeadline = Deadline.current();
+      mQuota = ClientQuota.current();
       mNumRows = numRows;
       mColsRequested = columns;
     }
@@ -152,7 +211,10 @@ public class RowsResource extends AbstractRowResource {
     @Override
     public void write(OutputStream os) {
       int numRows = 0;
-      Writer writer = new BufferedWriter(new OutputStreamWriter(os, Charset.forName("UTF-8")));
+      long streamedBytes = 0;
+      final CountingOutputStream counter = new CountingOutputStream(os);
+      Writer writer =
+          new BufferedWriter(new OutputStreamWriter(counter, Charset.forName("UTF-8")));
       Iterator<KijiRowData> it = mScanner.iterator();
       boolean clientClosed = false;
 
@@ -160,6 +222,10 @@ public class RowsResource extends AbstractRowResource {
         while (it.hasNext() && (numRows < mNumRows || mNumRows == UNLIMITED_ROWS)
             && !clientClosed) {
           KijiRowData row = it.next();
+          if (null != mDeadline && mDeadline.isExpired()) {
+            // Once rows were written, the exception only aborts the response.
+            throw mDeadline.expired();
+          }
           KijiRestRow restRow = getKijiRestRow(row, mTable.getLayout(), mColsRequested);
           String jsonResult = mJsonObjectMapper.writeValueAsString(restRow);
           // Let's strip out any carriage return + line feeds and replace them with just
@@ -169,16 +235,30 @@ public class RowsResource extends AbstractRowResource {
           writer.write(jsonResult + "\r\n");
           writer.flush();
           numRows++;
+          if (null != mQuota) {
+            mQuota.charge(QuotaOperation.ROWS_READ, 1);
+            mQuota.charge(QuotaOperation.BYTES_STREAMED, counter.getCount() - streamedBytes);
+            streamedBytes = counter.getCount();
+            if (mQuota.isOverdrawn(QuotaOperation.ROWS_READ)
+                || mQuota.isOverdrawn(QuotaOperation.BYTES_STREAMED)) {
+              throw new WebApplicationException(new IOException("Quota exceeded for "
+                  + mQuota.getClient() + "."), QuotaFilter.TOO_MANY_REQUESTS);
+            }
+          }
         }
       } catch (IOException e) {
         clientClosed = true;
       } finally {
-        if (mScanner instanceof KijiRowScanner) {
-          try {
-            ((KijiRowScanner) mScanner).close();
-          } catch (IOException e1) {
-            throw new WebApplicationException(e1, Status.INTERNAL_SERVER_ERROR);
+        try {
+          if (mScanner instanceof KijiRowScanner) {
+            try {
+              ((KijiRowScanner) mScanner).close();
+            } catch (IOException e1) {
+              throw new WebApplicationException(e1, Status.INTERNAL_SERVER_ERROR);
+            }
           }
+        } finally {
+          ResourceUtils.releaseOrLog(mTable);
         }
       }
 
@@ -226,8 +306,8 @@ public class RowsResource extends AbstractRowResource {
       @QueryParam("timerange") String timeRange) {
     // CSON: ParameterNumberCheck - There are a bunch of query param options
 
+    Deadline.checkCurrent();
     long[] timeRanges = null;
-    KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
     Iterable<KijiRowData> scanner = null;
     int maxVersions;
     KijiDataRequestBuilder dataBuilder = KijiDataRequest.builder();
@@ -250,46 +330,52 @@ public class RowsResource extends AbstractRowResource {
       dataBuilder.withTimeRange(timeRanges[0], timeRanges[1]);
     }
 
-    ColumnsDef colsRequested = dataBuilder.newColumnsDef().withMaxVersions(maxVersions);
-    List<KijiColumnName> requestedColumns = addColumnDefs(kijiTable.getLayout(), colsRequested,
-        columns);
-
     if (jsonEntityId != null && (startHBaseRowKey != null || endHBaseRowKey != null)) {
       throw new WebApplicationException(new IllegalArgumentException("Ambiguous request. "
           + "Specified both jsonEntityId and start/end HBase row keys."), Status.BAD_REQUEST);
     }
 
-    // We will honor eid over start/end rk.
+    ColumnsDef colsRequested = dataBuilder.newColumnsDef().withMaxVersions(maxVersions);
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    final List<KijiColumnName> requestedColumns;
     try {
-      if (jsonEntityId != null) {
-        EntityId eid = ToolUtils.createEntityIdFromUserInputs(jsonEntityId, kijiTable.getLayout());
-        KijiRowData returnRow = super.getKijiRowData(kijiTable, eid, dataBuilder.build());
-        List<KijiRowData> tempRowList = Lists.newLinkedList();
-        tempRowList.add(returnRow);
-        scanner = tempRowList;
-      } else {
-        EntityIdFactory eidFactory = EntityIdFactory.getFactory(kijiTable.getLayout());
-        final KijiScannerOptions scanOptions = new KijiScannerOptions();
-        if (startHBaseRowKey != null) {
-          EntityId eid = eidFactory.getEntityIdFromHBaseRowKey(Hex.decodeHex(startHBaseRowKey
-              .toCharArray()));
-          scanOptions.setStartRow(eid);
-        }
+      requestedColumns = addColumnDefs(kijiTable.getLayout(), colsRequested, columns);
 
-        if (endHBaseRowKey != null) {
-          EntityId eid = eidFactory.getEntityIdFromHBaseRowKey(Hex.decodeHex(endHBaseRowKey
-              .toCharArray()));
-          scanOptions.setStopRow(eid);
-        }
+      // We will honor eid over start/end rk.
+      try {
+        if (jsonEntityId != null) {
+          EntityId eid =
+              ToolUtils.createEntityIdFromUserInputs(jsonEntityId, kijiTable.getLayout());
+          KijiRowData returnRow = super.getKijiRowData(kijiTable, eid, dataBuilder.build());
+          List<KijiRowData> tempRowList = Lists.newLinkedList();
+          tempRowList.add(returnRow);
+          scanner = tempRowList;
+        } else {
+          EntityIdFactory eidFactory = EntityIdFactory.getFactory(kijiTable.getLayout());
+          final KijiScannerOptions scanOptions = new KijiScannerOptions();
+          if (startHBaseRowKey != null) {
+            EntityId eid = eidFactory.getEntityIdFromHBaseRowKey(Hex.decodeHex(startHBaseRowKey
+                .toCharArray()));
+            scanOptions.setStartRow(eid);
+          }
 
-        final KijiTableReader reader = kijiTable.openTableReader();
+          if (endHBaseRowKey != null) {
+            EntityId eid = eidFactory.getEntityIdFromHBaseRowKey(Hex.decodeHex(endHBaseRowKey
+                .toCharArray()));
+            scanOptions.setStopRow(eid);
+          }
 
-        scanner = reader.getScanner(dataBuilder.build(), scanOptions);
+          final KijiTableReader reader = kijiTable.openTableReader();
+
+          scanner = reader.getScanner(dataBuilder.build(), scanOptions);
+        }
+        // Released by the streamer once the rows are written.
+        kijiTable.retain();
+      } catch (RuntimeException e) {
+        throw new WebApplicationException(e, Status.BAD_REQUEST);
+      } catch (Exception e) {
+        throw new WebApplicationException(e, Status.BAD_REQUEST);
       }
-    } catch (RuntimeException e) {
-      throw new WebApplicationException(e, Status.BAD_REQUEST);
-    } catch (Exception e) {
-      throw new WebApplicationException(e, Status.BAD_REQUEST);
     } finally {
       ResourceUtils.releaseOrLog(kijiTable);
     }
@@ -311,9 +397,12 @@ public class RowsResource extends AbstractRowResource {
    * "columnQualifier" : "firstname"
    * } ]
    * }
+   * When the write spool is enabled, a client sending the "Prefer: respond-async" header gets
+   * a 202 response as soon as the row is recorded in the local spool.
    *
    * @param instance in which the table resides
    * @param table in which the row resides
+   * @param prefer is the Prefer header of the request, if any
    * @param kijiRestRow POST-ed json data
    * @return a message containing the rowkey of interest
    * @throws IOException when post fails
@@ -321,12 +410,32 @@ public class RowsResource extends AbstractRowResource {
   @POST
   @Consumes(MediaType.APPLICATION_JSON)
   @ApiStability.Experimental
-  public Map<String, String> postCell(@PathParam(INSTANCE_PARAMETER) String instance,
+  public Response postCell(@PathParam(INSTANCE_PARAMETER) String instance,
       @PathParam(TABLE_PARAMETER) String table,
+      @HeaderParam(PREFER_HEADER) String prefer,
       KijiRestRow kijiRestRow)
       throws IOException {
     final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      return writeRow(kijiTable, instance, table, prefer, kijiRestRow);
+    } finally {
+      ResourceUtils.releaseOrLog(kijiTable);
+    }
+  }
 
+  /**
+   * Writes the row of a POST to a leased table, released by the caller.
+   *
+   * @param kijiTable to write to.
+   * @param instance in which the table resides
+   * @param table in which the row resides
+   * @param prefer is the Prefer header of the request, if any
+   * @param kijiRestRow POST-ed json data
+   * @return a message containing the rowkey of interest
+   * @throws IOException when post fails
+   */
+  private Response writeRow(KijiTable kijiTable, String instance, String table, String prefer,
+      KijiRestRow kijiRestRow) throws IOException {
     // Default global timestamp.
     long globalTimestamp = System.currentTimeMillis();
 
@@ -339,17 +448,51 @@ public class RowsResource extends AbstractRowResource {
           Status.BAD_REQUEST);
     }
 
+    // Better output?
+    Map<String, String> returnedTarget = Maps.newHashMap();
+
+    URI targetResource = UriBuilder.fromResource(RowResource.class).build(instance, table,
+        new String(Hex.encodeHex(entityId.getHBaseRowKey())));
+
+    returnedTarget.put("target", targetResource.toString());
+
+    // Reports every column that can not be written to at once.
+    final WriteDescriptor descriptor = WriteDescriptor.of(kijiTable.getLayout());
+    final List<KijiColumnName> columns = Lists.newArrayList();
+    for (KijiRestCell kijiRestCell : kijiRestRow.getCells()) {
+      columns.add(new KijiColumnName(kijiRestCell.getColumnFamily(),
+          kijiRestCell.getColumnQualifier()));
+    }
+    descriptor.validate(columns);
+    ClientQuota.chargeCurrent(QuotaOperation.CELLS_WRITTEN, columns.size());
+
+    // Spool the row instead, if the client prefers not to wait for it.
+    if (null != mWriteSpool && isAsyncPreferred(prefer)) {
+      final List<SpooledCell> cells = Lists.newArrayList();
+      for (KijiRestCell kijiRestCell : kijiRestRow.getCells()) {
+        final KijiColumnName column = new KijiColumnName(kijiRestCell.getColumnFamily(),
+            kijiRestCell.getColumnQualifier());
+        final long timestamp;
+        if (null != kijiRestCell.getTimestamp()) {
+          timestamp = kijiRestCell.getTimestamp();
+        } else {
+          timestamp = globalTimestamp;
+        }
+        if (timestamp >= 0) {
+          cells.add(toSpooledCell(descriptor.getColumn(column), column, timestamp,
+              kijiRestCell.getValue().toString(), null));
+        }
+      }
+      spoolRow(mWriteSpool, new SpooledRow(instance, table, entityId.getHBaseRowKey(), cells));
+      return Response.status(Status.ACCEPTED).entity(returnedTarget).build();
+    }
+
     // Open writer and write.
     final KijiTableWriter writer = kijiTable.openTableWriter();
     try {
       for (KijiRestCell kijiRestCell : kijiRestRow.getCells()) {
         final KijiColumnName column = new KijiColumnName(kijiRestCell.getColumnFamily(),
             kijiRestCell.getColumnQualifier());
-        if (!kijiTable.getLayout().exists(column)) {
-          throw new WebApplicationException(
-              new IllegalArgumentException("Specified column does not exist: " + column),
-              Response.Status.BAD_REQUEST);
-        }
         final long timestamp;
         if (null != kijiRestCell.getTimestamp()) {
           timestamp = kijiRestCell.getTimestamp();
@@ -358,37 +501,261 @@ public class RowsResource extends AbstractRowResource {
         }
         if (timestamp >= 0) {
           // Put to either a counter or a regular cell.
-          if (SchemaType.COUNTER == kijiTable.getLayout().getCellSchema(column).getType()) {
+          final ColumnDescriptor columnDescriptor = descriptor.getColumn(column);
+          if (columnDescriptor.isCounter()) {
             // Write the counter cell.
             putCounterCell(writer, entityId, kijiRestCell.getValue().toString(), column, timestamp);
           } else {
-            // Set writer schema in preparation to write an Avro record.
-            final Schema schema;
-            try {
-              schema = kijiTable.getLayout().getSchema(column);
-            } catch (Exception e) {
-              throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
-            }
-            // Write the cell.
-            putCell(writer, entityId, kijiRestCell.getValue().toString(),
-                column, timestamp, schema);
+            // Write the cell with the default writer schema of the column.
+            writer.put(entityId, column.getFamily(), column.getQualifier(), timestamp,
+                columnDescriptor.decodeJsonValue(kijiRestCell.getValue().toString()));
           }
         }
       }
     } finally {
       ResourceUtils.closeOrLog(writer);
+    }
+
+    return Response.ok(returnedTarget).build();
+  }
+
+  /**
+   * POSTs binary Avro rows: performs create and update of many rows at once.
+   *
+   * <p>The body is a sequence of binary encoded records of the
+   * org.kiji.rest.avro.AvroRowWrite schema (see row_write.avsc). Each cell carries its value
+   * binary encoded with the schema of its column, or with the writer schema it references by
+   * schema table ID or inline JSON. Cells without a timestamp are written at the time of the
+   * request. Nothing is written if any cell targets a column missing from the table layout;
+   * all such columns are reported together.</p>
+   *
+   * @param instance in which the table resides
+   * @param table in which the rows reside
+   * @param body of binary Avro rows
+   * @return a message containing the number of rows written
+   * @throws IOException when post fails
+   */
+  @POST
+  @Consumes(AvroRowDecoder.AVRO_MEDIA_TYPE)
+  @Timed
+  @ApiStability.Experimental
+  public Response postAvroRows(@PathParam(INSTANCE_PARAMETER) String instance,
+      @PathParam(TABLE_PARAMETER) String table,
+      InputStream body)
+      throws IOException {
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      final List<AvroPut> puts =
+          new AvroRowDecoder(kijiTable, System.currentTimeMillis()).decode(body, null);
+      final Set<EntityId> rows = Sets.newHashSet();
+      for (AvroPut put : puts) {
+        rows.add(put.getEntityId());
+      }
+      ClientQuota.chargeCurrent(QuotaOperation.CELLS_WRITTEN, puts.size());
+      final KijiTableWriter writer = kijiTable.openTableWriter();
+      try {
+        AvroRowDecoder.write(writer, puts);
+      } finally {
+        ResourceUtils.closeOrLog(writer);
+      }
+      final Map<String, Integer> written = Maps.newHashMap();
+      written.put("rows", rows.size());
+      return Response.ok(written).build();
+    } finally {
       ResourceUtils.releaseOrLog(kijiTable);
     }
+  }
 
-    // Better output?
-    Map<String, String> returnedTarget = Maps.newHashMap();
+  /**
+   * DELETEs many Kiji rows, or some of their families or columns.
+   *
+   * <p>The rows are either listed in the body as a JSON array of hex HBase row keys, or are
+   * all the rows of a key range, optionally restricted to the rows with data in a column. A key
+   * range is read with a keys-only scan. Rows are deleted in parallel batches and the number
+   * of rows deleted so far is streamed back as "\r\n" delimited JSON lines, the last of which
+   * tells whether the delete completed.</p>
+   *
+   * @param instance in which the table resides
+   * @param table in which the rows reside
+   * @param startHBaseRowKey the hex representation of the starting hbase row key.
+   * @param endHBaseRowKey the hex representation of the ending hbase row key.
+   * @param hasColumn restricts a key range to the rows with data in this family:qualifier.
+   * @param columns is a comma separated list of families and family:qualifier columns to
+   *        delete. Whole rows are deleted when omitted.
+   * @param upToTimestamp is the timestamp up to which (inclusive) cells are deleted. All cells
+   *        are deleted when omitted.
+   * @param batchSize is the number of rows per batch.
+   * @param parallelism is the number of batches deleted concurrently.
+   * @param body is an optional JSON array of hex row keys to delete.
+   * @return the Response object streaming the progress of the delete
+   * @throws IOException when the delete can not start
+   */
+  @DELETE
+  @ApiStability.Experimental
+  // CSOFF: ParameterNumberCheck - There are a bunch of query param options
+  public Response deleteRows(@PathParam(INSTANCE_PARAMETER) String instance,
+      @PathParam(TABLE_PARAMETER) String table,
+      @QueryParam("start_rk") String startHBaseRowKey,
+      @QueryParam("end_rk") String endHBaseRowKey,
+      @QueryParam("has") String hasColumn,
+      @QueryParam("cols") String columns,
+      @QueryParam("timestamp") Long upToTimestamp,
+      @QueryParam("batch_size") @DefaultValue("1000") int batchSize,
+      @QueryParam("parallelism") @DefaultValue("4") int parallelism,
+      InputStream body)
+      throws IOException {
+    // CSON: ParameterNumberCheck - There are a bunch of query param options
+    if (batchSize < 1 || parallelism < 1 || parallelism > MAX_DELETE_PARALLELISM) {
+      throw new WebApplicationException(new IllegalArgumentException(
+          "batch_size must be positive and parallelism between 1 and " + MAX_DELETE_PARALLELISM),
+          Status.BAD_REQUEST);
+    }
+    final KijiTable kijiTable = mKijiClient.getKijiTable(instance, table);
+    try {
+      final List<KijiColumnName> deletedColumns =
+          getDeletedColumns(kijiTable.getLayout(), columns);
+      final EntityIdFactory eidFactory = EntityIdFactory.getFactory(kijiTable.getLayout());
+
+      final List<String> hexRowKeys = readRowKeys(body);
+      final BatchDeleter deleter;
+      if (null != hexRowKeys) {
+        if (null != startHBaseRowKey || null != endHBaseRowKey || null != hasColumn) {
+          throw new WebApplicationException(new IllegalArgumentException("Ambiguous request. "
+              + "Specified both a list of row keys and a key range."), Status.BAD_REQUEST);
+        }
+        final List<EntityId> entityIds = Lists.newArrayListWithCapacity(hexRowKeys.size());
+        for (String hexRowKey : hexRowKeys) {
+          entityIds.add(eidFactory.getEntityIdFromHBaseRowKey(decodeHex(hexRowKey)));
+        }
+        deleter = new BatchDeleter(kijiTable, entityIds.iterator(), null, deletedColumns,
+            upToTimestamp, batchSize, parallelism, mDeleteExecutor, mJsonObjectMapper);
+      } else {
+        final KijiRowScanner scanner =
+            scanKeys(kijiTable, eidFactory, startHBaseRowKey, endHBaseRowKey, hasColumn);
+        deleter = new BatchDeleter(kijiTable, new EntityIdIterator(scanner.iterator()), scanner,
+            deletedColumns, upToTimestamp, batchSize, parallelism, mDeleteExecutor,
+            mJsonObjectMapper);
+      }
+      // The deleter releases the table once it is done streaming.
+      return Response.ok(deleter).build();
+    } catch (IOException ioe) {
+      ResourceUtils.releaseOrLog(kijiTable);
+      throw ioe;
+    } catch (RuntimeException re) {
+      ResourceUtils.releaseOrLog(kijiTable);
+      throw re;
+    }
+  }
 
-    URI targetResource = UriBuilder.fromResource(RowResource.class).build(instance, table,
-        new String(Hex.encodeHex(entityId.getHBaseRowKey())));
+  /**
+   * Reads the optional row key list of a bulk delete.
+   *
+   * @param body of the request.
+   * @return the hex row keys listed by the body, or null if the body is empty.
+   * @throws IOException if the body can not be read.
+   */
+  private List<String> readRowKeys(InputStream body) throws IOException {
+    if (null == body) {
+      return null;
+    }
+    final JsonParser parser = mJsonObjectMapper.getFactory().createParser(body);
+    try {
+      if (null == parser.nextToken()) {
+        return null;
+      }
+      return mJsonObjectMapper.readValue(parser, new TypeReference<List<String>>() { });
+    } catch (JsonProcessingException jpe) {
+      throw new WebApplicationException(jpe, Status.BAD_REQUEST);
+    } finally {
+      parser.close();
+    }
+  }
 
-    returnedTarget.put("target", targetResource.toString());
+  /**
+   * Opens a keys-only scanner over a key range.
+   *
+   * @param kijiTable to scan.
+   * @param eidFactory of the table.
+   * @param startHBaseRowKey the hex representation of the starting hbase row key, or null.
+   * @param endHBaseRowKey the hex representation of the ending hbase row key, or null.
+   * @param hasColumn restricts the scan to the rows with data in this column, or null.
+   * @return a scanner whose rows only carry their entity ID.
+   * @throws IOException if the scanner can not be opened.
+   */
+  private static KijiRowScanner scanKeys(KijiTable kijiTable, EntityIdFactory eidFactory,
+      String startHBaseRowKey, String endHBaseRowKey, String hasColumn) throws IOException {
+    final KijiScannerOptions scanOptions = new KijiScannerOptions();
+    if (null != startHBaseRowKey) {
+      scanOptions.setStartRow(eidFactory.getEntityIdFromHBaseRowKey(decodeHex(startHBaseRowKey)));
+    }
+    if (null != endHBaseRowKey) {
+      scanOptions.setStopRow(eidFactory.getEntityIdFromHBaseRowKey(decodeHex(endHBaseRowKey)));
+    }
+    final List<KijiRowFilter> filters = Lists.newArrayList();
+    filters.add(new StripValueRowFilter());
+    if (null != hasColumn) {
+      final KijiColumnName column = new KijiColumnName(hasColumn);
+      if (!column.isFullyQualified() || !kijiTable.getLayout().exists(column)) {
+        throw new WebApplicationException(new IllegalArgumentException(
+            "has must be an existing family:qualifier column: " + hasColumn),
+            Status.BAD_REQUEST);
+      }
+      filters.add(new HasColumnDataRowFilter(column.getFamily(), column.getQualifier()));
+    }
+    scanOptions.setKijiRowFilter(new AndRowFilter(filters));
 
-    return returnedTarget;
+    // Every family is requested so that no row is skipped; values are stripped server-side.
+    final KijiDataRequestBuilder dataBuilder = KijiDataRequest.builder();
+    final ColumnsDef columnsDef = dataBuilder.newColumnsDef().withMaxVersions(1);
+    for (FamilyLayout family : kijiTable.getLayout().getFamilies()) {
+      columnsDef.addFamily(family.getName());
+    }
 
+    final KijiTableReader reader = kijiTable.openTableReader();
+    try {
+      return reader.getScanner(dataBuilder.build(), scanOptions);
+    } finally {
+      ResourceUtils.closeOrLog(reader);
+    }
+  }
+
+  /**
+   * @param hex is a hex encoded row key.
+   * @return the decoded row key.
+   */
+  private static byte[] decodeHex(String hex) {
+    try {
+      return Hex.decodeHex(hex.toCharArray());
+    } catch (DecoderException de) {
+      throw new WebApplicationException(de, Status.BAD_REQUEST);
+    }
+  }
+
+  /** Iterates over the entity IDs of scanned rows. */
+  private static final class EntityIdIterator implements Iterator<EntityId> {
+    private final Iterator<KijiRowData> mRows;
+
+    /** @param rows to iterate over the entity IDs of. */
+    private EntityIdIterator(Iterator<KijiRowData> rows) {
+      mRows = rows;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+      return mRows.hasNext();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public EntityId next() {
+      return mRows.next().getEntityId();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
   }
 }
@@ -29,7 +29,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import com.yammer.metrics.annotation.Timed;
@@ -37,6 +40,8 @@ import com.yammer.metrics.annotation.Timed;
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.rest.KijiClient;
+import org.kiji.rest.cache.CachedValue;
+import org.kiji.rest.cache.LayoutCache;
 import org.kiji.schema.Kiji;
 import org.kiji.schema.avro.TableLayoutDesc;
 import org.kiji.schema.util.ResourceUtils;
@@ -52,6 +57,7 @@ import org.kiji.schema.util.ResourceUtils;
 @ApiAudience.Public
 public class TableResource {
   private final KijiClient mKijiClient;
+  private final LayoutCache mLayoutCache;
 
   /**
    * Default constructor.
@@ -59,30 +65,48 @@ public class TableResource {
    * @param kijiClient that this should use for connecting to Kiji.
    */
   public TableResource(KijiClient kijiClient) {
+    this(kijiClient, null);
+  }
+
+  /**
+   * Constructs a table resource serving layouts through a cache.
+   *
+   * @param kijiClient that this should use for connecting to Kiji.
+   * @param layoutCache to serve layouts from, or null to read them on every request.
+   */
+  public TableResource(KijiClient kijiClient, LayoutCache layoutCache) {
     mKijiClient = kijiClient;
+    mLayoutCache = layoutCache;
   }
 
   /**
-   * GETs the layout of the specified table.
+   * GETs the layout of the specified table. The response carries an entity tag and a
+   * last-modified time, and is 304 Not Modified when the request's preconditions match them.
    *
    * @param instance in which the table resides.
    * @param table to get the layout for.
+   * @param request whose preconditions to evaluate.
    * @return the layout of the specified table
    */
   @GET
   @Timed
   @ApiStability.Evolving
-  public TableLayoutDesc getTable(@PathParam(INSTANCE_PARAMETER) String instance,
-      @PathParam(TABLE_PARAMETER) String table) {
-    final Kiji kiji = mKijiClient.getKiji(instance);
-    TableLayoutDesc layout = null;
+  public Response getTable(@PathParam(INSTANCE_PARAMETER) String instance,
+      @PathParam(TABLE_PARAMETER) String table,
+      @Context Request request) {
     try {
-      layout = kiji.getMetaTable().getTableLayout(table).getDesc();
+      if (null != mLayoutCache) {
+        return mLayoutCache.getLayout(instance, table).toResponse(request);
+      }
+      final Kiji kiji = mKijiClient.getKiji(instance);
+      try {
+        final TableLayoutDesc layout = kiji.getMetaTable().getTableLayout(table).getDesc();
+        return CachedValue.of(layout, null).toResponse(request);
+      } finally {
+        ResourceUtils.releaseOrLog(kiji);
+      }
     } catch (IOException e) {
       throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
-    } finally {
-      ResourceUtils.releaseOrLog(kiji);
     }
-    return layout;
   }
 }
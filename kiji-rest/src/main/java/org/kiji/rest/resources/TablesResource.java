@@ -31,7 +31,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import com.google.common.collect.Lists;
@@ -40,6 +43,8 @@ import com.yammer.metrics.annotation.Timed;
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.rest.KijiClient;
+import org.kiji.rest.cache.CachedValue;
+import org.kiji.rest.cache.LayoutCache;
 import org.kiji.rest.representations.GenericResourceRepresentation;
 import org.kiji.schema.Kiji;
 import org.kiji.schema.util.ResourceUtils;
@@ -55,6 +60,7 @@ import org.kiji.schema.util.ResourceUtils;
 @ApiAudience.Public
 public class TablesResource {
   private final KijiClient mKijiClient;
+  private final LayoutCache mLayoutCache;
 
   /**
    * Default constructor.
@@ -62,34 +68,58 @@ public class TablesResource {
    * @param kijiClient that this should use for connecting to Kiji.
    */
   public TablesResource(KijiClient kijiClient) {
+    this(kijiClient, null);
+  }
+
+  /**
+   * Constructs a tables resource serving table lists through a cache.
+   *
+   * @param kijiClient that this should use for connecting to Kiji.
+   * @param layoutCache to serve table lists from, or null to read them on every request.
+   */
+  public TablesResource(KijiClient kijiClient, LayoutCache layoutCache) {
     mKijiClient = kijiClient;
+    mLayoutCache = layoutCache;
   }
 
   /**
-   * GETs a list of tables in the specified instance.
+   * GETs a list of tables in the specified instance. The response carries an entity tag and a
+   * last-modified time, and is 304 Not Modified when the request's preconditions match them.
    *
    * @param instance to list the contained tables.
+   * @param request whose preconditions to evaluate.
    * @return a map of tables to their respective resource URIs for easier future access.
    */
   @GET
   @Timed
   @ApiStability.Evolving
-  public List<GenericResourceRepresentation> getTables(
-      @PathParam(INSTANCE_PARAMETER) String instance) {
+  public Response getTables(
+      @PathParam(INSTANCE_PARAMETER) String instance,
+      @Context Request request) {
 
-    List<GenericResourceRepresentation> tables = Lists.newArrayList();
-    Kiji kiji = mKijiClient.getKiji(instance);
+    CachedValue<List<String>> tableNames;
     try {
-      for (String table : kiji.getTableNames()) {
-        String tableUri = TABLE_PATH.replace("{" + TABLE_PARAMETER + "}", table)
-            .replace("{" + INSTANCE_PARAMETER + "}", instance);
-        tables.add(new GenericResourceRepresentation(table, tableUri));
+      if (null != mLayoutCache) {
+        tableNames = mLayoutCache.getTableNames(instance);
+      } else {
+        final Kiji kiji = mKijiClient.getKiji(instance);
+        try {
+          tableNames = CachedValue.of(kiji.getTableNames(), null);
+        } finally {
+          ResourceUtils.releaseOrLog(kiji);
+        }
       }
     } catch (IOException e) {
       throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
-    } finally {
-      ResourceUtils.releaseOrLog(kiji);
     }
-    return tables;
+
+    List<GenericResourceRepresentation> tables = Lists.newArrayList();
+    for (String table : tableNames.getValue()) {
+      String tableUri = TABLE_PATH.replace("{" + TABLE_PARAMETER + "}", table)
+          .replace("{" + INSTANCE_PARAMETER + "}", instance);
+      tables.add(new GenericResourceRepresentation(table, tableUri));
+    }
+    return new CachedValue<List<GenericResourceRepresentation>>(
+        tables, tableNames.getETag(), tableNames.getLastModified()).toResponse(request);
   }
 }
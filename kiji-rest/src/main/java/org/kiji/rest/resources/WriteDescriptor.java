@@ -0,0 +1,211 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.resources;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.DecoderFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.avro.CellSchema;
+import org.kiji.schema.avro.SchemaType;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout;
+import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout.ColumnLayout;
+
+/**
+ * What the write path needs to know about the columns of a table layout, computed once per
+ * layout.
+ *
+ * <p>Descriptors are cached by layout instance. A table whose layout is updated hands out a
+ * new KijiTableLayout, which gets a new descriptor, while the descriptor of the old layout is
+ * collected along with it.</p>
+ */
+@ApiAudience.Private
+final class WriteDescriptor {
+  /** Descriptors by layout, weakly keyed (and so compared by identity). */
+  private static final LoadingCache<KijiTableLayout, WriteDescriptor> DESCRIPTORS =
+      CacheBuilder.newBuilder().weakKeys().build(
+          new CacheLoader<KijiTableLayout, WriteDescriptor>() {
+            @Override
+            public WriteDescriptor load(KijiTableLayout layout) {
+              return new WriteDescriptor(layout);
+            }
+          });
+
+  /** Writable columns of group-type families, by family:qualifier. */
+  private final Map<KijiColumnName, ColumnDescriptor> mColumns;
+
+  /** Map-type families, by family. Any qualifier of these is writable. */
+  private final Map<String, ColumnDescriptor> mMapFamilies;
+
+  /**
+   * Computes the write descriptor of a layout.
+   *
+   * @param layout to describe.
+   */
+  private WriteDescriptor(KijiTableLayout layout) {
+    final ImmutableMap.Builder<KijiColumnName, ColumnDescriptor> columns = ImmutableMap.builder();
+    final ImmutableMap.Builder<String, ColumnDescriptor> mapFamilies = ImmutableMap.builder();
+    for (FamilyLayout family : layout.getFamilies()) {
+      if (family.isMapType()) {
+        mapFamilies.put(family.getName(), new ColumnDescriptor(layout,
+            new KijiColumnName(family.getName()), family.getDesc().getMapSchema()));
+      } else {
+        for (ColumnLayout column : family.getColumns()) {
+          final KijiColumnName name = new KijiColumnName(family.getName(), column.getName());
+          columns.put(name, new ColumnDescriptor(layout, name, column.getDesc().getColumnSchema()));
+        }
+      }
+    }
+    mColumns = columns.build();
+    mMapFamilies = mapFamilies.build();
+  }
+
+  /**
+   * Gets the write descriptor of a layout.
+   *
+   * @param layout of a table.
+   * @return the write descriptor of the layout.
+   */
+  static WriteDescriptor of(KijiTableLayout layout) {
+    return DESCRIPTORS.getUnchecked(layout);
+  }
+
+  /**
+   * Describes a column.
+   *
+   * @param column to describe.
+   * @return the descriptor of the column, or null if cells can not be written to it.
+   */
+  ColumnDescriptor getColumn(KijiColumnName column) {
+    if (!column.isFullyQualified()) {
+      return null;
+    }
+    final ColumnDescriptor mapFamily = mMapFamilies.get(column.getFamily());
+    if (null != mapFamily) {
+      return mapFamily;
+    }
+    return mColumns.get(column);
+  }
+
+  /**
+   * Checks that cells can be written to all of some columns.
+   *
+   * @param columns to check.
+   * @throws WebApplicationException listing every column cells can not be written to.
+   */
+  void validate(Collection<KijiColumnName> columns) {
+    final List<String> invalidColumns = Lists.newArrayList();
+    for (KijiColumnName column : columns) {
+      if (null == getColumn(column)) {
+        invalidColumns.add(column.getName());
+      }
+    }
+    if (!invalidColumns.isEmpty()) {
+      throw new WebApplicationException(new IllegalArgumentException(
+          "Specified columns do not exist: " + Joiner.on(", ").join(invalidColumns)),
+          Status.BAD_REQUEST);
+    }
+  }
+
+  /** What the write path needs to know about a column. */
+  static final class ColumnDescriptor {
+    private final boolean mIsCounter;
+    private final Schema mSchema;
+    private final Exception mSchemaError;
+    private final GenericDatumReader<Object> mJsonReader;
+
+    /**
+     * @param layout the column belongs to.
+     * @param column to describe.
+     * @param cellSchema of the column.
+     */
+    private ColumnDescriptor(KijiTableLayout layout, KijiColumnName column,
+        CellSchema cellSchema) {
+      mIsCounter = (SchemaType.COUNTER == cellSchema.getType());
+      Schema schema = null;
+      Exception schemaError = null;
+      if (!mIsCounter) {
+        try {
+          schema = layout.getSchema(column);
+        } catch (Exception e) {
+          // Most likely a class schema missing from the classpath.
+          schemaError = e;
+        }
+      }
+      mSchema = schema;
+      mSchemaError = schemaError;
+      if (null != schema && Type.STRING != schema.getType()) {
+        mJsonReader = new GenericDatumReader<Object>(schema);
+      } else {
+        mJsonReader = null;
+      }
+    }
+
+    /** @return whether the column holds counters. */
+    boolean isCounter() {
+      return mIsCounter;
+    }
+
+    /**
+     * @return the default writer schema of the column.
+     * @throws WebApplicationException if the schema of the column is not available.
+     */
+    Schema getSchema() {
+      if (null != mSchemaError) {
+        throw new WebApplicationException(mSchemaError, Status.BAD_REQUEST);
+      }
+      return mSchema;
+    }
+
+    /**
+     * Decodes a JSON value written with the default writer schema of the column.
+     *
+     * @param jsonValue to decode.
+     * @return the decoded Avro datum.
+     * @throws IOException if the value is not valid JSON for the schema.
+     */
+    Object decodeJsonValue(String jsonValue) throws IOException {
+      final Schema schema = getSchema();
+      if (null == mJsonReader) {
+        return AbstractRowResource.decodeJsonValue(jsonValue, schema);
+      }
+      return mJsonReader.read(null, DecoderFactory.get().jsonDecoder(schema, jsonValue));
+    }
+  }
+}
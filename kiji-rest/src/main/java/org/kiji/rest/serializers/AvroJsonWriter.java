@@ -0,0 +1,161 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.serializers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.SpecificData;
+
+/**
+ * Writes Avro data to a JsonGenerator as it walks it, in the same shape as Avro's JSON encoding
+ * used by ToJson.toAvroJsonString: unions other than null are wrapped in an object keyed by the
+ * name of their branch, and bytes and fixed are written as ISO-8859-1 strings. Nothing but the
+ * generator's own buffer is held in memory, however large the datum.
+ */
+public final class AvroJsonWriter {
+  /** Charset Avro's JSON encoding maps bytes to characters with. */
+  private static final Charset BYTES_CHARSET = Charset.forName("ISO-8859-1");
+
+  /** Utility class cannot be instantiated. */
+  private AvroJsonWriter() {
+  }
+
+  /**
+   * Writes an Avro record, or any other Avro container, to a generator.
+   *
+   * @param container to write.
+   * @param generator to write to.
+   * @throws IOException if the generator fails.
+   */
+  public static void write(GenericContainer container, JsonGenerator generator)
+      throws IOException {
+    write(container, container.getSchema(), generator);
+  }
+
+  /**
+   * Writes an Avro datum to a generator.
+   *
+   * @param datum to write.
+   * @param schema of the datum.
+   * @param generator to write to.
+   * @throws IOException if the generator fails.
+   */
+  public static void write(Object datum, Schema schema, JsonGenerator generator)
+      throws IOException {
+    switch (schema.getType()) {
+      case RECORD:
+        final IndexedRecord record = (IndexedRecord) datum;
+        generator.writeStartObject();
+        for (Schema.Field field : schema.getFields()) {
+          generator.writeFieldName(field.name());
+          write(record.get(field.pos()), field.schema(), generator);
+        }
+        generator.writeEndObject();
+        break;
+      case ARRAY:
+        generator.writeStartArray();
+        for (Object element : (Collection<?>) datum) {
+          write(element, schema.getElementType(), generator);
+        }
+        generator.writeEndArray();
+        break;
+      case MAP:
+        generator.writeStartObject();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) datum).entrySet()) {
+          generator.writeFieldName(entry.getKey().toString());
+          write(entry.getValue(), schema.getValueType(), generator);
+        }
+        generator.writeEndObject();
+        break;
+      case UNION:
+        // SpecificData, unlike GenericData, recognizes generated enums.
+        final Schema branch =
+            schema.getTypes().get(SpecificData.get().resolveUnion(schema, datum));
+        if (Schema.Type.NULL == branch.getType()) {
+          generator.writeNull();
+        } else {
+          generator.writeStartObject();
+          generator.writeFieldName(getBranchName(branch));
+          write(datum, branch, generator);
+          generator.writeEndObject();
+        }
+        break;
+      case ENUM:
+      case STRING:
+        generator.writeString(datum.toString());
+        break;
+      case FIXED:
+        generator.writeString(new String(((GenericFixed) datum).bytes(), BYTES_CHARSET));
+        break;
+      case BYTES:
+        final ByteBuffer buffer = ((ByteBuffer) datum).duplicate();
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        generator.writeString(new String(bytes, BYTES_CHARSET));
+        break;
+      case INT:
+        generator.writeNumber(((Number) datum).intValue());
+        break;
+      case LONG:
+        generator.writeNumber(((Number) datum).longValue());
+        break;
+      case FLOAT:
+        generator.writeNumber(((Number) datum).floatValue());
+        break;
+      case DOUBLE:
+        generator.writeNumber(((Number) datum).doubleValue());
+        break;
+      case BOOLEAN:
+        generator.writeBoolean((Boolean) datum);
+        break;
+      case NULL:
+        generator.writeNull();
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported Avro type: " + schema.getType());
+    }
+  }
+
+  /**
+   * Gets the name Avro's JSON encoding labels a union branch with.
+   *
+   * @param branch of a union.
+   * @return the full name of a named type, the type name otherwise.
+   */
+  private static String getBranchName(Schema branch) {
+    switch (branch.getType()) {
+      case RECORD:
+      case ENUM:
+      case FIXED:
+        return branch.getFullName();
+      default:
+        return branch.getType().getName();
+    }
+  }
+}
@@ -22,30 +22,23 @@ package org.kiji.rest.serializers;
 import java.io.IOException;
 
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.JsonSerializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
 
 import org.kiji.schema.avro.MetadataBackup;
-import org.kiji.schema.util.ToJson;
 
 /**
  * Ensures that the MetadataBackup avro class can be written to the client as a proper
- * JSON string.
+ * JSON string. The record is streamed to the generator rather than rendered in memory.
  *
  */
 public class MetadataToJsonSerializer extends JsonSerializer<MetadataBackup> {
 
-  private ObjectMapper mJsonMapper = new ObjectMapper();
-
   @Override
   public void serialize(MetadataBackup layout, JsonGenerator generator,
       SerializerProvider provider)
       throws IOException {
-    String jsonString = ToJson.toAvroJsonString(layout);
-    JsonNode node = mJsonMapper.readTree(jsonString);
-    generator.writeTree(node);
+    AvroJsonWriter.write(layout, generator);
   }
 
   /**
@@ -0,0 +1,379 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.tasks;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.ByteStreams;
+import com.yammer.dropwizard.tasks.Task;
+import com.yammer.metrics.core.Meter;
+
+import org.kiji.rest.admission.RequestClass;
+import org.kiji.rest.cache.CacheUsage;
+import org.kiji.rest.cache.LayoutCache;
+import org.kiji.rest.cache.MetadataCache;
+import org.kiji.rest.cache.NegativeRowCache;
+import org.kiji.rest.cache.OffHeapRowCache;
+import org.kiji.rest.cache.PersistentRowStore;
+import org.kiji.rest.cache.RowSelector;
+import org.kiji.rest.resources.RowResource;
+
+/**
+ * Shows the caches, purges them and warms them up.
+ *
+ * <p>POST /tasks/caches lists the statistics of every cache enabled: the hits, misses and
+ * evictions of the layout caches, and the entries, memory, meters and usage by table of the row
+ * caches, after applying any of the parameters:</p>
+ * <li>purge=&lt;instance&gt;[/&lt;table&gt;[/&lt;hex row key&gt;]] drops the rows selected from
+ * the row caches. Purging a table or an instance also drops its layouts and metadata.
+ * <li>purgePrefix=&lt;instance&gt;/&lt;table&gt;/&lt;hex row key prefix&gt; drops the rows whose
+ * key starts with the prefix from the row caches.
+ * <li>warm=&lt;instance&gt;/&lt;table&gt;/&lt;hex row key&gt; reads the row into the row caches.
+ * <li>warmLog=&lt;path&gt; reads into the row caches the most recent distinct row reads of a
+ * request log, with their columns, versions and time range.
+ * <li>warmLimit=&lt;count&gt; is the most reads replayed from the request log, 1000 by default.
+ *
+ * <p>Rows are warmed as bulk requests.</p>
+ */
+public class CachesTask extends Task {
+  /** Default number of reads replayed from a request log. */
+  private static final int DEFAULT_WARM_LIMIT = 1000;
+
+  /** Successful single-row reads in a request log, with their query string. */
+  private static final Pattern ROW_READ = Pattern.compile(
+      "\"GET /v1/instances/([^/?\\s]+)/tables/([^/?\\s]+)/rows/([0-9a-fA-F]+)(\\?\\S*)? "
+      + "HTTP/[0-9.]+\" 200 ");
+
+  private final RowResource mRowResource;
+  private final OffHeapRowCache mRowCache;
+  private final NegativeRowCache mNegativeCache;
+  private final LayoutCache mLayoutCache;
+  private final MetadataCache mMetadataCache;
+
+  /**
+   * Constructs the task. Caches which are disabled are null.
+   *
+   * @param rowResource to read rows through when warming.
+   * @param rowCache caching row responses, or null.
+   * @param negativeCache caching reads which found no cell, or null.
+   * @param layoutCache caching table layouts, or null.
+   * @param metadataCache caching the metadata of instances.
+   */
+  public CachesTask(RowResource rowResource, OffHeapRowCache rowCache,
+      NegativeRowCache negativeCache, LayoutCache layoutCache, MetadataCache metadataCache) {
+    super("caches");
+    mRowResource = rowResource;
+    mRowCache = rowCache;
+    mNegativeCache = negativeCache;
+    mLayoutCache = layoutCache;
+    mMetadataCache = metadataCache;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output)
+      throws Exception {
+    for (String spec : parameters.get("purge")) {
+      purge(spec, false, output);
+    }
+    for (String spec : parameters.get("purgePrefix")) {
+      purge(spec, true, output);
+    }
+    for (String spec : parameters.get("warm")) {
+      final String[] parts = spec.split("/", 3);
+      if (3 != parts.length) {
+        output.println("Not a row: " + spec);
+        continue;
+      }
+      final String failure = warm(parts[0], parts[1], parts[2], "*", "1", null);
+      if (null == failure) {
+        output.println("Warmed " + spec);
+      } else {
+        output.println("Could not warm " + spec + ": " + failure);
+      }
+    }
+    int warmLimit = DEFAULT_WARM_LIMIT;
+    for (String limit : parameters.get("warmLimit")) {
+      warmLimit = Integer.parseInt(limit);
+    }
+    for (String path : parameters.get("warmLog")) {
+      warmFromLog(path, warmLimit, output);
+    }
+    printStats(output);
+    output.flush();
+  }
+
+  /**
+   * Drops rows from the row caches, and the layouts and metadata of tables or instances purged
+   * whole.
+   *
+   * @param spec of the rows.
+   * @param prefix is whether the row key of the spec is a prefix.
+   * @param output to report to.
+   */
+  private void purge(String spec, boolean prefix, PrintWriter output) {
+    final RowSelector selector;
+    try {
+      selector = RowSelector.parse(spec, prefix);
+    } catch (IllegalArgumentException iae) {
+      output.println(iae.getMessage());
+      return;
+    }
+    final StringBuilder purged = new StringBuilder("Purged " + selector + ":");
+    if (null != mRowCache) {
+      purged.append(" row responses=").append(mRowCache.purge(selector));
+    }
+    if (null != mNegativeCache) {
+      purged.append(" negative rows=").append(mNegativeCache.purge(selector));
+    }
+    if (selector.isWholeTables()) {
+      if (null == selector.getTable()) {
+        if (null != mLayoutCache) {
+          mLayoutCache.invalidateInstance(selector.getInstance());
+        }
+        mMetadataCache.invalidate(selector.getInstance());
+        purged.append(" layouts metadata");
+      } else if (null != mLayoutCache) {
+        mLayoutCache.invalidate(selector.getInstance(), selector.getTable());
+        purged.append(" layout");
+      }
+    }
+    output.println(purged);
+  }
+
+  /**
+   * Replays the most recent distinct row reads of a request log, so that they are cached.
+   *
+   * @param path of the request log.
+   * @param limit is the most reads replayed.
+   * @param output to report to.
+   * @throws IOException if the log can not be read.
+   */
+  private void warmFromLog(String path, final int limit, PrintWriter output) throws IOException {
+    // The most recent reads, least recent first.
+    final Map<String, Matcher> reads = new LinkedHashMap<String, Matcher>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Matcher> eldest) {
+        return size() > limit;
+      }
+    };
+    final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(path), Charsets.UTF_8));
+    try {
+      String line = reader.readLine();
+      while (null != line) {
+        final Matcher matcher = ROW_READ.matcher(line);
+        if (matcher.find()) {
+          final String read = matcher.group(1) + "/" + matcher.group(2) + "/"
+              + matcher.group(3).toLowerCase() + Strings.nullToEmpty(matcher.group(4));
+          reads.remove(read);
+          reads.put(read, matcher);
+        }
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+    int warmed = 0;
+    int failed = 0;
+    // Most recent first, in case the caches can not hold them all.
+    final Matcher[] matchers = reads.values().toArray(new Matcher[reads.size()]);
+    for (int i = matchers.length - 1; i >= 0; i--) {
+      final Matcher matcher = matchers[i];
+      final Map<String, String> query = parseQuery(matcher.group(4));
+      String columns = query.get("cols");
+      if (null == columns) {
+        columns = "*";
+      }
+      String versions = query.get("versions");
+      if (null == versions) {
+        versions = "1";
+      }
+      final String result = warm(decode(matcher.group(1)), decode(matcher.group(2)),
+          matcher.group(3), columns, versions, query.get("timerange"));
+      if (null == result) {
+        warmed++;
+      } else {
+        failed++;
+      }
+    }
+    output.println("Warmed " + warmed + " reads from " + path + ", " + failed + " failed");
+  }
+
+  /**
+   * Reads a row as a bulk request, so that its response is cached.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param hexRowKey is the HBase row key of the row, in hex.
+   * @param columns requested.
+   * @param versions requested.
+   * @param timeRange requested, or null.
+   * @return null if the row was read, or why it could not be.
+   * @throws IOException if the response can not be written.
+   */
+  private String warm(String instance, String table, String hexRowKey, String columns,
+      String versions, String timeRange) throws IOException {
+    if (null == mRowCache && null == mNegativeCache) {
+      return "no row cache";
+    }
+    RequestClass.setCurrent(RequestClass.BULK);
+    try {
+      final Response response =
+          mRowResource.getRow(instance, table, hexRowKey, columns, versions, timeRange);
+      final Object entity = response.getEntity();
+      if (entity instanceof StreamingOutput) {
+        // Cached responses are released once written.
+        ((StreamingOutput) entity).write(ByteStreams.nullOutputStream());
+      }
+      return null;
+    } catch (WebApplicationException wae) {
+      return "status " + wae.getResponse().getStatus();
+    } finally {
+      RequestClass.clearCurrent();
+    }
+  }
+
+  /**
+   * Prints the statistics of the caches.
+   *
+   * @param output to print to.
+   */
+  private void printStats(PrintWriter output) {
+    if (null != mLayoutCache) {
+      printStats("layouts", mLayoutCache.getLayoutStats(), output);
+      printStats("table-names", mLayoutCache.getTableNamesStats(), output);
+    }
+    if (null != mRowCache) {
+      output.println("row-cache entries=" + mRowCache.getEntries() + " used-bytes="
+          + mRowCache.getUsedBytes() + " capacity-bytes=" + mRowCache.getCapacityBytes());
+      printMeters("row-cache", mRowCache.getMeters(), output);
+      printUsages("row-cache", mRowCache.getUsageByTable(), output);
+      final PersistentRowStore store = mRowCache.getStore();
+      if (null != store) {
+        output.println("row-store entries=" + store.getEntries() + " used-bytes="
+            + store.getUsedBytes() + " capacity-bytes=" + store.getCapacityBytes());
+        printMeters("row-store", store.getMeters(), output);
+        printUsages("row-store", store.getUsageByTable(), output);
+      }
+    }
+    if (null != mNegativeCache) {
+      output.println("negative-cache rows=" + mNegativeCache.getRows());
+      printMeters("negative-cache", mNegativeCache.getMeters(), output);
+      printUsages("negative-cache", mNegativeCache.getUsageByTable(), output);
+      for (Map.Entry<String, Boolean> filter : mNegativeCache.getBloomFilters().entrySet()) {
+        output.println("negative-cache bloom-filter " + filter.getKey() + " built="
+            + filter.getValue());
+      }
+    }
+  }
+
+  /**
+   * Prints the statistics of a Guava cache.
+   *
+   * @param name of the cache.
+   * @param stats of the cache.
+   * @param output to print to.
+   */
+  private static void printStats(String name, CacheStats stats, PrintWriter output) {
+    output.println(name + " hits=" + stats.hitCount() + " misses=" + stats.missCount()
+        + " evictions=" + stats.evictionCount()
+        + String.format(" hit-rate=%.3f", stats.hitRate()));
+  }
+
+  /**
+   * Prints the counts and one-minute rates of meters.
+   *
+   * @param name of the cache.
+   * @param meters of the cache, by name.
+   * @param output to print to.
+   */
+  private static void printMeters(String name, Map<String, Meter> meters, PrintWriter output) {
+    final StringBuilder line = new StringBuilder(name);
+    for (Map.Entry<String, Meter> meter : meters.entrySet()) {
+      line.append(' ').append(meter.getKey()).append('=').append(meter.getValue().count())
+          .append(String.format(" %s-1m-rate=%.2f", meter.getKey(),
+              meter.getValue().oneMinuteRate()));
+    }
+    output.println(line);
+  }
+
+  /**
+   * Prints the usage of a cache by table.
+   *
+   * @param name of the cache.
+   * @param usages of the cache, by instance/table.
+   * @param output to print to.
+   */
+  private static void printUsages(String name, Map<String, CacheUsage> usages,
+      PrintWriter output) {
+    for (Map.Entry<String, CacheUsage> usage : usages.entrySet()) {
+      output.println(name + " table " + usage.getKey() + " " + usage.getValue());
+    }
+  }
+
+  /**
+   * Parses the query string of a request.
+   *
+   * @param query string, starting with '?', or null.
+   * @return the decoded parameters, by name. The first value of a parameter wins.
+   * @throws UnsupportedEncodingException never, as UTF-8 is always supported.
+   */
+  private static Map<String, String> parseQuery(String query)
+      throws UnsupportedEncodingException {
+    final Map<String, String> parameters = new LinkedHashMap<String, String>();
+    if (null == query) {
+      return parameters;
+    }
+    for (String parameter : query.substring(1).split("&")) {
+      final String[] pair = parameter.split("=", 2);
+      if (2 == pair.length && !parameters.containsKey(decode(pair[0]))) {
+        parameters.put(decode(pair[0]), decode(pair[1]));
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * @param encoded part of a URL.
+   * @return the part decoded.
+   * @throws UnsupportedEncodingException never, as UTF-8 is always supported.
+   */
+  private static String decode(String encoded) throws UnsupportedEncodingException {
+    return URLDecoder.decode(encoded, Charsets.UTF_8.name());
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.tasks;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.yammer.dropwizard.tasks.Task;
+
+import org.kiji.rest.admission.CircuitBreaker;
+import org.kiji.rest.admission.CircuitBreakers;
+
+/**
+ * Shows the circuit breakers of tables, and opens or closes them by hand.
+ *
+ * <p>POST /tasks/circuit-breakers lists the state of every breaker, with the number of calls
+ * and failures over its window, after applying any of the parameters:</p>
+ * <li>open=&lt;instance&gt;/&lt;table&gt; opens the breaker of the table.
+ * <li>close=&lt;instance&gt;/&lt;table&gt; closes the breaker of the table.
+ */
+public class CircuitBreakersTask extends Task {
+  private final CircuitBreakers mBreakers;
+
+  /**
+   * Constructs the task.
+   *
+   * @param breakers to show.
+   */
+  public CircuitBreakersTask(CircuitBreakers breakers) {
+    super("circuit-breakers");
+    mBreakers = breakers;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output)
+      throws Exception {
+    for (String name : parameters.get("open")) {
+      final String[] parts = name.split("/", 2);
+      if (2 == parts.length) {
+        mBreakers.get(parts[0], parts[1]).open();
+        output.println("Opened " + name);
+      } else {
+        output.println("Not a table: " + name);
+      }
+    }
+    for (String name : parameters.get("close")) {
+      final CircuitBreaker breaker = mBreakers.find(name);
+      if (null != breaker) {
+        breaker.close();
+        output.println("Closed " + name);
+      } else {
+        output.println("No breaker for " + name);
+      }
+    }
+    for (Map.Entry<String, CircuitBreaker> entry : mBreakers.getAll().entrySet()) {
+      final CircuitBreaker breaker = entry.getValue();
+      output.println(entry.getKey() + " " + breaker.getState() + " calls=" + breaker.getCalls()
+          + " failures=" + breaker.getFailures());
+    }
+    output.flush();
+  }
+}
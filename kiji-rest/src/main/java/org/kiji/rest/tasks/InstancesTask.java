@@ -0,0 +1,85 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.tasks;
+
+import java.io.PrintWriter;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.yammer.dropwizard.tasks.Task;
+
+import org.kiji.rest.ManagedKijiClient;
+
+/**
+ * Adds, drains and removes served instances at runtime.
+ *
+ * <p>POST /tasks/instances with any of the parameters:</p>
+ * <li>add=&lt;instance&gt; opens the instance of the cluster and starts serving it.
+ * <li>drain=&lt;instance&gt; answers new requests for the instance with 503.
+ * <li>remove=&lt;instance&gt; stops serving the instance and tears it down once its in-flight
+ *     requests are done, or after the drain timeout.
+ */
+public class InstancesTask extends Task {
+  private final ManagedKijiClient mKijiClient;
+  private final long mOpenTimeoutMillis;
+  private final long mDrainTimeoutMillis;
+
+  /**
+   * Constructs the task.
+   *
+   * @param kijiClient whose instances are managed.
+   * @param openTimeoutMillis is the time allowed to open an added instance.
+   * @param drainTimeoutMillis is the time after which a removed instance is torn down.
+   */
+  public InstancesTask(ManagedKijiClient kijiClient, long openTimeoutMillis,
+      long drainTimeoutMillis) {
+    super("instances");
+    mKijiClient = kijiClient;
+    mOpenTimeoutMillis = openTimeoutMillis;
+    mDrainTimeoutMillis = drainTimeoutMillis;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output)
+      throws Exception {
+    for (String instance : parameters.get("add")) {
+      if (mKijiClient.addInstance(instance, mOpenTimeoutMillis)) {
+        output.println("Added " + instance);
+      } else {
+        output.println("Already serving " + instance);
+      }
+    }
+    for (String instance : parameters.get("drain")) {
+      if (mKijiClient.drainInstance(instance)) {
+        output.println("Draining " + instance);
+      } else {
+        output.println("Not serving " + instance);
+      }
+    }
+    for (String instance : parameters.get("remove")) {
+      if (mKijiClient.removeInstance(instance, mDrainTimeoutMillis)) {
+        output.println("Removed " + instance);
+      } else {
+        output.println("Not serving " + instance);
+      }
+    }
+    output.flush();
+  }
+}
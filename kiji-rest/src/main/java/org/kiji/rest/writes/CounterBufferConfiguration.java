@@ -0,0 +1,68 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the write-behind counter increment buffer.
+ */
+public class CounterBufferConfiguration {
+  /** Whether counter increments are coalesced in memory before being written. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Interval between background flushes, in milliseconds. */
+  @Min(1)
+  @JsonProperty("flushIntervalMillis")
+  private long mFlushIntervalMillis = 1000;
+
+  /** Number of distinct pending cells which triggers an early flush. */
+  @Min(1)
+  @JsonProperty("maxPendingCells")
+  private int mMaxPendingCells = 10000;
+
+  /** Number of independently locked stripes the pending increments are spread over. */
+  @Min(1)
+  @JsonProperty("stripes")
+  private int mStripes = 16;
+
+  /** @return whether counter increments should be buffered. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the interval between background flushes, in milliseconds. */
+  public final long getFlushIntervalMillis() {
+    return mFlushIntervalMillis;
+  }
+
+  /** @return the number of distinct pending cells which triggers an early flush. */
+  public final int getMaxPendingCells() {
+    return mMaxPendingCells;
+  }
+
+  /** @return the number of stripes the pending increments are spread over. */
+  public final int getStripes() {
+    return mStripes;
+  }
+}
@@ -0,0 +1,454 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.util.RatioGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.cache.RowInvalidator;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableWriter;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Write-behind buffer which coalesces counter increments in memory per (row, column) and
+ * periodically writes the aggregated amounts to Kiji.
+ *
+ * <p>Pending increments are spread over a fixed number of stripes, each guarded by its own
+ * lock, so that concurrent increments to different cells rarely contend. A flush swaps out
+ * the map of each stripe and performs the increments outside of the stripe locks.</p>
+ *
+ * <p>Increments that fail to be written are merged back into the buffer and retried on the
+ * next flush. A buffered increment is acknowledged to the client before it is durable, so
+ * increments still pending when the process dies are lost.</p>
+ *
+ * <p>What is cached about the row of a counter is invalidated when an increment is buffered, and
+ * again once the increment is written, so that reads served in between do not stay cached.</p>
+ */
+public final class CounterIncrementBuffer {
+  private static final Logger LOG = LoggerFactory.getLogger(CounterIncrementBuffer.class);
+
+  private final KijiClient mKijiClient;
+  private final long mFlushIntervalMillis;
+  private final int mMaxPendingCells;
+  private final Stripe[] mStripes;
+
+  /** Invalidators of what is cached about the rows of the counters incremented. */
+  private volatile List<RowInvalidator> mInvalidators = ImmutableList.of();
+
+  /** Serializes flushes, so that a cell is never incremented by two flushes concurrently. */
+  private final Object mFlushLock = new Object();
+
+  /** Set while an early flush is queued, so that a burst of new cells queues a single one. */
+  private final AtomicBoolean mFlushRequested = new AtomicBoolean(false);
+
+  private final AtomicLong mPendingCells = new AtomicLong(0);
+  private final AtomicLong mPendingIncrements = new AtomicLong(0);
+
+  private final Meter mIncrementsReceived;
+  private final Meter mIncrementsWritten;
+
+  private ScheduledExecutorService mFlushExecutor;
+
+  /**
+   * Constructs a counter increment buffer.
+   *
+   * @param kijiClient used to open the tables the increments are written to.
+   * @param configuration of this buffer.
+   */
+  public CounterIncrementBuffer(KijiClient kijiClient, CounterBufferConfiguration configuration) {
+    mKijiClient = kijiClient;
+    mFlushIntervalMillis = configuration.getFlushIntervalMillis();
+    mMaxPendingCells = configuration.getMaxPendingCells();
+    mStripes = new Stripe[configuration.getStripes()];
+    for (int i = 0; i < mStripes.length; i++) {
+      mStripes[i] = new Stripe();
+    }
+
+    mIncrementsReceived = Metrics.newMeter(CounterIncrementBuffer.class, "increments-received",
+        "increments", TimeUnit.SECONDS);
+    mIncrementsWritten = Metrics.newMeter(CounterIncrementBuffer.class, "increments-written",
+        "increments", TimeUnit.SECONDS);
+    Metrics.newGauge(CounterIncrementBuffer.class, "coalescing-ratio", new RatioGauge() {
+      @Override
+      protected double getNumerator() {
+        return mIncrementsReceived.count();
+      }
+
+      @Override
+      protected double getDenominator() {
+        return mIncrementsWritten.count();
+      }
+    });
+    Metrics.newGauge(CounterIncrementBuffer.class, "pending-cells", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return mPendingCells.get();
+      }
+    });
+    Metrics.newGauge(CounterIncrementBuffer.class, "pending-increments", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return mPendingIncrements.get();
+      }
+    });
+  }
+
+  /**
+   * Sets what to invalidate the rows of the counters incremented with. Called before the buffer
+   * is started.
+   *
+   * @param invalidators to invalidate rows with.
+   */
+  public void setInvalidators(List<RowInvalidator> invalidators) {
+    mInvalidators = ImmutableList.copyOf(invalidators);
+  }
+
+  /**
+   * Starts the background flushes.
+   */
+  public void start() {
+    mFlushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("counter-buffer-flush-%d")
+        .setDaemon(true)
+        .build());
+    mFlushExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        flushOrLog();
+      }
+    }, mFlushIntervalMillis, mFlushIntervalMillis, TimeUnit.MILLISECONDS);
+    LOG.info("Buffering counter increments, flushing every {} ms.", mFlushIntervalMillis);
+  }
+
+  /**
+   * Stops the background flushes and writes out every pending increment.
+   *
+   * @throws InterruptedException if interrupted while waiting for a running flush.
+   */
+  public void stop() throws InterruptedException {
+    if (null != mFlushExecutor) {
+      mFlushExecutor.shutdown();
+      mFlushExecutor.awaitTermination(mFlushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    flush();
+    if (mPendingCells.get() > 0) {
+      LOG.warn("Dropping {} counter increments to {} cells which could not be written.",
+          mPendingIncrements.get(), mPendingCells.get());
+    }
+  }
+
+  /**
+   * Buffers an increment of a counter cell.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the counter resides.
+   * @param entityId of the row of the counter.
+   * @param column of the counter; must be fully qualified.
+   * @param amount to increment the counter by.
+   */
+  public void increment(String instance, String table, EntityId entityId, KijiColumnName column,
+      long amount) {
+    Preconditions.checkArgument(column.isFullyQualified(),
+        "Counter column must be fully qualified: %s", column);
+    final CounterCell cell = new CounterCell(instance, table, entityId, column);
+    final boolean isNewCell = mStripes[stripeIndex(cell)].add(cell, amount, 1);
+    invalidate(cell);
+    mIncrementsReceived.mark();
+    mPendingIncrements.incrementAndGet();
+    if (isNewCell && mPendingCells.incrementAndGet() >= mMaxPendingCells) {
+      requestFlush();
+    }
+  }
+
+  /**
+   * Writes every pending increment to Kiji. Increments which fail are kept in the buffer.
+   */
+  public void flush() {
+    synchronized (mFlushLock) {
+      mFlushRequested.set(false);
+
+      // Group the drained cells per table, so that each table is opened once per flush.
+      final Map<TableName, List<Map.Entry<CounterCell, PendingIncrement>>> drained =
+          Maps.newHashMap();
+      for (Stripe stripe : mStripes) {
+        for (Map.Entry<CounterCell, PendingIncrement> entry : stripe.drain().entrySet()) {
+          final TableName tableName = entry.getKey().getTableName();
+          List<Map.Entry<CounterCell, PendingIncrement>> cells = drained.get(tableName);
+          if (null == cells) {
+            cells = Lists.newArrayList();
+            drained.put(tableName, cells);
+          }
+          cells.add(entry);
+        }
+      }
+
+      for (Map.Entry<TableName, List<Map.Entry<CounterCell, PendingIncrement>>> entry
+          : drained.entrySet()) {
+        writeTable(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Writes the aggregated increments of a single table.
+   *
+   * @param tableName of the table to write to.
+   * @param cells to increment, with their aggregated amounts.
+   */
+  private void writeTable(TableName tableName,
+      List<Map.Entry<CounterCell, PendingIncrement>> cells) {
+    int written = 0;
+    KijiTable kijiTable = null;
+    KijiTableWriter writer = null;
+    try {
+      kijiTable = mKijiClient.getKijiTable(tableName.mInstance, tableName.mTable);
+      writer = kijiTable.openTableWriter();
+      for (Map.Entry<CounterCell, PendingIncrement> entry : cells) {
+        final KijiColumnName column = entry.getKey().mColumn;
+        final PendingIncrement pending = entry.getValue();
+        try {
+          writer.increment(pending.mEntityId, column.getFamily(), column.getQualifier(),
+              pending.mAmount);
+        } finally {
+          // Increments which failed may have been applied all the same.
+          invalidate(entry.getKey());
+        }
+        mPendingCells.decrementAndGet();
+        mPendingIncrements.addAndGet(-pending.mCount);
+        mIncrementsWritten.mark();
+        written++;
+      }
+    } catch (IOException ioe) {
+      LOG.warn("Failed to flush counter increments to table {}: {}", tableName, ioe.getMessage());
+    } catch (RuntimeException re) {
+      LOG.warn("Failed to flush counter increments to table {}: {}", tableName, re.getMessage());
+    } finally {
+      if (null != writer) {
+        ResourceUtils.closeOrLog(writer);
+      }
+      if (null != kijiTable) {
+        ResourceUtils.releaseOrLog(kijiTable);
+      }
+    }
+
+    // Merge whatever could not be written back into the buffer.
+    for (Map.Entry<CounterCell, PendingIncrement> entry : cells.subList(written, cells.size())) {
+      final CounterCell cell = entry.getKey();
+      final PendingIncrement pending = entry.getValue();
+      if (!mStripes[stripeIndex(cell)].add(cell, pending.mAmount, pending.mCount)) {
+        // The cell was incremented again since the drain and is now counted twice.
+        mPendingCells.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Invalidates what is cached about the row of a counter.
+   *
+   * @param cell of the counter.
+   */
+  private void invalidate(CounterCell cell) {
+    for (RowInvalidator invalidator : mInvalidators) {
+      invalidator.invalidateRow(cell.mInstance, cell.mTable, cell.mRowKey.array());
+    }
+  }
+
+  /** Flushes, logging rather than propagating any failure. */
+  private void flushOrLog() {
+    try {
+      flush();
+    } catch (RuntimeException re) {
+      LOG.error("Unexpected failure while flushing counter increments.", re);
+    }
+  }
+
+  /** Queues an early flush on the background thread, unless one is already queued. */
+  private void requestFlush() {
+    final ScheduledExecutorService executor = mFlushExecutor;
+    if (null != executor && mFlushRequested.compareAndSet(false, true)) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          flushOrLog();
+        }
+      });
+    }
+  }
+
+  /**
+   * @param cell to find the stripe of.
+   * @return the index of the stripe holding the given cell.
+   */
+  private int stripeIndex(CounterCell cell) {
+    return (cell.hashCode() & Integer.MAX_VALUE) % mStripes.length;
+  }
+
+  /** A set of pending increments guarded by a single lock. */
+  private static final class Stripe {
+    private Map<CounterCell, PendingIncrement> mPending = Maps.newHashMap();
+
+    /**
+     * Adds an amount to a pending cell.
+     *
+     * @param cell to increment.
+     * @param amount to add.
+     * @param count of client increments the amount aggregates.
+     * @return whether the cell was not pending yet.
+     */
+    synchronized boolean add(CounterCell cell, long amount, int count) {
+      final PendingIncrement pending = mPending.get(cell);
+      if (null == pending) {
+        mPending.put(cell, new PendingIncrement(cell.mEntityId, amount, count));
+        return true;
+      }
+      pending.mAmount += amount;
+      pending.mCount += count;
+      return false;
+    }
+
+    /** @return the pending increments, leaving this stripe empty. */
+    synchronized Map<CounterCell, PendingIncrement> drain() {
+      final Map<CounterCell, PendingIncrement> drained = mPending;
+      mPending = Maps.newHashMap();
+      return drained;
+    }
+  }
+
+  /** Aggregated increment of a single cell. Guarded by the lock of its stripe. */
+  private static final class PendingIncrement {
+    private final EntityId mEntityId;
+    private long mAmount;
+    private int mCount;
+
+    /**
+     * @param entityId of the row of the counter.
+     * @param amount aggregated so far.
+     * @param count of client increments aggregated so far.
+     */
+    PendingIncrement(EntityId entityId, long amount, int count) {
+      mEntityId = entityId;
+      mAmount = amount;
+      mCount = count;
+    }
+  }
+
+  /** Identifies a table within an instance. */
+  private static final class TableName {
+    private final String mInstance;
+    private final String mTable;
+
+    /**
+     * @param instance in which the table resides.
+     * @param table name.
+     */
+    TableName(String instance, String table) {
+      mInstance = instance;
+      mTable = table;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof TableName)) {
+        return false;
+      }
+      final TableName that = (TableName) other;
+      return mInstance.equals(that.mInstance) && mTable.equals(that.mTable);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mInstance, mTable);
+    }
+
+    @Override
+    public String toString() {
+      return mInstance + "/" + mTable;
+    }
+  }
+
+  /** Identifies a counter cell: a column of a row of a table. */
+  private static final class CounterCell {
+    private final String mInstance;
+    private final String mTable;
+    private final EntityId mEntityId;
+    private final ByteBuffer mRowKey;
+    private final KijiColumnName mColumn;
+
+    /**
+     * @param instance in which the table resides.
+     * @param table in which the counter resides.
+     * @param entityId of the row of the counter.
+     * @param column of the counter.
+     */
+    CounterCell(String instance, String table, EntityId entityId, KijiColumnName column) {
+      mInstance = instance;
+      mTable = table;
+      mEntityId = entityId;
+      mRowKey = ByteBuffer.wrap(entityId.getHBaseRowKey());
+      mColumn = column;
+    }
+
+    /** @return the name of the table this cell belongs to. */
+    TableName getTableName() {
+      return new TableName(mInstance, mTable);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof CounterCell)) {
+        return false;
+      }
+      final CounterCell that = (CounterCell) other;
+      return mInstance.equals(that.mInstance)
+          && mTable.equals(that.mTable)
+          && mRowKey.equals(that.mRowKey)
+          && mColumn.equals(that.mColumn);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mInstance, mTable, mRowKey, mColumn);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * Configuration of the local write-ahead spool backing asynchronous writes.
+ */
+public class SpoolConfiguration {
+  /** Whether writes may be acknowledged once spooled, before they reach Kiji. */
+  @JsonProperty("enabled")
+  private boolean mEnabled = false;
+
+  /** Directory holding the spool files. */
+  @NotEmpty
+  @JsonProperty("directory")
+  private String mDirectory = "./spool";
+
+  /** Number of spool files, each drained by its own worker. */
+  @Min(1)
+  @JsonProperty("partitions")
+  private int mPartitions = 4;
+
+  /** Size of each spool file in bytes. A full spool rejects asynchronous writes. */
+  @Min(4096)
+  @Max(Integer.MAX_VALUE - 4096)
+  @JsonProperty("partitionSizeBytes")
+  private int mPartitionSizeBytes = 64 * 1024 * 1024;
+
+  /** Maximum number of spooled rows written to Kiji per batch. */
+  @Min(1)
+  @JsonProperty("drainBatchSize")
+  private int mDrainBatchSize = 1000;
+
+  /** Upper bound of the back-off between retries of a failed batch, in milliseconds. */
+  @Min(1)
+  @JsonProperty("maxRetryBackoffMillis")
+  private long mMaxRetryBackoffMillis = 30000;
+
+  /** @return whether asynchronous writes are enabled. */
+  public final boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /** @return the directory holding the spool files. */
+  public final String getDirectory() {
+    return mDirectory;
+  }
+
+  /** @return the number of spool files. */
+  public final int getPartitions() {
+    return mPartitions;
+  }
+
+  /** @return the size of each spool file in bytes. */
+  public final int getPartitionSizeBytes() {
+    return mPartitionSizeBytes;
+  }
+
+  /** @return the maximum number of spooled rows written to Kiji per batch. */
+  public final int getDrainBatchSize() {
+    return mDrainBatchSize;
+  }
+
+  /** @return the upper bound of the back-off between retries, in milliseconds. */
+  public final long getMaxRetryBackoffMillis() {
+    return mMaxRetryBackoffMillis;
+  }
+}
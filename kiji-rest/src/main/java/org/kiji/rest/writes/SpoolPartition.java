@@ -0,0 +1,327 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed-size ring of records in a memory-mapped file.
+ *
+ * <p>The file starts with a header holding the logical offsets of the oldest unacknowledged
+ * record (head) and of the end of the newest record (tail). Logical offsets only grow; the
+ * position of a record in the ring is its offset modulo the ring capacity. A record never wraps
+ * around the end of the ring: the remaining bytes are skipped instead, and marked as such when
+ * there is room for a marker.</p>
+ *
+ * <p>Records are written to the mapping before the tail is advanced, and acknowledged records
+ * are released by advancing the head. Because the file is mapped, both survive a crash of the
+ * process, and records between head and tail are replayed when the file is reopened. Surviving
+ * a crash of the host additionally requires {@link #force()}.</p>
+ *
+ * <p>Appends and acknowledgements may come from different threads. Records are read by a single
+ * consumer.</p>
+ */
+final class SpoolPartition {
+  private static final Logger LOG = LoggerFactory.getLogger(SpoolPartition.class);
+
+  private static final int MAGIC = 0x4b525350;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int HEAD_OFFSET = 8;
+  private static final int TAIL_OFFSET = 16;
+  private static final int HEADER_SIZE = 24;
+
+  /** Each record is prefixed by its length and the CRC32 of its payload. */
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  /** Length written in place of a record header to mark the skipped end of the ring. */
+  private static final int WRAP_MARKER = -1;
+
+  private final File mFile;
+  private final int mCapacity;
+  private final MappedByteBuffer mBuffer;
+
+  /** Guarded by this. */
+  private long mHead;
+
+  /** Guarded by this. */
+  private long mTail;
+
+  /** Number of records between head and tail. Guarded by this. */
+  private long mPendingRecords;
+
+  /**
+   * Opens a spool partition, creating the file if it does not exist.
+   *
+   * @param file to map.
+   * @param capacity of the ring in bytes.
+   * @throws IOException if the file can not be mapped or was created with another capacity.
+   */
+  SpoolPartition(File file, int capacity) throws IOException {
+    mFile = file;
+    mCapacity = capacity;
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      final boolean isNew = (raf.length() == 0);
+      if (!isNew && raf.length() != HEADER_SIZE + capacity) {
+        throw new IOException(String.format("Spool file %s has %d bytes instead of the %d bytes "
+            + "configured. Drain it with the previous configuration first.",
+            file, raf.length(), HEADER_SIZE + capacity));
+      }
+      raf.setLength(HEADER_SIZE + capacity);
+      // The mapping remains valid once the file is closed.
+      mBuffer = raf.getChannel().map(MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+    } finally {
+      raf.close();
+    }
+
+    if (mBuffer.getInt(MAGIC_OFFSET) != MAGIC) {
+      mBuffer.putInt(MAGIC_OFFSET, MAGIC);
+      mBuffer.putLong(HEAD_OFFSET, 0);
+      mBuffer.putLong(TAIL_OFFSET, 0);
+    }
+    mHead = mBuffer.getLong(HEAD_OFFSET);
+    mTail = mBuffer.getLong(TAIL_OFFSET);
+    mPendingRecords = countRecords();
+    if (mPendingRecords > 0) {
+      LOG.info("Replaying {} spooled records ({} bytes) from {}.",
+          mPendingRecords, mTail - mHead, file);
+    }
+  }
+
+  /**
+   * Appends a record.
+   *
+   * @param payload of the record.
+   * @return whether the record was appended, false if the ring does not have enough room.
+   */
+  synchronized boolean append(byte[] payload) {
+    final int recordSize = RECORD_HEADER_SIZE + payload.length;
+    if (recordSize > mCapacity) {
+      return false;
+    }
+    long offset = mTail;
+    final int remaining = mCapacity - position(offset);
+    final int skipped;
+    if (recordSize > remaining) {
+      skipped = remaining;
+    } else {
+      skipped = 0;
+    }
+    if (offset + skipped + recordSize - mHead > mCapacity) {
+      return false;
+    }
+    if (skipped > 0) {
+      if (skipped >= RECORD_HEADER_SIZE) {
+        mBuffer.putInt(HEADER_SIZE + position(offset), WRAP_MARKER);
+      }
+      offset += skipped;
+    }
+
+    final CRC32 crc = new CRC32();
+    crc.update(payload);
+    final int index = HEADER_SIZE + position(offset);
+    mBuffer.putInt(index, payload.length);
+    mBuffer.putInt(index + 4, (int) crc.getValue());
+    final ByteBuffer data = mBuffer.duplicate();
+    data.position(index + RECORD_HEADER_SIZE);
+    data.put(payload);
+
+    mTail = offset + recordSize;
+    mBuffer.putLong(TAIL_OFFSET, mTail);
+    mPendingRecords++;
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Reads the oldest unacknowledged records, waiting for one to be appended if there is none.
+   *
+   * @param maxRecords to read.
+   * @param timeout to wait for a record if there is none.
+   * @param unit of the timeout.
+   * @return the records read, possibly empty.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  List<Record> read(int maxRecords, long timeout, TimeUnit unit) throws InterruptedException {
+    final long head;
+    final long tail;
+    synchronized (this) {
+      if (mHead == mTail) {
+        unit.timedWait(this, timeout);
+      }
+      head = mHead;
+      tail = mTail;
+    }
+
+    // Records between head and tail are immutable until acknowledged, so no lock is needed.
+    final List<Record> records = Lists.newArrayList();
+    long offset = head;
+    while (offset < tail && records.size() < maxRecords) {
+      offset = skipWrapped(offset);
+      if (offset >= tail) {
+        break;
+      }
+      final int index = HEADER_SIZE + position(offset);
+      final int length = mBuffer.getInt(index);
+      final int checksum = mBuffer.getInt(index + 4);
+      if (length < 0 || offset + RECORD_HEADER_SIZE + length > tail) {
+        records.add(Record.corrupt(tail));
+        break;
+      }
+      final byte[] payload = new byte[length];
+      final ByteBuffer data = mBuffer.duplicate();
+      data.position(index + RECORD_HEADER_SIZE);
+      data.get(payload);
+      final CRC32 crc = new CRC32();
+      crc.update(payload);
+      offset += RECORD_HEADER_SIZE + length;
+      if ((int) crc.getValue() != checksum) {
+        records.add(Record.corrupt(offset));
+      } else {
+        records.add(new Record(payload, offset));
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Releases every record up to the given record, included.
+   *
+   * @param record to acknowledge, along with every record before it.
+   * @param numRecords number of records acknowledged.
+   */
+  synchronized void acknowledge(Record record, int numRecords) {
+    mHead = record.getEndOffset();
+    mBuffer.putLong(HEAD_OFFSET, mHead);
+    if (mHead == mTail) {
+      // Corrupt records may have hidden any number of records.
+      mPendingRecords = 0;
+    } else {
+      mPendingRecords = Math.max(0, mPendingRecords - numRecords);
+    }
+  }
+
+  /** @return the number of spooled records not acknowledged yet. */
+  synchronized long getPendingRecords() {
+    return mPendingRecords;
+  }
+
+  /** @return the number of bytes used by records not acknowledged yet. */
+  synchronized long getPendingBytes() {
+    return mTail - mHead;
+  }
+
+  /** Flushes the mapping to the storage device. */
+  void force() {
+    mBuffer.force();
+  }
+
+  /** @return the file backing this partition. */
+  File getFile() {
+    return mFile;
+  }
+
+  /**
+   * @param offset is a logical offset.
+   * @return the position of the offset in the ring.
+   */
+  private int position(long offset) {
+    return (int) (offset % mCapacity);
+  }
+
+  /**
+   * Skips the end of the ring if no record starts at the given offset.
+   *
+   * @param offset at which a record or a skipped ring end starts.
+   * @return the offset at which the next record starts.
+   */
+  private long skipWrapped(long offset) {
+    final int remaining = mCapacity - position(offset);
+    if (remaining < RECORD_HEADER_SIZE
+        || mBuffer.getInt(HEADER_SIZE + position(offset)) == WRAP_MARKER) {
+      return offset + remaining;
+    }
+    return offset;
+  }
+
+  /** @return the number of records between head and tail. */
+  private long countRecords() {
+    long count = 0;
+    long offset = mHead;
+    while (offset < mTail) {
+      offset = skipWrapped(offset);
+      if (offset >= mTail) {
+        break;
+      }
+      final int length = mBuffer.getInt(HEADER_SIZE + position(offset));
+      if (length < 0) {
+        break;
+      }
+      offset += RECORD_HEADER_SIZE + length;
+      count++;
+    }
+    return count;
+  }
+
+  /** A record read from the spool. */
+  static final class Record {
+    private final byte[] mPayload;
+    private final long mEndOffset;
+
+    /**
+     * @param payload of the record, or null if the record is corrupt.
+     * @param endOffset is the logical offset following the record.
+     */
+    private Record(byte[] payload, long endOffset) {
+      mPayload = payload;
+      mEndOffset = endOffset;
+    }
+
+    /**
+     * @param endOffset is the logical offset from which the spool is readable again.
+     * @return a record standing for unreadable bytes.
+     */
+    private static Record corrupt(long endOffset) {
+      return new Record(null, endOffset);
+    }
+
+    /** @return the payload of the record, or null if the record is corrupt. */
+    byte[] getPayload() {
+      return mPayload;
+    }
+
+    /** @return the logical offset following the record. */
+    long getEndOffset() {
+      return mEndOffset;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.kiji.schema.KijiColumnName;
+
+/**
+ * A row write which is recorded in the spool and applied to Kiji later.
+ *
+ * <p>Cell values are kept in the JSON form they were received in, and are decoded when the row
+ * is written to Kiji. Timestamps are resolved before the row is spooled, so that writing the
+ * same spooled row twice is idempotent.</p>
+ */
+public final class SpooledRow {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /** Version of the serialized form, written first. */
+  private static final byte FORMAT_VERSION = 1;
+
+  private final String mInstance;
+  private final String mTable;
+  private final byte[] mRowKey;
+  private final List<SpooledCell> mCells;
+
+  /**
+   * Constructs a spooled row.
+   *
+   * @param instance in which the table resides.
+   * @param table in which the row resides.
+   * @param rowKey is the HBase row key of the row.
+   * @param cells to write to the row.
+   */
+  public SpooledRow(String instance, String table, byte[] rowKey, List<SpooledCell> cells) {
+    mInstance = instance;
+    mTable = table;
+    mRowKey = rowKey;
+    mCells = Collections.unmodifiableList(cells);
+  }
+
+  /** @return the instance in which the table resides. */
+  public String getInstance() {
+    return mInstance;
+  }
+
+  /** @return the table in which the row resides. */
+  public String getTable() {
+    return mTable;
+  }
+
+  /** @return the HBase row key of the row. */
+  public byte[] getRowKey() {
+    return mRowKey;
+  }
+
+  /** @return the cells to write to the row. */
+  public List<SpooledCell> getCells() {
+    return mCells;
+  }
+
+  /**
+   * Serializes this row.
+   *
+   * @return the serialized form of this row.
+   * @throws IOException on encoding error.
+   */
+  public byte[] toBytes() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(FORMAT_VERSION);
+    writeString(out, mInstance);
+    writeString(out, mTable);
+    out.writeInt(mRowKey.length);
+    out.write(mRowKey);
+    out.writeInt(mCells.size());
+    for (SpooledCell cell : mCells) {
+      writeString(out, cell.getColumn().getFamily());
+      writeString(out, cell.getColumn().getQualifier());
+      out.writeLong(cell.getTimestamp());
+      out.writeBoolean(cell.isCounter());
+      writeString(out, cell.getValue());
+      writeString(out, cell.getWriterSchema());
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deserializes a row.
+   *
+   * @param bytes is the serialized form of the row.
+   * @return the deserialized row.
+   * @throws IOException if the bytes are not a serialized row.
+   */
+  public static SpooledRow fromBytes(byte[] bytes) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    final byte version = in.readByte();
+    if (FORMAT_VERSION != version) {
+      throw new IOException("Unsupported spooled row format version: " + version);
+    }
+    final String instance = readString(in);
+    final String table = readString(in);
+    final byte[] rowKey = new byte[in.readInt()];
+    in.readFully(rowKey);
+    final int numCells = in.readInt();
+    final List<SpooledCell> cells = Lists.newArrayListWithCapacity(numCells);
+    for (int i = 0; i < numCells; i++) {
+      final String family = readString(in);
+      final String qualifier = readString(in);
+      final long timestamp = in.readLong();
+      final boolean isCounter = in.readBoolean();
+      final String value = readString(in);
+      final String writerSchema = readString(in);
+      cells.add(new SpooledCell(new KijiColumnName(family, qualifier), timestamp, isCounter,
+          value, writerSchema));
+    }
+    return new SpooledRow(instance, table, rowKey, cells);
+  }
+
+  /**
+   * Writes a nullable string without the 64k limit of DataOutput.writeUTF.
+   *
+   * @param out to write to.
+   * @param string to write; may be null.
+   * @throws IOException on write error.
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    if (null == string) {
+      out.writeInt(-1);
+    } else {
+      final byte[] encoded = string.getBytes(UTF8);
+      out.writeInt(encoded.length);
+      out.write(encoded);
+    }
+  }
+
+  /**
+   * Reads a string written by {@link #writeString}.
+   *
+   * @param in to read from.
+   * @return the string read, possibly null.
+   * @throws IOException on read error.
+   */
+  private static String readString(DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] encoded = new byte[length];
+    in.readFully(encoded);
+    return new String(encoded, UTF8);
+  }
+
+  /**
+   * A single cell of a spooled row.
+   */
+  public static final class SpooledCell {
+    private final KijiColumnName mColumn;
+    private final long mTimestamp;
+    private final boolean mIsCounter;
+    private final String mValue;
+    private final String mWriterSchema;
+
+    /**
+     * Constructs a spooled cell.
+     *
+     * @param column to write to; must be fully qualified.
+     * @param timestamp of the cell.
+     * @param isCounter whether the column is a counter.
+     * @param value of the cell, as a long for counters or as a JSON string otherwise.
+     * @param writerSchema is the JSON writer schema of the value, or null for the schema
+     *     specified by the table layout.
+     */
+    public SpooledCell(KijiColumnName column, long timestamp, boolean isCounter, String value,
+        String writerSchema) {
+      mColumn = column;
+      mTimestamp = timestamp;
+      mIsCounter = isCounter;
+      mValue = value;
+      mWriterSchema = writerSchema;
+    }
+
+    /** @return the column to write to. */
+    public KijiColumnName getColumn() {
+      return mColumn;
+    }
+
+    /** @return the timestamp of the cell. */
+    public long getTimestamp() {
+      return mTimestamp;
+    }
+
+    /** @return whether the column is a counter. */
+    public boolean isCounter() {
+      return mIsCounter;
+    }
+
+    /** @return the value of the cell, as a long for counters or as a JSON string otherwise. */
+    public String getValue() {
+      return mValue;
+    }
+
+    /** @return the JSON writer schema of the value, or null for the layout's schema. */
+    public String getWriterSchema() {
+      return mWriterSchema;
+    }
+  }
+}
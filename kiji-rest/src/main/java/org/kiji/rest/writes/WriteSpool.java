@@ -0,0 +1,417 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import org.apache.avro.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.resources.AbstractRowResource;
+import org.kiji.rest.writes.SpoolPartition.Record;
+import org.kiji.rest.writes.SpooledRow.SpooledCell;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.EntityIdFactory;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableWriter;
+import org.kiji.schema.NoSuchColumnException;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Local write-ahead spool which lets row writes be acknowledged before they reach Kiji.
+ *
+ * <p>Rows are appended to one of several memory-mapped {@link SpoolPartition}s, chosen by row
+ * key so that writes to a row are applied in order. Each partition is drained by its own worker,
+ * which writes batches of rows to Kiji and retries a batch with exponential back-off until it
+ * succeeds. Rows which can never be written, e.g. because a value does not match its schema, its
+ * column or its table was deleted, are logged, metered and dropped one by one. Rows not drained
+ * at shutdown are replayed on the next start.</p>
+ */
+public final class WriteSpool implements Managed {
+  private static final Logger LOG = LoggerFactory.getLogger(WriteSpool.class);
+
+  /** Back-off after the first failure of a batch. */
+  private static final long INITIAL_BACKOFF_MILLIS = 100;
+
+  /** How long an idle worker waits for new rows before checking whether it should stop. */
+  private static final long POLL_MILLIS = 100;
+
+  /** How long stop() waits for the workers to finish their current batch. */
+  private static final long STOP_TIMEOUT_SECONDS = 10;
+
+  private final KijiClient mKijiClient;
+  private final SpoolConfiguration mConfiguration;
+  private final SpoolPartition[] mPartitions;
+
+  private final Meter mRowsSpooled;
+  private final Meter mRowsRejected;
+  private final Meter mRowsDrained;
+  private final Meter mRowsDropped;
+  private final Meter mCellsDropped;
+
+  private ExecutorService mWorkers;
+  private volatile boolean mStopped = false;
+
+  /**
+   * Constructs a write spool.
+   *
+   * @param kijiClient used to open the tables spooled rows are written to.
+   * @param configuration of the spool.
+   */
+  public WriteSpool(KijiClient kijiClient, SpoolConfiguration configuration) {
+    mKijiClient = kijiClient;
+    mConfiguration = configuration;
+    mPartitions = new SpoolPartition[configuration.getPartitions()];
+
+    mRowsSpooled = Metrics.newMeter(WriteSpool.class, "rows-spooled", "rows", TimeUnit.SECONDS);
+    mRowsRejected = Metrics.newMeter(WriteSpool.class, "rows-rejected", "rows", TimeUnit.SECONDS);
+    mRowsDrained = Metrics.newMeter(WriteSpool.class, "rows-drained", "rows", TimeUnit.SECONDS);
+    mRowsDropped = Metrics.newMeter(WriteSpool.class, "rows-dropped", "rows", TimeUnit.SECONDS);
+    mCellsDropped =
+        Metrics.newMeter(WriteSpool.class, "cells-dropped", "cells", TimeUnit.SECONDS);
+    Metrics.newGauge(WriteSpool.class, "pending-rows", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        long pending = 0;
+        for (SpoolPartition partition : mPartitions) {
+          if (null != partition) {
+            pending += partition.getPendingRecords();
+          }
+        }
+        return pending;
+      }
+    });
+    Metrics.newGauge(WriteSpool.class, "pending-bytes", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        long pending = 0;
+        for (SpoolPartition partition : mPartitions) {
+          if (null != partition) {
+            pending += partition.getPendingBytes();
+          }
+        }
+        return pending;
+      }
+    });
+  }
+
+  /**
+   * Opens the spool files, replaying any rows left over, and starts draining them.
+   *
+   * @throws IOException if a spool file can not be opened.
+   */
+  @Override
+  public void start() throws IOException {
+    final File directory = new File(mConfiguration.getDirectory());
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create spool directory " + directory);
+    }
+    for (int i = 0; i < mPartitions.length; i++) {
+      mPartitions[i] = new SpoolPartition(new File(directory, String.format("spool-%d.dat", i)),
+          mConfiguration.getPartitionSizeBytes());
+    }
+
+    mWorkers = Executors.newFixedThreadPool(mPartitions.length, new ThreadFactoryBuilder()
+        .setNameFormat("spool-drain-%d")
+        .setDaemon(true)
+        .build());
+    for (final SpoolPartition partition : mPartitions) {
+      mWorkers.execute(new Runnable() {
+        @Override
+        public void run() {
+          drain(partition);
+        }
+      });
+    }
+    LOG.info("Spooling asynchronous writes to {}.", directory);
+  }
+
+  /**
+   * Stops draining the spool. Rows not drained yet are replayed on the next start.
+   *
+   * @throws InterruptedException if interrupted while waiting for the workers.
+   */
+  @Override
+  public void stop() throws InterruptedException {
+    mStopped = true;
+    if (null != mWorkers) {
+      mWorkers.shutdown();
+      if (!mWorkers.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        mWorkers.shutdownNow();
+      }
+    }
+    for (SpoolPartition partition : mPartitions) {
+      if (null != partition) {
+        partition.force();
+        if (partition.getPendingRecords() > 0) {
+          LOG.info("{} spooled rows left in {} for the next start.",
+              partition.getPendingRecords(), partition.getFile());
+        }
+      }
+    }
+  }
+
+  /**
+   * Appends a row write to the spool.
+   *
+   * @param row to write.
+   * @return whether the row was spooled, false if the spool is full.
+   * @throws IOException if the row can not be serialized.
+   */
+  public boolean append(SpooledRow row) throws IOException {
+    final byte[] payload = row.toBytes();
+    final int hash = 31 * row.getTable().hashCode() + Arrays.hashCode(row.getRowKey());
+    final SpoolPartition partition = mPartitions[(hash & Integer.MAX_VALUE) % mPartitions.length];
+    if (partition.append(payload)) {
+      mRowsSpooled.mark();
+      return true;
+    } else {
+      mRowsRejected.mark();
+      return false;
+    }
+  }
+
+  /**
+   * Drains a partition until the spool is stopped. Failures are retried with back-off, so that
+   * the worker outlives them.
+   *
+   * @param partition to drain.
+   */
+  private void drain(SpoolPartition partition) {
+    long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    while (!mStopped) {
+      try {
+        final List<Record> records =
+            partition.read(mConfiguration.getDrainBatchSize(), POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (records.isEmpty()) {
+          continue;
+        }
+        if (writeBatch(records)) {
+          partition.acknowledge(records.get(records.size() - 1), records.size());
+          backoffMillis = INITIAL_BACKOFF_MILLIS;
+          continue;
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException re) {
+        LOG.error("Spool worker for " + partition.getFile() + " failed, retrying.", re);
+      }
+      try {
+        Thread.sleep(backoffMillis);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      backoffMillis = Math.min(2 * backoffMillis, mConfiguration.getMaxRetryBackoffMillis());
+    }
+  }
+
+  /**
+   * Writes a batch of spooled rows. Rows which can never be written are dropped one by one, so
+   * that they do not hold back the rest of the partition. Rewriting rows of a batch which
+   * partially failed is harmless, as spooled rows are idempotent.
+   *
+   * @param records to write.
+   * @return whether the batch should be acknowledged, false if it should be retried.
+   */
+  private boolean writeBatch(List<Record> records) {
+    final Map<String, KijiTable> tables = Maps.newHashMap();
+    final Map<String, KijiTableWriter> writers = Maps.newHashMap();
+    int rowsWritten = 0;
+    int rowsDropped = 0;
+    int cellsDropped = 0;
+    try {
+      for (Record record : records) {
+        if (null == record.getPayload()) {
+          LOG.error("Dropping corrupt spool records.");
+          rowsDropped++;
+          continue;
+        }
+        final SpooledRow row;
+        try {
+          row = SpooledRow.fromBytes(record.getPayload());
+        } catch (IOException ioe) {
+          LOG.error("Dropping unreadable spooled row: {}", ioe.getMessage());
+          rowsDropped++;
+          continue;
+        }
+
+        final String tableKey = row.getInstance() + "/" + row.getTable();
+        KijiTableWriter writer = writers.get(tableKey);
+        if (null == writer) {
+          final KijiTable table = openTable(row.getInstance(), row.getTable());
+          if (null == table) {
+            rowsDropped++;
+            continue;
+          }
+          tables.put(tableKey, table);
+          writer = table.openTableWriter();
+          writers.put(tableKey, writer);
+        }
+        try {
+          cellsDropped += writeRow(tables.get(tableKey), writer, row);
+          rowsWritten++;
+        } catch (RuntimeException re) {
+          // Such as a row key which does not fit the layout of the table any more.
+          LOG.error("Dropping spooled row of table {}: {}", tableKey, re.toString());
+          rowsDropped++;
+        }
+      }
+      for (KijiTableWriter writer : writers.values()) {
+        writer.flush();
+      }
+    } catch (IOException ioe) {
+      LOG.warn("Failed to write spooled rows, retrying: {}", ioe.getMessage());
+      return false;
+    } finally {
+      for (KijiTableWriter writer : writers.values()) {
+        ResourceUtils.closeOrLog(writer);
+      }
+      for (KijiTable table : tables.values()) {
+        ResourceUtils.releaseOrLog(table);
+      }
+    }
+    mRowsDrained.mark(rowsWritten);
+    mRowsDropped.mark(rowsDropped);
+    mCellsDropped.mark(cellsDropped);
+    return true;
+  }
+
+  /**
+   * Opens the table of spooled rows.
+   *
+   * @param instance in which the table resides.
+   * @param table name.
+   * @return the table, or null if it is gone and its rows should be dropped.
+   * @throws IOException if the table can not be opened for now, and its rows should be retried.
+   */
+  private KijiTable openTable(String instance, String table) throws IOException {
+    final String tableKey = instance + "/" + table;
+    try {
+      return mKijiClient.getKijiTable(instance, table);
+    } catch (WebApplicationException wae) {
+      final int status = wae.getResponse().getStatus();
+      if (status == Status.SERVICE_UNAVAILABLE.getStatusCode()) {
+        throw new IOException("Table " + tableKey + " is unavailable.", wae);
+      }
+      if (status == Status.INTERNAL_SERVER_ERROR.getStatusCode() && tableExists(instance, table)) {
+        throw new IOException("Could not open table " + tableKey + ".", wae);
+      }
+      LOG.error("Dropping spooled row for missing table {}.", tableKey);
+      return null;
+    }
+  }
+
+  /**
+   * @param instance in which the table resides.
+   * @param table name.
+   * @return whether the table exists, false if its instance is not served.
+   * @throws IOException if the tables of the instance can not be listed.
+   */
+  private boolean tableExists(String instance, String table) throws IOException {
+    final Kiji kiji;
+    try {
+      kiji = mKijiClient.getKiji(instance);
+    } catch (WebApplicationException wae) {
+      // Instances which are not served, or no longer, are refused with 403.
+      final int status = wae.getResponse().getStatus();
+      if (status == Status.NOT_FOUND.getStatusCode()
+          || status == Status.FORBIDDEN.getStatusCode()) {
+        return false;
+      }
+      throw new IOException("Could not open instance " + instance + ".", wae);
+    }
+    try {
+      return kiji.getTableNames().contains(table);
+    } finally {
+      ResourceUtils.releaseOrLog(kiji);
+    }
+  }
+
+  /**
+   * Writes the cells of a spooled row.
+   *
+   * @param table to write to.
+   * @param writer of the table.
+   * @param row to write.
+   * @return the number of cells dropped because they could not be decoded or their column is
+   *     gone.
+   * @throws IOException if a put fails, and the row should be retried.
+   */
+  private int writeRow(KijiTable table, KijiTableWriter writer, SpooledRow row)
+      throws IOException {
+    final EntityId entityId = EntityIdFactory.getFactory(table.getLayout())
+        .getEntityIdFromHBaseRowKey(row.getRowKey());
+    int cellsDropped = 0;
+    for (SpooledCell cell : row.getCells()) {
+      final KijiColumnName column = cell.getColumn();
+      final Object datum;
+      try {
+        if (cell.isCounter()) {
+          datum = Long.parseLong(cell.getValue());
+        } else {
+          final Schema schema;
+          if (null != cell.getWriterSchema()) {
+            schema = new Schema.Parser().parse(cell.getWriterSchema());
+          } else {
+            schema = table.getLayout().getSchema(column);
+          }
+          datum = AbstractRowResource.decodeJsonValue(cell.getValue(), schema);
+        }
+      } catch (Exception e) {
+        LOG.error("Dropping spooled cell {} of table {}: {}",
+            new Object[] {column, row.getTable(), e.getMessage()});
+        cellsDropped++;
+        continue;
+      }
+      try {
+        writer.put(entityId, column.getFamily(), column.getQualifier(), cell.getTimestamp(),
+            datum);
+      } catch (NoSuchColumnException nsce) {
+        // The column was removed from the layout since the row was spooled.
+        LOG.error("Dropping spooled cell {} of table {}: {}",
+            new Object[] {column, row.getTable(), nsce.getMessage()});
+        cellsDropped++;
+      }
+    }
+    return cellsDropped;
+  }
+}
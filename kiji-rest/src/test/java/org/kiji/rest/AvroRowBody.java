@@ -0,0 +1,112 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * Builds application/avro request bodies of binary encoded AvroRowWrite records for tests.
+ */
+final class AvroRowBody {
+  /** Schema of the records of a body. */
+  static final Schema ROW_WRITE_SCHEMA = loadRowWriteSchema();
+
+  /** Schema of the cells of a record. */
+  static final Schema CELL_WRITE_SCHEMA =
+      ROW_WRITE_SCHEMA.getField("cells").schema().getElementType();
+
+  private final ByteArrayOutputStream mOut = new ByteArrayOutputStream();
+  private final BinaryEncoder mEncoder = EncoderFactory.get().binaryEncoder(mOut, null);
+
+  /**
+   * Appends a row to the body.
+   *
+   * @param rowKey is the HBase row key of the row, or empty to use the row key of the URL.
+   * @param cells of the row, as built by {@link #cell}.
+   * @return this body.
+   * @throws IOException on encoding error.
+   */
+  AvroRowBody addRow(byte[] rowKey, GenericRecord... cells) throws IOException {
+    final GenericRecord row = new GenericData.Record(ROW_WRITE_SCHEMA);
+    row.put("row_key", ByteBuffer.wrap(rowKey));
+    row.put("cells", Arrays.asList(cells));
+    new GenericDatumWriter<GenericRecord>(ROW_WRITE_SCHEMA).write(row, mEncoder);
+    mEncoder.flush();
+    return this;
+  }
+
+  /** @return the encoded body. */
+  byte[] toBytes() {
+    return mOut.toByteArray();
+  }
+
+  /**
+   * Builds a cell whose value is encoded with the given schema. The writer schema the cell
+   * references, if any, is set by the caller.
+   *
+   * @param family of the cell.
+   * @param qualifier of the cell.
+   * @param timestamp of the cell, or null for the time of the request.
+   * @param schema to encode the value with.
+   * @param value of the cell.
+   * @return the cell.
+   * @throws IOException on encoding error.
+   */
+  static GenericRecord cell(String family, String qualifier, Long timestamp, Schema schema,
+      Object value) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<Object>(schema).write(value, encoder);
+    encoder.flush();
+
+    final GenericRecord cell = new GenericData.Record(CELL_WRITE_SCHEMA);
+    cell.put("family", family);
+    cell.put("qualifier", qualifier);
+    cell.put("timestamp", timestamp);
+    cell.put("value", ByteBuffer.wrap(out.toByteArray()));
+    return cell;
+  }
+
+  /** @return the schema of the records of a body. */
+  private static Schema loadRowWriteSchema() {
+    final InputStream schemaStream =
+        AvroRowBody.class.getResourceAsStream("/org/kiji/rest/avro/row_write.avsc");
+    try {
+      try {
+        return new Schema.Parser().parse(schemaStream);
+      } finally {
+        schemaStream.close();
+      }
+    } catch (IOException ioe) {
+      throw new ExceptionInInitializerError(ioe);
+    }
+  }
+}
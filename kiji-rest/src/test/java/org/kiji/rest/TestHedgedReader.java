@@ -0,0 +1,214 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.rest.admission.Bulkhead;
+import org.kiji.rest.admission.BulkheadKijiClient;
+import org.kiji.rest.admission.Bulkheads;
+import org.kiji.rest.admission.BulkheadsConfiguration;
+import org.kiji.rest.writes.CounterBufferConfiguration;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+/**
+ * Test class for the reads hedged or falling back to the secondary cluster of a table.
+ */
+public class TestHedgedReader {
+  private static final String PRIMARY = "primary";
+  private static final String SECONDARY = "secondary";
+
+  private Kiji mPrimaryKiji = null;
+  private Kiji mSecondaryKiji = null;
+  private ManagedKijiClient mKijiClient = null;
+
+  /** Bulkheads of the secondary cluster, of a single permit. */
+  private Bulkheads mSecondaryBulkheads = null;
+
+  private HedgedReader mHedgedReader = null;
+
+  /** Number of reads run against the secondary cluster. */
+  private final AtomicInteger mSecondaryReads = new AtomicInteger();
+
+  /** Fails on the primary cluster with an IOException. */
+  private final HedgedReader.TableRead<String> mFailingOnPrimary =
+      new HedgedReader.TableRead<String>() {
+        @Override
+        public String read(KijiTable table) throws IOException {
+          final String cluster = getCluster(table);
+          if (PRIMARY.equals(cluster)) {
+            throw new IOException("Primary cluster down.");
+          }
+          return cluster;
+        }
+      };
+
+  /**
+   * Creates the instance on two fake clusters, and a reader hedging from the first to the
+   * second through a bulkhead.
+   *
+   * @throws Exception on error.
+   */
+  @Before
+  public void setUp() throws Exception {
+    mPrimaryKiji = new InstanceBuilder("default").build();
+    mPrimaryKiji.createTable(
+        KijiTableLayouts.getLayout("org/kiji/rest/layouts/sample_table.json"));
+    mSecondaryKiji = new InstanceBuilder("default").build();
+    mSecondaryKiji.createTable(
+        KijiTableLayouts.getLayout("org/kiji/rest/layouts/sample_table.json"));
+
+    final RoutingConfiguration routing = new ObjectMapper().convertValue(
+        ImmutableMap.of("minHedgeDelayMillis", 10, "routes", ImmutableMap.of("default",
+            ImmutableMap.of("primary", mPrimaryKiji.getURI().toString(),
+                "secondary", mSecondaryKiji.getURI().toString()))),
+        RoutingConfiguration.class);
+    mKijiClient = new ManagedKijiClient(mPrimaryKiji.getURI(),
+        Collections.singleton(mPrimaryKiji.getURI()), new CounterBufferConfiguration(),
+        new TablePoolsConfiguration(), routing, 0);
+    mKijiClient.start();
+
+    mSecondaryBulkheads = new Bulkheads(new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "permits", 1), BulkheadsConfiguration.class),
+        "secondary.");
+    mHedgedReader = new HedgedReader(mKijiClient,
+        new BulkheadKijiClient(mKijiClient.getSecondaryClient(), mSecondaryBulkheads),
+        mKijiClient, routing);
+    mHedgedReader.start();
+  }
+
+  /**
+   * Stops the reader and the client, and releases the fake instances.
+   *
+   * @throws Exception on error.
+   */
+  @After
+  public void tearDown() throws Exception {
+    mHedgedReader.stop();
+    mSecondaryBulkheads.stop();
+    mKijiClient.stop();
+    mPrimaryKiji.release();
+    mSecondaryKiji.release();
+  }
+
+  /**
+   * Names the cluster a table was leased from, counting the reads of the secondary cluster.
+   *
+   * @param table leased.
+   * @return PRIMARY or SECONDARY.
+   */
+  private String getCluster(KijiTable table) {
+    if (mPrimaryKiji.getURI().getZookeeperQuorum()
+        .equals(table.getURI().getZookeeperQuorum())) {
+      return PRIMARY;
+    }
+    mSecondaryReads.incrementAndGet();
+    return SECONDARY;
+  }
+
+  @Test
+  public void testShouldFallBackToTheSecondaryCluster() throws Exception {
+    assertTrue(mHedgedReader.hasSecondary("default", "sample_table"));
+    assertEquals(SECONDARY, mHedgedReader.read("default", "sample_table", mFailingOnPrimary));
+    assertEquals(1, mSecondaryReads.get());
+    // The secondary read gave its permit back with its table.
+    assertEquals(0, mSecondaryBulkheads.get("default", "sample_table").getActive());
+  }
+
+  @Test
+  public void testShouldNotRetryClientErrorsOnTheSecondaryCluster() throws Exception {
+    try {
+      mHedgedReader.read("default", "sample_table", new HedgedReader.TableRead<String>() {
+        @Override
+        public String read(KijiTable table) {
+          getCluster(table);
+          throw new WebApplicationException(Status.BAD_REQUEST);
+        }
+      });
+      fail("Read succeeded when it should have been rejected.");
+    } catch (WebApplicationException wae) {
+      assertEquals(400, wae.getResponse().getStatus());
+    }
+    assertEquals(0, mSecondaryReads.get());
+  }
+
+  @Test
+  public void testShouldHedgeSlowPrimaryReads() throws Exception {
+    final CountDownLatch unblock = new CountDownLatch(1);
+    final CountDownLatch primaryDone = new CountDownLatch(1);
+    try {
+      final String winner = mHedgedReader.read("default", "sample_table",
+          new HedgedReader.TableRead<String>() {
+            @Override
+            public String read(KijiTable table) {
+              final String cluster = getCluster(table);
+              if (PRIMARY.equals(cluster)) {
+                Uninterruptibles.awaitUninterruptibly(unblock);
+                primaryDone.countDown();
+              }
+              return cluster;
+            }
+          });
+      assertEquals(SECONDARY, winner);
+    } finally {
+      unblock.countDown();
+    }
+    // Let the primary read release its table before the client stops.
+    Uninterruptibles.awaitUninterruptibly(primaryDone);
+  }
+
+  @Test
+  public void testShouldAdmitSecondaryReadsThroughTheirBulkhead() throws Exception {
+    final Bulkhead bulkhead = mSecondaryBulkheads.get("default", "sample_table");
+    bulkhead.acquire();
+    try {
+      mHedgedReader.read("default", "sample_table", mFailingOnPrimary);
+      fail("Read succeeded when the secondary bulkhead should have been saturated.");
+    } catch (IOException ioe) {
+      // The failure of the primary read is reported rather than the rejection.
+      assertEquals("Primary cluster down.", ioe.getMessage());
+    } finally {
+      bulkhead.release();
+    }
+    assertEquals(0, mSecondaryReads.get());
+
+    assertEquals(SECONDARY, mHedgedReader.read("default", "sample_table", mFailingOnPrimary));
+    assertEquals(0, bulkhead.getActive());
+  }
+}
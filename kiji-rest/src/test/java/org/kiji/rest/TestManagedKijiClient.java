@@ -0,0 +1,268 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.WebApplicationException;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.rest.tasks.InstancesTask;
+import org.kiji.rest.writes.CounterBufferConfiguration;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+/**
+ * Test class for the instances served by the ManagedKijiClient.
+ */
+public class TestManagedKijiClient {
+  private Kiji mFakeKiji = null;
+
+  private ManagedKijiClient mKijiClient = null;
+
+  /** Adds, drains and removes the instances of the client. */
+  private InstancesTask mInstancesTask = null;
+
+  /**
+   * Creates a fake instance with a table, and a client serving none of its cluster's instances.
+   *
+   * @throws Exception on error.
+   */
+  @Before
+  public void setUp() throws Exception {
+    mFakeKiji = new InstanceBuilder("default").build();
+    mFakeKiji.createTable(KijiTableLayouts.getLayout("org/kiji/rest/layouts/sample_table.json"));
+    mKijiClient = new ManagedKijiClient(mFakeKiji.getURI(), Collections.<KijiURI>emptySet());
+    mKijiClient.start();
+    mInstancesTask = new InstancesTask(mKijiClient, 10000, 60000);
+  }
+
+  /**
+   * Stops the client and releases the fake instance.
+   *
+   * @throws Exception on error.
+   */
+  @After
+  public void tearDown() throws Exception {
+    mKijiClient.stop();
+    mFakeKiji.release();
+  }
+
+  /**
+   * Runs the instances task.
+   *
+   * @param operation is "add", "drain" or "remove".
+   * @param instance to run the operation on.
+   * @return the output of the task.
+   * @throws Exception on error.
+   */
+  private String runTask(String operation, String instance) throws Exception {
+    final StringWriter output = new StringWriter();
+    mInstancesTask.execute(ImmutableMultimap.of(operation, instance), new PrintWriter(output));
+    return output.toString().trim();
+  }
+
+  /**
+   * Checks that leasing a table fails.
+   *
+   * @param status expected of the failure.
+   */
+  private void assertLeaseRefused(int status) {
+    assertLeaseRefused(mKijiClient, status);
+  }
+
+  /**
+   * Checks that leasing a table from a client fails.
+   *
+   * @param kijiClient to lease from.
+   * @param status expected of the failure.
+   */
+  private static void assertLeaseRefused(ManagedKijiClient kijiClient, int status) {
+    try {
+      kijiClient.getKijiTable("default", "sample_table").release();
+      fail("Lease succeeded when it should have been refused.");
+    } catch (WebApplicationException wae) {
+      assertEquals(status, wae.getResponse().getStatus());
+    }
+  }
+
+  @Test
+  public void testShouldServeInstancesAddedAtRuntime() throws Exception {
+    assertTrue(mKijiClient.getInstances().isEmpty());
+    assertLeaseRefused(403);
+
+    assertEquals("Added default", runTask("add", "default"));
+    assertEquals("Already serving default", runTask("add", "default"));
+    assertEquals(1, mKijiClient.getInstances().size());
+    assertEquals("default", mKijiClient.getInstances().iterator().next().getInstance());
+    final KijiTable table = mKijiClient.getKijiTable("default", "sample_table");
+    try {
+      assertEquals("sample_table", table.getName());
+      assertEquals(1, mKijiClient.getLeasedTables("default"));
+    } finally {
+      table.release();
+    }
+    assertEquals(0, mKijiClient.getLeasedTables("default"));
+  }
+
+  @Test
+  public void testShouldRefuseNewLeasesOfADrainedInstance() throws Exception {
+    runTask("add", "default");
+    final KijiTable table = mKijiClient.getKijiTable("default", "sample_table");
+    try {
+      assertEquals("Draining default", runTask("drain", "default"));
+      assertLeaseRefused(503);
+      // Tables leased before the drain remain usable until released.
+      assertEquals("sample_table", table.getLayout().getName());
+      assertEquals(1, mKijiClient.getInstances().size());
+    } finally {
+      table.release();
+    }
+    assertEquals("Not serving other", runTask("drain", "other"));
+  }
+
+  @Test
+  public void testShouldStopServingRemovedInstancesOnceReleased() throws Exception {
+    runTask("add", "default");
+    final KijiTable table = mKijiClient.getKijiTable("default", "sample_table");
+    try {
+      assertEquals("Removed default", runTask("remove", "default"));
+      assertTrue(mKijiClient.getInstances().isEmpty());
+      assertLeaseRefused(403);
+      // The removed instance is torn down only once its last table is released.
+      assertEquals("sample_table", table.getLayout().getName());
+    } finally {
+      table.release();
+    }
+    assertEquals("Not serving default", runTask("remove", "default"));
+
+    // A removed instance can be served again.
+    assertEquals("Added default", runTask("add", "default"));
+    mKijiClient.getKijiTable("default", "sample_table").release();
+  }
+
+  /**
+   * Starts a client serving the fake instance, allowing in-flight work some time on stop.
+   *
+   * @param shutdownTimeoutMillis is the time allowed for in-flight work to finish on stop.
+   * @return the started client.
+   * @throws Exception on error.
+   */
+  private ManagedKijiClient startClient(long shutdownTimeoutMillis) throws Exception {
+    final ManagedKijiClient kijiClient = new ManagedKijiClient(mFakeKiji.getURI(),
+        Collections.singleton(mFakeKiji.getURI()), new CounterBufferConfiguration(),
+        new TablePoolsConfiguration(), new RoutingConfiguration(), shutdownTimeoutMillis);
+    kijiClient.start();
+    return kijiClient;
+  }
+
+  /**
+   * Stops a client in another thread.
+   *
+   * @param kijiClient to stop.
+   * @param failure is set to the exception thrown by the stop, if any.
+   * @return the thread stopping the client.
+   */
+  private static Thread stopInBackground(final ManagedKijiClient kijiClient,
+      final AtomicReference<Exception> failure) {
+    final Thread stopper = new Thread() {
+      @Override
+      public void run() {
+        try {
+          kijiClient.stop();
+        } catch (Exception e) {
+          failure.set(e);
+        }
+      }
+    };
+    stopper.start();
+    return stopper;
+  }
+
+  @Test
+  public void testShouldWaitForLeasedTablesBeforeTearingDownOnStop() throws Exception {
+    final ManagedKijiClient kijiClient = startClient(10000);
+    final Counter drained = Metrics.newCounter(ManagedKijiClient.class, "shutdown-drained-leases");
+    final long drainedBefore = drained.count();
+    final KijiTable table = kijiClient.getKijiTable("default", "sample_table");
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    final Thread stopper = stopInBackground(kijiClient, failure);
+    try {
+      // New work, including adding instances, is refused as soon as the stop starts.
+      boolean stopping = false;
+      for (int i = 0; i < 500 && !stopping; i++) {
+        try {
+          kijiClient.addInstance("default", 1000);
+          Thread.sleep(10);
+        } catch (WebApplicationException wae) {
+          assertEquals(503, wae.getResponse().getStatus());
+          stopping = true;
+        }
+      }
+      assertTrue(stopping);
+      assertLeaseRefused(kijiClient, 503);
+
+      // The in-flight table stays usable, and the stop waits for it.
+      Thread.sleep(200);
+      assertTrue(stopper.isAlive());
+      assertEquals("sample_table", table.getLayout().getName());
+    } finally {
+      table.release();
+    }
+    stopper.join(10000);
+    assertFalse(stopper.isAlive());
+    assertNull(failure.get());
+    assertEquals(drainedBefore + 1, drained.count());
+  }
+
+  @Test
+  public void testShouldTearDownAfterTheShutdownTimeout() throws Exception {
+    final ManagedKijiClient kijiClient = startClient(100);
+    final Counter aborted = Metrics.newCounter(ManagedKijiClient.class, "shutdown-aborted-leases");
+    final long abortedBefore = aborted.count();
+    // Never released: the pools it came from are closed under it.
+    kijiClient.getKijiTable("default", "sample_table");
+
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    final Thread stopper = stopInBackground(kijiClient, failure);
+    stopper.join(10000);
+    assertFalse(stopper.isAlive());
+    assertNull(failure.get());
+    assertEquals(abortedBefore + 1, aborted.count());
+    assertLeaseRefused(kijiClient, 503);
+  }
+}
@@ -26,24 +26,44 @@ import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.UniformInterfaceException;
 import com.yammer.dropwizard.testing.ResourceTest;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.commons.codec.binary.Hex;
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import org.kiji.rest.admission.BulkheadKijiClient;
+import org.kiji.rest.admission.Bulkheads;
+import org.kiji.rest.admission.BulkheadsConfiguration;
+import org.kiji.rest.cache.RowInvalidator;
 import org.kiji.rest.representations.KijiRestRow;
 import org.kiji.rest.resources.RowResource;
+import org.kiji.rest.resources.RowResourceOptions;
 import org.kiji.rest.sample_avro.PickBan;
 import org.kiji.rest.sample_avro.Team;
 import org.kiji.rest.serializers.AvroToJsonStringSerializer;
+import org.kiji.rest.writes.CounterBufferConfiguration;
+import org.kiji.rest.writes.CounterIncrementBuffer;
+import org.kiji.rest.writes.SpoolConfiguration;
+import org.kiji.rest.writes.WriteSpool;
 import org.kiji.schema.EntityId;
 import org.kiji.schema.Kiji;
 import org.kiji.schema.KijiColumnName;
@@ -63,8 +83,29 @@ public class TestRowResource extends ResourceTest {
 
   public static final String EXTENSIVE_COLUMN_TEST = ":.:.?&;& /\\\n~!@#$%^&*()_+{}|[]\\;';'\"\"";
 
+  /** Permits of the bulkhead the resource leases tables through. */
+  private static final int PERMITS = 2;
+
+  @Rule
+  public TemporaryFolder mTempDir = new TemporaryFolder();
+
   private Kiji mFakeKiji = null;
 
+  /** Spool of the asynchronous writes, drained to the fake Kiji instance. */
+  private WriteSpool mWriteSpool = null;
+
+  /** Bulkheads the resource leases tables through. */
+  private Bulkheads mBulkheads = null;
+
+  /** Buffer of the counter increments, flushed by the tests. */
+  private CounterIncrementBuffer mCounterBuffer = null;
+
+  /** Whether the flushes of the counter buffer fail. */
+  private volatile boolean mFailFlushes = false;
+
+  /** Rows invalidated by the counter buffer, as instance/table/hex row key. */
+  private final List<String> mInvalidatedRows = Lists.newCopyOnWriteArrayList();
+
   /**
    * Opens a new unique test Kiji instance, creating it if necessary.
    *
@@ -155,10 +196,44 @@ public class TestRowResource extends ResourceTest {
     writer.close();
     fakeTable.release();
 
+    mFakeKiji.createTable(
+        KijiTableLayouts.getLayout("org/kiji/rest/layouts/counter_table.json"));
+
     KijiRESTService.registerSerializers(this.getObjectMapperFactory());
     KijiClient kijiClient = new FakeKijiClient(mFakeKiji);
-    RowResource resource = new RowResource(kijiClient);
+    // The buffer is not started: the tests flush it themselves.
+    mCounterBuffer = new CounterIncrementBuffer(new FakeKijiClient(mFakeKiji) {
+      @Override
+      public KijiTable getKijiTable(String instance, String table) {
+        if (mFailFlushes) {
+          throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+        }
+        return super.getKijiTable(instance, table);
+      }
+    }, new ObjectMapper().convertValue(ImmutableMap.of("enabled", true, "stripes", 4),
+        CounterBufferConfiguration.class));
+    mCounterBuffer.setInvalidators(ImmutableList.<RowInvalidator>of(new RowInvalidator() {
+      @Override
+      public void invalidateRow(String instance, String table, byte[] rowKey) {
+        mInvalidatedRows.add(instance + "/" + table + "/" + Hex.encodeHexString(rowKey));
+      }
+    }));
+    // A single small spool file, so that a large row fills it.
+    mWriteSpool = new WriteSpool(kijiClient, new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "directory", mTempDir.getRoot().getPath(),
+            "partitions", 1, "partitionSizeBytes", 4096),
+        SpoolConfiguration.class));
+    mWriteSpool.start();
+    // Tables leaked by a request would keep their permits, and fail the requests after them.
+    mBulkheads = new Bulkheads(new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "permits", PERMITS), BulkheadsConfiguration.class));
+    RowResource resource = new RowResource(new BulkheadKijiClient(kijiClient, mBulkheads),
+        new RowResourceOptions()
+        .withCounterBuffer(mCounterBuffer)
+        .withWriteSpool(mWriteSpool));
     addResource(resource);
+    // Reports the cause of errors in the body of the response, as the service does.
+    addProvider(new WebAppExceptionMapper());
   }
 
   protected final String getHBaseRowKeyHex(String table, Object... components) throws IOException {
@@ -176,6 +251,8 @@ public class TestRowResource extends ResourceTest {
    */
   @After
   public void afterTest() throws Exception {
+    mWriteSpool.stop();
+    mBulkheads.stop();
     mFakeKiji.release();
   }
 
@@ -651,4 +728,355 @@ public class TestRowResource extends ResourceTest {
     assertEquals("gumshoe", node.get("username").asText());
     assertEquals(5647382910L, node.get("num_purchases").asLong());
   }
+
+  /**
+   * Gets the value of a counter.
+   *
+   * @param hexRowKey of the row of the counter.
+   * @param qualifier of the counter in the counters family.
+   * @return the value of the counter, or null if it was never incremented.
+   */
+  private Long getCounter(String hexRowKey, String qualifier) {
+    final String resourceURI = "/v1/instances/default/tables/counter_table/rows/" + hexRowKey
+        + "?cols=counters:" + qualifier;
+    final KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    if (returnRow.getCells().isEmpty()) {
+      return null;
+    }
+    return ((Number) returnRow.getCells().get(0).getValue()).longValue();
+  }
+
+  @Test
+  public void testShouldBufferCounterIncrementsUntilFlushed() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("counter_table", 1L);
+    String resourceURI = "/v1/instances/default/tables/counter_table/rows/" + hexRowKey;
+
+    // No timestamp is needed when only incrementing.
+    client().resource(resourceURI + "?increment.counters:clicks=3").put(Object.class);
+    client().resource(resourceURI + "?increment.counters:clicks=4").put(Object.class);
+    client().resource(resourceURI + "?increment.counters:views=1").put(Object.class);
+    assertEquals(null, getCounter(hexRowKey, "clicks"));
+
+    mCounterBuffer.flush();
+    assertEquals(Long.valueOf(7L), getCounter(hexRowKey, "clicks"));
+    assertEquals(Long.valueOf(1L), getCounter(hexRowKey, "views"));
+
+    // Flushing again writes nothing more.
+    mCounterBuffer.flush();
+    assertEquals(Long.valueOf(7L), getCounter(hexRowKey, "clicks"));
+  }
+
+  @Test
+  public void testShouldKeepCounterIncrementsWhoseFlushFailed() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("counter_table", 2L);
+    String resourceURI = "/v1/instances/default/tables/counter_table/rows/" + hexRowKey;
+
+    client().resource(resourceURI + "?increment.counters:clicks=2").put(Object.class);
+    mFailFlushes = true;
+    mCounterBuffer.flush();
+    // Merged back with the increments received since the failed flush.
+    client().resource(resourceURI + "?increment.counters:clicks=5").put(Object.class);
+    mFailFlushes = false;
+    assertEquals(null, getCounter(hexRowKey, "clicks"));
+
+    mCounterBuffer.flush();
+    assertEquals(Long.valueOf(7L), getCounter(hexRowKey, "clicks"));
+  }
+
+  @Test
+  public void testShouldInvalidateRowsOfBufferedCounterIncrements() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("counter_table", 3L);
+    String resourceURI = "/v1/instances/default/tables/counter_table/rows/" + hexRowKey;
+    String row = "default/counter_table/" + hexRowKey;
+
+    client().resource(resourceURI + "?increment.counters:clicks=1").put(Object.class);
+    assertEquals(ImmutableList.of(row), ImmutableList.copyOf(mInvalidatedRows));
+    mCounterBuffer.flush();
+    assertEquals(ImmutableList.of(row, row), ImmutableList.copyOf(mInvalidatedRows));
+  }
+
+  @Test
+  public void testShouldRejectBadCounterIncrements() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 12345L);
+    String sampleURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+    String counterURI = "/v1/instances/default/tables/counter_table/rows/"
+        + getHBaseRowKeyHex("counter_table", 4L);
+
+    // Not a counter.
+    try {
+      client().resource(sampleURI + "?increment.group_family:long_qualifier=1").put(Object.class);
+      fail("PUT succeeded when it should have failed because of a column not being a counter.");
+    } catch (UniformInterfaceException e) {
+      assertEquals(400, e.getResponse().getStatus());
+    }
+    // Not a long.
+    try {
+      client().resource(counterURI + "?increment.counters:clicks=many").put(Object.class);
+      fail("PUT succeeded when it should have failed because of an amount not being a long.");
+    } catch (UniformInterfaceException e) {
+      assertEquals(400, e.getResponse().getStatus());
+    }
+    mCounterBuffer.flush();
+    assertEquals(null, getCounter(getHBaseRowKeyHex("counter_table", 4L), "clicks"));
+  }
+
+  @Test
+  public void testShouldAcknowledgeSpooledPutsAsynchronously() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 54500L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+
+    ClientResponse response = client().resource(resourceURI
+        + "?group_family:string_qualifier=spooled&group_family:long_qualifier=42"
+        + "&timestamp=3141592")
+        .header("Prefer", "respond-async")
+        .put(ClientResponse.class);
+    assertEquals(202, response.getStatus());
+
+    // The spool is drained in the background.
+    KijiRestRow returnRow = null;
+    for (int i = 0; i < 100; i++) {
+      returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+      if (returnRow.getCells().size() == 2) {
+        break;
+      }
+      Thread.sleep(50);
+    }
+    assertEquals(2, returnRow.getCells().size());
+    assertEquals(42, returnRow.getCells().get(0).getValue());
+    assertEquals("spooled", returnRow.getCells().get(1).getValue());
+  }
+
+  @Test
+  public void testShouldRejectAsyncPutsWhenTheSpoolIsFull() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 54501L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey
+        + "?group_family:string_qualifier=" + Strings.repeat("x", 8192)
+        + "&timestamp=3141592";
+
+    ClientResponse response =
+        client().resource(resourceURI).header("Prefer", "respond-async").put(ClientResponse.class);
+    assertEquals(503, response.getStatus());
+  }
+
+  @Test
+  public void testShouldValidateAsyncPutsBeforeSpooling() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 54502L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+
+    // Not a long.
+    ClientResponse response = client().resource(resourceURI
+        + "?group_family:long_qualifier=notalong&timestamp=3141592")
+        .header("Prefer", "respond-async")
+        .put(ClientResponse.class);
+    assertEquals(400, response.getStatus());
+
+    // Increments are always synchronous.
+    String counterURI = "/v1/instances/default/tables/counter_table/rows/"
+        + getHBaseRowKeyHex("counter_table", 5L);
+    response = client().resource(counterURI + "?increment.counters:clicks=1")
+        .header("Prefer", "respond-async")
+        .put(ClientResponse.class);
+    assertEquals(400, response.getStatus());
+  }
+
+  @Test
+  public void testAvroPut() throws Exception {
+    // Set up.
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 54600L);
+    KijiTableLayout layout = KijiTableLayouts
+        .getTableLayout("org/kiji/rest/layouts/sample_table.json");
+    Schema recordSchema =
+        layout.getCellSpec(new KijiColumnName("group_family:inline_record")).getAvroSchema();
+    GenericData.Record genericRecord = new GenericData.Record(recordSchema);
+    genericRecord.put("username", "gumshoe");
+    genericRecord.put("num_purchases", 5647382910L);
+    byte[] body = new AvroRowBody()
+        // The row key is taken from the URL.
+        .addRow(new byte[0],
+            AvroRowBody.cell("group_family", "long_qualifier", 3141592L,
+                Schema.create(Schema.Type.LONG), 123L),
+            AvroRowBody.cell("group_family", "inline_record", 3141592L,
+                recordSchema, genericRecord),
+            // Written at the time of the request.
+            AvroRowBody.cell("strings", "avro", null, Schema.create(Schema.Type.STRING),
+                "helloworld"))
+        .toBytes();
+
+    // Put.
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+    Object target = client().resource(resourceURI).type("application/avro")
+        .put(Object.class, body);
+
+    // Retrieve.
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+
+    // Check.
+    assertTrue(target.toString()
+        .contains("/v1/instances/default/tables/sample_table/rows/" + hexRowKey));
+    assertEquals(3, returnRow.getCells().size());
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode node = mapper.readTree(returnRow.getCells().get(0).getValue().toString());
+    assertEquals("gumshoe", node.get("username").asText());
+    assertEquals(5647382910L, node.get("num_purchases").asLong());
+    assertEquals(123, returnRow.getCells().get(1).getValue());
+    assertEquals(3141592L, returnRow.getCells().get(1).getTimestamp().longValue());
+    assertEquals("helloworld", returnRow.getCells().get(2).getValue());
+    assertTrue(returnRow.getCells().get(2).getTimestamp() > 3141592L);
+  }
+
+  @Test
+  public void testShouldRejectMalformedAvroPuts() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 54601L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+    byte[] body = new AvroRowBody()
+        .addRow(new byte[0], AvroRowBody.cell("group_family", "string_qualifier", 3141592L,
+            Schema.create(Schema.Type.STRING), "helloworld"))
+        .toBytes();
+
+    // Truncated.
+    ClientResponse response = client().resource(resourceURI).type("application/avro")
+        .put(ClientResponse.class, Arrays.copyOf(body, body.length - 3));
+    assertEquals(400, response.getStatus());
+
+    // Row key not matching the URL.
+    byte[] otherRowKey = Hex.decodeHex(getHBaseRowKeyHex("sample_table", 54602L).toCharArray());
+    response = client().resource(resourceURI).type("application/avro")
+        .put(ClientResponse.class, new AvroRowBody()
+            .addRow(otherRowKey, AvroRowBody.cell("group_family", "string_qualifier", 3141592L,
+                Schema.create(Schema.Type.STRING), "helloworld"))
+            .toBytes());
+    assertEquals(400, response.getStatus());
+
+    // Unknown column.
+    response = client().resource(resourceURI).type("application/avro")
+        .put(ClientResponse.class, new AvroRowBody()
+            .addRow(new byte[0], AvroRowBody.cell("nonfamily", "noncolumn", 3141592L,
+                Schema.create(Schema.Type.STRING), "helloworld"))
+            .toBytes());
+    assertEquals(400, response.getStatus());
+
+    // Nothing was written.
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(0, returnRow.getCells().size());
+  }
+
+  @Test
+  public void testShouldDeleteCellsUpToATimestamp() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 56789L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+
+    Object target = client().resource(resourceURI
+        + "?cols=group_family:string_qualifier&timestamp=3").delete(Object.class);
+
+    assertTrue(target.toString()
+        .contains("/v1/instances/default/tables/sample_table/rows/" + hexRowKey));
+    KijiRestRow returnRow = client().resource(resourceURI
+        + "?cols=group_family:string_qualifier&versions=all").get(KijiRestRow.class);
+    assertEquals(2, returnRow.getCells().size());
+    assertEquals(5L, returnRow.getCells().get(0).getTimestamp().longValue());
+    assertEquals(4L, returnRow.getCells().get(1).getTimestamp().longValue());
+  }
+
+  @Test
+  public void testShouldDeleteFamiliesColumnsAndRows() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 12345L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+
+    client().resource(resourceURI + "?cols=pick_bans,group_family:long_qualifier")
+        .delete(Object.class);
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(5, returnRow.getCells().size());
+    for (int i = 0; i < returnRow.getCells().size(); i++) {
+      assertTrue(!"pick_bans".equals(returnRow.getCells().get(i).getColumnFamily()));
+      assertTrue(!"long_qualifier".equals(returnRow.getCells().get(i).getColumnQualifier()));
+    }
+
+    client().resource(resourceURI).delete(Object.class);
+    returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(0, returnRow.getCells().size());
+  }
+
+  @Test
+  public void testShouldRejectDeletesOfUnknownColumns() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 12345L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+    try {
+      client().resource(resourceURI + "?cols=group_family:long_qualifier,nonfamily")
+          .delete(Object.class);
+      fail("DELETE succeeded when it should have failed because of a column not existing.");
+    } catch (UniformInterfaceException e) {
+      assertEquals(400, e.getResponse().getStatus());
+    }
+    // Nothing was deleted.
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(7, returnRow.getCells().size());
+  }
+
+  @Test
+  public void testShouldReportEveryInvalidColumnOfAPut() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 54800L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+
+    ClientResponse response = client().resource(resourceURI
+        + "?nonfamily:noncolumn=1"
+        + "&group_family:long_qualifier=123"
+        + "&group_family:noncolumn=2"
+        + "&timestamp=3141592").put(ClientResponse.class);
+    assertInvalidColumnsReported(response);
+
+    // Asynchronous puts are validated before being spooled.
+    response = client().resource(resourceURI
+        + "?nonfamily:noncolumn=1"
+        + "&group_family:long_qualifier=123"
+        + "&group_family:noncolumn=2"
+        + "&timestamp=3141592").header("Prefer", "respond-async").put(ClientResponse.class);
+    assertInvalidColumnsReported(response);
+
+    // Nothing was written.
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(0, returnRow.getCells().size());
+  }
+
+  /**
+   * Checks that a response reports exactly the invalid columns of a put, and that the put
+   * released its table.
+   *
+   * @param response to the put.
+   */
+  private void assertInvalidColumnsReported(ClientResponse response) {
+    assertEquals(400, response.getStatus());
+    String message = response.getEntity(JsonNode.class).get("exception").asText();
+    assertTrue(message, message.contains("nonfamily:noncolumn"));
+    assertTrue(message, message.contains("group_family:noncolumn"));
+    assertTrue(message, !message.contains("long_qualifier"));
+    assertEquals(0, mBulkheads.get("default", "sample_table").getActive());
+  }
+
+  @Test
+  public void testShouldReleaseTheTablesOfBadPuts() throws Exception {
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 54600L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/" + hexRowKey;
+    String counterURI = "/v1/instances/default/tables/counter_table/rows/"
+        + getHBaseRowKeyHex("counter_table", 6L);
+    List<String> badPuts = ImmutableList.of(
+        resourceURI + "?group_family:string_qualifier=bad&timestamp=notatime",
+        resourceURI + "?group_family:string_qualifier=bad&timestamp=3141592"
+            + "&timestamp.group_family:string_qualifier=notatime",
+        resourceURI + "?increment.group_family:long_qualifier=1",
+        counterURI + "?increment.counters:clicks=many",
+        resourceURI + "?nonexistent:column=bad&timestamp=3141592");
+    for (int i = 0; i < PERMITS; i++) {
+      for (String badPut : badPuts) {
+        assertEquals(400, client().resource(badPut).put(ClientResponse.class).getStatus());
+      }
+    }
+    assertEquals(0, mBulkheads.get("default", "sample_table").getActive());
+
+    ClientResponse response = client().resource(resourceURI
+        + "?group_family:string_qualifier=good&timestamp=3141592").put(ClientResponse.class);
+    assertEquals(200, response.getStatus());
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(1, returnRow.getCells().size());
+    assertEquals("good", returnRow.getCells().get(0).getValue());
+  }
 }
@@ -35,16 +35,22 @@ import javax.ws.rs.core.UriBuilder;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
+import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.UniformInterfaceException;
 import com.yammer.dropwizard.testing.ResourceTest;
 
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.codec.binary.Hex;
 import org.junit.After;
 import org.junit.Test;
 
+import org.kiji.rest.admission.BulkheadKijiClient;
+import org.kiji.rest.admission.Bulkheads;
+import org.kiji.rest.admission.BulkheadsConfiguration;
 import org.kiji.rest.representations.KijiRestCell;
 import org.kiji.rest.representations.KijiRestRow;
 import org.kiji.rest.resources.RowsResource;
@@ -72,8 +78,14 @@ public class TestRowsResource extends ResourceTest {
 
   public static final String EXTENSIVE_COLUMN_TEST = ":.:.?&;& /\\\n~!@#$%^&*()_+{}|[]\\;';'\"\"";
 
+  /** Permits of the bulkhead the resource leases tables through. */
+  private static final int PERMITS = 2;
+
   private Kiji mFakeKiji = null;
 
+  /** Bulkheads the resource leases tables through. */
+  private Bulkheads mBulkheads = null;
+
   /**
    * Opens a new unique test Kiji instance, creating it if necessary.
    *
@@ -166,8 +178,14 @@ public class TestRowsResource extends ResourceTest {
 
     KijiRESTService.registerSerializers(this.getObjectMapperFactory());
     KijiClient kijiClient = new FakeKijiClient(mFakeKiji);
-    RowsResource resource = new RowsResource(kijiClient, this.getObjectMapperFactory().build());
+    // Tables leaked by a request would keep their permits, and fail the requests after them.
+    mBulkheads = new Bulkheads(new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "permits", PERMITS), BulkheadsConfiguration.class));
+    RowsResource resource = new RowsResource(new BulkheadKijiClient(kijiClient, mBulkheads),
+        this.getObjectMapperFactory().build());
     addResource(resource);
+    // Reports the cause of errors in the body of the response, as the service does.
+    addProvider(new WebAppExceptionMapper());
   }
 
   protected final String getHBaseRowKeyHex(String table, Object... components) throws IOException {
@@ -193,6 +211,7 @@ public class TestRowsResource extends ResourceTest {
    */
   @After
   public void afterTest() throws Exception {
+    mBulkheads.stop();
     mFakeKiji.release();
   }
 
@@ -679,4 +698,270 @@ public class TestRowsResource extends ResourceTest {
     assertEquals("sample_string", returnRow.getCells().get(0).getValue());
     assertEquals(1, returnRow.getCells().size());
   }
+
+  @Test
+  public void testAvroPostWithWriterSchemas() throws Exception {
+    // Set up.
+    String hexRowKey1 = getHBaseRowKeyHex("sample_table", 54700L);
+    String hexRowKey2 = getHBaseRowKeyHex("sample_table", 54701L);
+    Schema longSchema = Schema.create(Schema.Type.LONG);
+    long longSchemaId = mFakeKiji.getSchemaTable().getOrCreateSchemaId(longSchema);
+    // Writes an extra field, which the schema of the column drops.
+    Schema writerSchema = new Schema.Parser().parse("{\"type\": \"record\", "
+        + "\"name\": \"UserRecord\", \"fields\": ["
+        + "{\"name\": \"username\", \"type\": \"string\"}, "
+        + "{\"name\": \"num_purchases\", \"type\": \"long\"}, "
+        + "{\"name\": \"referrer\", \"type\": \"string\"}]}");
+    GenericData.Record genericRecord = new GenericData.Record(writerSchema);
+    genericRecord.put("username", "gumshoe");
+    genericRecord.put("num_purchases", 5647382910L);
+    genericRecord.put("referrer", "search");
+
+    GenericRecord longCell =
+        AvroRowBody.cell("group_family", "long_qualifier", 3141592L, longSchema, 123L);
+    longCell.put("writer_schema_id", longSchemaId);
+    GenericRecord recordCell = AvroRowBody.cell("group_family", "inline_record", 3141592L,
+        writerSchema, genericRecord);
+    recordCell.put("writer_schema", writerSchema.toString());
+    byte[] body = new AvroRowBody()
+        .addRow(Hex.decodeHex(hexRowKey1.toCharArray()), longCell, recordCell)
+        .addRow(Hex.decodeHex(hexRowKey2.toCharArray()), longCell)
+        .toBytes();
+
+    // Post.
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/";
+    JsonNode written = client().resource(resourceURI).type("application/avro")
+        .accept(MediaType.APPLICATION_JSON).post(JsonNode.class, body);
+    assertEquals(2, written.get("rows").asInt());
+
+    // Retrieve.
+    resourceURI = "/v1/instances/default/tables/sample_table/rows?eid="
+        + getEntityIdString("sample_table", 54700L);
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+
+    // Check.
+    assertEquals(2, returnRow.getCells().size());
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode node = mapper.readTree(returnRow.getCells().get(0).getValue().toString());
+    assertEquals("gumshoe", node.get("username").asText());
+    assertEquals(5647382910L, node.get("num_purchases").asLong());
+    assertEquals(null, node.get("referrer"));
+    assertEquals(123, returnRow.getCells().get(1).getValue());
+
+    resourceURI = "/v1/instances/default/tables/sample_table/rows?eid="
+        + getEntityIdString("sample_table", 54701L);
+    returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(1, returnRow.getCells().size());
+    assertEquals(123, returnRow.getCells().get(0).getValue());
+  }
+
+  @Test
+  public void testShouldRejectAvroPostsWithBadWriterSchemas() throws Exception {
+    byte[] rowKey = Hex.decodeHex(getHBaseRowKeyHex("sample_table", 54702L).toCharArray());
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/";
+
+    // Unknown schema ID.
+    GenericRecord cell = AvroRowBody.cell("group_family", "long_qualifier", 3141592L,
+        Schema.create(Schema.Type.LONG), 123L);
+    cell.put("writer_schema_id", 123456789L);
+    ClientResponse response = client().resource(resourceURI).type("application/avro")
+        .post(ClientResponse.class, new AvroRowBody().addRow(rowKey, cell).toBytes());
+    assertEquals(400, response.getStatus());
+
+    // Inline schema which does not parse.
+    cell.put("writer_schema_id", null);
+    cell.put("writer_schema", "{not a schema");
+    response = client().resource(resourceURI).type("application/avro")
+        .post(ClientResponse.class, new AvroRowBody().addRow(rowKey, cell).toBytes());
+    assertEquals(400, response.getStatus());
+
+    // No row key.
+    response = client().resource(resourceURI).type("application/avro")
+        .post(ClientResponse.class, new AvroRowBody().addRow(new byte[0],
+            AvroRowBody.cell("group_family", "long_qualifier", 3141592L,
+                Schema.create(Schema.Type.LONG), 123L)).toBytes());
+    assertEquals(400, response.getStatus());
+  }
+
+  /**
+   * Parses the progress lines streamed by a bulk delete.
+   *
+   * @param out is the body of the response.
+   * @return the progress lines, as JSON.
+   * @throws IOException on parse error.
+   */
+  private static JsonNode[] parseProgress(String out) throws IOException {
+    final String[] lines = out.split("\r\n");
+    final JsonNode[] progress = new JsonNode[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      progress[i] = new ObjectMapper().readTree(lines[i]);
+    }
+    return progress;
+  }
+
+  @Test
+  public void testShouldDeleteListedRowsInBatches() throws Exception {
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows";
+    String body = "[\"" + getHBaseRowKeyHex("sample_table", 12345L) + "\", \""
+        + getHBaseRowKeyHex("sample_table", 2345L) + "\"]";
+
+    String out = client().resource(resourceURI + "?batch_size=1&parallelism=2")
+        .type(MediaType.APPLICATION_JSON).delete(String.class, body);
+
+    // A line per batch, then the final line.
+    JsonNode[] progress = parseProgress(out);
+    assertEquals(3, progress.length);
+    assertEquals(2, progress[2].get("deleted").asLong());
+    assertTrue(progress[2].get("complete").asBoolean());
+    out = client().resource(resourceURI).get(String.class);
+    assertEquals(1, out.split("\r\n").length);
+  }
+
+  @Test
+  public void testShouldDeleteColumnsOfRowsWithDataInAColumn() throws Exception {
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows";
+
+    // Only the first row has a long_qualifier.
+    String out = client().resource(resourceURI
+        + "?has=group_family:long_qualifier&cols=group_family:long_qualifier")
+        .delete(String.class);
+
+    JsonNode[] progress = parseProgress(out);
+    assertEquals(1, progress[progress.length - 1].get("deleted").asLong());
+    assertTrue(progress[progress.length - 1].get("complete").asBoolean());
+    KijiRestRow returnRow = client().resource(resourceURI + "?eid="
+        + getEntityIdString("sample_table", 12345L)).get(KijiRestRow.class);
+    assertEquals(6, returnRow.getCells().size());
+    out = client().resource(resourceURI).get(String.class);
+    assertEquals(3, out.split("\r\n").length);
+  }
+
+  @Test
+  public void testShouldRejectBadBulkDeletes() throws Exception {
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows";
+    String hexRowKey = getHBaseRowKeyHex("sample_table", 12345L);
+
+    // Both a key list and a key range.
+    ClientResponse response = client().resource(resourceURI + "?start_rk=" + hexRowKey)
+        .type(MediaType.APPLICATION_JSON)
+        .delete(ClientResponse.class, "[\"" + hexRowKey + "\"]");
+    assertEquals(400, response.getStatus());
+    // No parallelism.
+    response = client().resource(resourceURI + "?parallelism=0").delete(ClientResponse.class);
+    assertEquals(400, response.getStatus());
+    // Not a fully qualified column.
+    response = client().resource(resourceURI + "?has=group_family").delete(ClientResponse.class);
+    assertEquals(400, response.getStatus());
+    // Unknown column.
+    response = client().resource(resourceURI + "?cols=nonfamily").delete(ClientResponse.class);
+    assertEquals(400, response.getStatus());
+    // Not a JSON list.
+    response = client().resource(resourceURI).type(MediaType.APPLICATION_JSON)
+        .delete(ClientResponse.class, "{\"rows\": 1}");
+    assertEquals(400, response.getStatus());
+
+    // Nothing was deleted.
+    String out = client().resource(resourceURI).get(String.class);
+    assertEquals(3, out.split("\r\n").length);
+  }
+
+  /**
+   * Checks that a response reports exactly the invalid columns of a write, and that the write
+   * released its table.
+   *
+   * @param response to the write.
+   */
+  private void assertInvalidColumnsReported(ClientResponse response) {
+    assertEquals(400, response.getStatus());
+    String message = response.getEntity(JsonNode.class).get("exception").asText();
+    assertTrue(message, message.contains("nonfamily:noncolumn"));
+    assertTrue(message, message.contains("group_family:noncolumn"));
+    assertTrue(message, !message.contains("long_qualifier"));
+    assertEquals(0, mBulkheads.get("default", "sample_table").getActive());
+  }
+
+  @Test
+  public void testShouldReportEveryInvalidColumnOfAPost() throws Exception {
+    String stringRowKey = getEntityIdString("sample_table", 54801L);
+    KijiRestRow postRow = new KijiRestRow(ToolUtils
+        .createEntityIdFromUserInputs(URLDecoder.decode(stringRowKey, "UTF-8"),
+        KijiTableLayouts.getTableLayout("org/kiji/rest/layouts/sample_table.json")));
+    postRow.addCell(new KijiRestCell(3141592L, "nonfamily", "noncolumn", "hagar"));
+    postRow.addCell(new KijiRestCell(3141592L, "group_family", "long_qualifier", 123L));
+    postRow.addCell(new KijiRestCell(3141592L, "group_family", "noncolumn", "hagar"));
+
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/";
+    assertInvalidColumnsReported(client().resource(resourceURI).type(MediaType.APPLICATION_JSON)
+        .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, postRow));
+
+    // Nothing was written.
+    resourceURI = "/v1/instances/default/tables/sample_table/rows?eid=" + stringRowKey;
+    KijiRestRow returnRow = client().resource(resourceURI).get(KijiRestRow.class);
+    assertEquals(0, returnRow.getCells().size());
+  }
+
+  @Test
+  public void testShouldReportEveryInvalidColumnOfAnAvroPost() throws Exception {
+    byte[] rowKey = Hex.decodeHex(getHBaseRowKeyHex("sample_table", 54802L).toCharArray());
+    Schema stringSchema = Schema.create(Schema.Type.STRING);
+    byte[] body = new AvroRowBody()
+        .addRow(rowKey,
+            AvroRowBody.cell("nonfamily", "noncolumn", 3141592L, stringSchema, "hagar"),
+            AvroRowBody.cell("group_family", "long_qualifier", 3141592L,
+                Schema.create(Schema.Type.LONG), 123L))
+        .addRow(rowKey,
+            AvroRowBody.cell("group_family", "noncolumn", 3141592L, stringSchema, "hagar"))
+        .toBytes();
+
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows/";
+    assertInvalidColumnsReported(client().resource(resourceURI).type("application/avro")
+        .accept(MediaType.APPLICATION_JSON).post(ClientResponse.class, body));
+  }
+
+  @Test
+  public void testShouldReleaseTheTablesOfBadRequests() throws Exception {
+    String stringRowKey = getEntityIdString("sample_table", 54900L);
+    String resourceURI = "/v1/instances/default/tables/sample_table/rows";
+    KijiRestRow noEntityIdRow = new KijiRestRow();
+    noEntityIdRow.addCell(new KijiRestCell(3141592L, "group_family", "string_qualifier", "bad"));
+    KijiRestRow badColumnRow = new KijiRestRow(ToolUtils
+        .createEntityIdFromUserInputs(URLDecoder.decode(stringRowKey, "UTF-8"),
+        KijiTableLayouts.getTableLayout("org/kiji/rest/layouts/sample_table.json")));
+    badColumnRow.addCell(new KijiRestCell(3141592L, "nonfamily", "noncolumn", "bad"));
+
+    for (int i = 0; i < PERMITS; i++) {
+      // Unknown column.
+      ClientResponse response = client().resource(resourceURI + "?cols=nonfamily")
+          .get(ClientResponse.class);
+      assertEquals(400, response.getStatus());
+      // Both an entity ID and a row key range.
+      response = client().resource(resourceURI + "?eid=" + stringRowKey + "&start_rk=00")
+          .get(ClientResponse.class);
+      assertEquals(400, response.getStatus());
+      // Not a number of versions.
+      response = client().resource(resourceURI + "?versions=many").get(ClientResponse.class);
+      assertEquals(400, response.getStatus());
+      // No entity ID.
+      response = client().resource(resourceURI).type(MediaType.APPLICATION_JSON)
+          .post(ClientResponse.class, noEntityIdRow);
+      assertEquals(400, response.getStatus());
+      // Unknown column.
+      response = client().resource(resourceURI).type(MediaType.APPLICATION_JSON)
+          .post(ClientResponse.class, badColumnRow);
+      assertEquals(400, response.getStatus());
+    }
+    assertEquals(0, mBulkheads.get("default", "sample_table").getActive());
+
+    KijiRestRow goodRow = new KijiRestRow(ToolUtils
+        .createEntityIdFromUserInputs(URLDecoder.decode(stringRowKey, "UTF-8"),
+        KijiTableLayouts.getTableLayout("org/kiji/rest/layouts/sample_table.json")));
+    goodRow.addCell(new KijiRestCell(3141592L, "group_family", "string_qualifier", "good"));
+    ClientResponse response = client().resource(resourceURI).type(MediaType.APPLICATION_JSON)
+        .post(ClientResponse.class, goodRow);
+    assertEquals(200, response.getStatus());
+    KijiRestRow returnRow = client().resource(resourceURI + "?eid=" + stringRowKey)
+        .get(KijiRestRow.class);
+    assertEquals(1, returnRow.getCells().size());
+    assertEquals("good", returnRow.getCells().get(0).getValue());
+  }
 }
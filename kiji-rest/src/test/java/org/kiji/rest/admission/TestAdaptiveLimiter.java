@@ -0,0 +1,95 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.ws.rs.WebApplicationException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+/**
+ * Test class for the adaptive concurrency limiter.
+ */
+public class TestAdaptiveLimiter {
+  private static final long MILLIS = 1000000L;
+
+  private static AdaptiveLimiter newLimiter(int initialLimit, int minLimit) {
+    final AdaptiveLimiterConfiguration configuration = new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "initialLimit", initialLimit, "minLimit", minLimit,
+            "bulkShare", 0.5, "maxOldGenOccupancy", 2.0),
+        AdaptiveLimiterConfiguration.class);
+    return new AdaptiveLimiter(configuration);
+  }
+
+  private static void assertShed(AdaptiveLimiter limiter, RequestClass requestClass) {
+    try {
+      limiter.acquire(requestClass);
+      fail("Request should have been shed.");
+    } catch (WebApplicationException wae) {
+      assertEquals(503, wae.getResponse().getStatus());
+      assertEquals("1", wae.getResponse().getMetadata().getFirst("Retry-After"));
+    }
+  }
+
+  @Test
+  public void testShouldShedBulkRequestsBeforeInteractiveOnes() throws Exception {
+    final AdaptiveLimiter limiter = newLimiter(4, 1);
+    limiter.acquire(RequestClass.BULK);
+    limiter.acquire(RequestClass.BULK);
+    assertShed(limiter, RequestClass.BULK);
+    limiter.acquire(RequestClass.INTERACTIVE);
+    limiter.acquire(RequestClass.INTERACTIVE);
+    assertShed(limiter, RequestClass.INTERACTIVE);
+
+    limiter.release(RequestClass.BULK, 0);
+    assertEquals(3, limiter.getInFlight());
+    limiter.acquire(RequestClass.INTERACTIVE);
+  }
+
+  @Test
+  public void testShouldShrinkTheLimitAsLatencyRises() throws Exception {
+    final AdaptiveLimiter limiter = newLimiter(20, 2);
+    for (int i = 0; i < 50; i++) {
+      fillAndRelease(limiter, 10 * MILLIS);
+    }
+    final int steadyLimit = limiter.getLimit();
+    assertTrue(steadyLimit >= 20);
+    for (int i = 0; i < 50; i++) {
+      fillAndRelease(limiter, 100 * MILLIS);
+    }
+    assertTrue(limiter.getLimit() < steadyLimit);
+  }
+
+  /** Fills the limit with interactive requests, then ends them all with the given latency. */
+  private static void fillAndRelease(AdaptiveLimiter limiter, long latencyNanos) {
+    final int limit = limiter.getLimit();
+    for (int i = 0; i < limit; i++) {
+      limiter.acquire(RequestClass.INTERACTIVE);
+    }
+    for (int i = 0; i < limit; i++) {
+      limiter.release(RequestClass.INTERACTIVE, latencyNanos);
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.WebApplicationException;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+
+/**
+ * Test class for the bulkheads.
+ */
+public class TestBulkhead {
+  private static void assertRejected(Bulkhead bulkhead, Callable<?> callable, int status)
+      throws Exception {
+    try {
+      bulkhead.call(callable);
+      fail("Call should have been rejected.");
+    } catch (WebApplicationException wae) {
+      assertEquals(status, wae.getResponse().getStatus());
+    }
+  }
+
+  private static Callable<Boolean> await(final CountDownLatch latch) {
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        latch.await();
+        return true;
+      }
+    };
+  }
+
+  private static void awaitIdle(Bulkhead bulkhead) throws InterruptedException {
+    for (int i = 0; i < 500 && bulkhead.getActive() > 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, bulkhead.getActive());
+  }
+
+  @Test
+  public void testShouldGiveBackThePermitOfACallCancelledBeforeItStarts() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final CountDownLatch busy = new CountDownLatch(1);
+    executor.submit(await(busy));
+    final Bulkhead bulkhead = new Bulkhead("test-cancelled", 2, 10, executor);
+    try {
+      final AtomicBoolean ran = new AtomicBoolean();
+      assertRejected(bulkhead, new Callable<Void>() {
+        @Override
+        public Void call() {
+          ran.set(true);
+          return null;
+        }
+      }, 503);
+      assertEquals(0, bulkhead.getActive());
+
+      busy.countDown();
+      executor.shutdown();
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+      assertFalse(ran.get());
+      assertEquals(0, bulkhead.getActive());
+    } finally {
+      busy.countDown();
+      bulkhead.close();
+    }
+  }
+
+  @Test
+  public void testShouldKeepThePermitOfAStartedCallUntilItCompletes() throws Exception {
+    final Bulkhead bulkhead = new Bulkhead("test-started", 1, 50);
+    final CountDownLatch stuck = new CountDownLatch(1);
+    try {
+      final CountDownLatch started = new CountDownLatch(1);
+      assertRejected(bulkhead, new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          started.countDown();
+          // Ignores the interrupt of the caller giving up, as a stuck HBase call would.
+          Uninterruptibles.awaitUninterruptibly(stuck);
+          return null;
+        }
+      }, 503);
+      started.await();
+      assertEquals(1, bulkhead.getActive());
+      assertRejected(bulkhead, await(new CountDownLatch(0)), 503);
+    } finally {
+      stuck.countDown();
+    }
+    try {
+      awaitIdle(bulkhead);
+      assertEquals(Boolean.TRUE, bulkhead.call(await(new CountDownLatch(0))));
+    } finally {
+      bulkhead.close();
+    }
+  }
+
+  @Test
+  public void testShouldAdmitCallsRightAfterAPermitIsGivenBack() throws Exception {
+    final Bulkhead bulkhead = new Bulkhead("test-released", 1, 5000);
+    try {
+      for (int i = 0; i < 1000; i++) {
+        final int call = i;
+        assertEquals(Integer.valueOf(call), bulkhead.call(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return call;
+          }
+        }));
+      }
+      awaitIdle(bulkhead);
+    } finally {
+      bulkhead.close();
+    }
+  }
+
+  @Test
+  public void testShouldFailCallsOutlivingTheDeadlineWith504() throws Exception {
+    final Bulkhead bulkhead = new Bulkhead("test-deadline", 1, 5000);
+    final CountDownLatch stuck = new CountDownLatch(1);
+    Deadline.setCurrent(new Deadline(50));
+    try {
+      assertRejected(bulkhead, await(stuck), 504);
+    } finally {
+      Deadline.clearCurrent();
+      stuck.countDown();
+    }
+    try {
+      awaitIdle(bulkhead);
+    } finally {
+      bulkhead.close();
+    }
+  }
+}
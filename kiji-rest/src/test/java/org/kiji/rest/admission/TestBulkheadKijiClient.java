@@ -0,0 +1,152 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+/**
+ * Test class for the leases of tables through bulkheads.
+ */
+public class TestBulkheadKijiClient {
+  private Kiji mFakeKiji = null;
+  private Bulkheads mBulkheads = null;
+  private KijiClient mKijiClient = null;
+
+  /**
+   * Creates a fake instance of two tables, one of which has a bulkhead of its own.
+   *
+   * @throws Exception on error.
+   */
+  @Before
+  public void setUp() throws Exception {
+    mFakeKiji = new InstanceBuilder("default").build();
+    mFakeKiji.createTable(KijiTableLayouts.getLayout("org/kiji/rest/layouts/sample_table.json"));
+    mFakeKiji.createTable(KijiTableLayouts.getLayout("org/kiji/rest/layouts/counter_table.json"));
+    mBulkheads = new Bulkheads(new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "permits", 2,
+            "tables", ImmutableMap.of("default/counter_table", 1)),
+        BulkheadsConfiguration.class));
+    mKijiClient = new BulkheadKijiClient(new KijiClient() {
+      @Override
+      public Kiji getKiji(String instance) {
+        return mFakeKiji;
+      }
+
+      @Override
+      public Collection<KijiURI> getInstances() {
+        return Collections.singleton(mFakeKiji.getURI());
+      }
+
+      @Override
+      public KijiTable getKijiTable(String instance, String table) {
+        try {
+          return mFakeKiji.openTable(table);
+        } catch (IOException ioe) {
+          throw new WebApplicationException(ioe, Status.INTERNAL_SERVER_ERROR);
+        }
+      }
+    }, mBulkheads);
+  }
+
+  /**
+   * Closes the bulkheads and releases the fake instance.
+   *
+   * @throws Exception on error.
+   */
+  @After
+  public void tearDown() throws Exception {
+    mBulkheads.stop();
+    mFakeKiji.release();
+  }
+
+  private void assertLeaseRejected(String table) {
+    try {
+      mKijiClient.getKijiTable("default", table).release();
+      fail("Lease succeeded when the bulkhead should have been saturated.");
+    } catch (WebApplicationException wae) {
+      assertEquals(503, wae.getResponse().getStatus());
+    }
+  }
+
+  @Test
+  public void testShouldHoldAPermitOfTheTableBulkheadPerLease() throws Exception {
+    final Bulkhead instanceBulkhead = mBulkheads.get("default", "sample_table");
+    final Bulkhead tableBulkhead = mBulkheads.get("default", "counter_table");
+    assertEquals("default", instanceBulkhead.getName());
+    assertEquals("default/counter_table", tableBulkhead.getName());
+
+    final KijiTable counters = mKijiClient.getKijiTable("default", "counter_table");
+    assertEquals(1, tableBulkhead.getActive());
+    assertLeaseRejected("counter_table");
+    // A saturated table does not take the permits of the rest of the instance.
+    final KijiTable samples = mKijiClient.getKijiTable("default", "sample_table");
+    assertEquals(1, instanceBulkhead.getActive());
+
+    // Retained tables hold their permit until released as often.
+    samples.retain();
+    samples.release();
+    assertEquals(1, instanceBulkhead.getActive());
+    samples.release();
+    counters.release();
+    assertEquals(0, instanceBulkhead.getActive());
+    assertEquals(0, tableBulkhead.getActive());
+    mKijiClient.getKijiTable("default", "counter_table").release();
+  }
+
+  @Test
+  public void testShouldNotTakeASecondPermitForLeasesWithinACall() throws Exception {
+    final Bulkhead bulkhead = mBulkheads.get("default", "sample_table");
+    final String name = bulkhead.call(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        assertEquals(1, bulkhead.getActive());
+        final KijiTable table = mKijiClient.getKijiTable("default", "sample_table");
+        try {
+          assertEquals(1, bulkhead.getActive());
+          return table.getName();
+        } finally {
+          table.release();
+        }
+      }
+    });
+    assertEquals("sample_table", name);
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.ws.rs.WebApplicationException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the circuit breaker of a table.
+ */
+public class TestCircuitBreaker {
+  private CircuitBreaker mBreaker;
+
+  @Before
+  public void setUp() {
+    final CircuitBreakersConfiguration configuration = new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "minimumCalls", 4, "failureRateThreshold", 0.5,
+            "openMillis", 50, "halfOpenProbes", 2),
+        CircuitBreakersConfiguration.class);
+    mBreaker = new CircuitBreaker("instance/table", configuration);
+  }
+
+  @After
+  public void tearDown() {
+    mBreaker.remove();
+  }
+
+  private void assertRejected() {
+    try {
+      mBreaker.acquire();
+      fail("Request should have been rejected.");
+    } catch (WebApplicationException wae) {
+      assertEquals(503, wae.getResponse().getStatus());
+    }
+  }
+
+  @Test
+  public void testShouldStayClosedBelowTheMinimumCalls() throws Exception {
+    mBreaker.record(true, false);
+    mBreaker.record(true, false);
+    mBreaker.record(true, false);
+    assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    assertFalse(mBreaker.acquire());
+  }
+
+  @Test
+  public void testShouldOpenAndCloseThroughProbes() throws Exception {
+    mBreaker.record(false, false);
+    mBreaker.record(false, false);
+    mBreaker.record(true, false);
+    mBreaker.record(true, false);
+    assertEquals(CircuitBreaker.State.OPEN, mBreaker.getState());
+    assertRejected();
+
+    Thread.sleep(60);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, mBreaker.getState());
+    assertTrue(mBreaker.acquire());
+    assertTrue(mBreaker.acquire());
+    assertRejected();
+    mBreaker.record(false, true);
+    mBreaker.record(false, true);
+    mBreaker.endProbe();
+    mBreaker.endProbe();
+    assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    assertFalse(mBreaker.acquire());
+  }
+
+  @Test
+  public void testShouldReopenWhenAProbeFails() throws Exception {
+    mBreaker.open();
+    Thread.sleep(60);
+    assertTrue(mBreaker.acquire());
+    mBreaker.record(true, true);
+    mBreaker.endProbe();
+    assertEquals(CircuitBreaker.State.OPEN, mBreaker.getState());
+    assertRejected();
+  }
+
+  @Test
+  public void testShouldIgnoreCallsAdmittedBeforeOpeningWhileHalfOpen() throws Exception {
+    mBreaker.open();
+    Thread.sleep(60);
+    assertTrue(mBreaker.acquire());
+    mBreaker.record(false, false);
+    mBreaker.record(false, false);
+    mBreaker.record(true, false);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, mBreaker.getState());
+    mBreaker.record(false, true);
+    mBreaker.endProbe();
+    assertEquals(CircuitBreaker.State.HALF_OPEN, mBreaker.getState());
+  }
+}
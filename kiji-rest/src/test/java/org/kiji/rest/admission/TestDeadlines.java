@@ -0,0 +1,180 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.WebApplicationException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the deadlines of requests.
+ */
+public class TestDeadlines {
+  private Deadlines mDeadlines = null;
+
+  /** Creates deadlines running calls in a single thread, with a default for single rows. */
+  @Before
+  public void setUp() {
+    mDeadlines = new Deadlines(new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "maxMillis", 1000, "threads", 1,
+            "endpoints", ImmutableMap.of("row", 200)),
+        DeadlinesConfiguration.class));
+  }
+
+  /** Stops the threads of the deadlines and forgets the deadline of the test thread. */
+  @After
+  public void tearDown() {
+    Deadline.clearCurrent();
+    mDeadlines.stop();
+  }
+
+  private static Callable<Thread> currentThread() {
+    return new Callable<Thread>() {
+      @Override
+      public Thread call() {
+        return Thread.currentThread();
+      }
+    };
+  }
+
+  @Test
+  public void testShouldBuildDeadlinesFromTheHeaderOrTheEndpointDefault() throws Exception {
+    assertNull(mDeadlines.newDeadline(Endpoint.ROWS, null));
+    final Deadline rowDeadline = mDeadlines.newDeadline(Endpoint.ROW, null);
+    assertTrue(rowDeadline.getRemainingMillis() <= 200);
+    assertTrue(mDeadlines.newDeadline(Endpoint.ROWS, "50").getRemainingMillis() <= 50);
+    // Capped at the largest timeout allowed.
+    final Deadline capped = mDeadlines.newDeadline(Endpoint.ROWS, "3600000");
+    assertTrue(capped.getRemainingMillis() <= 1000);
+
+    for (String header : new String[] {"soon", "0", "-5"}) {
+      try {
+        mDeadlines.newDeadline(Endpoint.ROW, header);
+        fail("Deadline built from an invalid header: " + header);
+      } catch (IllegalArgumentException iae) {
+        assertTrue(iae.getMessage().contains(Deadline.TIMEOUT_HEADER));
+      }
+    }
+  }
+
+  @Test
+  public void testShouldFailCallsOutlivingTheDeadlineWith504() throws Exception {
+    final CountDownLatch stuck = new CountDownLatch(1);
+    Deadline.setCurrent(new Deadline(50));
+    final long startNanos = System.nanoTime();
+    try {
+      mDeadlines.call(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          stuck.await();
+          return null;
+        }
+      });
+      fail("Call succeeded when its deadline should have expired.");
+    } catch (WebApplicationException wae) {
+      assertEquals(Deadline.GATEWAY_TIMEOUT, wae.getResponse().getStatus());
+      assertTrue(System.nanoTime() - startNanos < 5000 * 1000000L);
+    } finally {
+      stuck.countDown();
+    }
+
+    // Already expired: the call does not even start.
+    final AtomicReference<Thread> ran = new AtomicReference<Thread>();
+    try {
+      mDeadlines.call(new Callable<Void>() {
+        @Override
+        public Void call() {
+          ran.set(Thread.currentThread());
+          return null;
+        }
+      });
+      fail("Call succeeded when its deadline had expired.");
+    } catch (WebApplicationException wae) {
+      assertEquals(Deadline.GATEWAY_TIMEOUT, wae.getResponse().getStatus());
+    }
+    assertNull(ran.get());
+  }
+
+  @Test
+  public void testShouldRunCallsInlineWithoutADeadline() throws Exception {
+    assertSame(Thread.currentThread(), mDeadlines.call(currentThread()));
+  }
+
+  @Test
+  public void testShouldRunCallsInlineWhenEveryThreadIsBusy() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch stuck = new CountDownLatch(1);
+    final Thread caller = new Thread() {
+      @Override
+      public void run() {
+        Deadline.setCurrent(new Deadline(5000));
+        try {
+          mDeadlines.call(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              started.countDown();
+              stuck.await();
+              return null;
+            }
+          });
+        } catch (Exception e) {
+          // The call is only there to keep the single thread busy.
+          started.countDown();
+        }
+      }
+    };
+    caller.start();
+    try {
+      started.await();
+      Deadline.setCurrent(new Deadline(5000));
+      final Thread thread = mDeadlines.call(currentThread());
+      assertSame(Thread.currentThread(), thread);
+    } finally {
+      stuck.countDown();
+      caller.join();
+    }
+  }
+
+  @Test
+  public void testShouldRunCallsWithTheDeadlineOfTheRequest() throws Exception {
+    final Deadline deadline = new Deadline(5000);
+    Deadline.setCurrent(deadline);
+    final Deadline seen = mDeadlines.call(new Callable<Deadline>() {
+      @Override
+      public Deadline call() {
+        return Deadline.current();
+      }
+    });
+    assertSame(deadline, seen);
+  }
+}
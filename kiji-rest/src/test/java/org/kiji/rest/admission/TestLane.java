@@ -0,0 +1,69 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test class for the lanes.
+ */
+public class TestLane {
+  @Test
+  public void testShouldShedRequestsAtOnceWhenTheLaneIsFull() throws Exception {
+    final Lane lane = new Lane(RequestClass.BULK, new LaneConfiguration(2, 0.5), 8);
+    try {
+      assertTrue(lane.tryEnter());
+      assertTrue(lane.tryEnter());
+      final long startNanos = System.nanoTime();
+      assertFalse(lane.tryEnter());
+      // The default queue timeout is a second: a shed request never waits for it.
+      assertTrue(System.nanoTime() - startNanos < 500 * 1000000L);
+      assertEquals(2, lane.getActive());
+
+      lane.exit();
+      assertTrue(lane.tryEnter());
+      lane.exit();
+      lane.exit();
+      assertEquals(0, lane.getActive());
+    } finally {
+      lane.close();
+    }
+  }
+
+  @Test
+  public void testShouldKeepTheLanesOfEachClassApart() throws Exception {
+    final Lanes lanes = new Lanes(new LanesConfiguration());
+    try {
+      final Lane bulk = lanes.get(RequestClass.BULK);
+      for (int i = 0; i < 8; i++) {
+        assertTrue(bulk.tryEnter());
+      }
+      assertFalse(bulk.tryEnter());
+      assertTrue(lanes.get(RequestClass.INTERACTIVE).tryEnter());
+      lanes.get(RequestClass.INTERACTIVE).exit();
+    } finally {
+      lanes.stop();
+    }
+  }
+}
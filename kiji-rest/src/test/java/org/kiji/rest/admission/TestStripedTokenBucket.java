@@ -0,0 +1,93 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Test class for the striped token bucket of quotas.
+ */
+public class TestStripedTokenBucket {
+  @Test
+  public void testShouldStartFullAndRunIntoDebt() throws Exception {
+    // A rate low enough for the bucket not to refill during the test.
+    final StripedTokenBucket bucket = new StripedTokenBucket(0.001, 100, 4);
+    assertEquals(100, bucket.getAvailable());
+    bucket.charge(30);
+    assertEquals(70, bucket.getAvailable());
+    bucket.charge(120);
+    assertEquals(-50, bucket.getAvailable());
+    assertTrue(bucket.getRetryAfterMillis() > 0);
+  }
+
+  @Test
+  public void testShouldSumChargesOfConcurrentThreads() throws Exception {
+    final StripedTokenBucket bucket = new StripedTokenBucket(0.001, 10000, 8);
+    final int threads = 8;
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            bucket.charge(1);
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    done.await();
+    assertEquals(2000, bucket.getAvailable());
+  }
+
+  @Test
+  public void testShouldSpendEveryStripeFromASingleThread() throws Exception {
+    final StripedTokenBucket bucket = new StripedTokenBucket(0.001, 100, 4);
+    for (int i = 0; i < 100; i++) {
+      bucket.charge(1);
+    }
+    assertEquals(0, bucket.getAvailable());
+    // Only once every stripe is empty does the thread run into debt.
+    bucket.charge(10);
+    assertEquals(-10, bucket.getAvailable());
+  }
+
+  @Test
+  public void testShouldRefillAtTheWholeRateForASingleThread() throws Exception {
+    final StripedTokenBucket bucket = new StripedTokenBucket(1000, 100, 4);
+    bucket.charge(100);
+    Thread.sleep(50);
+    // Every stripe refills, not only the one of the thread, which earns 250 tokens per second.
+    assertTrue(bucket.getAvailable() >= 40);
+  }
+
+  @Test
+  public void testShouldRefillUpToTheBurst() throws Exception {
+    final StripedTokenBucket bucket = new StripedTokenBucket(1000000, 10, 2);
+    bucket.charge(10);
+    Thread.sleep(10);
+    assertEquals(10, bucket.getAvailable());
+  }
+}
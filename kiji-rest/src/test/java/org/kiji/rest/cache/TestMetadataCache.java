@@ -0,0 +1,166 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.avro.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.representations.MetadataChanges;
+import org.kiji.rest.representations.MetadataChanges.LayoutEntry;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+/**
+ * Test class for the cache of instance metadata backups.
+ */
+public class TestMetadataCache {
+  private Kiji mFakeKiji = null;
+
+  private KijiClient mKijiClient = null;
+
+  @Before
+  public void setUp() throws Exception {
+    mFakeKiji = new InstanceBuilder("default").build();
+    mFakeKiji.createTable(KijiTableLayouts.getLayout("org/kiji/rest/layouts/sample_table.json"));
+    mKijiClient = new KijiClient() {
+      @Override
+      public Kiji getKiji(String instance) {
+        // The cache releases the instances it gets.
+        return mFakeKiji.retain();
+      }
+
+      @Override
+      public Collection<KijiURI> getInstances() {
+        return Collections.singleton(mFakeKiji.getURI());
+      }
+
+      @Override
+      public KijiTable getKijiTable(String instance, String table) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    mFakeKiji.release();
+  }
+
+  /** @return a cache checking for changes on every request, and never expiring its backups. */
+  private MetadataCache newCheckingCache() {
+    return new MetadataCache(mKijiClient, new ObjectMapper().convertValue(
+        ImmutableMap.of("checkIntervalMillis", 0, "ttlMillis", 3600000),
+        MetadataCacheConfiguration.class));
+  }
+
+  private String getETag(MetadataCache cache) throws Exception {
+    return cache.getBackup("default").getETag();
+  }
+
+  @Test
+  public void testShouldKeepTheTagOfUnchangedMetadata() throws Exception {
+    final MetadataCache cache = MetadataCache.uncached(mKijiClient);
+    assertEquals(getETag(cache), getETag(cache));
+    assertEquals(getETag(cache), getETag(newCheckingCache()));
+  }
+
+  @Test
+  public void testShouldRetagWhenAMetaTableValueChanges() throws Exception {
+    final MetadataCache cache = newCheckingCache();
+    final String eTag = getETag(cache);
+    final String changesETag = cache.getChanges("default", -1, -1).getETag();
+    assertEquals(eTag, getETag(cache));
+
+    mFakeKiji.getMetaTable().putValue("sample_table", "some.key", "1".getBytes(Charsets.UTF_8));
+    final String putETag = getETag(cache);
+    assertFalse(eTag.equals(putETag));
+    assertFalse(changesETag.equals(cache.getChanges("default", -1, -1).getETag()));
+
+    mFakeKiji.getMetaTable().putValue("sample_table", "some.key", "2".getBytes(Charsets.UTF_8));
+    assertFalse(putETag.equals(getETag(cache)));
+  }
+
+  @Test
+  public void testShouldRetagWhenASchemaIsAdded() throws Exception {
+    final MetadataCache cache = newCheckingCache();
+    final String eTag = getETag(cache);
+    mFakeKiji.getSchemaTable().getOrCreateSchemaId(Schema.createFixed("Added", null, null, 3));
+    assertFalse(eTag.equals(getETag(cache)));
+  }
+
+  @Test
+  public void testShouldListTheSchemasAddedSinceAnId() throws Exception {
+    final MetadataCache cache = newCheckingCache();
+    final long stringId =
+        mFakeKiji.getSchemaTable().getOrCreateSchemaId(Schema.create(Schema.Type.STRING));
+    final MetadataChanges all = cache.getChanges("default", -1, -1).getValue();
+    assertTrue(stringId <= all.getLatestSchemaId());
+    assertEquals(all.getLatestSchemaId(),
+        all.getSchemas().get(all.getSchemas().size() - 1).getId());
+
+    final long since = all.getLatestSchemaId();
+    assertTrue(cache.getChanges("default", since, -1).getValue().getSchemas().isEmpty());
+
+    final Schema added = Schema.createFixed("Added", null, null, 3);
+    final long addedId = mFakeKiji.getSchemaTable().getOrCreateSchemaId(added);
+    final MetadataChanges changes = cache.getChanges("default", since, -1).getValue();
+    assertEquals(addedId, changes.getLatestSchemaId());
+    assertEquals(1, changes.getSchemas().size());
+    assertEquals(addedId, changes.getSchemas().get(0).getId());
+    assertEquals(added, new Schema.Parser().parse(changes.getSchemas().get(0).getAvroSchema()));
+  }
+
+  @Test
+  public void testShouldListTheLayoutsSetSinceATimestamp() throws Exception {
+    final MetadataCache cache = newCheckingCache();
+    final MetadataChanges all = cache.getChanges("default", -1, -1).getValue();
+    assertEquals(ImmutableSet.of("sample_table"), all.getLayouts().keySet());
+    final List<LayoutEntry> sampleLayouts = all.getLayouts().get("sample_table");
+    assertEquals(1, sampleLayouts.size());
+    final long since = sampleLayouts.get(0).getTimestamp();
+    assertTrue(cache.getChanges("default", -1, since).getValue().getLayouts().isEmpty());
+
+    // Layouts set within the same millisecond are not after the timestamp.
+    Thread.sleep(10);
+    mFakeKiji.createTable(KijiTableLayouts.getLayout("org/kiji/rest/layouts/counter_table.json"));
+    final MetadataChanges changes = cache.getChanges("default", -1, since).getValue();
+    assertEquals(ImmutableSet.of("counter_table"), changes.getLayouts().keySet());
+    assertEquals("counter_table",
+        changes.getLayouts().get("counter_table").get(0).getLayout().getName());
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+/**
+ * Test class for the negative cache of reads which found no cell.
+ */
+public class TestNegativeRowCache {
+  private static final byte[] EMPTY_ROW = "{\"cells\":[]}".getBytes();
+
+  private static NegativeRowCache newCache() {
+    return new NegativeRowCache(null, new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true), NegativeCacheConfiguration.class));
+  }
+
+  private static RowReadKey key(String row, String columns) {
+    return new RowReadKey("instance", "table", row.getBytes(), columns, 1, null);
+  }
+
+  @Test
+  public void testShouldServeMissesUntilTheRowIsWritten() throws Exception {
+    final NegativeRowCache cache = newCache();
+    final RowReadKey key = key("row", "info:name");
+    assertNull(cache.get(key));
+    cache.put(key, EMPTY_ROW, cache.getStamp(key));
+    assertArrayEquals(EMPTY_ROW, cache.get(key));
+    // Other columns of the row were not read.
+    assertNull(cache.get(key("row", "info:email")));
+
+    cache.invalidateRow("instance", "table", "row".getBytes());
+    assertNull(cache.get(key));
+  }
+
+  @Test
+  public void testShouldNotCacheMissesReadBeforeAWrite() throws Exception {
+    final NegativeRowCache cache = newCache();
+    final RowReadKey key = key("row", "info:name");
+    final long stamp = cache.getStamp(key);
+    cache.invalidateRow("instance", "table", "row".getBytes());
+    cache.put(key, EMPTY_ROW, stamp);
+    assertNull(cache.get(key));
+  }
+
+  @Test
+  public void testShouldNotKnowRowsAbsentWithoutBloomFilter() throws Exception {
+    assertFalse(newCache().isAbsent("instance", "table", "row".getBytes()));
+  }
+}
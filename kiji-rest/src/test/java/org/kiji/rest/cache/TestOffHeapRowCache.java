@@ -0,0 +1,145 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+/**
+ * Test class for the off-heap cache of serialized row responses.
+ */
+public class TestOffHeapRowCache {
+  private static OffHeapRowCache newCache(long maxBytes) {
+    return new OffHeapRowCache(new ObjectMapper().convertValue(
+        ImmutableMap.of("enabled", true, "maxBytes", maxBytes, "blockBytes", 64),
+        RowCacheConfiguration.class));
+  }
+
+  private static RowReadKey key(String row) {
+    return new RowReadKey("instance", "table", row.getBytes(), "info:name", 1, null);
+  }
+
+  private static byte[] write(StreamingOutput output) throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    output.write(out);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testShouldServeCachedResponses() throws Exception {
+    final OffHeapRowCache cache = newCache(4096);
+    final RowReadKey key = key("row");
+    assertNull(cache.get(key));
+    // Spans several blocks.
+    final byte[] response = new byte[150];
+    for (int i = 0; i < response.length; i++) {
+      response[i] = (byte) i;
+    }
+    cache.put(key, response, cache.getStamp(key));
+    assertArrayEquals(response, write(cache.get(key)));
+    assertArrayEquals(response, write(cache.get(key)));
+    assertEquals(1, cache.getEntries());
+    assertEquals(192, cache.getUsedBytes());
+  }
+
+  @Test
+  public void testShouldDropResponsesOfWrittenRows() throws Exception {
+    final OffHeapRowCache cache = newCache(4096);
+    final RowReadKey key = key("row");
+    cache.put(key, new byte[10], cache.getStamp(key));
+    cache.invalidateRow("instance", "table", "row".getBytes());
+    assertNull(cache.get(key));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  public void testShouldNotCacheResponsesReadBeforeAWrite() throws Exception {
+    final OffHeapRowCache cache = newCache(4096);
+    final RowReadKey key = key("row");
+    final long stamp = cache.getStamp(key);
+    cache.invalidateRow("instance", "table", "row".getBytes());
+    cache.put(key, new byte[10], stamp);
+    assertNull(cache.get(key));
+  }
+
+  @Test
+  public void testShouldStayWithinItsMemoryAndKeepPopularRows() throws Exception {
+    final OffHeapRowCache cache = newCache(64 * 4);
+    final RowReadKey popular = key("popular");
+    cache.get(popular);
+    cache.put(popular, new byte[64], cache.getStamp(popular));
+    for (int i = 0; i < 5; i++) {
+      write(cache.get(popular));
+    }
+    for (int i = 0; i < 20; i++) {
+      final RowReadKey key = key("row-" + i);
+      cache.get(key);
+      cache.put(key, new byte[64], cache.getStamp(key));
+    }
+    assertTrue(cache.getUsedBytes() <= cache.getCapacityBytes());
+    assertArrayEquals(new byte[64], write(cache.get(popular)));
+  }
+
+  @Test
+  public void testShouldFreeTheBlocksOfHitsNeverWritten() throws Exception {
+    final OffHeapRowCache cache = newCache(64);
+    final RowReadKey hit = key("hit");
+    cache.put(hit, new byte[64], cache.getStamp(hit));
+    // Such as the response to a HEAD request.
+    cache.get(hit);
+    final RowReadKey popular = key("popular");
+    for (int i = 0; i < 3; i++) {
+      assertNull(cache.get(popular));
+    }
+    cache.put(popular, new byte[64], cache.getStamp(popular));
+    assertNull(cache.get(hit));
+    assertArrayEquals(new byte[64], write(cache.get(popular)));
+    assertEquals(64, cache.getUsedBytes());
+  }
+
+  @Test
+  public void testShouldPurgeSelectedRows() throws Exception {
+    final OffHeapRowCache cache = newCache(4096);
+    final RowReadKey kept = key("kept");
+    final RowReadKey purged = key("purged");
+    final RowReadKey stale = key("purged-too");
+    final long stamp = cache.getStamp(stale);
+    cache.put(kept, new byte[10], cache.getStamp(kept));
+    cache.put(purged, new byte[10], cache.getStamp(purged));
+    // "purge" in hex.
+    assertEquals(1, cache.purge(RowSelector.parse("instance/table/7075726765", true)));
+    cache.put(stale, new byte[10], stamp);
+    assertNull(cache.get(purged));
+    assertNull(cache.get(stale));
+    assertArrayEquals(new byte[10], write(cache.get(kept)));
+    assertEquals(1, cache.getUsageByTable().get("instance/table").getEntries());
+    assertEquals(1, cache.purge(RowSelector.parse("instance", false)));
+    assertEquals(0, cache.getEntries());
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+/**
+ * Test class for the persistent store of serialized row responses.
+ */
+public class TestPersistentRowStore {
+  @Rule
+  public TemporaryFolder mTempDir = new TemporaryFolder();
+
+  private Kiji mKiji;
+  private LayoutVersions mLayoutVersions;
+
+  @Before
+  public void setUp() throws Exception {
+    mKiji = new InstanceBuilder("default").build();
+    mKiji.createTable(KijiTableLayouts.getLayout("org/kiji/rest/layouts/sample_table.json"));
+    mLayoutVersions = new LayoutVersions(new KijiClient() {
+      @Override
+      public Kiji getKiji(String instance) {
+        return mKiji;
+      }
+
+      @Override
+      public Collection<KijiURI> getInstances() {
+        return Collections.singleton(mKiji.getURI());
+      }
+
+      @Override
+      public KijiTable getKijiTable(String instance, String table) {
+        try {
+          return mKiji.openTable(table);
+        } catch (IOException ioe) {
+          throw new RuntimeException(ioe);
+        }
+      }
+    }, null);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    mKiji.release();
+  }
+
+  private PersistentRowStore newStore(File file, long maxBytes) throws Exception {
+    final PersistentRowStore store = new PersistentRowStore(new ObjectMapper().convertValue(
+        ImmutableMap.of("persistentPath", file.getPath(), "persistentMaxBytes", maxBytes),
+        RowCacheConfiguration.class), mLayoutVersions);
+    store.start();
+    return store;
+  }
+
+  private static RowReadKey key(String row) {
+    return new RowReadKey("default", "sample_table", row.getBytes(), "group_family", 1, null);
+  }
+
+  @Test
+  public void testShouldServeResponsesAfterARestart() throws Exception {
+    final File file = new File(mTempDir.getRoot(), "rows");
+    final PersistentRowStore store = newStore(file, 65536);
+    store.put(key("a"), "{\"a\":1}".getBytes());
+    store.put(key("b"), "{\"b\":2}".getBytes());
+    store.invalidateRow(key("b").getRow());
+    store.stop();
+
+    final PersistentRowStore restarted = newStore(file, 65536);
+    assertEquals(1, restarted.getEntries());
+    assertArrayEquals("{\"a\":1}".getBytes(), restarted.get(key("a")));
+    assertNull(restarted.get(key("b")));
+  }
+
+  @Test
+  public void testShouldDropTheOldestResponsesOnceFull() throws Exception {
+    final File file = new File(mTempDir.getRoot(), "rows");
+    final PersistentRowStore store = newStore(file, 4096);
+    final byte[] response = new byte[500];
+    for (int i = 0; i < 20; i++) {
+      store.put(key("row-" + i), response);
+    }
+    assertNull(store.get(key("row-0")));
+    assertArrayEquals(response, store.get(key("row-19")));
+    store.stop();
+
+    final PersistentRowStore restarted = newStore(file, 4096);
+    assertEquals(store.getEntries(), restarted.getEntries());
+    assertArrayEquals(response, restarted.get(key("row-19")));
+  }
+}
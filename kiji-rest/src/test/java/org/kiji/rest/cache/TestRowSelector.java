@@ -0,0 +1,65 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test class for the selectors of cached rows.
+ */
+public class TestRowSelector {
+  private static RowReadKey key(String instance, String table, byte[] rowKey) {
+    return new RowReadKey(instance, table, rowKey, "*", 1, null);
+  }
+
+  @Test
+  public void testShouldSelectInstancesTablesAndRows() throws Exception {
+    final RowReadKey key = key("instance", "table", new byte[] {0x0a, 0x1b});
+    assertTrue(RowSelector.parse("instance", false).matches(key));
+    assertFalse(RowSelector.parse("other", false).matches(key));
+    assertTrue(RowSelector.parse("instance/table", false).matches(key));
+    assertFalse(RowSelector.parse("instance/other", false).matches(key));
+    assertTrue(RowSelector.parse("instance/table/0A1B", false).matches(key));
+    assertFalse(RowSelector.parse("instance/table/0a", false).matches(key));
+    assertTrue(RowSelector.parse("instance/table/0a", true).matches(key));
+    assertFalse(RowSelector.parse("instance/table/1b", true).matches(key));
+  }
+
+  @Test
+  public void testShouldSelectWholeTables() throws Exception {
+    assertTrue(RowSelector.parse("instance", false).matchesTable("instance", "table"));
+    assertTrue(RowSelector.parse("instance/table", false).matchesTable("instance", "table"));
+    assertFalse(RowSelector.parse("instance/other", false).matchesTable("instance", "table"));
+    assertFalse(RowSelector.parse("instance/table/0a", false).matchesTable("instance", "table"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectRowKeysNotInHex() throws Exception {
+    RowSelector.parse("instance/table/row", false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectPrefixesWithoutRowKey() throws Exception {
+    RowSelector.parse("instance/table", true);
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for the coalescing of concurrent loads.
+ */
+public class TestSingleFlight {
+  @Test
+  public void testShouldShareOneLoadBetweenConcurrentCallers() throws Exception {
+    final SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>("test-share");
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final Callable<Integer> loader = new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        release.await();
+        return loads.incrementAndGet();
+      }
+    };
+    final int threads = 4;
+    final AtomicInteger sum = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            sum.addAndGet(flight.get("row", loader));
+          } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    // Gives the followers time to join the load of the leader.
+    Thread.sleep(100);
+    release.countDown();
+    done.await();
+    assertEquals(1, loads.get());
+    assertEquals(threads, sum.get());
+  }
+
+  @Test
+  public void testShouldLoadAgainOnceTheLoadCompleted() throws Exception {
+    final SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>("test-again");
+    final AtomicInteger loads = new AtomicInteger();
+    final Callable<Integer> loader = new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return loads.incrementAndGet();
+      }
+    };
+    assertEquals(1, flight.get("row", loader).intValue());
+    assertEquals(2, flight.get("row", loader).intValue());
+  }
+
+  @Test
+  public void testShouldRethrowTheFailureOfTheLoad() throws Exception {
+    final SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>("test-fail");
+    try {
+      flight.get("row", new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          throw new IOException("unavailable");
+        }
+      });
+      fail("Should have thrown an IOException.");
+    } catch (IOException ioe) {
+      assertEquals("unavailable", ioe.getMessage());
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.serializers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.generic.GenericContainer;
+import org.junit.Test;
+
+import org.kiji.rest.sample_avro.PickBan;
+import org.kiji.rest.sample_avro.Team;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.ToJson;
+
+/**
+ * Test class for the streaming Avro to JSON writer.
+ */
+public class TestAvroJsonWriter {
+  private final ObjectMapper mMapper = new ObjectMapper();
+
+  private void assertSameAsToJson(GenericContainer record) throws Exception {
+    final StringWriter json = new StringWriter();
+    final JsonGenerator generator = mMapper.getFactory().createGenerator(json);
+    AvroJsonWriter.write(record, generator);
+    generator.flush();
+    assertEquals(mMapper.readTree(ToJson.toAvroJsonString(record)),
+        mMapper.readTree(json.toString()));
+  }
+
+  @Test
+  public void testShouldWriteUnionsLikeToJson() throws Exception {
+    final Team team = new Team();
+    team.setId(1L);
+    team.setName("Team 1");
+    assertSameAsToJson(team);
+
+    final PickBan pickBan = new PickBan();
+    pickBan.setHeroId(42L);
+    pickBan.setIsPick(true);
+    assertSameAsToJson(pickBan);
+  }
+
+  @Test
+  public void testShouldWriteLayoutsLikeToJson() throws Exception {
+    assertSameAsToJson(KijiTableLayouts.getLayout(KijiTableLayouts.FULL_FEATURED));
+    assertSameAsToJson(KijiTableLayouts.getLayout("org/kiji/rest/layouts/sample_table.json"));
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.kiji.rest.writes.SpoolPartition.Record;
+
+/**
+ * Test class for the memory-mapped spool partition.
+ */
+public class TestSpoolPartition {
+  private static final int CAPACITY = 64;
+
+  @Rule
+  public TemporaryFolder mTempDir = new TemporaryFolder();
+
+  private static byte[] payload(int length, int fill) {
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) fill;
+    }
+    return bytes;
+  }
+
+  private static List<Record> readNow(SpoolPartition partition, int maxRecords)
+      throws InterruptedException {
+    return partition.read(maxRecords, 1, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testShouldReadAppendedRecordsInOrder() throws Exception {
+    final SpoolPartition partition =
+        new SpoolPartition(new File(mTempDir.getRoot(), "spool.dat"), CAPACITY);
+    assertTrue(partition.append(payload(4, 1)));
+    assertTrue(partition.append(payload(8, 2)));
+    assertEquals(2, partition.getPendingRecords());
+
+    final List<Record> records = readNow(partition, 10);
+    assertEquals(2, records.size());
+    assertArrayEquals(payload(4, 1), records.get(0).getPayload());
+    assertArrayEquals(payload(8, 2), records.get(1).getPayload());
+
+    partition.acknowledge(records.get(1), 2);
+    assertEquals(0, partition.getPendingRecords());
+    assertEquals(0, partition.getPendingBytes());
+    assertTrue(readNow(partition, 10).isEmpty());
+  }
+
+  @Test
+  public void testShouldRejectAppendsWhenFull() throws Exception {
+    final SpoolPartition partition =
+        new SpoolPartition(new File(mTempDir.getRoot(), "spool.dat"), CAPACITY);
+    // Each record takes 8 header bytes and 24 payload bytes: two fill the ring.
+    assertTrue(partition.append(payload(24, 1)));
+    assertTrue(partition.append(payload(24, 2)));
+    assertFalse(partition.append(payload(1, 3)));
+
+    final List<Record> records = readNow(partition, 1);
+    partition.acknowledge(records.get(0), 1);
+    assertTrue(partition.append(payload(24, 3)));
+  }
+
+  @Test
+  public void testShouldWrapAroundTheEndOfTheRing() throws Exception {
+    final SpoolPartition partition =
+        new SpoolPartition(new File(mTempDir.getRoot(), "spool.dat"), CAPACITY);
+    assertTrue(partition.append(payload(32, 1)));
+    partition.acknowledge(readNow(partition, 1).get(0), 1);
+
+    // 24 bytes remain before the end of the ring, too few for this record.
+    assertTrue(partition.append(payload(30, 2)));
+    final List<Record> records = readNow(partition, 10);
+    assertEquals(1, records.size());
+    assertArrayEquals(payload(30, 2), records.get(0).getPayload());
+  }
+
+  @Test
+  public void testShouldReplayUnacknowledgedRecordsWhenReopened() throws Exception {
+    final File file = new File(mTempDir.getRoot(), "spool.dat");
+    final SpoolPartition partition = new SpoolPartition(file, CAPACITY);
+    partition.append(payload(4, 1));
+    partition.append(payload(4, 2));
+    partition.acknowledge(readNow(partition, 1).get(0), 1);
+    partition.force();
+
+    final SpoolPartition reopened = new SpoolPartition(file, CAPACITY);
+    assertEquals(1, reopened.getPendingRecords());
+    final List<Record> records = readNow(reopened, 10);
+    assertEquals(1, records.size());
+    assertArrayEquals(payload(4, 2), records.get(0).getPayload());
+  }
+}
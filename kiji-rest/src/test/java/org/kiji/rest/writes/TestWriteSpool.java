@@ -0,0 +1,131 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.rest.writes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.kiji.rest.KijiClient;
+import org.kiji.rest.writes.SpooledRow.SpooledCell;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+
+/**
+ * Test class for the draining of spooled rows whose table can not be opened.
+ */
+public class TestWriteSpool {
+  @Rule
+  public TemporaryFolder mTempDir = new TemporaryFolder();
+
+  /**
+   * A client failing to open tables with 500, and to open their instance with a given status.
+   */
+  private static final class FailingKijiClient implements KijiClient {
+    private final Status mInstanceStatus;
+    private final AtomicInteger mTableLeases = new AtomicInteger();
+    private final CountDownLatch mInstanceChecked = new CountDownLatch(1);
+
+    private FailingKijiClient(Status instanceStatus) {
+      mInstanceStatus = instanceStatus;
+    }
+
+    @Override
+    public Kiji getKiji(String instance) {
+      mInstanceChecked.countDown();
+      throw new WebApplicationException(mInstanceStatus);
+    }
+
+    @Override
+    public Collection<KijiURI> getInstances() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public KijiTable getKijiTable(String instance, String table) {
+      mTableLeases.incrementAndGet();
+      throw new WebApplicationException(Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private WriteSpool newSpool(KijiClient kijiClient) {
+    return new WriteSpool(kijiClient, new ObjectMapper().convertValue(ImmutableMap.of(
+        "enabled", true,
+        "directory", mTempDir.getRoot().getPath(),
+        "partitions", 1,
+        "partitionSizeBytes", 64 * 1024),
+        SpoolConfiguration.class));
+  }
+
+  /**
+   * Spools a row, lets the spool try it once, then counts the times a new spool opening the
+   * same files tries it again.
+   *
+   * @param instanceStatus the instance of the row is refused with.
+   * @return the number of times the row was tried again.
+   * @throws Exception on error.
+   */
+  private int countRetries(Status instanceStatus) throws Exception {
+    final FailingKijiClient kijiClient = new FailingKijiClient(instanceStatus);
+    final WriteSpool spool = newSpool(kijiClient);
+    spool.start();
+    assertTrue(spool.append(new SpooledRow("removed", "table", "row".getBytes(),
+        Collections.<SpooledCell>emptyList())));
+    assertTrue(kijiClient.mInstanceChecked.await(10, TimeUnit.SECONDS));
+    // Stopping lets the attempt in progress acknowledge the row or leave it spooled.
+    spool.stop();
+
+    final FailingKijiClient replayClient = new FailingKijiClient(instanceStatus);
+    final WriteSpool replay = newSpool(replayClient);
+    replay.start();
+    Thread.sleep(500);
+    replay.stop();
+    return replayClient.mTableLeases.get();
+  }
+
+  @Test
+  public void testShouldDropRowsOfInstancesNoLongerServed() throws Exception {
+    assertEquals(0, countRetries(Status.FORBIDDEN));
+  }
+
+  @Test
+  public void testShouldDropRowsOfMissingInstances() throws Exception {
+    assertEquals(0, countRetries(Status.NOT_FOUND));
+  }
+
+  @Test
+  public void testShouldRetryRowsOfUnavailableInstances() throws Exception {
+    assertTrue(countRetries(Status.SERVICE_UNAVAILABLE) > 0);
+  }
+}